@@ -0,0 +1,288 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 B e n c h m a r k F i x t u r e                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+
+import org.audiveris.omr.glyph.Glyph;
+import org.audiveris.omr.glyph.GlyphFactory;
+import org.audiveris.omr.image.FilterDescriptor;
+import org.audiveris.omr.image.ImageLoading;
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.Run;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class {@code BenchmarkFixture} provides the data that benchmarks work upon, derived
+ * from one of the example images.
+ * <p>
+ * Images are read from the folder given by system property {@code benchmark.examples}, which
+ * defaults to {@code data/examples} relative to the working directory.
+ * All derived data (gray and binary buffers, run tables, glyphs, interline) is computed once per
+ * JVM and then shared, so benchmarks must not modify it.
+ *
+ * @author Hervé Bitteur
+ */
+public class BenchmarkFixture
+{
+
+    // Don't move this statement!
+    static {
+        // We need class WellKnowns to be elaborated before anything else (logging config)
+        WellKnowns.ensureLoaded();
+    }
+
+    /** Default example image. */
+    public static final String DEFAULT_IMAGE = "chula.png";
+
+    /** Fixtures already built, per image name. */
+    private static final Map<String, BenchmarkFixture> fixtures = new HashMap<>();
+
+    /** Image name. */
+    private final String name;
+
+    /** Gray buffer. */
+    private final ByteProcessor gray;
+
+    /** Binarized buffer. */
+    private final ByteProcessor binary;
+
+    /** Vertical runs of binary buffer. */
+    private final RunTable verticalTable;
+
+    /** Horizontal runs of binary buffer. */
+    private final RunTable horizontalTable;
+
+    /** Estimated staff interline. */
+    private final int interline;
+
+    /** Glyphs built from binary buffer, lazily computed. */
+    private List<Glyph> glyphs;
+
+    private BenchmarkFixture (String name)
+            throws Exception
+    {
+        this.name = name;
+
+        gray = loadGray(getExamplesFolder().resolve(name));
+        binary = FilterDescriptor.defaultFilter.getValue().getFilter(gray).filteredImage();
+        verticalTable = new RunTableFactory(Orientation.VERTICAL).createTable(binary);
+        horizontalTable = new RunTableFactory(Orientation.HORIZONTAL).createTable(binary);
+        interline = estimateInterline(verticalTable);
+    }
+
+    //-----//
+    // get //
+    //-----//
+    /**
+     * Report the fixture for the provided example image.
+     *
+     * @param name image file name within examples folder
+     * @return the fixture
+     * @throws Exception if image could not be loaded
+     */
+    public static synchronized BenchmarkFixture get (String name)
+            throws Exception
+    {
+        BenchmarkFixture fixture = fixtures.get(name);
+
+        if (fixture == null) {
+            fixtures.put(name, fixture = new BenchmarkFixture(name));
+        }
+
+        return fixture;
+    }
+
+    //-----------//
+    // getBinary //
+    //-----------//
+    /**
+     * Report the image binarized by the default filter.
+     *
+     * @return the binary buffer
+     */
+    public ByteProcessor getBinary ()
+    {
+        return binary;
+    }
+
+    //-----------//
+    // getGlyphs //
+    //-----------//
+    /**
+     * Report the glyphs built from the binary image.
+     *
+     * @return the unmodifiable list of glyphs
+     */
+    public synchronized List<Glyph> getGlyphs ()
+    {
+        if (glyphs == null) {
+            glyphs = Collections.unmodifiableList(
+                    GlyphFactory.buildGlyphs(verticalTable, new Point(0, 0)));
+        }
+
+        return glyphs;
+    }
+
+    //---------//
+    // getGray //
+    //---------//
+    /**
+     * Report the gray image.
+     *
+     * @return the gray buffer
+     */
+    public ByteProcessor getGray ()
+    {
+        return gray;
+    }
+
+    //--------------------//
+    // getHorizontalTable //
+    //--------------------//
+    /**
+     * Report the horizontal runs of binary image.
+     *
+     * @return the horizontal run table
+     */
+    public RunTable getHorizontalTable ()
+    {
+        return horizontalTable;
+    }
+
+    //--------------//
+    // getInterline //
+    //--------------//
+    /**
+     * Report the estimated staff interline.
+     *
+     * @return the interline, in pixels
+     */
+    public int getInterline ()
+    {
+        return interline;
+    }
+
+    //------------------//
+    // getVerticalTable //
+    //------------------//
+    /**
+     * Report the vertical runs of binary image.
+     *
+     * @return the vertical run table
+     */
+    public RunTable getVerticalTable ()
+    {
+        return verticalTable;
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public String toString ()
+    {
+        return "{Fixture " + name + " " + gray.getWidth() + "x" + gray.getHeight() + " interline:"
+               + interline + "}";
+    }
+
+    //-------------------//
+    // estimateInterline //
+    //-------------------//
+    /**
+     * Estimate staff interline as the most frequent sum of a vertical black run and
+     * the following white run, as the scale builder does.
+     */
+    private static int estimateInterline (RunTable table)
+    {
+        final int[] histo = new int[table.getHeight()];
+
+        for (int x = 0; x < table.getWidth(); x++) {
+            int prevStart = -1; // Iterator reuses the same Run instance
+
+            for (Iterator<Run> it = table.iterator(x); it.hasNext();) {
+                final int start = it.next().getStart();
+
+                if (prevStart != -1) {
+                    histo[start - prevStart]++;
+                }
+
+                prevStart = start;
+            }
+        }
+
+        int best = 0;
+
+        for (int i = 1; i < histo.length; i++) {
+            if (histo[i] > histo[best]) {
+                best = i;
+            }
+        }
+
+        return best;
+    }
+
+    //-------------------//
+    // getExamplesFolder //
+    //-------------------//
+    private static Path getExamplesFolder ()
+    {
+        return Paths.get(System.getProperty("benchmark.examples", "data/examples"));
+    }
+
+    //----------//
+    // loadGray //
+    //----------//
+    private static ByteProcessor loadGray (Path path)
+            throws Exception
+    {
+        final ImageLoading.Loader loader = ImageLoading.getLoader(path);
+
+        if (loader == null) {
+            throw new IllegalArgumentException("Cannot load " + path);
+        }
+
+        try {
+            final BufferedImage img = loader.getGrayImage(1);
+
+            if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                return new ByteProcessor(img);
+            }
+
+            return new ColorProcessor(img).convertToByteProcessor();
+        } finally {
+            loader.dispose();
+        }
+    }
+}
@@ -0,0 +1,504 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                              T h r o u g h p u t B e n c h m a r k                             //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr;
+
+import org.audiveris.omr.log.LogUtil;
+import org.audiveris.omr.sheet.Book;
+import org.audiveris.omr.sheet.BookManager;
+import org.audiveris.omr.step.Step;
+import org.audiveris.omr.step.StepMetrics;
+import org.audiveris.omr.text.OcrUtil;
+import org.audiveris.omr.ui.symbol.MusicFont;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.apache.commons.io.FileUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Class {@code ThroughputBenchmark} is a headless harness that measures end-to-end
+ * transcription throughput over a fixed corpus, and acts as a regression gate.
+ * <p>
+ * The whole corpus is transcribed several times in the same JVM: the first run is the "cold"
+ * one, the following runs are the "warm" ones. Each run reports pages per minute, peak heap and
+ * time spent per step (as recorded by {@link StepMetrics}).
+ * Books are processed as the CLI does in batch, and stored into a temporary folder.
+ * <p>
+ * Arguments (all optional):
+ * <dl>
+ * <dt>-runs N</dt>
+ * <dd>number of corpus runs, the first one being cold (default: 3)</dd>
+ * <dt>-parallelism true|false</dt>
+ * <dd>value for OmrExecutors.useParallelism, which drives OmrExecutors.defaultParallelism</dd>
+ * <dt>-systems true|false</dt>
+ * <dd>value for Main.processSystemsInParallel</dd>
+ * <dt>-option key=value</dt>
+ * <dd>any other application constant, as for the CLI</dd>
+ * <dt>-baseline FILE</dt>
+ * <dd>baseline to compare warm throughput with, created if it does not exist yet</dd>
+ * <dt>-tolerance PCT</dt>
+ * <dd>maximum acceptable throughput drop, in percents of baseline (default: 10)</dd>
+ * <dt>-update</dt>
+ * <dd>overwrite the baseline with current results</dd>
+ * <dt>inputs</dt>
+ * <dd>image files or folders (default: the data/examples folder)</dd>
+ * </dl>
+ * The JVM exit status is 1 if throughput regressed beyond tolerance or if some book failed.
+ *
+ * @author Hervé Bitteur
+ */
+public class ThroughputBenchmark
+{
+
+    // Don't move this statement!
+    static {
+        // We need class WellKnowns to be elaborated before anything else (logging config)
+        WellKnowns.ensureLoaded();
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ThroughputBenchmark.class);
+
+    /** Baseline key for warm throughput. */
+    private static final String WARM_KEY = "warm.pagesPerMinute";
+
+    /** Baseline key for cold throughput. */
+    private static final String COLD_KEY = "cold.pagesPerMinute";
+
+    /** Baseline key for peak heap. */
+    private static final String HEAP_KEY = "peakHeapMB";
+
+    /** Number of corpus runs. */
+    private int runs = 3;
+
+    /** Baseline file, if any. */
+    private Path baseline;
+
+    /** Acceptable throughput drop, in percents. */
+    private double tolerance = 10;
+
+    /** Should baseline be overwritten. */
+    private boolean update;
+
+    /** Arguments for the application CLI. */
+    private final List<String> cliArgs = new ArrayList<>();
+
+    /** Temporary output folder for books. */
+    private Path output;
+
+    /** Corpus files. */
+    private final List<Path> corpus = new ArrayList<>();
+
+    /** True if some book failed. */
+    private boolean failure;
+
+    //------//
+    // main //
+    //------//
+    /**
+     * Launch the harness.
+     *
+     * @param args the harness arguments
+     * @throws Exception if anything goes wrong
+     */
+    public static void main (String[] args)
+            throws Exception
+    {
+        final ThroughputBenchmark bench = new ThroughputBenchmark();
+        bench.parse(args);
+
+        // CLI must be set before any application constant is loaded
+        Main.processCli(bench.cliArgs.toArray(new String[bench.cliArgs.size()]));
+
+        final boolean ok = bench.process();
+
+        Runtime.getRuntime().exit(ok ? 0 : 1);
+    }
+
+    //---------//
+    // process //
+    //---------//
+    private boolean process ()
+            throws IOException
+    {
+        Collections.sort(corpus);
+        logger.info("Corpus: {}", corpus);
+
+        OmrExecutors.restart();
+        OMR.engine = BookManager.getInstance();
+        MusicFont.checkMusicFont();
+        OcrUtil.getOcr().warmUp();
+
+        final List<Result> results = new ArrayList<>();
+
+        try {
+            for (int i = 1; i <= runs; i++) {
+                final Result result = runCorpus((i == 1) ? "cold" : ("warm#" + (i - 1)));
+                logger.info("{}", result);
+                results.add(result);
+            }
+        } finally {
+            OmrExecutors.shutdown();
+            OcrUtil.getOcr().shutdown();
+            FileUtils.deleteDirectory(output.toFile());
+        }
+
+        final Result cold = results.get(0);
+        final Result warm = Result.merge(results.subList(Math.min(1, runs - 1), runs));
+        logger.info("Cold: {}", cold);
+        logger.info("Warm: {}", warm);
+
+        final boolean gated = gate(cold, warm);
+
+        return gated && !failure;
+    }
+
+    //------//
+    // gate //
+    //------//
+    /**
+     * Compare current results with baseline, if any.
+     *
+     * @return false if throughput regressed beyond tolerance
+     */
+    private boolean gate (Result cold,
+                          Result warm)
+            throws IOException
+    {
+        if (baseline == null) {
+            return true;
+        }
+
+        final Properties current = new Properties();
+        current.setProperty(COLD_KEY, format(cold.getPagesPerMinute()));
+        current.setProperty(WARM_KEY, format(warm.getPagesPerMinute()));
+        current.setProperty(HEAP_KEY, Long.toString(warm.peakHeap >> 20));
+        current.setProperty("corpus", corpus.toString());
+        current.setProperty("options", cliArgs.subList(3, cliArgs.size()).toString()); // No output
+
+        if (update || !Files.exists(baseline)) {
+            try (OutputStream os = Files.newOutputStream(baseline)) {
+                current.store(os, "Transcription throughput baseline");
+            }
+
+            logger.info("Baseline stored in {}", baseline);
+
+            return true;
+        }
+
+        final Properties base = new Properties();
+
+        try (InputStream is = Files.newInputStream(baseline)) {
+            base.load(is);
+        }
+
+        final double ref = Double.parseDouble(base.getProperty(WARM_KEY));
+        final double drop = 100 * (ref - warm.getPagesPerMinute()) / ref;
+        logger.info(
+                "Warm throughput {} vs baseline {} pages/min ({}%)",
+                format(warm.getPagesPerMinute()),
+                format(ref),
+                format(-drop));
+
+        if (drop > tolerance) {
+            logger.warn("Throughput regression beyond {}% tolerance", format(tolerance));
+
+            return false;
+        }
+
+        return true;
+    }
+
+    //-------//
+    // parse //
+    //-------//
+    private void parse (String[] args)
+            throws IOException
+    {
+        output = Files.createTempDirectory("throughput-");
+        cliArgs.add("-batch");
+        cliArgs.add("-output");
+        cliArgs.add(output.toString());
+
+        // Step metrics are needed in memory only
+        cliArgs.add("-option");
+        cliArgs.add("org.audiveris.omr.step.StepMetrics.recordMetrics=true");
+        cliArgs.add("-option");
+        cliArgs.add("org.audiveris.omr.step.StepMetrics.exportMetrics=false");
+
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+
+            switch (arg) {
+            case "-runs":
+                runs = Math.max(1, Integer.parseInt(args[++i]));
+
+                break;
+
+            case "-parallelism":
+                cliArgs.add("-option");
+                cliArgs.add("org.audiveris.omr.util.OmrExecutors.useParallelism=" + args[++i]);
+
+                break;
+
+            case "-systems":
+                cliArgs.add("-option");
+                cliArgs.add("org.audiveris.omr.Main.processSystemsInParallel=" + args[++i]);
+
+                break;
+
+            case "-option":
+                cliArgs.add(arg);
+                cliArgs.add(args[++i]);
+
+                break;
+
+            case "-baseline":
+                baseline = Paths.get(args[++i]);
+
+                break;
+
+            case "-tolerance":
+                tolerance = Double.parseDouble(args[++i]);
+
+                break;
+
+            case "-update":
+                update = true;
+
+                break;
+
+            default:
+                addInputs(Paths.get(arg));
+            }
+        }
+
+        if (corpus.isEmpty()) {
+            addInputs(Paths.get("data/examples"));
+        }
+    }
+
+    //-----------//
+    // addInputs //
+    //-----------//
+    private void addInputs (Path path)
+            throws IOException
+    {
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path p : stream) {
+                    if (Files.isRegularFile(p)) {
+                        corpus.add(p);
+                    }
+                }
+            }
+        } else {
+            corpus.add(path);
+        }
+    }
+
+    //-----------//
+    // runCorpus //
+    //-----------//
+    private Result runCorpus (String name)
+    {
+        final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+
+        StepMetrics.resetTotals();
+
+        final Result result = new Result(name);
+        result.parallelism = OmrExecutors.defaultParallelism.getValue();
+        result.systems = Main.processSystemsInParallel();
+
+        final long start = System.nanoTime();
+
+        for (Path path : corpus) {
+            result.pages += transcribe(path);
+        }
+
+        result.nanos = System.nanoTime() - start;
+
+        for (MemoryPoolMXBean pool : heapPools) {
+            result.peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        for (Map.Entry<Step, StepMetrics.Totals> entry : StepMetrics.getTotals().entrySet()) {
+            result.stepNanos[entry.getKey().ordinal()] = entry.getValue().wall;
+        }
+
+        return result;
+    }
+
+    //------------//
+    // transcribe //
+    //------------//
+    /**
+     * Transcribe one book, storing it as the CLI does in batch.
+     *
+     * @return the number of pages processed
+     */
+    private int transcribe (Path path)
+    {
+        final Book book = OMR.engine.loadInput(path);
+        LogUtil.start(book);
+
+        try {
+            Files.createDirectories(BookManager.getDefaultBookFolder(book));
+            book.createStubs(null);
+            book.store(BookManager.getDefaultSavePath(book), false);
+
+            if (!book.transcribe()) {
+                logger.warn("Could not transcribe {}", path);
+                failure = true;
+            }
+
+            return book.getStubs().size();
+        } catch (Exception ex) {
+            logger.warn("Error transcribing {} {}", path, ex.toString(), ex);
+            failure = true;
+
+            return 0;
+        } finally {
+            book.store(BookManager.getDefaultSavePath(book), false);
+            book.close();
+            LogUtil.stopBook();
+        }
+    }
+
+    //--------//
+    // format //
+    //--------//
+    private static String format (double value)
+    {
+        return String.format(Locale.US, "%.1f", value);
+    }
+
+    //--------//
+    // Result //
+    //--------//
+    /**
+     * Measurements of one or several corpus runs.
+     */
+    private static class Result
+    {
+
+        final String name;
+
+        int pages;
+
+        long nanos;
+
+        long peakHeap;
+
+        boolean parallelism;
+
+        boolean systems;
+
+        final long[] stepNanos = new long[Step.values().length];
+
+        Result (String name)
+        {
+            this.name = name;
+        }
+
+        public double getPagesPerMinute ()
+        {
+            return (nanos == 0) ? 0 : ((60e9 * pages) / nanos);
+        }
+
+        @Override
+        public String toString ()
+        {
+            final StringBuilder sb = new StringBuilder(name);
+            sb.append(" pages:").append(pages);
+            sb.append(" time:").append(nanos / 1_000_000).append("ms");
+            sb.append(" pages/min:").append(format(getPagesPerMinute()));
+            sb.append(" peakHeap:").append(peakHeap >> 20).append("MB");
+            sb.append(" parallelism:").append(parallelism);
+            sb.append(" systems:").append(systems);
+
+            long total = 0;
+
+            for (long n : stepNanos) {
+                total += n;
+            }
+
+            for (Step step : Step.values()) {
+                final long n = stepNanos[step.ordinal()];
+
+                if (n != 0) {
+                    sb.append("\n   ").append(String.format(
+                            Locale.US,
+                            "%-12s %8dms %5.1f%%",
+                            step,
+                            n / 1_000_000,
+                            (100.0 * n) / total));
+                }
+            }
+
+            return sb.toString();
+        }
+
+        static Result merge (List<Result> results)
+        {
+            final Result merged = new Result("warm");
+
+            for (Result r : results) {
+                merged.pages += r.pages;
+                merged.nanos += r.nanos;
+                merged.peakHeap = Math.max(merged.peakHeap, r.peakHeap);
+                merged.parallelism = r.parallelism;
+                merged.systems = r.systems;
+
+                for (int i = 0; i < merged.stepNanos.length; i++) {
+                    merged.stepNanos[i] += r.stepNanos[i];
+                }
+            }
+
+            return merged;
+        }
+    }
+}
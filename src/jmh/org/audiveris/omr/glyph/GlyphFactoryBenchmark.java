@@ -0,0 +1,91 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                            G l y p h F a c t o r y B e n c h m a r k                           //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.glyph;
+
+import org.audiveris.omr.BenchmarkFixture;
+import org.audiveris.omr.run.RunTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Point;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code GlyphFactoryBenchmark} compares sequential and striped building of the
+ * glyphs of a binarized example image.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GlyphFactoryBenchmark
+{
+
+    /** Example image. */
+    @Param(BenchmarkFixture.DEFAULT_IMAGE)
+    public String image;
+
+    private RunTable table;
+
+    //------------//
+    // sequential //
+    //------------//
+    @Benchmark
+    public List<Glyph> sequential ()
+    {
+        return GlyphFactory.buildGlyphs(table, new Point(0, 0), null, false);
+    }
+
+    //-------//
+    // setUp //
+    //-------//
+    @Setup
+    public void setUp ()
+            throws Exception
+    {
+        table = BenchmarkFixture.get(image).getVerticalTable();
+    }
+
+    //---------//
+    // striped //
+    //---------//
+    @Benchmark
+    public List<Glyph> striped ()
+    {
+        return GlyphFactory.buildGlyphs(table, new Point(0, 0), null, true);
+    }
+}
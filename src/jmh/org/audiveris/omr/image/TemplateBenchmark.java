@@ -0,0 +1,136 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                T e m p l a t e B e n c h m a r k                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import org.audiveris.omr.BenchmarkFixture;
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.image.Anchored.Anchor;
+import org.audiveris.omr.ui.symbol.MusicFont;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code TemplateBenchmark} measures the evaluation of a head template on all
+ * locations of a staff-high band of an example image, one location at a time via
+ * {@link Template#evaluate} and as a whole via {@link TemplateMatcher}.
+ * <p>
+ * Locations are taken at every abscissa, and at every half-interline ordinate over 4 interlines
+ * around the image middle.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TemplateBenchmark
+{
+
+    /** Example image. */
+    @Param(BenchmarkFixture.DEFAULT_IMAGE)
+    public String image;
+
+    /** Template shape. */
+    @Param({"NOTEHEAD_BLACK", "NOTEHEAD_VOID", "WHOLE_NOTE"})
+    public Shape shape;
+
+    private DistanceTable distances;
+
+    private TemplateMatcher matcher;
+
+    private Template template;
+
+    private int[] xs;
+
+    private int[] ys;
+
+    private double[] results;
+
+    //---------//
+    // matcher //
+    //---------//
+    @Benchmark
+    public double[] matcher ()
+    {
+        matcher.evaluate(template, Anchor.MIDDLE_LEFT, xs, ys, null, results);
+
+        return results;
+    }
+
+    //-------//
+    // setUp //
+    //-------//
+    @Setup
+    public void setUp ()
+            throws Exception
+    {
+        final BenchmarkFixture fixture = BenchmarkFixture.get(image);
+        final int interline = fixture.getInterline();
+        final int pointSize = MusicFont.getPointSize(
+                (int) Math.rint(interline * MusicFont.getHeadRatio()));
+        template = TemplateFactory.getInstance().getCatalog(pointSize).getTemplate(shape);
+        distances = new ChamferDistance.Short().computeToFore(fixture.getBinary());
+        matcher = new TemplateMatcher(distances);
+
+        final int width = distances.getWidth();
+        final int step = Math.max(1, interline / 2);
+        final int rows = 9;
+        final int top = (distances.getHeight() / 2) - ((rows / 2) * step);
+        xs = new int[width * rows];
+        ys = new int[width * rows];
+        results = new double[width * rows];
+
+        for (int r = 0, i = 0; r < rows; r++) {
+            for (int x = 0; x < width; x++, i++) {
+                xs[i] = x;
+                ys[i] = top + (r * step);
+            }
+        }
+    }
+
+    //--------//
+    // single //
+    //--------//
+    @Benchmark
+    public double[] single ()
+    {
+        for (int i = 0; i < xs.length; i++) {
+            results[i] = template.evaluate(xs[i], ys[i], Anchor.MIDDLE_LEFT, distances);
+        }
+
+        return results;
+    }
+}
@@ -0,0 +1,169 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                          S e c t i o n F a c t o r y B e n c h m a r k                         //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.lag;
+
+import ij.gui.OvalRoi;
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.BenchmarkFixture;
+import org.audiveris.omr.WellKnowns;
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code SectionFactoryBenchmark} compares sequential and banded building of
+ * sections, on an example image or on a synthetic page.
+ * <p>
+ * The synthetic page has the size of an A4 sheet scanned at 300 DPI and contains staves, stems,
+ * note heads, beams and some noise.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SectionFactoryBenchmark
+{
+
+    // Don't move this statement!
+    static {
+        // The synthetic page does not use BenchmarkFixture, which would load WellKnowns
+        WellKnowns.ensureLoaded();
+    }
+
+    /** Page width. */
+    private static final int WIDTH = 2480;
+
+    /** Page height. */
+    private static final int HEIGHT = 3508;
+
+    /** Name of pseudo-image for the synthetic page. */
+    private static final String SYNTHETIC = "synthetic";
+
+    /** Example image, or synthetic page. */
+    @Param({SYNTHETIC, BenchmarkFixture.DEFAULT_IMAGE})
+    public String image;
+
+    /** Orientation of runs and sections. */
+    @Param({"VERTICAL", "HORIZONTAL"})
+    public Orientation orientation;
+
+    private RunTable table;
+
+    private SectionFactory factory;
+
+    //--------//
+    // banded //
+    //--------//
+    @Benchmark
+    public List<Section> banded ()
+    {
+        return factory.createSections(table, null, false, true);
+    }
+
+    //------------//
+    // sequential //
+    //------------//
+    @Benchmark
+    public List<Section> sequential ()
+    {
+        return factory.createSections(table, null, false, false);
+    }
+
+    //-------//
+    // setUp //
+    //-------//
+    @Setup
+    public void setUp ()
+            throws Exception
+    {
+        final ByteProcessor page = SYNTHETIC.equals(image) ? createPage(new Random(2018))
+                : BenchmarkFixture.get(image).getBinary();
+        table = new RunTableFactory(orientation).createTable(page);
+        factory = new SectionFactory(orientation, new JunctionRatioPolicy());
+    }
+
+    //------------//
+    // createPage //
+    //------------//
+    private static ByteProcessor createPage (Random random)
+    {
+        final ByteProcessor page = new ByteProcessor(WIDTH, HEIGHT);
+        page.setValue(255);
+        page.fill();
+        page.setValue(0);
+
+        final int margin = 150;
+        final int interline = 20;
+
+        for (int top = 200; (top + (4 * interline)) < (HEIGHT - 200); top += 320) {
+            // Staff lines
+            for (int i = 0; i < 5; i++) {
+                page.setRoi(margin, top + (i * interline), WIDTH - (2 * margin), 3);
+                page.fill();
+            }
+
+            // Notes with stems, some beamed by pairs
+            for (int x = margin + 120; x < (WIDTH - margin - 40); x += 50 + random.nextInt(40)) {
+                final int y = top - interline + (random.nextInt(12) * (interline / 2));
+                page.setRoi(x, y, 26, 18);
+                page.fill(new OvalRoi(x, y, 26, 18));
+                page.setRoi(x + 23, y - (3 * interline), 3, 3 * interline);
+                page.fill();
+
+                if (random.nextInt(3) == 0) {
+                    page.setRoi(x + 23, y - (3 * interline), 60, 10);
+                    page.fill();
+                }
+            }
+        }
+
+        page.resetRoi();
+
+        // Salt noise
+        for (int i = 0; i < 20000; i++) {
+            page.set(random.nextInt(WIDTH), random.nextInt(HEIGHT), 0);
+        }
+
+        return page;
+    }
+}
@@ -0,0 +1,143 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                           N e u r a l N e t w o r k B e n c h m a r k                          //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.math;
+
+import org.audiveris.omr.BenchmarkFixture;
+import org.audiveris.omr.classifier.Classifier;
+import org.audiveris.omr.classifier.GlyphDescriptor;
+import org.audiveris.omr.classifier.MixGlyphDescriptor;
+import org.audiveris.omr.glyph.Glyph;
+import org.audiveris.omr.glyph.ShapeSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code NeuralNetworkBenchmark} measures the evaluation of a network shaped
+ * like the one of the basic classifier, on the features of all glyphs of an example image.
+ * <p>
+ * Network weights are random, which does not impact the evaluation cost.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class NeuralNetworkBenchmark
+{
+
+    /** Example image. */
+    @Param(BenchmarkFixture.DEFAULT_IMAGE)
+    public String image;
+
+    private NeuralNetwork network;
+
+    /** Input patterns, one per glyph. */
+    private double[][] patterns;
+
+    /** Same input patterns, laid out in a single array. */
+    private double[] flatPatterns;
+
+    private double[] hiddens;
+
+    private double[] outputs;
+
+    private double[] flatOutputs;
+
+    //-------//
+    // batch //
+    //-------//
+    @Benchmark
+    public double[] batch ()
+    {
+        return network.run(flatPatterns, patterns.length, flatOutputs, false);
+    }
+
+    //---------------//
+    // batchParallel //
+    //---------------//
+    @Benchmark
+    public double[] batchParallel ()
+    {
+        return network.run(flatPatterns, patterns.length, flatOutputs, true);
+    }
+
+    //-------//
+    // setUp //
+    //-------//
+    @Setup
+    public void setUp ()
+            throws Exception
+    {
+        final BenchmarkFixture fixture = BenchmarkFixture.get(image);
+        final GlyphDescriptor descriptor = new MixGlyphDescriptor();
+        final int size = descriptor.length();
+        network = new NeuralNetwork(
+                size,
+                Classifier.SHAPE_COUNT,
+                Classifier.SHAPE_COUNT,
+                1.0,
+                descriptor.getFeatureLabels(),
+                ShapeSet.getPhysicalShapeNames());
+
+        final List<Glyph> glyphs = fixture.getGlyphs();
+        patterns = new double[glyphs.size()][];
+        flatPatterns = new double[glyphs.size() * size];
+
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = descriptor.getFeatures(glyphs.get(i), fixture.getInterline());
+            System.arraycopy(patterns[i], 0, flatPatterns, i * size, size);
+        }
+
+        hiddens = new double[Classifier.SHAPE_COUNT];
+        outputs = new double[Classifier.SHAPE_COUNT];
+        flatOutputs = new double[patterns.length * Classifier.SHAPE_COUNT];
+    }
+
+    //--------//
+    // single //
+    //--------//
+    @Benchmark
+    public double[] single ()
+    {
+        for (double[] pattern : patterns) {
+            network.run(pattern, hiddens, outputs);
+        }
+
+        return outputs;
+    }
+}
@@ -0,0 +1,138 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                R u n T a b l e B e n c h m a r k                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.BenchmarkFixture;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code RunTableBenchmark} measures the creation of a run table out of a
+ * binarized example image, and the marshalling and unmarshalling of this table.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RunTableBenchmark
+{
+
+    /** Example image. */
+    @Param(BenchmarkFixture.DEFAULT_IMAGE)
+    public String image;
+
+    /** Orientation of runs. */
+    @Param({"VERTICAL", "HORIZONTAL"})
+    public Orientation orientation;
+
+    private ByteProcessor binary;
+
+    private RunTableFactory factory;
+
+    private RunTable table;
+
+    /** Table marshalled once, to be unmarshalled. */
+    private Path marshalled;
+
+    /** Target of marshalling. */
+    private Path target;
+
+    //--------//
+    // create //
+    //--------//
+    @Benchmark
+    public RunTable create ()
+    {
+        return factory.createTable(binary);
+    }
+
+    //---------//
+    // marshal //
+    //---------//
+    @Benchmark
+    public Path marshal ()
+            throws Exception
+    {
+        table.marshal(target);
+
+        return target;
+    }
+
+    //-------//
+    // setUp //
+    //-------//
+    @Setup
+    public void setUp ()
+            throws Exception
+    {
+        final BenchmarkFixture fixture = BenchmarkFixture.get(image);
+        binary = fixture.getBinary();
+        factory = new RunTableFactory(orientation);
+        table = (orientation == Orientation.VERTICAL) ? fixture.getVerticalTable()
+                : fixture.getHorizontalTable();
+
+        marshalled = Files.createTempFile("runs-", ".xml");
+        target = Files.createTempFile("runs-", ".xml");
+        table.marshal(marshalled);
+    }
+
+    //----------//
+    // tearDown //
+    //----------//
+    @TearDown
+    public void tearDown ()
+            throws Exception
+    {
+        Files.deleteIfExists(marshalled);
+        Files.deleteIfExists(target);
+    }
+
+    //-----------//
+    // unmarshal //
+    //-----------//
+    @Benchmark
+    public RunTable unmarshal ()
+    {
+        return RunTable.unmarshal(marshalled);
+    }
+}
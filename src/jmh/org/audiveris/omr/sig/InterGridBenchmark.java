@@ -0,0 +1,145 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               I n t e r G r i d B e n c h m a r k                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sig;
+
+import org.audiveris.omr.BenchmarkFixture;
+import org.audiveris.omr.glyph.Glyph;
+import org.audiveris.omr.math.GeoOrder;
+import org.audiveris.omr.sig.inter.BreathMarkInter;
+import org.audiveris.omr.sig.inter.Inter;
+import org.audiveris.omr.sig.inter.Inters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code InterGridBenchmark} measures the spatial queries a SIG performs, with
+ * one inter per glyph of an example image.
+ * <p>
+ * Since a SIGraph cannot be built without a whole sheet, its spatial index {@link InterGrid} is
+ * used directly, and compared to the plain lookup of a list sorted by abscissa.
+ * There is one query per inter, on a 2x2 interlines box around the inter center.
+ *
+ * @author Hervé Bitteur
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class InterGridBenchmark
+{
+
+    /** Example image. */
+    @Param(BenchmarkFixture.DEFAULT_IMAGE)
+    public String image;
+
+    private final InterGrid grid = new InterGrid();
+
+    /** Inters sorted by abscissa. */
+    private List<Inter> inters;
+
+    private List<Rectangle> boxes;
+
+    private List<Point> points;
+
+    //------------//
+    // containing //
+    //------------//
+    @Benchmark
+    public void containing (Blackhole bh)
+    {
+        for (Point point : points) {
+            bh.consume(grid.containingInters(point));
+        }
+    }
+
+    //-------------//
+    // intersected //
+    //-------------//
+    @Benchmark
+    public void intersected (Blackhole bh)
+    {
+        for (Rectangle box : boxes) {
+            bh.consume(grid.intersectedInters(box));
+        }
+    }
+
+    //-------------------//
+    // intersectedInList //
+    //-------------------//
+    @Benchmark
+    public void intersectedInList (Blackhole bh)
+    {
+        for (Rectangle box : boxes) {
+            bh.consume(Inters.intersectedInters(inters, GeoOrder.BY_ABSCISSA, box));
+        }
+    }
+
+    //-------//
+    // setUp //
+    //-------//
+    @Setup
+    public void setUp ()
+            throws Exception
+    {
+        final BenchmarkFixture fixture = BenchmarkFixture.get(image);
+        final int interline = fixture.getInterline();
+        inters = new ArrayList<>();
+        boxes = new ArrayList<>();
+        points = new ArrayList<>();
+
+        for (Glyph glyph : fixture.getGlyphs()) {
+            final Inter inter = new BreathMarkInter(glyph, 0.5);
+            inters.add(inter);
+            grid.add(inter);
+
+            final Point center = glyph.getCenter();
+            points.add(center);
+            boxes.add(new Rectangle(
+                    center.x - interline,
+                    center.y - interline,
+                    2 * interline,
+                    2 * interline));
+        }
+
+        Collections.sort(inters, Inters.byAbscissa);
+    }
+}
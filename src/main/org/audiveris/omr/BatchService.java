@@ -0,0 +1,466 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                     B a t c h S e r v i c e                                    //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr;
+
+import org.audiveris.omr.CLI.CliTask;
+import org.audiveris.omr.classifier.ShapeClassifier;
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.score.PartwiseBuilder;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Class {@code BatchService} runs Audiveris as a long-lived batch service, which processes
+ * the jobs dropped in a spool folder.
+ * <p>
+ * Costly initializations (classifier, music font, OCR, JAXB contexts, template catalogs, JIT
+ * compilation) are thus paid once per service rather than once per input.
+ * <p>
+ * A job is a text file named {@code <name>.job}, which contains command line arguments, one per
+ * line (empty lines and lines starting with '#' are ignored), for example:
+ * <pre>
+ * -transcribe
+ * -export
+ * /path/to/input.pdf
+ * </pre>
+ * Only input files and processing options (-step, -transcribe, -sheets, -export, -print, ...) are
+ * allowed in a job, global options (-option, -output, -save) are those of the service command line.
+ * To avoid reading a partly written job, a client should write the job under another name and then
+ * rename it with the '.job' extension.
+ * <p>
+ * Job life cycle in spool folder:
+ * <ol>
+ * <li>{@code <name>.job} is renamed {@code <name>.run} when the job is launched,</li>
+ * <li>then renamed {@code <name>.done} or {@code <name>.failed} when the job is completed.</li>
+ * </ol>
+ * A {@code <name>.status} record (a properties file) gives job state and metrics.
+ * <p>
+ * At most {@code maxConcurrentJobs} jobs are processed at the same time.
+ * A job still running after {@code jobTimeout} seconds is interrupted and gets the TIMED_OUT state.
+ * It keeps its {@code .run} file and its processing slot until its current task actually stops,
+ * and is then marked as failed.
+ * Dropping a file named {@value #STOP_FILE_NAME} in the spool folder stops the service, once the
+ * running jobs are completed.
+ *
+ * @author Hervé Bitteur
+ */
+public class BatchService
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchService.class);
+
+    /** Extension for a job file: {@value}. */
+    public static final String JOB_EXTENSION = ".job";
+
+    /** Extension for a running job: {@value}. */
+    public static final String RUN_EXTENSION = ".run";
+
+    /** Extension for a successful job: {@value}. */
+    public static final String DONE_EXTENSION = ".done";
+
+    /** Extension for a failed job: {@value}. */
+    public static final String FAILED_EXTENSION = ".failed";
+
+    /** Extension for a job status record: {@value}. */
+    public static final String STATUS_EXTENSION = ".status";
+
+    /** Name of the file that stops the service: {@value}. */
+    public static final String STOP_FILE_NAME = "stop";
+
+    /** The spool folder. */
+    private final Path spool;
+
+    /** Bound on concurrent jobs. */
+    private final int maxJobs;
+
+    /** Permits for running jobs. */
+    private final Semaphore permits;
+
+    /**
+     * Create a {@code BatchService} on a spool folder.
+     *
+     * @param spool the folder where jobs are dropped
+     */
+    public BatchService (Path spool)
+    {
+        this.spool = spool;
+        maxJobs = Math.max(1, constants.maxConcurrentJobs.getValue());
+        permits = new Semaphore(maxJobs);
+    }
+
+    //-----//
+    // run //
+    //-----//
+    /**
+     * Run the service until a stop file is found in spool folder.
+     *
+     * @return true if the service failed
+     */
+    public boolean run ()
+    {
+        boolean failure = false;
+
+        try {
+            Files.createDirectories(spool);
+            logger.info("Batch service on spool {} with {} job(s) at most", spool, maxJobs);
+
+            // Pay startup costs once
+            ShapeClassifier.preload();
+            PartwiseBuilder.preload();
+
+            try (WatchService watcher = spool.getFileSystem().newWatchService()) {
+                spool.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+
+                while (!Files.exists(spool.resolve(STOP_FILE_NAME))) {
+                    launchJobs();
+
+                    // Wait for some spool activity (or time out)
+                    final WatchKey key = watcher.poll(
+                            constants.pollPeriod.getValue(),
+                            TimeUnit.MILLISECONDS);
+
+                    if (key != null) {
+                        key.pollEvents();
+                        key.reset();
+                    }
+                }
+            }
+
+            logger.info("Batch service stopping, waiting for running jobs");
+            permits.acquire(maxJobs);
+            Files.deleteIfExists(spool.resolve(STOP_FILE_NAME));
+        } catch (IOException ex) {
+            logger.warn("Error in batch service " + ex, ex);
+            failure = true;
+        } catch (InterruptedException ex) {
+            logger.warn("Batch service got interrupted");
+            failure = true;
+        }
+
+        logger.info("Batch service stopped");
+
+        return failure;
+    }
+
+    //------------//
+    // getJobArgs //
+    //------------//
+    /**
+     * Read the command line arguments out of a job file.
+     *
+     * @param jobFile the job file
+     * @return the arguments
+     * @throws IOException if file cannot be read
+     */
+    static String[] getJobArgs (Path jobFile)
+            throws IOException
+    {
+        final List<String> args = new ArrayList<>();
+
+        for (String line : Files.readAllLines(jobFile, StandardCharsets.UTF_8)) {
+            final String arg = line.trim();
+
+            if (!arg.isEmpty() && !arg.startsWith("#")) {
+                args.add(arg);
+            }
+        }
+
+        return args.toArray(new String[args.size()]);
+    }
+
+    //------------//
+    // getJobName //
+    //------------//
+    private static String getJobName (Path jobFile)
+    {
+        final String fileName = jobFile.getFileName().toString();
+
+        return fileName.substring(0, fileName.length() - JOB_EXTENSION.length());
+    }
+
+    //------------//
+    // launchJobs //
+    //------------//
+    /**
+     * Launch pending jobs, in name order, as long as running jobs are below the limit.
+     */
+    private void launchJobs ()
+            throws IOException
+    {
+        final List<Path> jobFiles = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spool, "*" + JOB_EXTENSION)) {
+            for (Path path : stream) {
+                jobFiles.add(path);
+            }
+        }
+
+        Collections.sort(jobFiles);
+
+        for (Path jobFile : jobFiles) {
+            if (!permits.tryAcquire()) {
+                return; // Limit reached, wait for a running job to complete
+            }
+
+            final String name = getJobName(jobFile);
+            final Path runFile = spool.resolve(name + RUN_EXTENSION);
+
+            try {
+                // Claim the job
+                Files.move(jobFile, runFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                logger.warn("Could not claim job {} {}", jobFile, ex.toString());
+                permits.release();
+
+                continue;
+            }
+
+            OmrExecutors.getCachedLowExecutor().submit(new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    try {
+                        processJob(name, runFile);
+                    } finally {
+                        permits.release();
+                    }
+
+                    return null;
+                }
+            });
+        }
+    }
+
+    //------------//
+    // processJob //
+    //------------//
+    /**
+     * Process one job, and record its status.
+     *
+     * @param name    job name
+     * @param runFile the claimed job file
+     */
+    private void processJob (final String name,
+                             Path runFile)
+    {
+        final long start = System.currentTimeMillis();
+        final Properties status = new Properties();
+        status.setProperty("job", name);
+        status.setProperty("state", "RUNNING");
+        status.setProperty("start", new Date(start).toString());
+        writeStatus(name, status);
+        logger.info("Job {} started", name);
+
+        int taskCount = 0;
+        int failureCount = 0;
+        String error = null;
+
+        try {
+            final String[] args = getJobArgs(runFile);
+            status.setProperty("arguments", Arrays.toString(args));
+
+            final CLI cli = new CLI(WellKnowns.TOOL_NAME);
+            cli.parseParameters(args);
+            cli.checkJobParameters();
+
+            final List<CliTask> tasks = cli.getCliTasks();
+            final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch finished = new CountDownLatch(1);
+            taskCount = tasks.size();
+
+            final Future<Void> future = OmrExecutors.getCachedLowExecutor().submit(
+                    new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    try {
+                        for (CliTask task : tasks) {
+                            if (Thread.currentThread().isInterrupted()) {
+                                break; // Job cancelled
+                            }
+
+                            try {
+                                task.call();
+                            } catch (Exception ex) {
+                                logger.warn(
+                                        "Job {} error on {}, {}",
+                                        name,
+                                        task.getRadix(),
+                                        ex.toString(),
+                                        ex);
+                                errors.add(ex.toString());
+                            }
+                        }
+                    } finally {
+                        finished.countDown();
+                    }
+
+                    return null;
+                }
+            });
+
+            final int timeout = constants.jobTimeout.getValue();
+
+            try {
+                if (timeout > 0) {
+                    future.get(timeout, TimeUnit.SECONDS);
+                } else {
+                    future.get();
+                }
+            } catch (TimeoutException ex) {
+                // Interrupt the job, but keep its slot until its current task has stopped,
+                // since a book task may not respond at once to interruption
+                future.cancel(true);
+                logger.warn("Job {} timed out after {} s", name, timeout);
+                errors.add("Timeout after " + timeout + " s");
+                status.setProperty("state", "TIMED_OUT");
+                writeStatus(name, status);
+                finished.await();
+            }
+
+            synchronized (errors) {
+                failureCount = errors.size();
+
+                if (!errors.isEmpty()) {
+                    error = errors.get(errors.size() - 1);
+                }
+            }
+        } catch (Exception ex) {
+            logger.warn("Job {} failed, {}", name, ex.toString());
+            failureCount++;
+            error = ex.toString();
+        }
+
+        final long stop = System.currentTimeMillis();
+        final Runtime runtime = Runtime.getRuntime();
+        final boolean ok = failureCount == 0;
+        status.setProperty("state", ok ? "DONE" : "FAILED");
+        status.setProperty("end", new Date(stop).toString());
+        status.setProperty("durationMs", Long.toString(stop - start));
+        status.setProperty("tasks", Integer.toString(taskCount));
+        status.setProperty("failures", Integer.toString(failureCount));
+        status.setProperty(
+                "usedMemoryMb",
+                Long.toString((runtime.totalMemory() - runtime.freeMemory()) >> 20));
+
+        if (error != null) {
+            status.setProperty("error", error);
+        }
+
+        writeStatus(name, status);
+
+        try {
+            final String ext = ok ? DONE_EXTENSION : FAILED_EXTENSION;
+            Files.move(runFile, spool.resolve(name + ext), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            logger.warn("Could not move job file {} {}", runFile, ex.toString());
+        }
+
+        logger.info("Job {} {} in {} ms", name, ok ? "done" : "failed", stop - start);
+    }
+
+    //-------------//
+    // writeStatus //
+    //-------------//
+    /**
+     * Write (or rewrite) the status record of a job.
+     * The record is written aside, then moved, so that a reader never sees a partial record.
+     *
+     * @param name   job name
+     * @param status job status
+     */
+    private void writeStatus (String name,
+                              Properties status)
+    {
+        final Path statusFile = spool.resolve(name + STATUS_EXTENSION);
+        final Path tmpFile = spool.resolve(name + STATUS_EXTENSION + ".tmp");
+
+        try {
+            try (OutputStream os = Files.newOutputStream(tmpFile)) {
+                status.store(os, "Status of job " + name);
+            }
+
+            Files.move(
+                    tmpFile,
+                    statusFile,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.warn("Could not write status of job {} {}", name, ex.toString());
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer maxConcurrentJobs = new Constant.Integer(
+                "Jobs",
+                2,
+                "Maximum number of jobs processed at the same time by the batch service");
+
+        private final Constant.Integer pollPeriod = new Constant.Integer(
+                "Milliseconds",
+                2000,
+                "Maximum delay between two scans of the batch service spool folder");
+
+        private final Constant.Integer jobTimeout = new Constant.Integer(
+                "Seconds",
+                3600,
+                "Maximum duration of a batch job before it is cancelled (0 for no limit)");
+    }
+}
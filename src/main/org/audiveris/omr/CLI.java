@@ -162,6 +162,19 @@ public class CLI
         return params.outputFolder;
     }
 
+    //----------------//
+    // getSpoolFolder //
+    //----------------//
+    /**
+     * Report the spool folder if present on the CLI, to run as a batch service.
+     *
+     * @return the CLI spool path, or null
+     */
+    public Path getSpoolFolder ()
+    {
+        return params.spoolFolder;
+    }
+
     //-------------//
     // isBatchMode //
     //-------------//
@@ -297,12 +310,42 @@ public class CLI
         logger.info(buf.toString());
     }
 
+    //--------------------//
+    // checkJobParameters //
+    //--------------------//
+    /**
+     * Check that the parsed parameters are acceptable for a job submitted to the batch
+     * service, that is they only define inputs and processing of these inputs.
+     * <p>
+     * Global options (constants, output folder, save mode, ...) are those of the service.
+     *
+     * @throws CmdLineException if a global option is used
+     */
+    void checkJobParameters ()
+            throws CmdLineException
+    {
+        if (params.helpMode || (params.options != null) || (params.outputFolder != null)
+                    || params.save || (params.spoolFolder != null)) {
+            throw new CmdLineException(
+                    parser,
+                    "Options -help, -option, -output, -save and -spool are not allowed in a job");
+        }
+
+        if (params.arguments.isEmpty()) {
+            throw new CmdLineException(parser, "No input file in job");
+        }
+    }
+
     //-------------//
     // checkParams //
     //-------------//
     private void checkParams ()
             throws CmdLineException
     {
+        if (params.spoolFolder != null) {
+            params.batchMode = true; // A service has no user interface
+        }
+
         if (params.transcribe) {
             if ((params.step != null) && (params.step != Step.last())) {
                 String msg = "'-transcribe' option not compatible with '-step " + params.step
@@ -419,7 +462,9 @@ public class CLI
                     boolean ok = book.reachBookStep(params.step, params.force, sheetIds);
 
                     if (!ok) {
-                        return;
+                        String msg = "Could not reach step " + params.step + " on " + book;
+                        logger.warn(msg);
+                        throw new RuntimeException(msg);
                     }
                 }
                 if (params.transcribe) {
@@ -751,6 +796,11 @@ public class CLI
                 handler = IntArrayOptionHandler.class)
         private ArrayList<Integer> sheets;
 
+        /** Spool folder, to run as a batch service. */
+        @Option(name = "-spool", usage = "Run as a batch service on jobs dropped in spool folder",
+                metaVar = "<spool-folder>")
+        Path spoolFolder;
+
         /** Specific step. */
         @Option(name = "-step", usage = "Define a specific target step")
         Step step;
@@ -28,6 +28,7 @@ import org.audiveris.omr.constant.ConstantManager;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.log.LogUtil;
 import org.audiveris.omr.sheet.BookManager;
+import org.audiveris.omr.text.OcrUtil;
 import org.audiveris.omr.text.tesseract.TesseractOCR;
 import org.audiveris.omr.ui.MainGui;
 import org.audiveris.omr.ui.symbol.MusicFont;
@@ -149,13 +150,24 @@ public class Main
             // Check MusicFont is loaded
             MusicFont.checkMusicFont();
 
+            // Get an OCR engine ready in background
+            OcrUtil.getOcr().warmUp();
+
             // Run the required tasks, if any (and remember if at least one task failed)
             boolean failure = runBatchTasks();
 
+            // Run as a service on spooled jobs?
+            if (cli.getSpoolFolder() != null) {
+                failure |= new BatchService(cli.getSpoolFolder()).run();
+            }
+
             // At this point all tasks have completed (except timeout...)
             // So shutdown gracefully the executors
             boolean timeout = !OmrExecutors.shutdown();
 
+            // Release OCR engines
+            OcrUtil.getOcr().shutdown();
+
             // Save global sample repository if modified
             if (SampleRepository.hasInstance()) {
                 SampleRepository repository = SampleRepository.getGlobalInstance(false);
@@ -254,7 +266,12 @@ public class Main
     //------------//
     // processCli //
     //------------//
-    private static void processCli (String[] args)
+    /**
+     * Parse the command line parameters, before any application constant is loaded.
+     *
+     * @param args the command line parameters
+     */
+    static void processCli (String[] args)
     {
         try {
             // First get the provided parameters if any
@@ -149,6 +149,27 @@ public abstract class AbstractClassifier<M extends Object>
         return evaluate(glyph, null, count, minGrade, conditions, interline);
     }
 
+    //----------//
+    // evaluate //
+    //----------//
+    @Override
+    public Evaluation[][] evaluate (List<Glyph> glyphs,
+                                    SystemInfo system,
+                                    int count,
+                                    double minGrade,
+                                    EnumSet<Condition> conditions)
+    {
+        final int interline = system.getSheet().getInterline();
+        final Evaluation[][] sorted = getSortedEvaluations(glyphs, interline);
+        final Evaluation[][] results = new Evaluation[sorted.length][];
+
+        for (int i = 0; i < sorted.length; i++) {
+            results[i] = select(glyphs.get(i), system, sorted[i], count, minGrade, conditions);
+        }
+
+        return results;
+    }
+
     //---------------//
     // getDescriptor //
     //---------------//
@@ -158,6 +179,28 @@ public abstract class AbstractClassifier<M extends Object>
         return descriptor;
     }
 
+    //-----------------------//
+    // getNaturalEvaluations //
+    //-----------------------//
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This default implementation processes glyphs one after the other, subclasses should
+     * override it with a true batch evaluation.
+     */
+    @Override
+    public Evaluation[][] getNaturalEvaluations (List<Glyph> glyphs,
+                                                 int interline)
+    {
+        final Evaluation[][] evals = new Evaluation[glyphs.size()][];
+
+        for (int i = 0; i < evals.length; i++) {
+            evals[i] = getNaturalEvaluations(glyphs.get(i), interline);
+        }
+
+        return evals;
+    }
+
     //---------------//
     // getRawDataSet //
     //---------------//
@@ -249,6 +292,49 @@ public abstract class AbstractClassifier<M extends Object>
         }
     }
 
+    //----------------------//
+    // getSortedEvaluations //
+    //----------------------//
+    /**
+     * Run the classifier on a batch of glyphs, and return for each glyph a sequence of
+     * all interpretations (ordered from best to worst) with no additional check.
+     *
+     * @param glyphs    the glyphs to be examined
+     * @param interline the global sheet interline
+     * @return the ordered best evaluations, in glyphs order
+     */
+    protected Evaluation[][] getSortedEvaluations (List<Glyph> glyphs,
+                                                   int interline)
+    {
+        final Evaluation[][] results = new Evaluation[glyphs.size()][];
+        final List<Glyph> bigs = new ArrayList<>(glyphs.size());
+
+        // If too small, it's just NOISE
+        for (int i = 0; i < results.length; i++) {
+            final Glyph glyph = glyphs.get(i);
+
+            if (!isBigEnough(glyph, interline)) {
+                results[i] = noiseEvaluations;
+            } else {
+                bigs.add(glyph);
+            }
+        }
+
+        if (!bigs.isEmpty()) {
+            final Evaluation[][] evals = getNaturalEvaluations(bigs, interline);
+            int ib = 0;
+
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    Arrays.sort(evals[ib], Evaluation.byReverseGrade); // From best to worst
+                    results[i] = evals[ib++];
+                }
+            }
+        }
+
+        return results;
+    }
+
     //--------------//
     // isCompatible //
     //--------------//
@@ -495,9 +581,33 @@ public abstract class AbstractClassifier<M extends Object>
                                    double minGrade,
                                    EnumSet<Classifier.Condition> conditions,
                                    int interline)
+    {
+        return select(glyph, system, getSortedEvaluations(glyph, interline), count, minGrade,
+                      conditions);
+    }
+
+    //--------//
+    // select //
+    //--------//
+    /**
+     * Select the acceptable evaluations among the sorted ones.
+     *
+     * @param glyph      the evaluated glyph
+     * @param system     the containing system, if any
+     * @param evals      the glyph evaluations, sorted from best to worst
+     * @param count      the desired maximum sequence length
+     * @param minGrade   the minimum evaluation grade to be acceptable
+     * @param conditions optional conditions, perhaps null or empty
+     * @return the sequence of selected evaluations, perhaps empty but not null
+     */
+    private Evaluation[] select (Glyph glyph,
+                                 SystemInfo system,
+                                 Evaluation[] evals,
+                                 int count,
+                                 double minGrade,
+                                 EnumSet<Classifier.Condition> conditions)
     {
         List<Evaluation> bests = new ArrayList<>();
-        Evaluation[] evals = getSortedEvaluations(glyph, interline);
 
         EvalsLoop:
         for (Evaluation eval : evals) {
@@ -24,6 +24,7 @@ package org.audiveris.omr.classifier;
 import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.glyph.Glyph;
+import org.audiveris.omr.glyph.GlyphCompound;
 import org.audiveris.omr.glyph.Shape;
 import org.audiveris.omr.glyph.ShapeSet;
 import org.audiveris.omr.math.NeuralNetwork;
@@ -31,6 +32,7 @@ import org.audiveris.omr.math.PoorManAlgebra.DataSet;
 import org.audiveris.omr.math.PoorManAlgebra.INDArray;
 import org.audiveris.omr.math.PoorManAlgebra.Nd4j;
 import org.audiveris.omr.util.Jaxb;
+import org.audiveris.omr.util.OmrExecutors;
 import org.audiveris.omr.util.StopWatch;
 
 //import org.nd4j.linalg.api.ndarray.INDArray;
@@ -175,6 +177,50 @@ public class BasicClassifier
         return evals;
     }
 
+    //-----------------------//
+    // getNaturalEvaluations //
+    //-----------------------//
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Normalized features of all glyphs are gathered in one flat array, on which the network
+     * is run as a whole.
+     */
+    @Override
+    public Evaluation[][] getNaturalEvaluations (List<Glyph> glyphs,
+                                                 int interline)
+    {
+        final double[][] features = new double[glyphs.size()][];
+
+        for (int ig = 0; ig < features.length; ig++) {
+            features[ig] = descriptor.getFeatures(glyphs.get(ig), interline);
+        }
+
+        return getNaturalEvaluations(features);
+    }
+
+    //------------------------//
+    // getCompoundEvaluations //
+    //------------------------//
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Compounds are processed as one batch, like glyphs in {@link #getNaturalEvaluations(List,
+     * int)}.
+     */
+    @Override
+    public Evaluation[][] getCompoundEvaluations (List<GlyphCompound> compounds,
+                                                  int interline)
+    {
+        final double[][] features = new double[compounds.size()][];
+
+        for (int ic = 0; ic < features.length; ic++) {
+            features[ic] = descriptor.getFeatures(compounds.get(ic), interline);
+        }
+
+        return getNaturalEvaluations(features);
+    }
+
     //-------//
     // reset //
     //-------//
@@ -264,6 +310,11 @@ public class BasicClassifier
         }
 
         // Train
+        final int threads = constants.trainingThreads.getValue();
+        model.setBatchSize(constants.batchSize.getValue());
+        model.setThreadCount(
+                !OmrExecutors.defaultParallelism.getValue() ? 1
+                        : ((threads > 0) ? threads : OmrExecutors.getNumberOfCpus()));
         model.train(inputs, desiredOutputs, listener, listener.getIterationPeriod());
 
         // Store
@@ -437,6 +488,54 @@ public class BasicClassifier
                 getMaxEpochs());
     }
 
+    //-----------------------//
+    // getNaturalEvaluations //
+    //-----------------------//
+    /**
+     * Run the network on a batch of raw features.
+     * <p>
+     * Normalized features are gathered in one flat array, on which the network is run as a whole.
+     *
+     * @param features the raw features, one array per item
+     * @return the shape-ordered evaluations, in items order
+     */
+    private Evaluation[][] getNaturalEvaluations (double[][] features)
+    {
+        final int count = features.length;
+        final int length = descriptor.length();
+        final double[] means = toArray(norms.means, length);
+        final double[] stds = toArray(norms.stds, length);
+        final double[] ins = new double[count * length];
+
+        for (int ig = 0; ig < count; ig++) {
+            final double[] glyphFeatures = features[ig];
+            final int base = ig * length;
+
+            for (int j = 0; j < length; j++) {
+                ins[base + j] = (glyphFeatures[j] - means[j]) / stds[j];
+            }
+        }
+
+        final boolean parallel = constants.useParallelBatch.isSet()
+                                         && OmrExecutors.defaultParallelism.getValue();
+        final double[] outs = model.run(ins, count, null, parallel);
+        final Shape[] values = Shape.values();
+        final Evaluation[][] evals = new Evaluation[count][];
+
+        for (int ig = 0; ig < count; ig++) {
+            final Evaluation[] glyphEvals = new Evaluation[SHAPE_COUNT];
+            final int base = ig * SHAPE_COUNT;
+
+            for (int s = 0; s < SHAPE_COUNT; s++) {
+                glyphEvals[s] = new Evaluation(values[s], outs[base + s]);
+            }
+
+            evals[ig] = glyphEvals;
+        }
+
+        return evals;
+    }
+
     //-----------//
     // normalize //
     //-----------//
@@ -464,6 +563,21 @@ public class BasicClassifier
         return LazySingleton.INSTANCE;
     }
 
+    //---------//
+    // toArray //
+    //---------//
+    private static double[] toArray (INDArray vector,
+                                     int length)
+    {
+        final double[] array = new double[length];
+
+        for (int j = 0; j < length; j++) {
+            array[j] = vector.getDouble(j);
+        }
+
+        return array;
+    }
+
     //---------------//
     // LazySingleton //
     //---------------//
@@ -495,7 +609,21 @@ public class BasicClassifier
                 500,
                 "Maximum number of epochs in training");
 
+        private final Constant.Integer batchSize = new Constant.Integer(
+                "Samples",
+                32,
+                "Number of samples per training mini-batch (1 for update after each sample)");
+
+        private final Constant.Integer trainingThreads = new Constant.Integer(
+                "Threads",
+                0,
+                "Number of threads for mini-batch training (0 for all processors)");
+
         private final Constant.Ratio momentum = new Constant.Ratio(0.2, "Training momentum");
+
+        private final Constant.Boolean useParallelBatch = new Constant.Boolean(
+                true,
+                "Should large batches of glyphs be evaluated in parallel?");
     }
 
     //----------//
@@ -22,6 +22,7 @@
 package org.audiveris.omr.classifier;
 
 import org.audiveris.omr.glyph.Glyph;
+import org.audiveris.omr.glyph.GlyphCompound;
 import org.audiveris.omr.glyph.Shape;
 import org.audiveris.omr.sheet.SystemInfo;
 
@@ -30,6 +31,7 @@ import org.audiveris.omr.sheet.SystemInfo;
 //
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.List;
 
 /**
  * Interface {@code Classifier} defines the features of a glyph shape classifier.
@@ -97,6 +99,38 @@ public interface Classifier
                            double minGrade,
                            EnumSet<Condition> conditions);
 
+    /**
+     * Report, for each glyph of the provided batch, the sorted sequence of best
+     * evaluation(s) found by the classifier.
+     * <p>
+     * The result is the same as calling {@link #evaluate(Glyph, SystemInfo, int, double, EnumSet)}
+     * on each glyph in turn, but the underlying model is run only once on the whole batch.
+     *
+     * @param glyphs     the glyphs to evaluate
+     * @param system     the system containing the glyphs to evaluate
+     * @param count      the desired maximum sequence length, min 1 and max SHAPE_COUNT
+     * @param minGrade   the minimum evaluation grade to be acceptable
+     * @param conditions optional conditions, perhaps null or empty
+     * @return the sequences of evaluations, in glyphs order, perhaps empty but not null
+     */
+    Evaluation[][] evaluate (List<Glyph> glyphs,
+                             SystemInfo system,
+                             int count,
+                             double minGrade,
+                             EnumSet<Condition> conditions);
+
+    /**
+     * Run the classifier on a batch of compounds not built yet, and return for each
+     * compound the natural sequence of all interpretations (ordered by Shape ordinal) with no
+     * additional check.
+     *
+     * @param compounds the compounds to be examined
+     * @param interline the relevant scaling interline
+     * @return all shape-ordered evaluations, in compounds order
+     */
+    Evaluation[][] getCompoundEvaluations (List<GlyphCompound> compounds,
+                                           int interline);
+
     /**
      * Report the underlying glyph descriptor
      *
@@ -129,6 +163,17 @@ public interface Classifier
     Evaluation[] getNaturalEvaluations (Glyph glyph,
                                         int interline);
 
+    /**
+     * Run the classifier on a batch of glyphs, and return for each glyph the natural
+     * sequence of all interpretations (ordered by Shape ordinal) with no additional check.
+     *
+     * @param glyphs    the glyphs to be examined
+     * @param interline the relevant scaling interline
+     * @return all shape-ordered evaluations, in glyphs order
+     */
+    Evaluation[][] getNaturalEvaluations (List<Glyph> glyphs,
+                                          int interline);
+
     /**
      * Use a threshold on glyph weight, to tell if the provided glyph is just {@link
      * Shape#NOISE} or a real glyph.
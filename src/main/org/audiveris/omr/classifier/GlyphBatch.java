@@ -0,0 +1,148 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                       G l y p h B a t c h                                      //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.classifier;
+
+import org.audiveris.omr.glyph.Glyph;
+import org.audiveris.omr.sheet.SystemInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Class {@code GlyphBatch} collects candidate glyphs, so that they can be evaluated by
+ * the shape classifier in a single call.
+ * <p>
+ * Typical use is to add all the candidates of a system, then call {@link #evaluate} to get the
+ * evaluations of each candidate, in the order candidates were added, and finally {@link #clear}
+ * the batch for reuse.
+ *
+ * @author Hervé Bitteur
+ */
+public class GlyphBatch
+{
+
+    /** The classifier to use. */
+    private final Classifier classifier;
+
+    /** Glyphs collected so far. */
+    private final List<Glyph> glyphs = new ArrayList<>();
+
+    /**
+     * Creates a new {@code GlyphBatch} object.
+     *
+     * @param classifier the classifier to use
+     */
+    public GlyphBatch (Classifier classifier)
+    {
+        this.classifier = classifier;
+    }
+
+    //-----//
+    // add //
+    //-----//
+    /**
+     * Add a glyph to the batch.
+     *
+     * @param glyph the glyph to evaluate later
+     */
+    public void add (Glyph glyph)
+    {
+        glyphs.add(glyph);
+    }
+
+    //-------//
+    // clear //
+    //-------//
+    /**
+     * Empty the batch.
+     */
+    public void clear ()
+    {
+        glyphs.clear();
+    }
+
+    //----------//
+    // evaluate //
+    //----------//
+    /**
+     * Evaluate all the glyphs in batch.
+     *
+     * @param system     the system containing the glyphs
+     * @param count      the desired maximum sequence length per glyph
+     * @param minGrade   the minimum evaluation grade to be acceptable
+     * @param conditions optional conditions, perhaps null or empty
+     * @return the sequences of evaluations, in glyphs order
+     * @see Classifier#evaluate(List, SystemInfo, int, double, EnumSet)
+     */
+    public Evaluation[][] evaluate (SystemInfo system,
+                                    int count,
+                                    double minGrade,
+                                    EnumSet<Classifier.Condition> conditions)
+    {
+        if (glyphs.isEmpty()) {
+            return new Evaluation[0][];
+        }
+
+        return classifier.evaluate(glyphs, system, count, minGrade, conditions);
+    }
+
+    //-----------//
+    // getGlyphs //
+    //-----------//
+    /**
+     * Report the glyphs in batch.
+     *
+     * @return the (unmodifiable) list of glyphs, in insertion order
+     */
+    public List<Glyph> getGlyphs ()
+    {
+        return Collections.unmodifiableList(glyphs);
+    }
+
+    //---------//
+    // isEmpty //
+    //---------//
+    /**
+     * Tell whether the batch is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty ()
+    {
+        return glyphs.isEmpty();
+    }
+
+    //------//
+    // size //
+    //------//
+    /**
+     * Report the number of glyphs in batch.
+     *
+     * @return the batch size
+     */
+    public int size ()
+    {
+        return glyphs.size();
+    }
+}
@@ -23,6 +23,7 @@ package org.audiveris.omr.classifier;
 
 import org.audiveris.omr.WellKnowns;
 import org.audiveris.omr.glyph.Glyph;
+import org.audiveris.omr.glyph.GlyphCompound;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -120,6 +121,22 @@ public abstract class GlyphDescriptor
     public abstract double[] getFeatures (Glyph glyph,
                                           int interline);
 
+    /**
+     * Gather the same features as {@link #getFeatures(Glyph, int)} for a compound not
+     * built yet.
+     * <p>
+     * This default implementation simply builds the compound glyph.
+     *
+     * @param compound  the compound to describe
+     * @param interline the related staff interline
+     * @return the compound features, an array of size length()
+     */
+    public double[] getFeatures (GlyphCompound compound,
+                                 int interline)
+    {
+        return getFeatures(compound.build(), interline);
+    }
+
     /**
      * Report a name for this descriptor
      *
@@ -22,6 +22,7 @@
 package org.audiveris.omr.classifier;
 
 import org.audiveris.omr.glyph.Glyph;
+import org.audiveris.omr.glyph.GlyphCompound;
 import org.audiveris.omr.moments.ARTMoments;
 import org.audiveris.omr.moments.GeometricMoments;
 
@@ -65,9 +66,37 @@ public class MixGlyphDescriptor
     @Override
     public double[] getFeatures (Glyph glyph,
                                  int interline)
+    {
+        return getFeatures(
+                glyph.getARTMoments(),
+                glyph.getGeometricMoments(interline),
+                glyph.getWidth(),
+                glyph.getHeight());
+    }
+
+    @Override
+    public double[] getFeatures (GlyphCompound compound,
+                                 int interline)
+    {
+        return getFeatures(
+                compound.getARTMoments(),
+                compound.getGeometricMoments(interline),
+                compound.getWidth(),
+                compound.getHeight());
+    }
+
+    @Override
+    public int length ()
+    {
+        return LENGTH;
+    }
+
+    private double[] getFeatures (ARTMoments arts,
+                                  GeometricMoments geos,
+                                  int width,
+                                  int height)
     {
         double[] ins = new double[LENGTH];
-        ARTMoments arts = glyph.getARTMoments();
         int i = 0;
 
         // We take the ART moments
@@ -80,7 +109,6 @@ public class MixGlyphDescriptor
         }
 
         // We append the geometric moments
-        GeometricMoments geos = glyph.getGeometricMoments(interline);
         double[] values = geos.getValues();
 
         for (int k = 0; k < geoCount; k++) {
@@ -88,17 +116,11 @@ public class MixGlyphDescriptor
         }
 
         // We append (vertical) aspect
-        ins[i++] = (double) glyph.getHeight() / glyph.getWidth();
+        ins[i++] = (double) height / width;
 
         return ins;
     }
 
-    @Override
-    public int length ()
-    {
-        return LENGTH;
-    }
-
     //--------------//
     // LabelsHolder //
     //--------------//
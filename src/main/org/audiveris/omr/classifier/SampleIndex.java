@@ -0,0 +1,928 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                      S a m p l e I n d e x                                     //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.classifier;
+
+import org.audiveris.omr.classifier.SheetContainer.Descriptor;
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableCodec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Class {@code SampleIndex} is a binary store of samples, meant to open a large
+ * {@link SampleRepository} without unmarshalling all its sheets and samples.
+ * <p>
+ * It is made of two files, located next to the samples archive:
+ * <ul>
+ * <li>A data file, where each sample is recorded (location, id, pitch and run table in
+ * {@link RunTableCodec} format) and where each sheet image, if any, is recorded as well.
+ * Any record can be read on its own, by its offset and length.
+ * <li>A compact index file, which gives for each sheet its descriptor, its image record and its
+ * range of samples, and for each sample its shape, interline, weight and data record.
+ * The index also records the size and modification time of the archives it was built from, so
+ * that a stale index is detected and ignored.
+ * </ul>
+ * Only the index is loaded in memory.
+ * Samples are read on demand, a limited number of them being kept in an LRU cache.
+ * As long as a sample is referenced elsewhere, reading it again returns the very same instance.
+ * <p>
+ * Index layout (big-endian):
+ * <pre>
+ * magic        4 bytes  "SIDX"
+ * version      1 byte
+ * stamp        4 longs  (samples size &amp; time, images size &amp; time, -1 if no images)
+ * shapeCount   short, then shape names
+ * sheetCount   int, then for each sheet:
+ *   name, hasHash, hash, aliasCount, aliases, imageOffset, imageLength, hasSheet, sampleCount
+ * for each sample (sheet after sheet):
+ *   shape (short), interline, weight, offset (long), length
+ * </pre>
+ *
+ * @author Hervé Bitteur
+ */
+public class SampleIndex
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(SampleIndex.class);
+
+    /** File name suffix for index: {@value}. */
+    public static final String INDEX_FILE_NAME = "samples.idx";
+
+    /** File name suffix for data: {@value}. */
+    public static final String DATA_FILE_NAME = "samples.dat";
+
+    /** Magic bytes at beginning of index: "SIDX". */
+    private static final int MAGIC = 0x53494458;
+
+    /** Current format version. */
+    private static final byte VERSION = 1;
+
+    /** Channel on data file. */
+    private final FileChannel channel;
+
+    /** Sheet descriptors. */
+    private final Descriptor[] descriptors;
+
+    /** Sheet numbers, mapped by sheet name. */
+    private final Map<String, Integer> sheetMap = new HashMap<>();
+
+    /** Offset of image record, per sheet, -1 if none. */
+    private final long[] imageOffsets;
+
+    /** Length of image record, per sheet. */
+    private final int[] imageLengths;
+
+    /** Existence of sample sheet, per sheet (a descriptor may have no sample sheet). */
+    private final boolean[] sampleSheets;
+
+    /** First sample of each sheet, plus total number of samples at the end. */
+    private final int[] sheetFirsts;
+
+    /** Shape, per sample. */
+    private final Shape[] shapes;
+
+    /** Interline, per sample. */
+    private final int[] interlines;
+
+    /** Weight, per sample. */
+    private final int[] weights;
+
+    /** Offset of data record, per sample. */
+    private final long[] offsets;
+
+    /** Length of data record, per sample. */
+    private final int[] lengths;
+
+    /** Sheet, per sample. */
+    private final int[] sheets;
+
+    /** Samples, gathered by shape. */
+    private final Map<Shape, int[]> shapeMap = new EnumMap<>(Shape.class);
+
+    /** Most recently used samples. */
+    private final Map<Integer, Sample> cache = new LinkedHashMap<Integer, Sample>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry (Map.Entry<Integer, Sample> eldest)
+        {
+            return size() > constants.cacheSize.getValue();
+        }
+    };
+
+    /** Samples read so far, still referenced or not yet collected. */
+    private final List<WeakReference<Sample>> live;
+
+    /** Sample number, per sample read. */
+    private final Map<Sample, Integer> entryMap = new WeakHashMap<>();
+
+    private SampleIndex (FileChannel channel,
+                         Descriptor[] descriptors,
+                         long[] imageOffsets,
+                         int[] imageLengths,
+                         boolean[] sampleSheets,
+                         int[] sheetFirsts,
+                         Shape[] shapes,
+                         int[] interlines,
+                         int[] weights,
+                         long[] offsets,
+                         int[] lengths)
+    {
+        this.channel = channel;
+        this.descriptors = descriptors;
+        this.imageOffsets = imageOffsets;
+        this.imageLengths = imageLengths;
+        this.sampleSheets = sampleSheets;
+        this.sheetFirsts = sheetFirsts;
+        this.shapes = shapes;
+        this.interlines = interlines;
+        this.weights = weights;
+        this.offsets = offsets;
+        this.lengths = lengths;
+
+        final int count = shapes.length;
+        sheets = new int[count];
+        live = new ArrayList<>(Collections.<WeakReference<Sample>>nCopies(count, null));
+
+        for (int s = 0; s < descriptors.length; s++) {
+            sheetMap.put(descriptors[s].getName(), s);
+            Arrays.fill(sheets, sheetFirsts[s], sheetFirsts[s + 1], s);
+        }
+
+        // Samples by shape
+        final Map<Shape, Integer> counts = new EnumMap<>(Shape.class);
+
+        for (Shape shape : shapes) {
+            final Integer c = counts.get(shape);
+            counts.put(shape, (c == null) ? 1 : (c + 1));
+        }
+
+        for (Map.Entry<Shape, Integer> entry : counts.entrySet()) {
+            shapeMap.put(entry.getKey(), new int[entry.getValue()]);
+            entry.setValue(0);
+        }
+
+        for (int e = 0; e < count; e++) {
+            final int c = counts.get(shapes[e]);
+            shapeMap.get(shapes[e])[c] = e;
+            counts.put(shapes[e], c + 1);
+        }
+    }
+
+    //-------//
+    // close //
+    //-------//
+    /**
+     * Close the underlying data file.
+     */
+    public synchronized void close ()
+    {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.warn("Error closing sample index {}", ex.toString(), ex);
+        }
+    }
+
+    //---------------//
+    // getDescriptor //
+    //---------------//
+    /**
+     * Report the descriptor of provided sheet.
+     *
+     * @param sheet sheet number
+     * @return the sheet descriptor
+     */
+    public Descriptor getDescriptor (int sheet)
+    {
+        return descriptors[sheet];
+    }
+
+    //------------//
+    // getEntries //
+    //------------//
+    /**
+     * Report the numbers of all samples of provided shape.
+     *
+     * @param shape the provided shape
+     * @return the sample numbers, perhaps empty
+     */
+    public int[] getEntries (Shape shape)
+    {
+        final int[] entries = shapeMap.get(shape);
+
+        return (entries != null) ? entries.clone() : new int[0];
+    }
+
+    //------------//
+    // getEntries //
+    //------------//
+    /**
+     * Report the numbers of the samples of provided shape in provided sheet.
+     *
+     * @param sheet sheet number
+     * @param shape the provided shape, or null for all sheet samples
+     * @return the sample numbers, perhaps empty
+     */
+    public int[] getEntries (int sheet,
+                             Shape shape)
+    {
+        final int first = sheetFirsts[sheet];
+        final int stop = sheetFirsts[sheet + 1];
+        final int[] entries = new int[stop - first];
+        int count = 0;
+
+        for (int e = first; e < stop; e++) {
+            if ((shape == null) || (shapes[e] == shape)) {
+                entries[count++] = e;
+            }
+        }
+
+        return Arrays.copyOf(entries, count);
+    }
+
+    //----------//
+    // getEntry //
+    //----------//
+    /**
+     * Report the number of a sample read from this index.
+     *
+     * @param sample the provided sample
+     * @return the sample number, or null if sample does not come from this index
+     */
+    public synchronized Integer getEntry (Sample sample)
+    {
+        return entryMap.get(sample);
+    }
+
+    //--------------//
+    // getInterline //
+    //--------------//
+    /**
+     * Report the interline of a sample, without reading the sample.
+     *
+     * @param entry sample number
+     * @return the sample interline
+     */
+    public int getInterline (int entry)
+    {
+        return interlines[entry];
+    }
+
+    //-----------//
+    // getSample //
+    //-----------//
+    /**
+     * Report the sample for the provided sample number, reading it if needed.
+     *
+     * @param entry sample number
+     * @return the sample
+     */
+    public synchronized Sample getSample (int entry)
+    {
+        Sample sample = cache.get(entry);
+
+        if (sample == null) {
+            final WeakReference<Sample> ref = live.get(entry);
+            sample = (ref != null) ? ref.get() : null;
+
+            if (sample == null) {
+                sample = readSample(entry);
+                live.set(entry, new WeakReference<>(sample));
+                entryMap.put(sample, entry);
+            }
+
+            cache.put(entry, sample);
+        }
+
+        return sample;
+    }
+
+    //----------------//
+    // getSampleCount //
+    //----------------//
+    /**
+     * Report the total number of samples.
+     *
+     * @return the number of samples
+     */
+    public int getSampleCount ()
+    {
+        return shapes.length;
+    }
+
+    //------------//
+    // getSamples //
+    //------------//
+    /**
+     * Report a read-only view on the samples of provided numbers.
+     * Samples are read only when accessed.
+     *
+     * @param entries the sample numbers
+     * @return the samples view
+     */
+    public List<Sample> getSamples (int[] entries)
+    {
+        return new SampleView(entries);
+    }
+
+    //----------//
+    // getShape //
+    //----------//
+    /**
+     * Report the shape of a sample, without reading the sample.
+     *
+     * @param entry sample number
+     * @return the sample shape
+     */
+    public Shape getShape (int entry)
+    {
+        return shapes[entry];
+    }
+
+    //-----------//
+    // getShapes //
+    //-----------//
+    /**
+     * Report the shapes of all samples in provided sheet.
+     *
+     * @param sheet sheet number
+     * @return the sheet shapes
+     */
+    public Set<Shape> getShapes (int sheet)
+    {
+        final Set<Shape> set = EnumSet.noneOf(Shape.class);
+
+        for (int e = sheetFirsts[sheet], stop = sheetFirsts[sheet + 1]; e < stop; e++) {
+            set.add(shapes[e]);
+        }
+
+        return Collections.unmodifiableSet(set);
+    }
+
+    //----------//
+    // getSheet //
+    //----------//
+    /**
+     * Report the sheet number for provided sheet name.
+     *
+     * @param name sheet name
+     * @return the sheet number, or -1 if not found
+     */
+    public int getSheet (String name)
+    {
+        final Integer sheet = sheetMap.get(name);
+
+        return (sheet != null) ? sheet : (-1);
+    }
+
+    //---------------//
+    // getSheetCount //
+    //---------------//
+    /**
+     * Report the number of sheets.
+     *
+     * @return the number of sheets
+     */
+    public int getSheetCount ()
+    {
+        return descriptors.length;
+    }
+
+    //--------------//
+    // getSheetName //
+    //--------------//
+    /**
+     * Report the name of the sheet containing a sample, without reading the sample.
+     *
+     * @param entry sample number
+     * @return the sheet name
+     */
+    public String getSheetName (int entry)
+    {
+        return descriptors[sheets[entry]].getName();
+    }
+
+    //-----------//
+    // getWeight //
+    //-----------//
+    /**
+     * Report the weight of a sample, without reading the sample.
+     *
+     * @param entry sample number
+     * @return the sample weight
+     */
+    public int getWeight (int entry)
+    {
+        return weights[entry];
+    }
+
+    //----------//
+    // hasImage //
+    //----------//
+    /**
+     * Tell whether the provided sheet has an image recorded.
+     *
+     * @param sheet sheet number
+     * @return true if so
+     */
+    public boolean hasImage (int sheet)
+    {
+        return imageOffsets[sheet] >= 0;
+    }
+
+    //----------------//
+    // hasSampleSheet //
+    //----------------//
+    /**
+     * Tell whether the provided sheet has a sample sheet, rather than just a descriptor.
+     *
+     * @param sheet sheet number
+     * @return true if so
+     */
+    public boolean hasSampleSheet (int sheet)
+    {
+        return sampleSheets[sheet];
+    }
+
+    //-----------//
+    // readImage //
+    //-----------//
+    /**
+     * Read the image of provided sheet.
+     *
+     * @param sheet sheet number
+     * @return the image, or null if none or failed
+     */
+    public RunTable readImage (int sheet)
+    {
+        if (!hasImage(sheet)) {
+            return null;
+        }
+
+        try {
+            return RunTableCodec.decode(read(imageOffsets[sheet], imageLengths[sheet]));
+        } catch (IOException ex) {
+            logger.warn("Error reading image of {} {}", descriptors[sheet], ex.toString(), ex);
+
+            return null;
+        }
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public String toString ()
+    {
+        return "SampleIndex{sheets:" + descriptors.length + " samples:" + shapes.length + "}";
+    }
+
+    //------//
+    // read //
+    //------//
+    private ByteBuffer read (long offset,
+                             int length)
+            throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Truncated sample data");
+            }
+        }
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+    //------------//
+    // readSample //
+    //------------//
+    private Sample readSample (int entry)
+    {
+        try {
+            final ByteBuffer buffer = read(offsets[entry], lengths[entry]);
+            final int left = buffer.getInt();
+            final int top = buffer.getInt();
+            final int id = buffer.getInt();
+            final Double pitch = (buffer.get() != 0) ? buffer.getDouble() : null;
+            final RunTable runTable = RunTableCodec.decode(buffer);
+
+            return new Sample(left, top, runTable, interlines[entry], id, shapes[entry], pitch);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot read sample #" + entry + " " + ex, ex);
+        }
+    }
+
+    //------//
+    // open //
+    //------//
+    /**
+     * Open the index and data files, provided they exist and match the provided stamp.
+     *
+     * @param indexFile path to index file
+     * @param dataFile  path to data file
+     * @param stamp     stamp of current samples archives
+     * @return the opened index, or null if missing, stale or invalid
+     */
+    public static SampleIndex open (Path indexFile,
+                                    Path dataFile,
+                                    long[] stamp)
+    {
+        if (!Files.exists(indexFile) || !Files.exists(dataFile)) {
+            return null;
+        }
+
+        try (DataInputStream dis = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if ((dis.readInt() != MAGIC) || (dis.readByte() != VERSION)) {
+                logger.info("Ignoring {} with unsupported format", indexFile);
+
+                return null;
+            }
+
+            for (long value : stamp) {
+                if (dis.readLong() != value) {
+                    logger.info("Ignoring {} which is not up-to-date", indexFile);
+
+                    return null;
+                }
+            }
+
+            // Shapes
+            final Shape[] shapeTable = new Shape[dis.readShort()];
+
+            for (int i = 0; i < shapeTable.length; i++) {
+                shapeTable[i] = Shape.valueOf(dis.readUTF());
+            }
+
+            // Sheets
+            final int sheetCount = dis.readInt();
+            final Descriptor[] descriptors = new Descriptor[sheetCount];
+            final long[] imageOffsets = new long[sheetCount];
+            final int[] imageLengths = new int[sheetCount];
+            final boolean[] sampleSheets = new boolean[sheetCount];
+            final int[] sheetFirsts = new int[sheetCount + 1];
+
+            for (int s = 0; s < sheetCount; s++) {
+                final String name = dis.readUTF();
+                final boolean hasHash = dis.readBoolean();
+                final int hash = dis.readInt();
+                final List<String> aliases = new ArrayList<>();
+
+                for (int i = dis.readShort(); i > 0; i--) {
+                    aliases.add(dis.readUTF());
+                }
+
+                descriptors[s] = new Descriptor(name, hasHash ? hash : null, aliases);
+                imageOffsets[s] = dis.readLong();
+                imageLengths[s] = dis.readInt();
+                sampleSheets[s] = dis.readBoolean();
+                sheetFirsts[s + 1] = sheetFirsts[s] + dis.readInt();
+            }
+
+            // Samples
+            final int count = sheetFirsts[sheetCount];
+            final Shape[] shapes = new Shape[count];
+            final int[] interlines = new int[count];
+            final int[] weights = new int[count];
+            final long[] offsets = new long[count];
+            final int[] lengths = new int[count];
+
+            for (int e = 0; e < count; e++) {
+                shapes[e] = shapeTable[dis.readShort()];
+                interlines[e] = dis.readInt();
+                weights[e] = dis.readInt();
+                offsets[e] = dis.readLong();
+                lengths[e] = dis.readInt();
+            }
+
+            final FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ);
+            final SampleIndex index = new SampleIndex(
+                    channel,
+                    descriptors,
+                    imageOffsets,
+                    imageLengths,
+                    sampleSheets,
+                    sheetFirsts,
+                    shapes,
+                    interlines,
+                    weights,
+                    offsets,
+                    lengths);
+            logger.debug("Opened {}", index);
+
+            return index;
+        } catch (IOException |
+                 IllegalArgumentException ex) {
+            logger.warn("Ignoring invalid {} {}", indexFile, ex.toString());
+
+            return null;
+        }
+    }
+
+    //------------//
+    // SampleView //
+    //------------//
+    /**
+     * Read-only list of samples, each sample being read when accessed.
+     */
+    class SampleView
+            extends AbstractList<Sample>
+            implements RandomAccess
+    {
+
+        private final int[] entries;
+
+        SampleView (int[] entries)
+        {
+            this.entries = entries;
+        }
+
+        @Override
+        public Sample get (int index)
+        {
+            return getSample(entries[index]);
+        }
+
+        /**
+         * Report the sample number at provided index.
+         *
+         * @param index index in view
+         * @return the sample number in index
+         */
+        public int getEntry (int index)
+        {
+            return entries[index];
+        }
+
+        /**
+         * Report the underlying sample index.
+         *
+         * @return the sample index
+         */
+        public SampleIndex getIndex ()
+        {
+            return SampleIndex.this;
+        }
+
+        @Override
+        public int size ()
+        {
+            return entries.length;
+        }
+    }
+
+    //--------//
+    // Writer //
+    //--------//
+    /**
+     * Builds the index and data files, sheet after sheet.
+     */
+    public static class Writer
+    {
+
+        /** Target data file. */
+        private final Path dataFile;
+
+        /** Temporary data file, renamed at end. */
+        private final Path tempFile;
+
+        /** Output on temporary data file. */
+        private final OutputStream os;
+
+        /** Current position in data file. */
+        private long position;
+
+        /** Buffer for one record. */
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+        /** Shape numbers. */
+        private final Map<Shape, Integer> shapeNumbers = new LinkedHashMap<>();
+
+        /** Index content for all sheets. */
+        private final ByteArrayOutputStream sheetBytes = new ByteArrayOutputStream();
+
+        /** Index content for all samples. */
+        private final ByteArrayOutputStream sampleBytes = new ByteArrayOutputStream();
+
+        private int sheetCount;
+
+        /**
+         * Create a writer, to build the provided data file.
+         *
+         * @param dataFile the target data file
+         * @throws IOException if data file cannot be created
+         */
+        public Writer (Path dataFile)
+                throws IOException
+        {
+            this.dataFile = dataFile;
+            tempFile = dataFile.resolveSibling(dataFile.getFileName() + ".tmp");
+            os = new BufferedOutputStream(Files.newOutputStream(tempFile));
+        }
+
+        /**
+         * Record a sheet with its samples and image.
+         *
+         * @param descriptor sheet descriptor
+         * @param samples    sheet samples, or null if there is no sample sheet
+         * @param image      sheet image, or null
+         * @throws IOException on IO error
+         */
+        public void addSheet (Descriptor descriptor,
+                              List<Sample> samples,
+                              RunTable image)
+                throws IOException
+        {
+            final DataOutputStream sheetOut = new DataOutputStream(sheetBytes);
+            final DataOutputStream sampleOut = new DataOutputStream(sampleBytes);
+
+            final List<Sample> list = (samples != null) ? samples
+                    : Collections.<Sample>emptyList();
+
+            for (Sample sample : list) {
+                final DataOutputStream recordOut = new DataOutputStream(record);
+                recordOut.writeInt(sample.getLeft());
+                recordOut.writeInt(sample.getTop());
+                recordOut.writeInt(sample.getId());
+                recordOut.writeBoolean(sample.getPitch() != null);
+
+                if (sample.getPitch() != null) {
+                    recordOut.writeDouble(sample.getPitch());
+                }
+
+                RunTableCodec.encode(sample.getRunTable(), recordOut);
+
+                sampleOut.writeShort(getShapeNumber(sample.getShape()));
+                sampleOut.writeInt(sample.getInterline());
+                sampleOut.writeInt(sample.getWeight());
+                sampleOut.writeLong(position);
+                sampleOut.writeInt(record.size());
+                flushRecord();
+            }
+
+            sheetOut.writeUTF(descriptor.getName());
+            sheetOut.writeBoolean(descriptor.getHash() != null);
+            sheetOut.writeInt((descriptor.getHash() != null) ? descriptor.getHash() : 0);
+            sheetOut.writeShort(descriptor.getAliases().size());
+
+            for (String alias : descriptor.getAliases()) {
+                sheetOut.writeUTF(alias);
+            }
+
+            if (image != null) {
+                RunTableCodec.encode(image, record);
+                sheetOut.writeLong(position);
+                sheetOut.writeInt(record.size());
+                flushRecord();
+            } else {
+                sheetOut.writeLong(-1);
+                sheetOut.writeInt(0);
+            }
+
+            sheetOut.writeBoolean(samples != null);
+            sheetOut.writeInt(list.size());
+            sheetCount++;
+        }
+
+        /**
+         * Abort the writing, removing any temporary file.
+         */
+        public void abort ()
+        {
+            try {
+                os.close();
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ex) {
+                logger.warn("Error deleting {} {}", tempFile, ex.toString());
+            }
+        }
+
+        /**
+         * Complete the data file and write the index file.
+         *
+         * @param indexFile target index file
+         * @param stamp     stamp of samples archives
+         * @throws IOException on IO error
+         */
+        public void finish (Path indexFile,
+                            long[] stamp)
+                throws IOException
+        {
+            os.close();
+            Files.move(tempFile, dataFile, StandardCopyOption.REPLACE_EXISTING);
+
+            final Path tempIndex = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+
+            try (DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempIndex)))) {
+                dos.writeInt(MAGIC);
+                dos.writeByte(VERSION);
+
+                for (long value : stamp) {
+                    dos.writeLong(value);
+                }
+
+                dos.writeShort(shapeNumbers.size());
+
+                for (Shape shape : shapeNumbers.keySet()) {
+                    dos.writeUTF(shape.name());
+                }
+
+                dos.writeInt(sheetCount);
+                sheetBytes.writeTo(dos);
+                sampleBytes.writeTo(dos);
+            }
+
+            Files.move(tempIndex, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private void flushRecord ()
+                throws IOException
+        {
+            record.writeTo(os);
+            position += record.size();
+            record.reset();
+        }
+
+        private int getShapeNumber (Shape shape)
+        {
+            Integer number = shapeNumbers.get(shape);
+
+            if (number == null) {
+                shapeNumbers.put(shape, number = shapeNumbers.size());
+            }
+
+            return number;
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer cacheSize = new Constant.Integer(
+                "samples",
+                20000,
+                "Maximum number of indexed samples kept in memory");
+    }
+}
@@ -55,7 +55,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -66,6 +68,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.regex.Matcher;
@@ -90,6 +93,10 @@ import javax.swing.event.ChangeListener;
  * <br>
  * TODO: Provide support for symbols based on additional music fonts, such as Bravura.
  * <p>
+ * Once loaded from its archives, a repository is also written as a {@link SampleIndex}.
+ * As long as the archives are not modified, the next loading opens just this index, each sheet
+ * samples or image being read only on demand.
+ * <p>
  * <img alt="Sample management" src="doc-files/Samples.png">
  *
  * @author Hervé Bitteur
@@ -158,6 +165,15 @@ public class SampleRepository
     /** File path for images material: {@value}. */
     private final Path imagesFile;
 
+    /** File path for sample index. */
+    private final Path indexFile;
+
+    /** File path for sample index data. */
+    private final Path dataFile;
+
+    /** Sample index, if repository was loaded from index. */
+    private SampleIndex index;
+
     /** To handle save on close. */
     private Application.ExitListener exitListener;
 
@@ -187,6 +203,8 @@ public class SampleRepository
         bookRadix = prefix.isEmpty() ? "" : prefix.substring(0, prefix.length() - 1);
         this.samplesFile = samplesFile;
         this.imagesFile = samplesFile.resolveSibling(prefix + IMAGES_FILE_NAME);
+        this.indexFile = samplesFile.resolveSibling(prefix + SampleIndex.INDEX_FILE_NAME);
+        this.dataFile = samplesFile.resolveSibling(prefix + SampleIndex.DATA_FILE_NAME);
 
         // Set application exit listener
         if (OMR.gui != null) {
@@ -313,6 +331,9 @@ public class SampleRepository
      * <p>
      * REDUNDANT: Even if they are assigned the same shape, only one of these samples should be kept
      * for optimal training, the others are reported via the returned purge list.
+     * <p>
+     * Samples are sorted by weight, and only samples that share their weight with another sample
+     * are actually compared (and read, for an indexed repository).
      *
      * @param conflictings output to be populated by conflicting samples
      * @param redundants   output to be populated by redundant samples
@@ -320,26 +341,35 @@ public class SampleRepository
     public void checkAllSamples (Collection<Sample> conflictings,
                                  Collection<Sample> redundants)
     {
-        List<Sample> allSamples = getAllSamples();
+        final List<Sample> allSamples = getAllSamples();
+        final int n = allSamples.size();
+        final int[] weights = new int[n];
+        final String[] names = new String[n];
+        final Integer[] order = new Integer[n];
+
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            weights[i] = getWeight(allSamples, i);
+            names[i] = getSheetName(allSamples, i);
+        }
 
         // Sort by weight, then by sheet ID
-        Collections.sort(allSamples, new Comparator<Sample>()
-                 {
-                     @Override
-                     public int compare (Sample s1,
-                                         Sample s2)
-                     {
-                         int comp = Integer.compare(s1.getWeight(), s2.getWeight());
-
-                         if (comp != 0) {
-                             return comp;
-                         }
-
-                         return getSheetName(s1).compareTo(getSheetName(s2));
-                     }
-                 });
-
-        int n = allSamples.size();
+        Arrays.sort(order, new Comparator<Integer>()
+                {
+                    @Override
+                    public int compare (Integer i1,
+                                        Integer i2)
+                    {
+                        int comp = Integer.compare(weights[i1], weights[i2]);
+
+                        if (comp != 0) {
+                            return comp;
+                        }
+
+                        return names[i1].compareTo(names[i2]);
+                    }
+                });
+
         logger.debug("Checking {} samples...", n);
 
         boolean[] deleted = new boolean[n];
@@ -349,38 +379,41 @@ public class SampleRepository
                 continue;
             }
 
-            final Sample sample = allSamples.get(i);
-            final int weight = sample.getWeight();
-            final RunTable runTable = sample.getRunTable();
-            final int interline = sample.getInterline();
+            final int weight = weights[order[i]];
+            Sample sample = null; // Read only if needed
 
             for (int j = i + 1; j < n; j++) {
                 if (deleted[j]) {
                     continue;
                 }
 
-                Sample s = allSamples.get(j);
-
-                if (s.getWeight() != weight) {
+                if (weights[order[j]] != weight) {
                     break;
                 }
 
-                if ((s.getInterline() == interline) && s.getRunTable().equals(runTable)) {
+                if (sample == null) {
+                    sample = allSamples.get(order[i]);
+                }
+
+                Sample s = allSamples.get(order[j]);
+
+                if ((s.getInterline() == sample.getInterline())
+                            && s.getRunTable().equals(sample.getRunTable())) {
                     if (s.getShape() != sample.getShape()) {
                         logger.warn(
                                 "Conflicting shapes between {}/{} and {}/{}",
-                                getSheetName(sample),
+                                names[order[i]],
                                 sample,
-                                getSheetName(s),
+                                names[order[j]],
                                 s);
                         conflictings.add(sample);
                         conflictings.add(s);
                     } else {
                         logger.debug(
                                 "Same runtable for {}/{} & {}/{}",
-                                getSheetName(sample),
+                                names[order[i]],
                                 sample,
-                                getSheetName(s),
+                                names[order[j]],
                                 s);
                         redundants.add(s);
                         deleted[j] = true;
@@ -424,6 +457,10 @@ public class SampleRepository
         if (isGlobal()) {
             GLOBAL = null;
         }
+
+        if (index != null) {
+            index.close();
+        }
     }
 
     //-----------------//
@@ -437,6 +474,14 @@ public class SampleRepository
      */
     public boolean diskImageExists (Descriptor descriptor)
     {
+        if (index != null) {
+            final int sheet = index.getSheet(descriptor.getName());
+
+            if ((sheet != -1) && index.hasImage(sheet)) {
+                return true;
+            }
+        }
+
         if (!Files.exists(imagesFile)) {
             return false;
         }
@@ -539,9 +584,13 @@ public class SampleRepository
                         final Path root = ZipFileSystem.open(imagesFile);
 
                         for (Descriptor desc : descs) {
-                            final Path file = root.resolve(desc.getName()).resolve(
-                                    SampleSheet.IMAGE_FILE_NAME);
-                            final RunTable rt = RunTable.unmarshal(file);
+                            RunTable rt = readIndexedImage(desc);
+
+                            if (rt == null) {
+                                final Path file = root.resolve(desc.getName()).resolve(
+                                        SampleSheet.IMAGE_FILE_NAME);
+                                rt = RunTable.unmarshal(file);
+                            }
 
                             if ((rt != null) && rt.equals(image)) {
                                 // We have found the image
@@ -619,11 +668,24 @@ public class SampleRepository
     //---------------//
     /**
      * Report all the samples in the repository.
+     * <p>
+     * For a repository loaded from index, this is a read-only list, whose samples are read only
+     * when accessed.
      *
      * @return all the repository samples
      */
     public List<Sample> getAllSamples ()
     {
+        if (index != null) {
+            final JoinedSamples joined = new JoinedSamples();
+
+            for (SampleSheet sheet : nameMap.values()) {
+                joined.addPart(sheet.getDescriptor().getName(), sheet.getAllSamples());
+            }
+
+            return joined;
+        }
+
         final List<Sample> allSamples = new ArrayList<>();
 
         for (SampleSheet sheet : nameMap.values()) {
@@ -697,7 +759,23 @@ public class SampleRepository
      */
     public SampleSheet getSampleSheet (Sample sample)
     {
-        return sampleMap.get(sample);
+        final SampleSheet sampleSheet = sampleMap.get(sample);
+
+        if ((sampleSheet == null) && (index != null)) {
+            // Sample read from index?
+            final Integer entry = index.getEntry(sample);
+
+            if (entry != null) {
+                final SampleSheet indexedSheet = nameMap.get(index.getSheetName(entry));
+
+                if ((indexedSheet != null)
+                            && indexedSheet.getSamples(sample.getShape()).contains(sample)) {
+                    return indexedSheet;
+                }
+            }
+        }
+
+        return sampleSheet;
     }
 
     //------------//
@@ -705,6 +783,9 @@ public class SampleRepository
     //------------//
     /**
      * Report, in the desired sheet descriptors, the samples of the desired shapes.
+     * <p>
+     * For a repository loaded from index, this is a read-only list, whose samples are read only
+     * when accessed.
      *
      * @param descriptors the desired descriptors
      * @param shapes      the desired shapes
@@ -713,6 +794,7 @@ public class SampleRepository
     public List<Sample> getSamples (Collection<Descriptor> descriptors,
                                     Collection<Shape> shapes)
     {
+        final JoinedSamples joined = (index != null) ? new JoinedSamples() : null;
         List<Sample> found = new ArrayList<>();
 
         for (Descriptor descriptor : descriptors) {
@@ -722,11 +804,15 @@ public class SampleRepository
             sheetShapes.retainAll(shapes);
 
             for (Shape shape : sheetShapes) {
-                found.addAll(sampleSheet.getSamples(shape));
+                if (joined != null) {
+                    joined.addPart(descriptor.getName(), sampleSheet.getSamples(shape));
+                } else {
+                    found.addAll(sampleSheet.getSamples(shape));
+                }
             }
         }
 
-        return found;
+        return (joined != null) ? joined : found;
     }
 
     //------------//
@@ -789,7 +875,7 @@ public class SampleRepository
      */
     public String getSheetName (Sample sample)
     {
-        SampleSheet sampleSheet = sampleMap.get(sample);
+        SampleSheet sampleSheet = getSampleSheet(sample);
 
         if (sampleSheet != null) {
             return sampleSheet.getDescriptor().getName();
@@ -982,7 +1068,23 @@ public class SampleRepository
     {
         if (imagesLoaded) {
             logger.info("All images already loaded.");
-        } else if (!hasSheetImages()) {
+
+            return;
+        }
+
+        if (index != null) {
+            for (SampleSheet sampleSheet : nameMap.values()) {
+                if (sampleSheet.getImage() == null) {
+                    final RunTable runTable = readIndexedImage(sampleSheet.getDescriptor());
+
+                    if (runTable != null) {
+                        sampleSheet.setImage(runTable, true);
+                    }
+                }
+            }
+        }
+
+        if (!hasSheetImages()) {
             logger.info("Images file {} not found.", imagesFile);
         } else {
             try {
@@ -1009,7 +1111,13 @@ public class SampleRepository
     public RunTable loadImage (SampleSheet sampleSheet)
     {
         final Descriptor descriptor = sampleSheet.getDescriptor();
-        RunTable runTable = null;
+        RunTable runTable = readIndexedImage(descriptor);
+
+        if (runTable != null) {
+            sampleSheet.setImage(runTable, true);
+
+            return runTable;
+        }
 
         try {
             final Path imagesRoot = ZipFileSystem.open(imagesFile);
@@ -1047,6 +1155,9 @@ public class SampleRepository
     //----------------//
     /**
      * Load the training material (font-based symbols as well as concrete samples).
+     * <p>
+     * If an up-to-date sample index is available, only this index is loaded.
+     * Otherwise, the archives are loaded and, if so desired, written as a new sample index.
      *
      * @param loadListener load listener, or null
      */
@@ -1055,7 +1166,18 @@ public class SampleRepository
         final StopWatch watch = new StopWatch("Loading repository");
 
         try {
-            if (Files.exists(samplesFile)) {
+            if (Files.exists(samplesFile) && isIndexUsed()) {
+                watch.start("openIndex");
+                index = SampleIndex.open(indexFile, dataFile, getStamp());
+            }
+
+            if (index != null) {
+                watch.start("loadIndexedSheets");
+                loadIndexedSheets(loadListener);
+
+                watch.start("buildSymbols");
+                buildSymbols();
+            } else if (Files.exists(samplesFile)) {
                 watch.start("open samples.zip");
 
                 final Path samplesRoot = ZipFileSystem.open(samplesFile);
@@ -1093,6 +1215,11 @@ public class SampleRepository
                 }
 
                 samplesRoot.getFileSystem().close();
+
+                if (isIndexUsed()) {
+                    watch.start("writeIndex");
+                    writeIndex();
+                }
             } else {
                 logger.info(
                         "No {} in folder {}",
@@ -1242,24 +1369,13 @@ public class SampleRepository
     public void shrink (int maxCount)
     {
         // Gather samples by shape
-        EnumMap<Shape, List<Sample>> shapeSamples = new EnumMap<>(Shape.class);
+        final List<Sample> allSamples = getAllSamples();
 
-        for (Sample sample : getAllSamples()) {
-            Shape shape = sample.getShape();
-            List<Sample> list = shapeSamples.get(shape);
-
-            if (list == null) {
-                shapeSamples.put(shape, list = new ArrayList<>());
-            }
-
-            list.add(sample);
-        }
-
-        for (List<Sample> list : shapeSamples.values()) {
+        for (List<Integer> list : getShapePositions(allSamples).values()) {
             Collections.shuffle(list);
 
             for (int i = maxCount; i < list.size(); i++) {
-                Sample sample = list.get(i);
+                Sample sample = allSamples.get(list.get(i));
                 removeSample(sample);
             }
         }
@@ -1284,28 +1400,23 @@ public class SampleRepository
                                    int minCount,
                                    int maxCount)
     {
-        // Gather samples by shape
-        EnumMap<Shape, List<Sample>> shapeSamples = new EnumMap<>(Shape.class);
+        // Gather samples by shape, only the selected samples are actually read
+        final List<Sample> allSamples = getAllSamples();
 
-        for (Sample sample : getAllSamples()) {
-            Shape shape = sample.getShape();
-            List<Sample> list = shapeSamples.get(shape);
+        for (List<Integer> list : getShapePositions(allSamples).values()) {
+            Collections.shuffle(list);
 
-            if (list == null) {
-                shapeSamples.put(shape, list = new ArrayList<>());
+            for (int pos : list.subList(0, Math.min(list.size(), maxCount))) {
+                train.add(allSamples.get(pos));
             }
 
-            list.add(sample);
-        }
-
-        for (List<Sample> list : shapeSamples.values()) {
-            Collections.shuffle(list);
-            train.addAll(list.subList(0, Math.min(list.size(), maxCount)));
-
             final int size = list.size();
             final int i1 = Math.max(0, size - minCount);
             final int i2 = Math.max(maxCount, size - maxCount);
-            test.addAll(list.subList(Math.min(i1, i2), size));
+
+            for (int pos : list.subList(Math.min(i1, i2), size)) {
+                test.add(allSamples.get(pos));
+            }
         }
 
         logger.info("Train: {}, Test: {}", train.size(), test.size());
@@ -1428,6 +1539,114 @@ public class SampleRepository
         }
     }
 
+    //-------------------//
+    // getShapePositions //
+    //-------------------//
+    /**
+     * Gather the positions of the provided samples by shape, without reading samples.
+     *
+     * @param samples the samples, as returned by {@link #getAllSamples()}
+     * @return the sample positions per shape
+     */
+    private EnumMap<Shape, List<Integer>> getShapePositions (List<Sample> samples)
+    {
+        final EnumMap<Shape, List<Integer>> shapePositions = new EnumMap<>(Shape.class);
+
+        for (int i = 0, n = samples.size(); i < n; i++) {
+            final Shape shape = (samples instanceof JoinedSamples)
+                    ? ((JoinedSamples) samples).getShape(i) : samples.get(i).getShape();
+            List<Integer> list = shapePositions.get(shape);
+
+            if (list == null) {
+                shapePositions.put(shape, list = new ArrayList<>());
+            }
+
+            list.add(i);
+        }
+
+        return shapePositions;
+    }
+
+    //--------------//
+    // getSheetName //
+    //--------------//
+    /**
+     * Report the containing sheet name of a sample, without reading the sample.
+     *
+     * @param samples the samples, as returned by {@link #getAllSamples()}
+     * @param i       sample position
+     * @return the containing sheet name
+     */
+    private String getSheetName (List<Sample> samples,
+                                 int i)
+    {
+        if (samples instanceof JoinedSamples) {
+            return ((JoinedSamples) samples).getSheetName(i);
+        }
+
+        return getSheetName(samples.get(i));
+    }
+
+    //----------//
+    // getStamp //
+    //----------//
+    /**
+     * Report the current stamp of samples and images archives, to check index validity.
+     *
+     * @return size and modification time of samples and images archives
+     * @throws IOException if archives cannot be accessed
+     */
+    private long[] getStamp ()
+            throws IOException
+    {
+        final long[] stamp = new long[]{
+            Files.size(samplesFile),
+            Files.getLastModifiedTime(samplesFile).toMillis(),
+            -1,
+            -1};
+
+        if (Files.exists(imagesFile)) {
+            stamp[2] = Files.size(imagesFile);
+            stamp[3] = Files.getLastModifiedTime(imagesFile).toMillis();
+        }
+
+        return stamp;
+    }
+
+    //-----------//
+    // getWeight //
+    //-----------//
+    /**
+     * Report the weight of a sample, without reading the sample.
+     *
+     * @param samples the samples, as returned by {@link #getAllSamples()}
+     * @param i       sample position
+     * @return the sample weight
+     */
+    private int getWeight (List<Sample> samples,
+                           int i)
+    {
+        if (samples instanceof JoinedSamples) {
+            return ((JoinedSamples) samples).getWeight(i);
+        }
+
+        return samples.get(i).getWeight();
+    }
+
+    //-------------//
+    // isIndexUsed //
+    //-------------//
+    /**
+     * Tell whether a sample index is used for this repository.
+     * Tribes are not supported by index.
+     *
+     * @return true if so
+     */
+    private boolean isIndexUsed ()
+    {
+        return constants.useSampleIndex.isSet() && !USE_TRIBES;
+    }
+
     //---------------//
     // loadAllImages //
     //---------------//
@@ -1495,6 +1714,40 @@ public class SampleRepository
         }
     }
 
+    //-------------------//
+    // loadIndexedSheets //
+    //-------------------//
+    /**
+     * Register all sheets from sample index, their samples being read on demand.
+     */
+    private void loadIndexedSheets (LoadListener loadListener)
+    {
+        final SheetContainer container = new SheetContainer();
+        final int sheetCount = index.getSheetCount();
+
+        if (loadListener != null) {
+            loadListener.totalSheets(sheetCount);
+        }
+
+        for (int s = 0; s < sheetCount; s++) {
+            final Descriptor desc = index.getDescriptor(s);
+            container.addDescriptor(desc);
+
+            if (index.hasSampleSheet(s)) {
+                final SampleSheet sampleSheet = new SampleSheet(desc, index, s);
+                nameMap.put(desc.getName(), sampleSheet);
+
+                if (loadListener != null) {
+                    loadListener.loadedSheet(sampleSheet);
+                }
+            }
+        }
+
+        container.setModified(false);
+        sheetContainer = container;
+        logger.info("{} loaded from {}", this, index);
+    }
+
     //-------------//
     // loadSamples //
     //-------------//
@@ -1594,6 +1847,88 @@ public class SampleRepository
         }
     }
 
+    //------------------//
+    // readIndexedImage //
+    //------------------//
+    /**
+     * Read the sheet image from sample index, if any.
+     *
+     * @param descriptor sheet descriptor
+     * @return the sheet image, or null if not found in index
+     */
+    private RunTable readIndexedImage (Descriptor descriptor)
+    {
+        if (index != null) {
+            final int sheet = index.getSheet(descriptor.getName());
+
+            if (sheet != -1) {
+                return index.readImage(sheet);
+            }
+        }
+
+        return null;
+    }
+
+    //------------//
+    // writeIndex //
+    //------------//
+    /**
+     * Write the whole (loaded) repository as a sample index, with all sheet images.
+     */
+    private void writeIndex ()
+    {
+        SampleIndex.Writer writer = null;
+        Path imagesRoot = null;
+
+        try {
+            writer = new SampleIndex.Writer(dataFile);
+            imagesRoot = hasSheetImages() ? ZipFileSystem.open(imagesFile) : null;
+
+            for (Descriptor desc : sheetContainer.getAllDescriptors()) {
+                final SampleSheet sampleSheet = isSymbols(desc.getName()) ? null
+                        : nameMap.get(desc.getName());
+                RunTable image = null;
+
+                if (sampleSheet != null) {
+                    image = sampleSheet.getImage();
+
+                    if ((image == null) && (imagesRoot != null)) {
+                        final Path file = imagesRoot.resolve(desc.getName()).resolve(
+                                SampleSheet.IMAGE_FILE_NAME);
+
+                        if (Files.exists(file)) {
+                            image = RunTable.unmarshal(file);
+                        }
+                    }
+                }
+
+                writer.addSheet(desc, (sampleSheet != null) ? sampleSheet.getAllSamples() : null,
+                                image);
+            }
+
+            if (imagesRoot != null) {
+                imagesRoot.getFileSystem().close();
+                imagesRoot = null;
+            }
+
+            writer.finish(indexFile, getStamp());
+            logger.info("{} indexed to {}", this, indexFile);
+        } catch (IOException ex) {
+            logger.warn("Error indexing " + this + " " + ex, ex);
+
+            if (writer != null) {
+                writer.abort();
+            }
+        } finally {
+            if (imagesRoot != null) {
+                try {
+                    imagesRoot.getFileSystem().close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
     //-------------------//
     // getGlobalInstance //
     //-------------------//
@@ -1882,6 +2217,134 @@ public class SampleRepository
         }
     }
 
+    //---------------//
+    // JoinedSamples //
+    //---------------//
+    /**
+     * Read-only concatenation of sheet sample lists.
+     * <p>
+     * Index-based parts are kept as such, so that samples are read only when accessed.
+     * Other parts are copied, so that the joined list is not impacted by later modifications of
+     * the sample sheets.
+     */
+    private static class JoinedSamples
+            extends AbstractList<Sample>
+            implements RandomAccess
+    {
+
+        /** Sample lists. */
+        private final List<List<Sample>> parts = new ArrayList<>();
+
+        /** Sheet name, per part. */
+        private final List<String> names = new ArrayList<>();
+
+        /** Position of first sample, per part. */
+        private int[] firsts = new int[8];
+
+        /** Total number of samples. */
+        private int size;
+
+        /**
+         * Append the provided samples.
+         *
+         * @param name    containing sheet name
+         * @param samples the samples to append
+         */
+        public void addPart (String name,
+                             List<Sample> samples)
+        {
+            if (samples.isEmpty()) {
+                return;
+            }
+
+            if (parts.size() == firsts.length) {
+                firsts = Arrays.copyOf(firsts, 2 * firsts.length);
+            }
+
+            firsts[parts.size()] = size;
+            parts.add((samples instanceof SampleIndex.SampleView) ? samples
+                    : new ArrayList<>(samples));
+            names.add(name);
+            size += samples.size();
+        }
+
+        @Override
+        public Sample get (int index)
+        {
+            final int p = partOf(index);
+
+            return parts.get(p).get(index - firsts[p]);
+        }
+
+        /**
+         * Report the shape of sample at provided position, without reading the sample.
+         *
+         * @param index sample position
+         * @return the sample shape
+         */
+        public Shape getShape (int index)
+        {
+            final int p = partOf(index);
+            final List<Sample> part = parts.get(p);
+
+            if (part instanceof SampleIndex.SampleView) {
+                final SampleIndex.SampleView view = (SampleIndex.SampleView) part;
+
+                return view.getIndex().getShape(view.getEntry(index - firsts[p]));
+            }
+
+            return part.get(index - firsts[p]).getShape();
+        }
+
+        /**
+         * Report the name of sheet containing sample at provided position.
+         *
+         * @param index sample position
+         * @return the sheet name
+         */
+        public String getSheetName (int index)
+        {
+            return names.get(partOf(index));
+        }
+
+        /**
+         * Report the weight of sample at provided position, without reading the sample.
+         *
+         * @param index sample position
+         * @return the sample weight
+         */
+        public int getWeight (int index)
+        {
+            final int p = partOf(index);
+            final List<Sample> part = parts.get(p);
+
+            if (part instanceof SampleIndex.SampleView) {
+                final SampleIndex.SampleView view = (SampleIndex.SampleView) part;
+
+                return view.getIndex().getWeight(view.getEntry(index - firsts[p]));
+            }
+
+            return part.get(index - firsts[p]).getWeight();
+        }
+
+        @Override
+        public int size ()
+        {
+            return size;
+        }
+
+        private int partOf (int index)
+        {
+            if ((index < 0) || (index >= size)) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+
+            final int p = Arrays.binarySearch(firsts, 0, parts.size(), index);
+
+            return (p >= 0) ? p : (-p - 2);
+        }
+    }
+
     //-----------//
     // Constants //
     //-----------//
@@ -1896,5 +2359,9 @@ public class SampleRepository
         private final Constant.Boolean useTribes = new Constant.Boolean(
                 false,
                 "Should we support tribes?");
+
+        private final Constant.Boolean useSampleIndex = new Constant.Boolean(
+                true,
+                "Should we use a binary index to read samples on demand?");
     }
 }
@@ -105,6 +105,12 @@ public class SampleSheet
     /** Tribe being created by user. */
     private Tribe currentTribe;
 
+    /** Index providing samples on demand, until they are actually loaded in shapeMap. */
+    private SampleIndex index;
+
+    /** Sheet number in index. */
+    private int indexSheet;
+
     /**
      * Creates a new {@code SampleSheet} object.
      *
@@ -115,6 +121,23 @@ public class SampleSheet
         this.descriptor = descriptor;
     }
 
+    /**
+     * Creates a new {@code SampleSheet} object, whose samples are provided on demand
+     * by a sample index.
+     *
+     * @param descriptor related descriptor
+     * @param index      the sample index
+     * @param indexSheet sheet number in index
+     */
+    SampleSheet (Descriptor descriptor,
+                 SampleIndex index,
+                 int indexSheet)
+    {
+        this.descriptor = descriptor;
+        this.index = index;
+        this.indexSheet = indexSheet;
+    }
+
     /**
      * Creates a new {@code SampleSheet} object from a SampleList parameter.
      *
@@ -148,6 +171,10 @@ public class SampleSheet
      */
     public List<Sample> getAllSamples ()
     {
+        if (index != null) {
+            return index.getSamples(index.getEntries(indexSheet, null));
+        }
+
         List<Sample> allSamples = new ArrayList<>();
 
         for (List<Sample> sampleList : shapeMap.values()) {
@@ -232,6 +259,10 @@ public class SampleSheet
      */
     public List<Sample> getSamples (Shape shape)
     {
+        if (index != null) {
+            return index.getSamples(index.getEntries(indexSheet, shape));
+        }
+
         final List<Sample> samples = shapeMap.get(shape);
 
         if (samples != null) {
@@ -251,6 +282,10 @@ public class SampleSheet
      */
     public Set<Shape> getShapes ()
     {
+        if (index != null) {
+            return index.getShapes(indexSheet);
+        }
+
         return shapeMap.keySet();
     }
 
@@ -359,6 +394,7 @@ public class SampleSheet
                          Path imagesRoot)
     {
         logger.debug("Marshalling {}", this);
+        loadSamples();
 
         try {
             {
@@ -439,6 +475,7 @@ public class SampleSheet
     void privateAddSample (Sample sample)
     {
         Objects.requireNonNull(sample, "Cannot add a null sample");
+        loadSamples();
 
         Shape shape = sample.getShape();
         ArrayList<Sample> list = shapeMap.get(shape);
@@ -466,6 +503,8 @@ public class SampleSheet
      */
     void privateRemoveSample (Sample sample)
     {
+        loadSamples();
+
         Shape shape = sample.getShape();
         ArrayList<Sample> list = shapeMap.get(shape);
 
@@ -484,6 +523,30 @@ public class SampleSheet
         setModified(true);
     }
 
+    //-------------//
+    // loadSamples //
+    //-------------//
+    /**
+     * Make sure all sheet samples are actually loaded from index, if any.
+     */
+    private void loadSamples ()
+    {
+        if (index != null) {
+            for (Sample sample : index.getSamples(index.getEntries(indexSheet, null))) {
+                Shape shape = sample.getShape();
+                ArrayList<Sample> list = shapeMap.get(shape);
+
+                if (list == null) {
+                    shapeMap.put(shape, list = new ArrayList<>());
+                }
+
+                list.add(sample);
+            }
+
+            index = null;
+        }
+    }
+
     /**
      * Delete from disk the samples, tribes and image if any of a defunct sheet.
      *
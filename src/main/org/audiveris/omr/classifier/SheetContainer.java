@@ -598,6 +598,16 @@ public class SheetContainer
             return sb.toString();
         }
 
+        /**
+         * Report the hash value of sheet image.
+         *
+         * @return hash code of related image run table or null
+         */
+        public Integer getHash ()
+        {
+            return hash;
+        }
+
         /**
          * Report the sheet name.
          *
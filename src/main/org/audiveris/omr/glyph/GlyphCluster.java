@@ -21,6 +21,8 @@
 // </editor-fold>
 package org.audiveris.omr.glyph;
 
+import org.audiveris.omr.moments.RawMoments;
+
 import org.jgrapht.Graphs;
 import org.jgrapht.graph.SimpleGraph;
 
@@ -29,10 +31,15 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -41,11 +48,16 @@ import java.util.Set;
  * <p>
  * The processing of any given subset consists in the following:
  * <ol>
- * <li>Build the compound of chosen vertices, and record acceptable evaluations.</li>
+ * <li>Record the compound of chosen vertices, unless the same subset has already been
+ * recorded.</li>
  * <li>Build the set of new reachable vertices.</li>
  * <li>For each reachable vertex, recursively process the new set composed of current set + the
  * reachable vertex.</li>
  * </ol>
+ * Compounds are not built while subsets are enumerated: their weight, bounds and moments are
+ * combined from the parts ones (see {@link GlyphCompound}). Once the cluster has been enumerated,
+ * the adapter {@link Adapter#screenCompounds screens} the recorded compounds and only the
+ * promising ones are actually built and evaluated.
  * TODO: implement a non-recursive version for better efficiency?
  *
  * @author Hervé Bitteur
@@ -61,6 +73,15 @@ public class GlyphCluster
     /** Group, if any, to be assigned to created glyphs. */
     private final GlyphGroup group;
 
+    /** Index of each part within the cluster. */
+    private final Map<Glyph, Integer> indices = new HashMap<>();
+
+    /** Raw moments of each part. */
+    private final Map<Glyph, RawMoments> sums = new HashMap<>();
+
+    /** Compounds recorded so far, per subset of parts. */
+    private final Map<BitSet, GlyphCompound> compounds = new LinkedHashMap<>();
+
     /**
      * Creates a new Cluster object, with an adapter to the environment.
      *
@@ -89,10 +110,59 @@ public class GlyphCluster
         final List<Glyph> seeds = adapter.getParts();
         Collections.sort(seeds, Glyphs.byReverseWeight);
 
+        // Parts moments, with a common origin
+        final Rectangle clusterBox = Glyphs.getBounds(seeds);
+
+        for (Glyph part : seeds) {
+            final RawMoments partSums = new RawMoments(clusterBox.x, clusterBox.y);
+            partSums.include(part.getRunTable(), part.getLeft(), part.getTop());
+            sums.put(part, partSums);
+            indices.put(part, indices.size());
+        }
+
         ///logger.debug("Decomposing {}", Glyphs.ids("cluster", seeds));
         for (Glyph seed : seeds) {
             considered.add(seed);
-            process(Collections.singleton(seed), considered);
+            process(new GlyphCompound(seed, indices.get(seed), sums.get(seed)), considered);
+        }
+
+        evaluate();
+    }
+
+    //----------//
+    // evaluate //
+    //----------//
+    /**
+     * Evaluate the recorded compounds, building only the compounds found promising.
+     */
+    private void evaluate ()
+    {
+        // Screen the compounds made of several parts
+        final List<GlyphCompound> candidates = new ArrayList<>();
+
+        for (GlyphCompound compound : compounds.values()) {
+            if (compound.getParts().size() > 1) {
+                candidates.add(compound);
+            }
+        }
+
+        final boolean[] promising = candidates.isEmpty() ? new boolean[0]
+                : adapter.screenCompounds(candidates);
+        int ic = 0;
+
+        for (GlyphCompound compound : compounds.values()) {
+            if ((compound.getParts().size() > 1) && !promising[ic++]) {
+                logger.debug("Not promising {}", compound);
+
+                continue;
+            }
+
+            // Build compound and get acceptable evaluations for the compound
+            final Glyph glyph = compound.build();
+            glyph.addGroup(group);
+
+            // Create all acceptable inters, if any, for the compound
+            adapter.evaluateGlyph(glyph, compound.getParts());
         }
     }
 
@@ -117,18 +187,19 @@ public class GlyphCluster
     }
 
     /**
-     * Process the provided set of parts.
+     * Process the provided compound of parts.
      *
-     * @param parts (read only) the set of current parts
-     * @param seen  (read only) all parts considered so far (current parts plus discarded ones)
+     * @param compound (read only) the compound of current parts
+     * @param seen     (read only) all parts considered so far (current parts plus discarded ones)
      */
-    private void process (Set<Glyph> parts,
+    private void process (GlyphCompound compound,
                           Set<Glyph> seen)
     {
+        final Set<Glyph> parts = compound.getParts();
         ///logger.debug(" {} {} {}", set.size(), Glyphs.ids("set", set), Glyphs.ids("seen", seen));
 
         // Check what we have got
-        final int weight = Glyphs.weightOf(parts);
+        final int weight = compound.getWeight();
 
         if (adapter.isTooHeavy(weight)) {
             logger.debug("Too high weight {} for {}", weight, parts);
@@ -136,7 +207,7 @@ public class GlyphCluster
             return;
         }
 
-        Rectangle box = Glyphs.getBounds(parts);
+        Rectangle box = compound.getBounds();
 
         if (adapter.isTooLarge(box)) {
             logger.debug("Too large  {} for {}", box, parts);
@@ -145,13 +216,10 @@ public class GlyphCluster
         }
 
         if (!adapter.isTooLight(weight)) {
-            // Build compound and get acceptable evaluations for the compound
-            Glyph compound = (parts.size() > 1) ? GlyphFactory.buildGlyph(parts)
-                    : parts.iterator().next();
-            compound.addGroup(group);
-
-            // Create all acceptable inters, if any, for the compound
-            adapter.evaluateGlyph(compound, parts);
+            // Record compound for evaluation, unless already reached via another path
+            if (!compounds.containsKey(compound.getKey())) {
+                compounds.put(compound.getKey(), compound);
+            }
         } else {
             logger.debug("Too low weight {} for {}", weight, parts);
         }
@@ -165,19 +233,18 @@ public class GlyphCluster
         }
 
         ///logger.debug("      {}", Glyphs.ids("outliers", outliers));
-        Rectangle setBox = Glyphs.getBounds(parts);
         Set<Glyph> newConsidered = new LinkedHashSet<>(seen);
 
         for (Glyph outlier : outliers) {
             newConsidered.add(outlier);
 
             // Check appending this atom does not make the resulting symbol too wide or too high
-            Rectangle symBox = outlier.getBounds().union(setBox);
+            Rectangle symBox = outlier.getBounds().union(box);
 
             if (!adapter.isTooLarge(symBox)) {
-                Set<Glyph> largerSet = new LinkedHashSet<>(parts);
-                largerSet.add(outlier);
-                process(largerSet, newConsidered);
+                process(
+                        compound.plus(outlier, indices.get(outlier), sums.get(outlier)),
+                        newConsidered);
             }
         }
     }
@@ -285,6 +352,15 @@ public class GlyphCluster
          * @return true if too small
          */
         boolean isTooSmall (Rectangle bounds);
+
+        /**
+         * Among the provided compounds, not yet built, tell which ones are worth being
+         * built and evaluated.
+         *
+         * @param compounds the compounds made of several parts, in processing order
+         * @return for each compound, true if worth being built
+         */
+        boolean[] screenCompounds (List<GlyphCompound> compounds);
     }
 
     public abstract static class AbstractAdapter
@@ -356,5 +432,14 @@ public class GlyphCluster
         {
             return false;
         }
+
+        @Override
+        public boolean[] screenCompounds (List<GlyphCompound> compounds)
+        {
+            final boolean[] promising = new boolean[compounds.size()];
+            Arrays.fill(promising, true);
+
+            return promising;
+        }
     }
 }
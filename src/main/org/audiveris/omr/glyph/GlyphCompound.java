@@ -0,0 +1,300 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                    G l y p h C o m p o u n d                                   //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.glyph;
+
+import org.audiveris.omr.moments.ARTMoments;
+import org.audiveris.omr.moments.BasicARTMoments;
+import org.audiveris.omr.moments.FlatARTExtractor;
+import org.audiveris.omr.moments.GeometricMoments;
+import org.audiveris.omr.moments.RawMoments;
+import org.audiveris.omr.run.RunTable;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class {@code GlyphCompound} represents a compound of disjoint glyph parts, whose
+ * features are available before the compound glyph is actually built.
+ * <p>
+ * Raw geometric moments are additive over disjoint parts, so the moments of a compound are
+ * the sum of its parts moments, while ART moments are extracted directly from the parts runs.
+ * A compound is immutable, {@link #plus} gives a new compound with one more part.
+ * <p>
+ * Each part is identified by an index, provided by the caller, so that the compound {@link #getKey
+ * key} identifies the set of its parts whatever the order they were added in.
+ *
+ * @author Hervé Bitteur
+ */
+public class GlyphCompound
+{
+
+    /** Parts, in the order they were added. */
+    private final Set<Glyph> parts;
+
+    /** Indices of parts. */
+    private final BitSet key;
+
+    /** Summed raw moments of parts. */
+    private final RawMoments sums;
+
+    /** Bounds of the compound. */
+    private final Rectangle bounds;
+
+    /** Computed ART moments, if any. */
+    private ARTMoments artMoments;
+
+    /** Computed geometric moments, if any. */
+    private GeometricMoments geoMoments;
+
+    /**
+     * Creates a new {@code GlyphCompound} object, with just one part.
+     *
+     * @param part     the part
+     * @param index    the part index
+     * @param partSums the raw moments of the part
+     */
+    public GlyphCompound (Glyph part,
+                          int index,
+                          RawMoments partSums)
+    {
+        parts = Collections.singleton(part);
+        key = new BitSet();
+        key.set(index);
+        sums = partSums;
+        bounds = part.getBounds();
+    }
+
+    /**
+     * Creates a new {@code GlyphCompound} object, from another one plus a new part.
+     */
+    private GlyphCompound (GlyphCompound base,
+                           Glyph part,
+                           int index,
+                           RawMoments partSums)
+    {
+        final Set<Glyph> set = new LinkedHashSet<>(base.parts);
+        set.add(part);
+        parts = Collections.unmodifiableSet(set);
+
+        key = (BitSet) base.key.clone();
+        key.set(index);
+
+        sums = new RawMoments(base.sums);
+        sums.add(partSums);
+
+        bounds = base.getBounds();
+        bounds.add(part.getBounds());
+    }
+
+    //-------//
+    // build //
+    //-------//
+    /**
+     * Build the actual compound glyph.
+     *
+     * @return the single part, or a new glyph merging all parts
+     */
+    public Glyph build ()
+    {
+        if (parts.size() == 1) {
+            return parts.iterator().next();
+        }
+
+        return GlyphFactory.buildGlyph(parts);
+    }
+
+    //---------------//
+    // getARTMoments //
+    //---------------//
+    /**
+     * Report the ART moments of the compound.
+     *
+     * @return the ART moments
+     */
+    public ARTMoments getARTMoments ()
+    {
+        if (artMoments == null) {
+            if (parts.size() == 1) {
+                artMoments = parts.iterator().next().getARTMoments();
+            } else {
+                final List<RunTable> tables = new ArrayList<>(parts.size());
+                final List<Point> offsets = new ArrayList<>(parts.size());
+
+                for (Glyph part : parts) {
+                    tables.add(part.getRunTable());
+                    offsets.add(new Point(part.getLeft(), part.getTop()));
+                }
+
+                final ARTMoments moments = new BasicARTMoments();
+                final FlatARTExtractor extractor = new FlatARTExtractor();
+                extractor.setDescriptor(moments);
+                extractor.extract(tables, offsets);
+                artMoments = moments;
+            }
+        }
+
+        return artMoments;
+    }
+
+    //-----------//
+    // getBounds //
+    //-----------//
+    /**
+     * Report the bounds of the compound.
+     *
+     * @return a copy of the bounds
+     */
+    public Rectangle getBounds ()
+    {
+        return new Rectangle(bounds);
+    }
+
+    //---------------------//
+    // getGeometricMoments //
+    //---------------------//
+    /**
+     * Report the geometric moments of the compound.
+     *
+     * @param interline the global sheet interline
+     * @return the geometric moments
+     */
+    public GeometricMoments getGeometricMoments (int interline)
+    {
+        if (geoMoments == null) {
+            geoMoments = new GeometricMoments(sums, interline);
+        }
+
+        return geoMoments;
+    }
+
+    //-----------//
+    // getHeight //
+    //-----------//
+    /**
+     * Report the height of the compound.
+     *
+     * @return the height
+     */
+    public int getHeight ()
+    {
+        return bounds.height;
+    }
+
+    //--------//
+    // getKey //
+    //--------//
+    /**
+     * Report the key which identifies the parts of this compound.
+     *
+     * @return the set of part indices (not to be modified)
+     */
+    public BitSet getKey ()
+    {
+        return key;
+    }
+
+    //---------------------//
+    // getNormalizedWeight //
+    //---------------------//
+    /**
+     * Report the weight of the compound, normalized by interline.
+     *
+     * @param interline the global sheet interline
+     * @return the normalized weight
+     */
+    public double getNormalizedWeight (int interline)
+    {
+        return (double) getWeight() / (interline * interline);
+    }
+
+    //----------//
+    // getParts //
+    //----------//
+    /**
+     * Report the parts of the compound.
+     *
+     * @return the (unmodifiable) set of parts
+     */
+    public Set<Glyph> getParts ()
+    {
+        return parts;
+    }
+
+    //-----------//
+    // getWeight //
+    //-----------//
+    /**
+     * Report the number of pixels in the compound.
+     *
+     * @return the weight
+     */
+    public int getWeight ()
+    {
+        return sums.getWeight();
+    }
+
+    //----------//
+    // getWidth //
+    //----------//
+    /**
+     * Report the width of the compound.
+     *
+     * @return the width
+     */
+    public int getWidth ()
+    {
+        return bounds.width;
+    }
+
+    //------//
+    // plus //
+    //------//
+    /**
+     * Report the compound made of this one plus a new part.
+     *
+     * @param part     the part to add
+     * @param index    the part index
+     * @param partSums the raw moments of the part
+     * @return the larger compound
+     */
+    public GlyphCompound plus (Glyph part,
+                               int index,
+                               RawMoments partSums)
+    {
+        return new GlyphCompound(this, part, index, partSums);
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public String toString ()
+    {
+        return Glyphs.ids("compound", parts);
+    }
+}
@@ -23,12 +23,16 @@ package org.audiveris.omr.glyph;
 
 import ij.process.ByteProcessor;
 
-import org.audiveris.omr.run.MarkedRun;
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
 import static org.audiveris.omr.run.Orientation.VERTICAL;
-import org.audiveris.omr.run.Run;
+import org.audiveris.omr.run.RunCursor;
+import org.audiveris.omr.run.RunSequenceBuilder;
 import org.audiveris.omr.run.RunTable;
 import org.audiveris.omr.run.RunTableFactory;
+import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.util.ByteUtil;
+import org.audiveris.omr.util.OmrExecutors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,11 +41,10 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class {@code GlyphFactory} builds a collection of glyphs out of a provided {@link
@@ -52,12 +55,24 @@ import java.util.Map.Entry;
  * <p>
  * Comments refer to 'sequences', which are synonymous of columns for vertical runs, and of rows
  * for horizontal runs.
+ * <p>
+ * All runs of the table are numbered in table order (sequence after sequence, and by increasing
+ * start within a sequence), and described by parallel int arrays.
+ * Connectivity between runs is recorded by a union-find structure on run numbers, where the root
+ * of a glyph is always its smallest run number.
+ * Glyphs are thus created in the order of their first run.
+ * <p>
+ * A large table can be processed by stripes of sequences in parallel, the labels of each stripe
+ * being then merged across the seams between stripes.
+ * Both processings result in the same glyphs.
  *
  * @author Hervé Bitteur
  */
 public class GlyphFactory
 {
 
+    private static final Constants constants = new Constants();
+
     private static final Logger logger = LoggerFactory.getLogger(GlyphFactory.class);
 
     /** Source runs. */
@@ -72,17 +87,20 @@ public class GlyphFactory
     /** Global list of all glyphs created. */
     private final List<Glyph> created = new ArrayList<>();
 
-    /** Global id to assign glyph marks. */
-    private int globalMark;
+    /** Number of first run of each sequence, plus total number of runs at the end. */
+    private final int[] seqFirsts;
 
-    /** Specific run table implementation, meant for marking runs. */
-    private final List<List<MarkedRun>> markedTable;
+    /** Sequence index, for each run. */
+    private final int[] seqs;
 
-    /** Merges (child => parent). (numerical invariant: child > parent) */
-    private final Map<Integer, Integer> merges = new HashMap<>();
+    /** Start, for each run. */
+    private final int[] starts;
 
-    /** Most efficient way to use merging information. */
-    private int[] lut;
+    /** Length, for each run. */
+    private final int[] lengths;
+
+    /** Union-find parent, for each run. (numerical invariant: parent &lt;= child) */
+    private final int[] parents;
 
     private GlyphFactory (RunTable runTable,
                           Point offset,
@@ -92,80 +110,100 @@ public class GlyphFactory
         this.offset = (offset != null) ? offset : new Point(0, 0);
         this.group = group;
 
-        // Allocate & initialize markedTable
-        markedTable = new ArrayList<>(runTable.getSize());
+        // Number runs, sequence after sequence
+        final int size = runTable.getSize();
+        seqFirsts = new int[size + 1];
 
-        for (int iseq = 0, size = runTable.getSize(); iseq < size; iseq++) {
-            markedTable.add(new ArrayList<MarkedRun>());
+        for (int iSeq = 0; iSeq < size; iSeq++) {
+            seqFirsts[iSeq + 1] = seqFirsts[iSeq] + runTable.getRunCount(iSeq);
         }
+
+        final int runCount = seqFirsts[size];
+        seqs = new int[runCount];
+        starts = new int[runCount];
+        lengths = new int[runCount];
+        parents = new int[runCount];
     }
 
     /**
-     * Build all the ancestor glyphs from the markedTable.
+     * Build all the glyphs, according to runs roots.
      */
     private void buildAllGlyphs ()
     {
-        logger.debug("glyphs: {}", globalMark - merges.size());
+        final int runCount = parents.length;
 
-        // Allocate & initialize glyph bufs
-        final List<List<Sequence>> bufs = new ArrayList<>(lut.length);
+        // Resolve each run to its glyph, glyphs being numbered by increasing root
+        final int[] glyphOf = new int[runCount];
+        int glyphCount = 0;
 
-        for (int i = 0, len = lut.length; i < len; i++) {
-            if ((i > 0) && (lut[i] == i)) {
-                bufs.add(new ArrayList<Sequence>());
-            } else {
-                bufs.add(null);
-            }
+        for (int r = 0; r < runCount; r++) {
+            final int root = find(r);
+            glyphOf[r] = (root == r) ? glyphCount++ : glyphOf[root]; // Since root <= r
         }
 
-        // Dispatch each run to its proper glyph buffer
-        for (int iSeq = 0, size = runTable.getSize(); iSeq < size; iSeq++) {
-            final List<MarkedRun> seq = markedTable.get(iSeq);
+        logger.debug("glyphs: {}", glyphCount);
 
-            for (MarkedRun run : seq) {
-                final int ancestor = lut[run.getMark()];
-                final List<Sequence> buf = bufs.get(ancestor);
+        // Count runs and compute bounds, per glyph
+        final int[] firsts = new int[glyphCount + 1];
+        final int[] seqMaxs = new int[glyphCount];
+        final int[] startMins = new int[glyphCount];
+        final int[] stopMaxs = new int[glyphCount];
 
-                if (buf.isEmpty() || (buf.get(buf.size() - 1).iSeq != iSeq)) {
-                    buf.add(new Sequence(iSeq));
-                }
+        for (int g = 0; g < glyphCount; g++) {
+            startMins[g] = Integer.MAX_VALUE;
+        }
 
-                final Sequence bufSeq = buf.get(buf.size() - 1);
-                bufSeq.runs.add(run);
-            }
+        for (int r = 0; r < runCount; r++) {
+            final int g = glyphOf[r];
+            firsts[g + 1]++;
+            seqMaxs[g] = seqs[r]; // Runs are browsed by increasing sequence
+            startMins[g] = Math.min(startMins[g], starts[r]);
+            stopMaxs[g] = Math.max(stopMaxs[g], (starts[r] + lengths[r]) - 1);
         }
 
-        // Each allocated buf corresponds to one separated glyph
-        for (int i = 1, len = lut.length; i < len; i++) {
-            final List<Sequence> buf = bufs.get(i);
+        for (int g = 0; g < glyphCount; g++) {
+            firsts[g + 1] += firsts[g];
+        }
 
-            if (buf != null) {
-                buildGlyph(i, buf);
-            }
+        // Dispatch runs per glyph, keeping table order within each glyph
+        final int[] order = new int[runCount];
+        final int[] fills = new int[glyphCount];
+        System.arraycopy(firsts, 0, fills, 0, glyphCount);
+
+        for (int r = 0; r < runCount; r++) {
+            order[fills[glyphOf[r]]++] = r;
+        }
+
+        // Build each glyph
+        final RunSequenceBuilder builder = new RunSequenceBuilder();
+
+        for (int g = 0; g < glyphCount; g++) {
+            buildGlyph(order, firsts[g], firsts[g + 1], seqMaxs[g], startMins[g], stopMaxs[g],
+                       builder);
         }
     }
 
     /**
-     * Build the glyph for provided ancestor mark.
+     * Build the glyph for provided runs.
      *
-     * @param mark the mark value for this ancestor glyph
-     * @param buf  its populated sequences of runs
+     * @param order    run numbers, dispatched per glyph
+     * @param first    index in order of first glyph run
+     * @param stop     index in order after last glyph run
+     * @param iSeqMax  index of last glyph sequence
+     * @param startMin minimum start of glyph runs
+     * @param stopMax  maximum stop of glyph runs
+     * @param builder  reusable sequence builder
      */
-    private void buildGlyph (int mark,
-                             List<Sequence> buf)
+    private void buildGlyph (int[] order,
+                             int first,
+                             int stop,
+                             int iSeqMax,
+                             int startMin,
+                             int stopMax,
+                             RunSequenceBuilder builder)
     {
-        // Determine glyph bounds within buf
-        final int iSeqMin = buf.get(0).iSeq;
-        final int iSeqMax = buf.get(buf.size() - 1).iSeq;
-
-        int startMin = Integer.MAX_VALUE;
-        int stopMax = 0;
-
-        for (Sequence seq : buf) {
-            startMin = Math.min(startMin, seq.runs.get(0).getStart());
-            stopMax = Math.max(stopMax, seq.runs.get(seq.runs.size() - 1).getStop());
-        }
-
+        // Determine glyph bounds
+        final int iSeqMin = seqs[order[first]];
         final int dx = (runTable.getOrientation() == VERTICAL) ? iSeqMin : startMin;
         final int dy = (runTable.getOrientation() == VERTICAL) ? startMin : iSeqMin;
         final int width = (runTable.getOrientation() == VERTICAL) ? (iSeqMax - iSeqMin + 1)
@@ -177,14 +215,23 @@ public class GlyphFactory
         RunTable table = new RunTable(runTable.getOrientation(), width, height);
 
         // Populate table with RLE sequences
-        for (Sequence seq : buf) {
-            for (MarkedRun run : seq.runs) {
-                run.setStart(run.getStart() - startMin);
+        int iSeq = seqs[order[first]];
+        builder.clear();
+
+        for (int i = first; i < stop; i++) {
+            final int r = order[i];
+
+            if (seqs[r] != iSeq) {
+                table.setSequence(iSeq - iSeqMin, builder);
+                builder.clear();
+                iSeq = seqs[r];
             }
 
-            table.setSequence(seq.iSeq - iSeqMin, seq.runs);
+            builder.append(starts[r] - startMin, lengths[r]);
         }
 
+        table.setSequence(iSeq - iSeqMin, builder);
+
         // Store created glyph
         final Glyph glyph = new Glyph(offset.x + dx, offset.y + dy, table);
         glyph.addGroup(group);
@@ -192,136 +239,165 @@ public class GlyphFactory
     }
 
     /**
-     * Build a LUT to provide, for any run mark, the mark of its containing ancestor.
+     * Report the root of the provided run, halving the path on the way.
+     *
+     * @param r the run number
+     * @return the root run number
      */
-    private void createLut ()
+    private int find (int r)
     {
-        lut = new int[1 + globalMark]; // Cell #0 is not used
-
-        for (int i = 0; i <= globalMark; i++) {
-            lut[i] = i;
+        while (parents[r] != r) {
+            parents[r] = parents[parents[r]];
+            r = parents[r];
         }
 
-        // Make any redirected child point directly to its ultimate ancestor
-        for (Entry<Integer, Integer> entry : merges.entrySet()) {
-            int child = entry.getKey();
-            Integer parent = entry.getValue();
-            Integer ancestor;
-
-            do { // Walk down the merges path
-                ancestor = parent;
-                parent = merges.get(parent);
-            } while (parent != null);
-
-            lut[child] = ancestor;
-        }
+        return r;
     }
 
     /**
-     * Remember that runs marked with 'max' or 'min' values belong to the same glyph.
-     * This equivalence is recorded only in the max => min direction.
+     * Detect run overlap between the provided sequence and the previous one, and merge
+     * the overlapping runs.
      *
-     * @param max the larger mark value
-     * @param min the smaller mark value
+     * @param iSeq index of sequence, which must be greater than 0
      */
-    private void merge (int max,
-                        int min)
+    private void link (int iSeq)
     {
-        Integer old = merges.get(max);
-
-        if (old == null) {
-            merges.put(max, min); // Target is max=>min
-        } else if (min > old) { // Target is max=>min---old
-            merge(min, old);
-            merges.put(max, min);
-        } else if (old != min) {
-            merge(old, min); // Target is max=>old---min
+        final int pStop = seqFirsts[iSeq];
+        int pActive = seqFirsts[iSeq - 1]; // Active run in prev sequence
+
+        for (int r = seqFirsts[iSeq], rStop = seqFirsts[iSeq + 1]; r < rStop; r++) {
+            final int nextStart = starts[r];
+            final int nextStop = (nextStart + lengths[r]) - 1;
+
+            // Browse runs from previous sequence
+            for (int p = pActive; p < pStop; p++) {
+                if (starts[p] > nextStop) {
+                    break;
+                }
+
+                if (((starts[p] + lengths[p]) - 1) >= nextStart) {
+                    union(p, r); // Record equivalence between these 2 runs
+                    pActive = p;
+                }
+            }
         }
     }
 
     /**
-     * Retrieve all glyphs from the provided table of runs.
+     * Retrieve all glyphs from the run table.
      *
-     * @param runTable the table of runs
+     * @param stripeCount number of stripes to process in parallel, 1 for sequential processing
      * @return the list of created glyphs
      */
-    private List<Glyph> process ()
+    private List<Glyph> process (int stripeCount)
     {
-        //        StopWatch watch = new StopWatch("GlyphFactory");
-        //
-        //        try {
-        //            watch.start("scan");
-        scanTable();
-        //
-        //            watch.start("lut");
-        createLut();
-        //
-        //            watch.start("glyphs");
+        final int size = runTable.getSize();
+
+        if ((stripeCount > 1) && (size > 1)) {
+            scanStripes(Math.min(stripeCount, size));
+        } else {
+            scanRange(0, size);
+        }
+
         buildAllGlyphs();
 
         return created;
+    }
+
+    /**
+     * Load the runs of a range of sequences, and link runs within this range.
+     *
+     * @param first index of first sequence in range
+     * @param stop  index after last sequence in range
+     */
+    private void scanRange (int first,
+                            int stop)
+    {
+        final RunCursor cursor = new RunCursor(runTable);
+
+        for (int iSeq = first; iSeq < stop; iSeq++) {
+            int r = seqFirsts[iSeq];
+
+            for (cursor.reset(iSeq); cursor.next(); r++) {
+                seqs[r] = iSeq;
+                starts[r] = cursor.getStart();
+                lengths[r] = cursor.getLength();
+                parents[r] = r;
+            }
 
-        //        } finally {
-        //            watch.print();
-        //        }
+            if (iSeq > first) {
+                link(iSeq);
+            }
+        }
     }
 
     /**
-     * Populate the 'markedTable', a temporary representation of runs with their
-     * connectivity recorded in 'merges'.
+     * Scan the table by stripes of sequences in parallel, and then link runs across the
+     * seams between stripes.
+     * <p>
+     * When already running on the low pool (a system step), stripes are scanned in turn.
      * <p>
-     * Browse the sequences of the input run table, detect run overlap from one sequence to the
-     * next, and flag each run with proper glyph mark.
+     * Stripes don't share any run, hence their union-find operations are independent.
+     *
+     * @param stripeCount number of stripes
      */
-    private void scanTable ()
+    private void scanStripes (int stripeCount)
     {
-        // Scan each pair of consecutive sequences
-        for (int iSeq = 0, size = runTable.getSize(); iSeq < size; iSeq++) {
-            final List<MarkedRun> prevSeq = (iSeq > 0) ? markedTable.get(iSeq - 1) : null;
-            final List<MarkedRun> nextSeq = markedTable.get(iSeq);
-            final int maxPIdx = (iSeq > 0) ? (prevSeq.size() - 1) : (-1);
-            int pIdxActive = 0; // Active run index in prev sequence
-
-            for (Iterator<Run> it = runTable.iterator(iSeq); it.hasNext();) {
-                // Allocate the MarkedRun that corresponds to current Run
-                final Run run = it.next();
-                final int nextStart = run.getStart();
-                final int nextStop = run.getStop();
-                final MarkedRun nextRun = new MarkedRun(nextStart, run.getLength(), 0);
-                nextSeq.add(nextRun);
-
-                // Browse marked runs from previous sequence
-                for (int pIdx = pIdxActive; pIdx <= maxPIdx; pIdx++) {
-                    final MarkedRun prevRun = prevSeq.get(pIdx);
-
-                    if (prevRun.getStart() > nextStop) {
-                        break;
-                    }
-
-                    if (prevRun.getStop() >= nextStart) {
-                        final int prevMark = prevRun.getMark();
-                        final int nextMark = nextRun.getMark();
-
-                        if (nextMark == 0) {
-                            nextRun.setMark(prevMark);
-                        } else {
-                            final int min = Math.min(prevMark, nextMark);
-                            final int max = Math.max(prevMark, nextMark);
-
-                            if (min != max) {
-                                merge(max, min); // Record equivalence between these 2 marks
-                            }
-                        }
-
-                        pIdxActive = pIdx;
-                    }
+        final int size = runTable.getSize();
+        final int stripeSize = (size + stripeCount - 1) / stripeCount;
+        final List<Callable<Void>> tasks = new ArrayList<>(stripeCount);
+
+        for (int first = 0; first < size; first += stripeSize) {
+            final int firstSeq = first;
+            final int stopSeq = Math.min(size, first + stripeSize);
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    scanRange(firstSeq, stopSeq);
+
+                    return null;
                 }
+            });
+        }
 
-                // No overlap found, hence use a new mark
-                if (nextRun.getMark() == 0) {
-                    nextRun.setMark(++globalMark);
-                }
+        try {
+            for (Future<Void> future : OmrExecutors.invokeAll(tasks)) {
+                future.get();
             }
+        } catch (InterruptedException ex) {
+            logger.warn("GlyphFactory got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            logger.warn("Exception raised in GlyphFactory", ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        }
+
+        // Merge labels across seams
+        for (int seam = stripeSize; seam < size; seam += stripeSize) {
+            link(seam);
+        }
+    }
+
+    /**
+     * Remember that the two provided runs belong to the same glyph.
+     * The larger root is attached to the smaller one.
+     *
+     * @param p one run number
+     * @param r another run number
+     */
+    private void union (int p,
+                        int r)
+    {
+        final int pRoot = find(p);
+        final int rRoot = find(r);
+
+        if (pRoot < rRoot) {
+            parents[rRoot] = pRoot;
+        } else if (rRoot < pRoot) {
+            parents[pRoot] = rRoot;
         }
     }
 
@@ -362,7 +438,7 @@ public class GlyphFactory
     public static List<Glyph> buildGlyphs (RunTable runTable,
                                            Point offset)
     {
-        return new GlyphFactory(runTable, offset, null).process();
+        return buildGlyphs(runTable, offset, null);
     }
 
     //-------------//
@@ -380,42 +456,66 @@ public class GlyphFactory
                                            Point offset,
                                            GlyphGroup group)
     {
-        return new GlyphFactory(runTable, offset, group).process();
+        return new GlyphFactory(runTable, offset, group).process(getStripeCount(runTable));
+    }
+
+    //-------------//
+    // buildGlyphs //
+    //-------------//
+    /**
+     * Create a collection of glyphs out of the provided RunTable, with an explicit
+     * choice between striped (parallel) and sequential processing.
+     *
+     * @param runTable the source table of runs
+     * @param offset   offset of runTable WRT absolute origin
+     * @param group    targeted group, if any
+     * @param striped  true for processing by stripes in parallel, false for sequential processing
+     * @return the list of glyphs created
+     */
+    public static List<Glyph> buildGlyphs (RunTable runTable,
+                                           Point offset,
+                                           GlyphGroup group,
+                                           boolean striped)
+    {
+        final int stripeCount = striped ? Math.max(2, getStripeCount(runTable)) : 1;
+
+        return new GlyphFactory(runTable, offset, group).process(stripeCount);
     }
 
-    //----------//
-    // Sequence //
-    //----------//
+    //----------------//
+    // getStripeCount //
+    //----------------//
     /**
-     * A sequence of marked runs, that all belong to the same glyph, together with the
-     * sequence index in runTable.
+     * Report the number of stripes to process the provided table in parallel.
+     *
+     * @param runTable the table to process
+     * @return the number of stripes, 1 for sequential processing
      */
-    private static class Sequence
+    private static int getStripeCount (RunTable runTable)
     {
+        if (!constants.useStripes.isSet() || !OmrExecutors.defaultParallelism.getValue()) {
+            return 1;
+        }
 
-        final int iSeq; // Index in runTable
+        final int cpus = OmrExecutors.getNumberOfCpus();
 
-        final List<MarkedRun> runs = new ArrayList<>(); // Sequence of glyph marked runs
+        return Math.max(1, Math.min(cpus, runTable.getSize() / constants.minStripeSize.getValue()));
+    }
 
-        Sequence (int iSeq)
-        {
-            this.iSeq = iSeq;
-        }
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean useStripes = new Constant.Boolean(
+                true,
+                "Should we process large run tables by stripes in parallel?");
+
+        private final Constant.Integer minStripeSize = new Constant.Integer(
+                "sequences",
+                512,
+                "Minimum number of sequences per stripe");
     }
 }
-//
-//        private void dumpTable (String title)
-//        {
-//            System.out.println(title);
-//
-//            for (int iSeq = 0, size = markedTable.size(); iSeq < size; iSeq++) {
-//                System.out.println("iSeq = " + iSeq);
-//
-//                List<MarkedRun> seq = markedTable.get(iSeq);
-//
-//                for (MarkedRun run : seq) {
-//                    System.out.println("   run = " + run);
-//                }
-//            }
-//        }
-//
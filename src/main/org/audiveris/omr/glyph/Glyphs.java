@@ -21,7 +21,7 @@
 // </editor-fold>
 package org.audiveris.omr.glyph;
 
-import org.audiveris.omr.image.Table;
+import org.audiveris.omr.run.RunOverlap;
 import org.audiveris.omr.util.Predicate;
 
 import org.jgrapht.graph.SimpleGraph;
@@ -548,6 +548,8 @@ public abstract class Glyphs
     //-----------//
     /**
      * Report whether the two provided glyphs intersect.
+     * <p>
+     * The test is performed directly on glyphs run tables, see {@link RunOverlap}.
      *
      * @param one a glyph
      * @param two another glyph
@@ -558,26 +560,14 @@ public abstract class Glyphs
                                      Glyph two,
                                      boolean fat)
     {
-        // Very rough test
-        final Rectangle oneBox = one.getBounds();
-        final Rectangle twoBox = two.getBounds();
-
-        if (fat) {
-            oneBox.grow(1, 1);
-            twoBox.grow(1, 1);
-        }
-
-        Rectangle clip = twoBox.intersection(oneBox);
-
-        if (clip.isEmpty()) {
-            return false;
-        }
-
-        // More precise test
-        Table.UnsignedByte table = new Table.UnsignedByte(clip.width, clip.height);
-        one.fillTable(table, clip.getLocation(), fat);
-
-        return two.intersects(table, clip.getLocation());
+        return RunOverlap.intersect(
+                one.getRunTable(),
+                one.getLeft(),
+                one.getTop(),
+                two.getRunTable(),
+                two.getLeft(),
+                two.getTop(),
+                fat);
     }
 
     //-------------------------//
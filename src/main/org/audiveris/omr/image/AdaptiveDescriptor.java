@@ -83,7 +83,7 @@ public class AdaptiveDescriptor
     @Override
     public PixelFilter getFilter (ByteProcessor source)
     {
-        return new VerticalFilter(source, meanCoeff, stdDevCoeff);
+        return new IntegralFilter(source, meanCoeff, stdDevCoeff);
     }
 
     //
@@ -200,8 +200,8 @@ public abstract class AdaptiveFilter
     //--------------//
     // getThreshold //
     //--------------//
-    private double getThreshold (double mean,
-                                 double stdDev)
+    protected double getThreshold (double mean,
+                                   double stdDev)
     {
         // This is the key formula
         return (MEAN_COEFF * mean) + (STD_DEV_COEFF * stdDev);
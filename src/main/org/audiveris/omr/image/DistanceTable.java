@@ -268,6 +268,17 @@ public interface DistanceTable
             return new Short(table.getView(roi), normalizer);
         }
 
+        /**
+         * Report the underlying row-major buffer of distances.
+         *
+         * @return the buffer of values
+         * @throws UnsupportedOperationException if this table is a view
+         */
+        public short[] getValues ()
+        {
+            return table.getValues();
+        }
+
         @Override
         protected final Table getTable ()
         {
@@ -0,0 +1,525 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                E u c l i d e a n D i s t a n c e                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Class {@code EuclideanDistance} computes the exact Euclidean distance transform of
+ * an image, as a drop-in replacement for a {@link ChamferDistance}.
+ * <p>
+ * The transform is separable (Felzenszwalb and Huttenlocher):
+ * <ol>
+ * <li>A row pass computes, for each pixel, the horizontal distance to the nearest reference pixel
+ * in the same row.</li>
+ * <li>A column pass computes, for each pixel, the lower envelope of the parabolas rooted at the
+ * pixels of the same column, which gives the squared distance to the nearest reference pixel.</li>
+ * </ol>
+ * Rows are processed in parallel in the first pass, columns in the second pass, directly on the
+ * flat buffers of input pixels and of output {@link DistanceTable.Short}.
+ * <p>
+ * Output values are the distances multiplied by the normalizer and rounded, so that a
+ * normalizer of 3 gives the same units as the {@link ChamferDistance#chamfer3} mask.
+ * Pixels with no reference pixel in reach are left as {@link ChamferDistance#VALUE_UNKNOWN}.
+ *
+ * @author Hervé Bitteur
+ */
+@ThreadSafe
+public class EuclideanDistance
+        implements ChamferDistance
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(EuclideanDistance.class);
+
+    /** Minimum number of rows or columns processed by a single task. */
+    private static final int MIN_CHUNK_SIZE = 128;
+
+    /** Horizontal distance when no reference pixel exists in row. */
+    private static final short INFINITE = Short.MAX_VALUE;
+
+    /** Bands by increasing ordinate. */
+    private static final Comparator<Rectangle> byOrdinate = new Comparator<Rectangle>()
+    {
+        @Override
+        public int compare (Rectangle r1,
+                            Rectangle r2)
+        {
+            return Integer.compare(r1.y, r2.y);
+        }
+    };
+
+    /** Factor applied on distance values. */
+    private final int normalizer;
+
+    /**
+     * Creates a new {@code EuclideanDistance} object, with the normalizer of chamfer3.
+     */
+    public EuclideanDistance ()
+    {
+        this(chamfer3[0][2]);
+    }
+
+    /**
+     * Creates a new {@code EuclideanDistance} object.
+     *
+     * @param normalizer factor applied on distance values
+     */
+    public EuclideanDistance (int normalizer)
+    {
+        this.normalizer = normalizer;
+    }
+
+    //---------//
+    // compute //
+    //---------//
+    @Override
+    public DistanceTable compute (boolean[][] input)
+    {
+        final int width = input.length;
+        final int height = input[0].length;
+        final byte[] pixels = new byte[width * height];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[(y * width) + x] = input[x][y] ? (byte) 1 : (byte) 0;
+            }
+        }
+
+        return transform(pixels, width, height, false, null);
+    }
+
+    //---------------//
+    // computeToBack //
+    //---------------//
+    @Override
+    public DistanceTable computeToBack (ByteProcessor input)
+    {
+        return transform(
+                (byte[]) input.getPixels(),
+                input.getWidth(),
+                input.getHeight(),
+                false,
+                null);
+    }
+
+    //---------------//
+    // computeToFore //
+    //---------------//
+    @Override
+    public DistanceTable computeToFore (ByteProcessor input)
+    {
+        return transform(
+                (byte[]) input.getPixels(),
+                input.getWidth(),
+                input.getHeight(),
+                true,
+                null);
+    }
+
+    //---------------//
+    // computeToFore //
+    //---------------//
+    /**
+     * Compute the distance transform to foreground pixels, only within the rows of the
+     * provided bands.
+     * <p>
+     * Bands span the whole image width, only their vertical range is used, and overlapping bands
+     * are merged.
+     * Distances within a band account only for the foreground pixels of this band.
+     * All rows out of the bands are set to {@link ChamferDistance#VALUE_UNKNOWN}.
+     *
+     * @param input the input image, where foreground pixels are taken as reference pixels
+     * @param bands the bands of rows to process
+     * @return the distance transform image
+     */
+    public DistanceTable.Short computeToFore (ByteProcessor input,
+                                              Collection<Rectangle> bands)
+    {
+        return transform(
+                (byte[]) input.getPixels(),
+                input.getWidth(),
+                input.getHeight(),
+                true,
+                bands);
+    }
+
+    //-----------//
+    // transform //
+    //-----------//
+    /**
+     * Compute the distance transform on the provided pixels.
+     *
+     * @param pixels the row-major input pixels
+     * @param width  image width
+     * @param height image height
+     * @param toFore true if reference pixels are the zero pixels, false for the non-zero pixels
+     * @param bands  the bands of rows to process, null for the whole image
+     * @return the distance transform image
+     */
+    private DistanceTable.Short transform (byte[] pixels,
+                                           int width,
+                                           int height,
+                                           boolean toFore,
+                                           Collection<Rectangle> bands)
+    {
+        final DistanceTable.Short table = new DistanceTable.Short(width, height, normalizer);
+        final short[] values = table.getValues();
+
+        if (bands == null) {
+            new Span(pixels, values, width, 0, height, toFore).process();
+        } else {
+            Arrays.fill(values, (short) VALUE_UNKNOWN);
+
+            for (int[] rows : mergeBands(bands, height)) {
+                new Span(pixels, values, width, rows[0], rows[1], toFore).process();
+            }
+        }
+
+        return table;
+    }
+
+    //------------//
+    // mergeBands //
+    //------------//
+    /**
+     * Merge the vertical ranges of the provided bands, within image height.
+     *
+     * @param bands  the bands
+     * @param height image height
+     * @return the sequence of disjoint [start, stop[ row ranges
+     */
+    private static List<int[]> mergeBands (Collection<Rectangle> bands,
+                                           int height)
+    {
+        final List<Rectangle> sorted = new ArrayList<>(bands);
+        Collections.sort(sorted, byOrdinate);
+
+        final List<int[]> ranges = new ArrayList<>();
+        int[] last = null;
+
+        for (Rectangle band : sorted) {
+            final int start = Math.max(0, band.y);
+            final int stop = Math.min(height, band.y + band.height);
+
+            if (start >= stop) {
+                continue;
+            }
+
+            if ((last != null) && (start <= last[1])) {
+                last[1] = Math.max(last[1], stop);
+            } else {
+                ranges.add(last = new int[]{start, stop});
+            }
+        }
+
+        return ranges;
+    }
+
+    //-----------//
+    // runChunks //
+    //-----------//
+    /**
+     * Run the provided chunk processor on consecutive chunks of [0, count[, in parallel
+     * if worthwhile.
+     *
+     * @param count     the number of items to process
+     * @param processor the processor of a chunk
+     */
+    private static void runChunks (int count,
+                                   final ChunkProcessor processor)
+    {
+        final int chunks = OmrExecutors.defaultParallelism.getValue()
+                ? Math.min(OmrExecutors.getNumberOfCpus(), count / MIN_CHUNK_SIZE) : 1;
+
+        if (chunks <= 1) {
+            processor.process(0, count);
+
+            return;
+        }
+
+        final int chunkSize = (count + chunks - 1) / chunks;
+        final List<Callable<Void>> tasks = new ArrayList<>(chunks);
+
+        for (int first = 0; first < count; first += chunkSize) {
+            final int start = first;
+            final int stop = Math.min(count, first + chunkSize);
+            tasks.add(
+                    new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    processor.process(start, stop);
+
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : OmrExecutors.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("EuclideanDistance got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            logger.warn("Exception raised in EuclideanDistance", ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    //----------------//
+    // ChunkProcessor //
+    //----------------//
+    /**
+     * Processing of a chunk of rows or columns.
+     */
+    private interface ChunkProcessor
+    {
+
+        /**
+         * Process the items in [start, stop[.
+         *
+         * @param start first item
+         * @param stop  item past last one
+         */
+        void process (int start,
+                      int stop);
+    }
+
+    //------//
+    // Span //
+    //------//
+    /**
+     * A range of full-width rows, transformed on its own.
+     * <p>
+     * The row pass writes horizontal distances into the output values, which the column pass then
+     * replaces column by column (distances beyond {@code Short.MAX_VALUE - 1} are clamped, they
+     * saturate the output anyway).
+     */
+    private class Span
+    {
+
+        /** Input pixels. */
+        final byte[] pixels;
+
+        /** Output values. */
+        final short[] values;
+
+        /** Image width. */
+        final int width;
+
+        /** First row. */
+        final int yStart;
+
+        /** Row past last one. */
+        final int yStop;
+
+        /** Reference pixels are zero pixels or non-zero pixels. */
+        final boolean toFore;
+
+        Span (byte[] pixels,
+              short[] values,
+              int width,
+              int yStart,
+              int yStop,
+              boolean toFore)
+        {
+            this.pixels = pixels;
+            this.values = values;
+            this.width = width;
+            this.yStart = yStart;
+            this.yStop = yStop;
+            this.toFore = toFore;
+        }
+
+        //---------//
+        // process //
+        //---------//
+        public void process ()
+        {
+            runChunks(
+                    yStop - yStart,
+                    new ChunkProcessor()
+            {
+                @Override
+                public void process (int start,
+                                     int stop)
+                {
+                    processRows(start, stop);
+                }
+            });
+
+            runChunks(
+                    width,
+                    new ChunkProcessor()
+            {
+                @Override
+                public void process (int start,
+                                     int stop)
+                {
+                    processColumns(start, stop);
+                }
+            });
+        }
+
+        //----------------//
+        // processColumns //
+        //----------------//
+        /**
+         * Column pass: lower envelope of the parabolas (y - q)^2 + dx(q)^2.
+         *
+         * @param xStart first column
+         * @param xStop  column past last one
+         */
+        private void processColumns (int xStart,
+                                     int xStop)
+        {
+            final int n = yStop - yStart;
+            final long[] f = new long[n]; // Squared horizontal distance, per row
+            final int[] v = new int[n]; // Rows of parabolas in lower envelope
+            final double[] z = new double[n]; // Left bound of each parabola in envelope
+
+            for (int x = xStart; x < xStop; x++) {
+                // Build lower envelope
+                int k = -1;
+
+                for (int q = 0; q < n; q++) {
+                    final int dx = values[((yStart + q) * width) + x];
+
+                    if (dx == INFINITE) {
+                        continue;
+                    }
+
+                    f[q] = (long) dx * dx;
+
+                    double s = Double.NEGATIVE_INFINITY;
+
+                    while (k >= 0) {
+                        final int p = v[k];
+                        s = ((f[q] + ((long) q * q)) - (f[p] + ((long) p * p))) / (2.0 * (q - p));
+
+                        if (s <= z[k]) {
+                            k--;
+                        } else {
+                            break;
+                        }
+                    }
+
+                    if (k < 0) {
+                        s = Double.NEGATIVE_INFINITY;
+                    }
+
+                    v[++k] = q;
+                    z[k] = s;
+                }
+
+                // Read distances off the envelope
+                if (k < 0) {
+                    for (int q = 0; q < n; q++) {
+                        values[((yStart + q) * width) + x] = (short) VALUE_UNKNOWN;
+                    }
+                } else {
+                    for (int q = 0, j = 0; q < n; q++) {
+                        while ((j < k) && (z[j + 1] < q)) {
+                            j++;
+                        }
+
+                        final long dy = q - v[j];
+                        final double dist = Math.sqrt((dy * dy) + f[v[j]]);
+                        final long val = Math.round(normalizer * dist);
+                        values[((yStart + q) * width) + x] = (short) Math.min(Short.MAX_VALUE, val);
+                    }
+                }
+            }
+        }
+
+        //-------------//
+        // processRows //
+        //-------------//
+        /**
+         * Row pass: horizontal distance to nearest reference pixel in row.
+         *
+         * @param qStart first row, relative to yStart
+         * @param qStop  row past last one, relative to yStart
+         */
+        private void processRows (int qStart,
+                                  int qStop)
+        {
+            for (int q = qStart; q < qStop; q++) {
+                final int offset = (yStart + q) * width;
+                int last = -1; // Abscissa of last reference pixel seen
+
+                // Left to right
+                for (int x = 0; x < width; x++) {
+                    if ((pixels[offset + x] == 0) == toFore) {
+                        last = x;
+                    }
+
+                    values[offset + x] = (last >= 0) ? clamp(x - last) : INFINITE;
+                }
+
+                // Right to left
+                last = -1;
+
+                for (int x = width - 1; x >= 0; x--) {
+                    if ((pixels[offset + x] == 0) == toFore) {
+                        last = x;
+                    }
+
+                    if ((last >= 0) && ((last - x) < values[offset + x])) {
+                        values[offset + x] = clamp(last - x);
+                    }
+                }
+            }
+        }
+
+        //-------//
+        // clamp //
+        //-------//
+        private short clamp (int dx)
+        {
+            return (short) Math.min(INFINITE - 1, dx);
+        }
+    }
+}
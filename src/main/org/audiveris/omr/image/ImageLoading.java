@@ -31,26 +31,37 @@ import de.intarsys.pdf.platform.cwt.rendering.CSPlatformRenderer;
 import de.intarsys.pdf.tools.kernel.PDFGeometryTools;
 import de.intarsys.tools.locator.FileLocator;
 
+import ij.process.ColorProcessor;
+
 import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.util.FileUtil;
+import org.audiveris.omr.util.OmrExecutors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 import javax.media.jai.JAI;
@@ -67,6 +78,7 @@ import javax.media.jai.JAI;
  * <ul>
  * <li>{@link Loader#getImageCount()} to know how many images are available in the input file,</li>
  * <li>{@link Loader#getImage(int)} to return any specific image,</li>
+ * <li>{@link Loader#getGrayImage(int)} to return any specific image, directly as 8-bit gray,</li>
  * <li>{@link Loader#dispose()} to finally release any resources.</li>
  * </ul>
  * </ol>
@@ -76,6 +88,12 @@ import javax.media.jai.JAI;
  * <li><b>ImageIO</b> for all files except PDF.</li>
  * <li><b>JAI</b> if ImageIO failed. Note that JAI can find only one image per file.</li>
  * </ul>
+ * <p>
+ * Gray loading decodes ImageIO images by horizontal bands (source regions), each band being
+ * converted into the final gray image before the next one is decoded, so that a huge color scan is
+ * never fully present in memory.
+ * A {@link Prefetcher} can render the pages of a multi-page PDF one at a time in background,
+ * while the previous page is being processed.
  *
  * @author Hervé Bitteur
  * @author Brenton Partridge
@@ -142,6 +160,111 @@ public abstract class ImageLoading
         return loader;
     }
 
+    //---------------//
+    // getPrefetcher //
+    //---------------//
+    /**
+     * Build a prefetcher on top of a proper loader for the provided image file.
+     *
+     * @param imgPath the provided image path
+     * @return the prefetcher instance or null if failed
+     */
+    public static Prefetcher getPrefetcher (Path imgPath)
+    {
+        final Loader loader = getLoader(imgPath);
+
+        if (loader == null) {
+            return null;
+        }
+
+        return new Prefetcher(loader);
+    }
+
+    //----------//
+    // copyGray //
+    //----------//
+    /**
+     * Convert the provided image (typically a band of the whole image) to gray, using the
+     * same rules as {@code Picture}, and write the result into gray image at ordinate y.
+     * <ul>
+     * <li>A single band is kept as is when gray, otherwise converted via ImageJ.</li>
+     * <li>RGB and RGBA use the maximum value among R, G and B bands.</li>
+     * </ul>
+     *
+     * @param img  the (band) image to convert
+     * @param gray the target gray image, as wide as img
+     * @param y    target ordinate of img top row
+     * @return count of temporary bytes used, or -1 if the image format is not handled (in which
+     *         case nothing is written)
+     */
+    private static long copyGray (BufferedImage img,
+                                     BufferedImage gray,
+                                     int y)
+    {
+        final Raster source = img.getRaster();
+        final WritableRaster target = gray.getRaster();
+        final int width = img.getWidth();
+        final int height = img.getHeight();
+        final int numBands = source.getNumBands();
+        final boolean hasAlpha = img.getColorModel().hasAlpha();
+
+        if (numBands == 1) {
+            if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                final byte[] row = new byte[width];
+
+                for (int r = 0; r < height; r++) {
+                    source.getDataElements(0, r, width, 1, row);
+                    target.setDataElements(0, y + r, width, 1, row);
+                }
+
+                return width;
+            } else {
+                // Binary, indexed or 16-bit gray: via RGB values
+                final byte[] pixels = (byte[]) new ColorProcessor(img).convertToByteProcessor()
+                        .getPixels();
+                target.setDataElements(0, y, width, height, pixels);
+
+                return 5L * width * height; // int RGB + byte gray
+            }
+        }
+
+        if (((numBands == 3) && !hasAlpha) || ((numBands == 4) && hasAlpha)) {
+            final int[] levels = new int[width * numBands];
+            final byte[] row = new byte[width];
+
+            for (int r = 0; r < height; r++) {
+                source.getPixels(0, r, width, 1, levels);
+
+                for (int x = 0, i = 0; x < width; x++, i += numBands) {
+                    row[x] = (byte) Math.max(levels[i], Math.max(levels[i + 1], levels[i + 2]));
+                }
+
+                target.setDataElements(0, y + r, width, 1, row);
+            }
+
+            return ((4L * numBands) + 1) * width;
+        }
+
+        return -1;
+    }
+
+    //--------------//
+    // getByteCount //
+    //--------------//
+    /**
+     * Report the count of bytes used by image data.
+     *
+     * @param img the image at hand
+     * @return the count of bytes of its data buffer
+     */
+    private static long getByteCount (BufferedImage img)
+    {
+        final DataBuffer buffer = img.getRaster().getDataBuffer();
+
+        return ((long) buffer.getSize() * buffer.getNumBanks()
+                        * DataBuffer.getDataTypeSize(buffer.getDataType())) / 8;
+    }
+
     //------------------//
     // getImageIOLoader //
     //------------------//
@@ -277,12 +400,198 @@ public abstract class ImageLoading
         BufferedImage getImage (int id)
                 throws IOException;
 
+        /**
+         * Load the specific image, converted to 8-bit gray (TYPE_BYTE_GRAY) as it is
+         * decoded.
+         * If the image format cannot be converted on the fly, the original image is returned.
+         *
+         * @param id specified image id (its index counted from 1)
+         * @return the image, or null if failed
+         * @throws IOException for any IO error
+         */
+        BufferedImage getGrayImage (int id)
+                throws IOException;
+
         /**
          * Report the count of images available in input file.
          *
          * @return the count of images
          */
         int getImageCount ();
+
+        /**
+         * Report the peak count of bytes of image data, used while loading the last image.
+         *
+         * @return peak bytes for last loaded image
+         */
+        long getPeakBytes ();
+    }
+
+    //------------//
+    // Prefetcher //
+    //------------//
+    /**
+     * Loads the images of an input file one at a time, while the next image is prepared
+     * in background.
+     * <p>
+     * This is meant for multi-page input, like PDF, for which the rendering of page N+1 can overlap
+     * the processing of page N. At most one image is prefetched, and all images are produced
+     * sequentially by the underlying loader, which is kept open until {@link #dispose()}.
+     */
+    public static class Prefetcher
+    {
+
+        /** Underlying loader, used by one thread at a time. */
+        private final Loader loader;
+
+        /** Id of prefetched image, if any. */
+        private int pendingId;
+
+        /** Prefetched image, if any. */
+        private Future<Page> pending;
+
+        /** Peak bytes for last delivered image. */
+        private long peakBytes;
+
+        /**
+         * Create a prefetcher on top of the provided loader.
+         *
+         * @param loader the underlying loader
+         */
+        public Prefetcher (Loader loader)
+        {
+            this.loader = loader;
+        }
+
+        /**
+         * Cancel any pending prefetch and release the underlying loader.
+         */
+        public synchronized void dispose ()
+        {
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+
+            synchronized (loader) {
+                loader.dispose();
+            }
+        }
+
+        /**
+         * Report the gray image for the specified id, and launch prefetch of the next one.
+         * <p>
+         * A prefetched image which does not match the specified id is dropped.
+         * The wait for the image is performed outside of the prefetcher lock, so that concurrent
+         * requests are not serialized behind one image loading.
+         *
+         * @param id     specified image id (counted from 1)
+         * @param nextId id of image likely to be requested next, or 0 for none
+         * @return the image, or null if failed
+         * @throws IOException for any IO error
+         */
+        public BufferedImage getGrayImage (int id,
+                                           int nextId)
+                throws IOException
+        {
+            final Future<Page> future;
+
+            synchronized (this) {
+                if ((pending != null) && (pendingId == id)) {
+                    future = pending;
+                } else {
+                    if (pending != null) {
+                        // Stale prefetch: no interruption, which could break the loader input
+                        pending.cancel(false);
+                    }
+
+                    future = submit(id);
+                }
+
+                pending = null;
+
+                if ((nextId > 0) && (nextId <= loader.getImageCount())) {
+                    pendingId = nextId;
+                    pending = submit(nextId);
+                }
+            }
+
+            try {
+                final Page page = future.get();
+
+                synchronized (this) {
+                    peakBytes = page.peakBytes;
+                }
+
+                return page.image;
+            } catch (InterruptedException ex) {
+                throw new IOException("Image loading got interrupted", ex);
+            } catch (ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+
+                throw new RuntimeException(cause);
+            }
+        }
+
+        /**
+         * Report the count of images available in input file.
+         *
+         * @return the count of images
+         */
+        public int getImageCount ()
+        {
+            return loader.getImageCount();
+        }
+
+        /**
+         * Report the peak count of bytes of image data, used while loading the last image
+         * delivered.
+         *
+         * @return peak bytes for last delivered image
+         */
+        public synchronized long getPeakBytes ()
+        {
+            return peakBytes;
+        }
+
+        private Future<Page> submit (final int id)
+        {
+            return OmrExecutors.getCachedLowExecutor().submit(new Callable<Page>()
+            {
+                @Override
+                public Page call ()
+                        throws Exception
+                {
+                    synchronized (loader) {
+                        final BufferedImage image = loader.getGrayImage(id);
+
+                        return new Page(image, loader.getPeakBytes());
+                    }
+                }
+            });
+        }
+
+        /**
+         * An image, with the peak bytes used to load it.
+         */
+        private static class Page
+        {
+
+            final BufferedImage image;
+
+            final long peakBytes;
+
+            Page (BufferedImage image,
+                  long peakBytes)
+            {
+                this.image = image;
+                this.peakBytes = peakBytes;
+            }
+        }
     }
 
     //-----------//
@@ -296,6 +605,11 @@ public abstract class ImageLoading
                 "DPI",
                 300,
                 "DPI resolution for PDF images");
+
+        private final Constant.Integer maxBandPixels = new Constant.Integer(
+                "Pixels",
+                4_000_000,
+                "Maximum pixel count of a band decoded at once for gray loading");
     }
 
     //----------------//
@@ -308,6 +622,9 @@ public abstract class ImageLoading
         /** Count of images available in input file. */
         protected final int imageCount;
 
+        /** Peak bytes used when loading last image. */
+        protected long peakBytes;
+
         AbstractLoader (int imageCount)
         {
             this.imageCount = imageCount;
@@ -318,12 +635,52 @@ public abstract class ImageLoading
         {
         }
 
+        /**
+         * Default implementation, which converts the whole image once loaded.
+         */
+        @Override
+        public BufferedImage getGrayImage (int id)
+                throws IOException
+        {
+            final BufferedImage img = getImage(id);
+
+            if (img == null) {
+                return null;
+            }
+
+            peakBytes = getByteCount(img);
+
+            if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                return img;
+            }
+
+            final BufferedImage gray = new BufferedImage(
+                    img.getWidth(),
+                    img.getHeight(),
+                    BufferedImage.TYPE_BYTE_GRAY);
+            final long tempBytes = copyGray(img, gray, 0);
+
+            if (tempBytes < 0) {
+                return img;
+            }
+
+            peakBytes += (getByteCount(gray) + tempBytes);
+
+            return gray;
+        }
+
         @Override
         public int getImageCount ()
         {
             return imageCount;
         }
 
+        @Override
+        public long getPeakBytes ()
+        {
+            return peakBytes;
+        }
+
         protected void checkId (int id)
         {
             if ((id < 1) || (id > imageCount)) {
@@ -361,9 +718,65 @@ public abstract class ImageLoading
             checkId(id);
 
             BufferedImage img = reader.read(id - 1);
+            peakBytes = getByteCount(img);
 
             return img;
         }
+
+        /**
+         * Decode the image by horizontal bands, each converted to gray before the next is
+         * decoded.
+         * <p>
+         * Only stripped or tiled formats (such as TIFF) are decoded by bands, whose height is a
+         * multiple of the tile height, since each band can then be decoded independently.
+         * A sequential format (such as JPEG or PNG) is decoded at once, because each band read
+         * would decode all the preceding rows again.
+         */
+        @Override
+        public BufferedImage getGrayImage (int id)
+                throws IOException
+        {
+            checkId(id);
+
+            final int index = id - 1;
+            final int width = reader.getWidth(index);
+            final int height = reader.getHeight(index);
+            final int tileHeight = Math.max(1, Math.min(height, reader.getTileHeight(index)));
+            final int maxRows = Math.max(1, constants.maxBandPixels.getValue() / width);
+            final int bandHeight = Math.max(tileHeight, (maxRows / tileHeight) * tileHeight);
+
+            if (bandHeight >= height) {
+                // Sequential format, or image small enough
+                return super.getGrayImage(id);
+            }
+
+            final BufferedImage gray = new BufferedImage(
+                    width,
+                    height,
+                    BufferedImage.TYPE_BYTE_GRAY);
+            final ImageReadParam param = reader.getDefaultReadParam();
+            long bandBytes = 0;
+
+            for (int y = 0; y < height; y += bandHeight) {
+                final int h = Math.min(bandHeight, height - y);
+                param.setSourceRegion(new Rectangle(0, y, width, h));
+
+                final BufferedImage band = reader.read(index, param);
+                final long tempBytes = copyGray(band, gray, y);
+
+                if (tempBytes < 0) {
+                    logger.info("No gray loading for {}", band);
+
+                    return getImage(id);
+                }
+
+                bandBytes = Math.max(bandBytes, getByteCount(band) + tempBytes);
+            }
+
+            peakBytes = getByteCount(gray) + bandBytes;
+
+            return gray;
+        }
     }
 
     //------------//
@@ -392,6 +805,16 @@ public abstract class ImageLoading
             }
         }
 
+        /**
+         * Page is directly rendered as gray.
+         */
+        @Override
+        public BufferedImage getGrayImage (int id)
+                throws IOException
+        {
+            return getImage(id);
+        }
+
         @Override
         public BufferedImage getImage (int id)
                 throws IOException
@@ -463,6 +886,8 @@ public abstract class ImageLoading
                 renderer.process(content, page.getResources());
             }
 
+            peakBytes = getByteCount(image);
+
             return image;
         }
     }
@@ -483,6 +908,7 @@ public abstract class ImageLoading
         {
             super(1); // JAI can return just one image
             this.image = image;
+            peakBytes = getByteCount(image);
         }
 
         @Override
@@ -0,0 +1,527 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   I n t e g r a l F i l t e r                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Class {@code IntegralFilter} is a specialization of {@link AdaptiveFilter} meant for
+ * the binarization of a whole image, directly into a vertical {@link RunTable}.
+ * <p>
+ * The image is split into horizontal bands, processed in parallel.
+ * For each band, the summed-area tables of pixel values and of squared pixel values are built
+ * in a single pass over the {@link ByteProcessor} backing array.
+ * Only the (2 + 2 * HALF_WINDOW_SIZE) last rows of these tables are kept, in a circular buffer.
+ * <p>
+ * Foreground pixels are accumulated as vertical runs per column within each band, and the runs
+ * of all bands are finally stitched together column by column, without any intermediate image.
+ * <p>
+ * Mean, standard deviation and threshold are computed with the very same arithmetic as
+ * {@link VerticalFilter}, hence both filters provide identical results.
+ *
+ * @author Hervé Bitteur
+ */
+@ThreadSafe
+public class IntegralFilter
+        extends AdaptiveFilter
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(IntegralFilter.class);
+
+    /**
+     * Create an integral filter on a raw pixel source.
+     *
+     * @param source      the underlying source of raw pixels
+     * @param meanCoeff   the coefficient for mean value
+     * @param stdDevCoeff the coefficient for standard deviation value
+     */
+    public IntegralFilter (ByteProcessor source,
+                           double meanCoeff,
+                           double stdDevCoeff)
+    {
+        super(source, meanCoeff, stdDevCoeff);
+    }
+
+    //---------------//
+    // filteredImage //
+    //---------------//
+    @Override
+    public ByteProcessor filteredImage ()
+    {
+        return filteredTable().getBuffer();
+    }
+
+    //---------------//
+    // filteredTable //
+    //---------------//
+    /**
+     * Run the filter on the whole source image and report the resulting vertical runs.
+     *
+     * @return the binary run table, with vertical orientation
+     */
+    public RunTable filteredTable ()
+    {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final byte[] pixels = (byte[]) source.getPixels();
+        final List<Band> bands = new ArrayList<>();
+        final int bandHeight = getBandHeight(height);
+
+        for (int y = 0; y < height; y += bandHeight) {
+            bands.add(new Band(pixels, width, height, y, Math.min(height, y + bandHeight)));
+        }
+
+        if ((bands.size() > 1) && OmrExecutors.defaultParallelism.getValue()) {
+            processInParallel(bands);
+        } else {
+            for (Band band : bands) {
+                band.process();
+            }
+        }
+
+        final RunTable table = new RunTable(Orientation.VERTICAL, width, height);
+
+        for (int x = 0; x < width; x++) {
+            final int[] rle = stitch(bands, x);
+
+            if (rle != null) {
+                table.setSequence(x, rle);
+            }
+        }
+
+        return table;
+    }
+
+    //------------//
+    // getContext //
+    //------------//
+    @Override
+    public Context getContext (int x,
+                               int y)
+    {
+        final double[] stats = getStatistics(x, y);
+        final double mean = stats[0];
+        final double stdDev = stats[1];
+
+        return new AdaptiveContext(mean, stdDev, getThreshold(mean, stdDev));
+    }
+
+    //--------//
+    // isFore //
+    //--------//
+    @Override
+    public boolean isFore (int x,
+                           int y)
+    {
+        final double[] stats = getStatistics(x, y);
+
+        return source.get(x, y) <= getThreshold(stats[0], stats[1]);
+    }
+
+    //---------------//
+    // getBandHeight //
+    //---------------//
+    /**
+     * Choose the height of bands, so that all processors can be kept busy while each band
+     * remains large enough with respect to the rows needed around it.
+     *
+     * @param height image height
+     * @return the height of a band
+     */
+    private int getBandHeight (int height)
+    {
+        final int cpus = OmrExecutors.getNumberOfCpus();
+        final int ideal = (height + (2 * cpus) - 1) / (2 * cpus);
+
+        return Math.max(constants.minBandHeight.getValue(), ideal);
+    }
+
+    //---------------//
+    // getStatistics //
+    //---------------//
+    /**
+     * Compute mean and standard deviation of pixel values in the window around (x,y).
+     * This is meant for isolated locations, whole image processing uses {@link Band} instead.
+     *
+     * @param x abscissa value
+     * @param y ordinate value
+     * @return mean and standard deviation
+     */
+    private double[] getStatistics (int x,
+                                    int y)
+    {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final byte[] pixels = (byte[]) source.getPixels();
+
+        final int x1 = Math.max(-1, x - HALF_WINDOW_SIZE - 1);
+        final int x2 = Math.min(width - 1, x + HALF_WINDOW_SIZE);
+        final int y1 = Math.max(-1, y - HALF_WINDOW_SIZE - 1);
+        final int y2 = Math.min(height - 1, y + HALF_WINDOW_SIZE);
+
+        long sum = 0;
+        long sqrSum = 0;
+
+        for (int iy = y1 + 1; iy <= y2; iy++) {
+            for (int i = (iy * width) + x1 + 1, iBreak = (iy * width) + x2; i <= iBreak; i++) {
+                final int pix = pixels[i] & 0xff;
+                sum += pix;
+                sqrSum += (pix * pix);
+            }
+        }
+
+        final int area = (y2 - y1) * (x2 - x1);
+        final double mean = (double) sum / area;
+        final double sqrMean = (double) sqrSum / area;
+        final double var = Math.abs(sqrMean - (mean * mean));
+
+        return new double[]{mean, Math.sqrt(var)};
+    }
+
+    //-------------------//
+    // processInParallel //
+    //-------------------//
+    private void processInParallel (List<Band> bands)
+    {
+        final List<Callable<Void>> tasks = new ArrayList<>(bands.size());
+
+        for (final Band band : bands) {
+            tasks.add(
+                    new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    band.process();
+
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : OmrExecutors.getHighExecutor().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("IntegralFilter got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            logger.warn("Exception raised in IntegralFilter", ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    //--------//
+    // stitch //
+    //--------//
+    /**
+     * Stitch the runs found by each band for the provided column, merging the runs
+     * that cross band borders, and encode them as a run sequence.
+     *
+     * @param bands the processed bands, top down
+     * @param x     the column index
+     * @return the sequence cells, or null if column contains no foreground pixel
+     */
+    private static int[] stitch (List<Band> bands,
+                                 int x)
+    {
+        int total = 0;
+
+        for (Band band : bands) {
+            total += band.counts[x];
+        }
+
+        if (total == 0) {
+            return null;
+        }
+
+        final int[] rle = new int[(2 * total) + 1];
+        int cursor = 0;
+        int lastStop = 0; // Ordinate past the last encoded run
+        int start = -1; // Start of pending run, if any
+        int stop = 0; // Ordinate past the pending run
+
+        for (Band band : bands) {
+            final int[] runs = band.runs[x];
+
+            for (int i = 0, iBreak = 2 * band.counts[x]; i < iBreak; i += 2) {
+                if ((start != -1) && (runs[i] == stop)) {
+                    stop += runs[i + 1]; // Run continued from previous band
+
+                    continue;
+                }
+
+                if (start != -1) {
+                    if (cursor == 0) {
+                        if (start != 0) {
+                            rle[cursor++] = 0;
+                            rle[cursor++] = start;
+                        }
+                    } else {
+                        rle[cursor++] = start - lastStop;
+                    }
+
+                    rle[cursor++] = stop - start;
+                    lastStop = stop;
+                }
+
+                start = runs[i];
+                stop = start + runs[i + 1];
+            }
+        }
+
+        // Pending run
+        if (cursor == 0) {
+            if (start != 0) {
+                rle[cursor++] = 0;
+                rle[cursor++] = start;
+            }
+        } else {
+            rle[cursor++] = start - lastStop;
+        }
+
+        rle[cursor++] = stop - start;
+
+        return Arrays.copyOf(rle, cursor);
+    }
+
+    //------//
+    // Band //
+    //------//
+    /**
+     * A horizontal band of image rows, processed as a whole by one task.
+     * <p>
+     * Row 'y' of the summed-area tables contains, for each abscissa x, the sum of values of all
+     * pixels located in [0..x-1] horizontally and [r0..y] vertically, where r0 is the first image
+     * row needed by the band. Such offset has no impact on window integrals.
+     */
+    private class Band
+    {
+
+        /** Source pixels. */
+        private final byte[] pixels;
+
+        /** Image width. */
+        private final int width;
+
+        /** Image height. */
+        private final int height;
+
+        /** First row of the band. */
+        private final int yStart;
+
+        /** Row past the band. */
+        private final int yStop;
+
+        /** First image row needed for integrals. */
+        private final int r0;
+
+        /** Number of rows kept in circular buffers. */
+        private final int slots;
+
+        /** Circular buffer of integrals of plain values. */
+        private final long[][] sums;
+
+        /** Circular buffer of integrals of squared values. */
+        private final long[][] sqrSums;
+
+        /** For each column, sequence of (start, length) of foreground runs. */
+        final int[][] runs;
+
+        /** For each column, number of runs. */
+        final int[] counts;
+
+        Band (byte[] pixels,
+              int width,
+              int height,
+              int yStart,
+              int yStop)
+        {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.yStart = yStart;
+            this.yStop = yStop;
+
+            r0 = Math.max(0, yStart - HALF_WINDOW_SIZE);
+            slots = 2 + (2 * HALF_WINDOW_SIZE);
+            sums = new long[slots][];
+            sqrSums = new long[slots][];
+            runs = new int[width][];
+            counts = new int[width];
+        }
+
+        /**
+         * Binarize all band rows, and record foreground runs.
+         */
+        public void process ()
+        {
+            for (int i = 0; i < slots; i++) {
+                sums[i] = new long[width + 1];
+                sqrSums[i] = new long[width + 1];
+            }
+
+            final int[] runStarts = new int[width];
+            Arrays.fill(runStarts, -1);
+
+            int lastRow = r0 - 1; // Last integral row populated, starting with the zero row
+
+            for (int y = yStart; y < yStop; y++) {
+                final int y1 = Math.max(-1, y - HALF_WINDOW_SIZE - 1);
+                final int y2 = Math.min(height - 1, y + HALF_WINDOW_SIZE);
+
+                while (lastRow < y2) {
+                    populateRow(++lastRow);
+                }
+
+                final long[] sumA = sums[slot(y1)];
+                final long[] sumC = sums[slot(y2)];
+                final long[] sqrA = sqrSums[slot(y1)];
+                final long[] sqrC = sqrSums[slot(y2)];
+                final int dy = y2 - y1;
+                final int offset = y * width;
+
+                for (int x = 0; x < width; x++) {
+                    final int i1 = Math.max(0, x - HALF_WINDOW_SIZE);
+                    final int i2 = Math.min(width, x + HALF_WINDOW_SIZE + 1);
+                    final int area = dy * (i2 - i1);
+
+                    final double sum = (sumA[i1] + sumC[i2]) - sumA[i2] - sumC[i1];
+                    final double sqrSum = (sqrA[i1] + sqrC[i2]) - sqrA[i2] - sqrC[i1];
+                    final double mean = sum / area;
+                    final double sqrMean = sqrSum / area;
+                    final double stdDev = Math.sqrt(Math.abs(sqrMean - (mean * mean)));
+                    final double threshold = (MEAN_COEFF * mean) + (STD_DEV_COEFF * stdDev);
+
+                    if ((pixels[offset + x] & 0xff) <= threshold) {
+                        if (runStarts[x] == -1) {
+                            runStarts[x] = y;
+                        }
+                    } else if (runStarts[x] != -1) {
+                        addRun(x, runStarts[x], y);
+                        runStarts[x] = -1;
+                    }
+                }
+            }
+
+            // Close runs still open at bottom of band
+            for (int x = 0; x < width; x++) {
+                if (runStarts[x] != -1) {
+                    addRun(x, runStarts[x], yStop);
+                }
+            }
+
+            // Release integrals
+            Arrays.fill(sums, null);
+            Arrays.fill(sqrSums, null);
+        }
+
+        private void addRun (int x,
+                             int start,
+                             int stop)
+        {
+            int[] seq = runs[x];
+            final int count = counts[x];
+
+            if (seq == null) {
+                seq = runs[x] = new int[8];
+            } else if (seq.length == (2 * count)) {
+                seq = runs[x] = Arrays.copyOf(seq, 4 * count);
+            }
+
+            seq[2 * count] = start;
+            seq[(2 * count) + 1] = stop - start;
+            counts[x] = count + 1;
+        }
+
+        /**
+         * Populate the integrals of row y, building on the integrals of row y-1.
+         *
+         * @param y the row to populate
+         */
+        private void populateRow (int y)
+        {
+            final long[] sum = sums[slot(y)];
+            final long[] sqr = sqrSums[slot(y)];
+            final long[] prevSum = sums[slot(y - 1)];
+            final long[] prevSqr = sqrSums[slot(y - 1)];
+            final int offset = y * width;
+            long rowSum = 0;
+            long rowSqr = 0;
+
+            for (int x = 0; x < width; x++) {
+                final int pix = pixels[offset + x] & 0xff;
+                rowSum += pix;
+                rowSqr += (pix * pix);
+                sum[x + 1] = prevSum[x + 1] + rowSum;
+                sqr[x + 1] = prevSqr[x + 1] + rowSqr;
+            }
+        }
+
+        /**
+         * Report the circular buffer slot for integral row y.
+         *
+         * @param y integral row, not lower than r0 - 1
+         * @return index in circular buffers
+         */
+        private int slot (int y)
+        {
+            return (y - r0 + 1) % slots;
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer minBandHeight = new Constant.Integer(
+                "Pixels",
+                256,
+                "Minimum height of a band of rows binarized by a single task");
+    }
+}
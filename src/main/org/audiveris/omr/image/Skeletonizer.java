@@ -0,0 +1,383 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                     S k e l e t o n i z e r                                    //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Class {@code Skeletonizer} builds the skeleton of a binary image, restricted to a
+ * collection of regions of interest.
+ * <p>
+ * The image is split into square tiles, and only the tiles that intersect a region are thinned,
+ * in parallel.
+ * Each tile is thinned by ImageJ {@link ByteProcessor#skeletonize()} on a private copy of the
+ * source pixels, enlarged by a halo on every side.
+ * Since every thinning pass decides on a pixel from its 3x3 neighborhood only, the effect of the
+ * artificial tile border travels inward by at most one pixel per pass.
+ * Hence, as long as no stroke is thicker than the halo, the tile core is thinned exactly as in a
+ * thinning of the whole image, and tiles can be juxtaposed with no seam.
+ * <p>
+ * Only the pixels of the regions are written in the resulting image, all other pixels are set
+ * to background.
+ *
+ * @author Hervé Bitteur
+ */
+public class Skeletonizer
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(Skeletonizer.class);
+
+    /** Value for background pixels. */
+    private static final byte BACKGROUND = (byte) 255;
+
+    /** The binary source, foreground is 0. */
+    private final ByteProcessor source;
+
+    /** Total number of region pixels thinned by last run. */
+    private long thinnedCount;
+
+    /** Total number of foreground pixels removed from regions by last run. */
+    private long removedCount;
+
+    /** Duration of last run, in nanoseconds. */
+    private long duration;
+
+    /**
+     * Creates a new {@code Skeletonizer} object.
+     *
+     * @param source the binary source image, left unchanged
+     */
+    public Skeletonizer (ByteProcessor source)
+    {
+        this.source = source;
+    }
+
+    //-------------//
+    // skeletonize //
+    //-------------//
+    /**
+     * Thin the source image within the provided regions, using parallel tiles when
+     * parallelism is allowed.
+     *
+     * @param regions the regions of interest, perhaps overlapping
+     * @param halo    margin added around each tile, in pixels
+     * @return the skeleton image, with background outside the regions
+     */
+    public ByteProcessor skeletonize (Collection<Rectangle> regions,
+                                      int halo)
+    {
+        return skeletonize(regions, halo, OmrExecutors.defaultParallelism.getValue());
+    }
+
+    //-------------//
+    // skeletonize //
+    //-------------//
+    /**
+     * Thin the source image within the provided regions, with an explicit choice between
+     * parallel and sequential processing of tiles.
+     * <p>
+     * Both processings result in the same image.
+     *
+     * @param regions  the regions of interest, perhaps overlapping
+     * @param halo     margin added around each tile, in pixels
+     * @param parallel true for processing tiles in parallel
+     * @return the skeleton image, with background outside the regions
+     */
+    public ByteProcessor skeletonize (Collection<Rectangle> regions,
+                                      int halo,
+                                      boolean parallel)
+    {
+        final long start = System.nanoTime();
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final byte[] target = new byte[width * height];
+        Arrays.fill(target, BACKGROUND);
+
+        final List<Tile> tiles = getTiles(regions, halo);
+
+        if (parallel && (tiles.size() > 1)) {
+            processInParallel(tiles, target);
+        } else {
+            for (Tile tile : tiles) {
+                tile.process(target);
+            }
+        }
+
+        thinnedCount = 0;
+        removedCount = 0;
+
+        for (Tile tile : tiles) {
+            thinnedCount += tile.thinned;
+            removedCount += tile.removed;
+        }
+
+        duration = System.nanoTime() - start;
+
+        logger.debug(
+                "Skeleton {} tiles, {} pixels thinned, {} removed, {} ms, {} pixels/s",
+                tiles.size(),
+                thinnedCount,
+                removedCount,
+                duration / 1_000_000,
+                getThinningRate());
+
+        return new ByteProcessor(width, height, target);
+    }
+
+    //-----------------//
+    // getRemovedCount //
+    //-----------------//
+    /**
+     * Report the number of foreground pixels removed from regions by last run.
+     *
+     * @return the count of removed pixels
+     */
+    public long getRemovedCount ()
+    {
+        return removedCount;
+    }
+
+    //-----------------//
+    // getThinnedCount //
+    //-----------------//
+    /**
+     * Report the number of region pixels processed by last run.
+     *
+     * @return the count of thinned pixels, overlapping regions being counted once
+     */
+    public long getThinnedCount ()
+    {
+        return thinnedCount;
+    }
+
+    //-----------------//
+    // getThinningRate //
+    //-----------------//
+    /**
+     * Report the throughput of last run.
+     *
+     * @return the number of pixels thinned per second
+     */
+    public long getThinningRate ()
+    {
+        return (duration > 0) ? ((thinnedCount * 1_000_000_000L) / duration) : 0;
+    }
+
+    //----------//
+    // getTiles //
+    //----------//
+    /**
+     * Split the image into tiles and keep those which intersect at least one region.
+     *
+     * @param regions the regions of interest
+     * @param halo    margin around each tile
+     * @return the tiles to process
+     */
+    private List<Tile> getTiles (Collection<Rectangle> regions,
+                                 int halo)
+    {
+        final Rectangle page = new Rectangle(source.getWidth(), source.getHeight());
+        final int tileSize = constants.tileSize.getValue();
+        final List<Tile> tiles = new ArrayList<>();
+
+        for (int y = 0; y < page.height; y += tileSize) {
+            for (int x = 0; x < page.width; x += tileSize) {
+                final Rectangle core = new Rectangle(x, y, tileSize, tileSize).intersection(page);
+                final List<Rectangle> clips = new ArrayList<>();
+
+                for (Rectangle region : regions) {
+                    final Rectangle clip = region.intersection(core);
+
+                    if (!clip.isEmpty()) {
+                        clips.add(clip);
+                    }
+                }
+
+                if (!clips.isEmpty()) {
+                    final Rectangle outer = new Rectangle(core);
+                    outer.grow(halo, halo);
+                    tiles.add(new Tile(core, outer.intersection(page), clips));
+                }
+            }
+        }
+
+        return tiles;
+    }
+
+    //-------------------//
+    // processInParallel //
+    //-------------------//
+    private void processInParallel (List<Tile> tiles,
+                                    final byte[] target)
+    {
+        final List<Callable<Void>> tasks = new ArrayList<>(tiles.size());
+
+        for (final Tile tile : tiles) {
+            tasks.add(
+                    new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    tile.process(target);
+
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : OmrExecutors.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("Skeletonizer got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            logger.warn("Exception raised in Skeletonizer", ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    //------//
+    // Tile //
+    //------//
+    /**
+     * A square portion of the image, thinned on its own.
+     */
+    private class Tile
+    {
+
+        /** Pixels written by this tile. */
+        final Rectangle core;
+
+        /** Pixels thinned by this tile: core plus halo, within image. */
+        final Rectangle outer;
+
+        /** Intersections of core with regions. */
+        final List<Rectangle> clips;
+
+        /** Number of region pixels written. */
+        int thinned;
+
+        /** Number of foreground pixels removed from regions. */
+        int removed;
+
+        Tile (Rectangle core,
+              Rectangle outer,
+              List<Rectangle> clips)
+        {
+            this.core = core;
+            this.outer = outer;
+            this.clips = clips;
+        }
+
+        //---------//
+        // process //
+        //---------//
+        /**
+         * Thin the tile and copy the region pixels of its core into target.
+         * Tiles have disjoint cores, so they can write concurrently into target.
+         *
+         * @param target the pixels of the whole skeleton image
+         */
+        public void process (byte[] target)
+        {
+            final int width = source.getWidth();
+            final byte[] pixels = (byte[]) source.getPixels();
+            final byte[] local = new byte[outer.width * outer.height];
+
+            for (int y = 0; y < outer.height; y++) {
+                System.arraycopy(
+                        pixels,
+                        ((outer.y + y) * width) + outer.x,
+                        local,
+                        y * outer.width,
+                        outer.width);
+            }
+
+            final ByteProcessor buffer = new ByteProcessor(outer.width, outer.height, local);
+            buffer.skeletonize();
+
+            final byte[] thin = (byte[]) buffer.getPixels();
+            final boolean[] done = new boolean[core.width];
+
+            for (int y = core.y, yBreak = core.y + core.height; y < yBreak; y++) {
+                Arrays.fill(done, false);
+
+                for (Rectangle clip : clips) {
+                    if ((y < clip.y) || (y >= (clip.y + clip.height))) {
+                        continue;
+                    }
+
+                    for (int x = clip.x, xBreak = clip.x + clip.width; x < xBreak; x++) {
+                        if (!done[x - core.x]) {
+                            done[x - core.x] = true;
+
+                            final int index = (y * width) + x;
+                            final byte val = thin[((y - outer.y) * outer.width) + (x - outer.x)];
+                            target[index] = val;
+                            thinned++;
+
+                            if ((pixels[index] == 0) && (val != 0)) {
+                                removed++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer tileSize = new Constant.Integer(
+                "Pixels",
+                512,
+                "Side of a square tile of image thinned by a single task");
+    }
+}
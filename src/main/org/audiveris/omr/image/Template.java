@@ -638,6 +638,23 @@ public class Template
         return symBox;
     }
 
+    //------------//
+    // getWeights //
+    //------------//
+    /**
+     * (package private) Report the current weights of key points.
+     *
+     * @return weights for foreground, exterior background and hole key points, in that order
+     */
+    static double[] getWeights ()
+    {
+        return new double[]{
+            constants.foreWeight.getValue(),
+            constants.backWeight.getValue(),
+            constants.holeWeight.getValue()
+        };
+    }
+
     //----------//
     // getWidth //
     //----------//
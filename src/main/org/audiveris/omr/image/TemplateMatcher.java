@@ -0,0 +1,441 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                  T e m p l a t e M a t c h e r                                 //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.image.Anchored.Anchor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Point;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class {@code TemplateMatcher} evaluates templates on a given distance table, using
+ * a compiled form of each template.
+ * <p>
+ * A template is compiled into flat primitive arrays: for each key point, its offset into the
+ * row-major buffer of distance table, and its kind (foreground, background or hole) which gives
+ * its weight.
+ * When the template box lies entirely within the table, which is the general case, the
+ * evaluation is a plain loop on these arrays, with no bounds check.
+ * <p>
+ * Evaluations can be batched on a whole sequence of locations, typically all the abscissae of a
+ * staff line.
+ * <p>
+ * Results are identical to those of {@link Template#evaluate}, since key points are processed in
+ * the same order with the same arithmetic.
+ * <p>
+ * Key point weights are read once, when the matcher is created.
+ * <p>
+ * A matcher is meant to be used by one thread at a time.
+ *
+ * @author Hervé Bitteur
+ */
+public class TemplateMatcher
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateMatcher.class);
+
+    /** Key point kind for expected foreground. */
+    private static final byte FORE = 0;
+
+    /** Key point kind for expected exterior background. */
+    private static final byte BACK = 1;
+
+    /** Key point kind for expected hole. */
+    private static final byte HOLE = 2;
+
+    /** The distance table to read. */
+    private final DistanceTable distances;
+
+    /** Distance table width. */
+    private final int tableWidth;
+
+    /** Distance table height. */
+    private final int tableHeight;
+
+    /** Underlying buffer of distances, if directly accessible. */
+    private final short[] data;
+
+    /** Weights for foreground, exterior background and hole key points. */
+    private final double[] weights = Template.getWeights();
+
+    /** Compiled templates so far. */
+    private final Map<Template, Compiled> compiledMap = new IdentityHashMap<>();
+
+    /** Number of evaluations, per shape. */
+    private final int[] evaluations = new int[Shape.values().length];
+
+    /**
+     * Creates a new {@code TemplateMatcher} object.
+     *
+     * @param distances the distance table to read
+     */
+    public TemplateMatcher (DistanceTable distances)
+    {
+        this.distances = distances;
+
+        tableWidth = distances.getWidth();
+        tableHeight = distances.getHeight();
+        data = getData(distances);
+    }
+
+    //----------//
+    // evaluate //
+    //----------//
+    /**
+     * Evaluate the template at location (x,y).
+     *
+     * @param template the template to evaluate
+     * @param x        location abscissa
+     * @param y        location ordinate
+     * @param anchor   the anchor kind to use for (x,y), null for upper left
+     * @return the weighted average distance computed on all key positions
+     * @see Template#evaluate(int, int, Anchor, DistanceTable)
+     */
+    public double evaluate (Template template,
+                            int x,
+                            int y,
+                            Anchor anchor)
+    {
+        evaluations[template.getShape().ordinal()]++;
+
+        if (data == null) {
+            // No direct access to distances, use the template itself
+            return template.evaluate(x, y, anchor, distances);
+        }
+
+        final Point offset = (anchor != null) ? template.getOffset(anchor) : null;
+        final int ulx = (offset != null) ? (x - offset.x) : x;
+        final int uly = (offset != null) ? (y - offset.y) : y;
+
+        return evalAt(getCompiled(template), ulx, uly);
+    }
+
+    //----------//
+    // evaluate //
+    //----------//
+    /**
+     * Evaluate the template on a whole sequence of locations.
+     *
+     * @param template the template to evaluate
+     * @param anchor   the anchor kind to use for locations, null for upper left
+     * @param xs       locations abscissae
+     * @param ys       locations ordinates
+     * @param wanted   if not null, tells which locations are to be evaluated
+     * @param results  (output) the distances, left unchanged for locations not wanted
+     */
+    public void evaluate (Template template,
+                          Anchor anchor,
+                          int[] xs,
+                          int[] ys,
+                          boolean[] wanted,
+                          double[] results)
+    {
+        final Shape shape = template.getShape();
+        final int count = xs.length;
+
+        if (data == null) {
+            // No direct access to distances, use the template itself
+            for (int i = 0; i < count; i++) {
+                if ((wanted == null) || wanted[i]) {
+                    results[i] = template.evaluate(xs[i], ys[i], anchor, distances);
+                    evaluations[shape.ordinal()]++;
+                }
+            }
+
+            return;
+        }
+
+        final Compiled compiled = getCompiled(template);
+        final Point offset = (anchor != null) ? template.getOffset(anchor) : null;
+
+        if ((anchor != null) && (offset == null)) {
+            logger.error("No {} anchor defined for {} template", anchor, shape);
+        }
+
+        final int dx = (offset != null) ? offset.x : 0;
+        final int dy = (offset != null) ? offset.y : 0;
+
+        for (int i = 0; i < count; i++) {
+            if ((wanted != null) && !wanted[i]) {
+                continue;
+            }
+
+            results[i] = evalAt(compiled, xs[i] - dx, ys[i] - dy);
+        }
+
+        if (wanted == null) {
+            evaluations[shape.ordinal()] += count;
+        } else {
+            for (boolean b : wanted) {
+                if (b) {
+                    evaluations[shape.ordinal()]++;
+                }
+            }
+        }
+    }
+
+    //--------------------//
+    // getEvaluationCount //
+    //--------------------//
+    /**
+     * Report the number of evaluations performed so far for the provided shape.
+     *
+     * @param shape the template shape
+     * @return the count of evaluations
+     */
+    public int getEvaluationCount (Shape shape)
+    {
+        return evaluations[shape.ordinal()];
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public String toString ()
+    {
+        StringBuilder sb = new StringBuilder("{TemplateMatcher");
+
+        for (Shape shape : Shape.values()) {
+            final int count = evaluations[shape.ordinal()];
+
+            if (count != 0) {
+                sb.append(" ").append(shape).append(":").append(count);
+            }
+        }
+
+        sb.append("}");
+
+        return sb.toString();
+    }
+
+    //--------//
+    // evalAt //
+    //--------//
+    /**
+     * Evaluation for a template upper left corner at (ulx, uly).
+     */
+    private double evalAt (Compiled compiled,
+                           int ulx,
+                           int uly)
+    {
+        // Check that no key point lies out of table
+        if ((ulx >= -compiled.xMin) && (ulx < (tableWidth - compiled.xMax))
+                    && (uly >= -compiled.yMin) && (uly < (tableHeight - compiled.yMax))) {
+            return evalInside(compiled, (uly * tableWidth) + ulx);
+        } else {
+            return evalBorder(compiled, ulx, uly);
+        }
+    }
+
+    //------------//
+    // evalBorder //
+    //------------//
+    /**
+     * Evaluation for a location where some key points may lie outside the table.
+     */
+    private double evalBorder (Compiled compiled,
+                               int ulx,
+                               int uly)
+    {
+        final int[] xs = compiled.xs;
+        final int[] ys = compiled.ys;
+        final byte[] kinds = compiled.kinds;
+        double total = 0; // Sum of weighted distances
+        double sum = 0; // Sum of weights
+
+        for (int k = 0, kBreak = kinds.length; k < kBreak; k++) {
+            final int nx = ulx + xs[k];
+            final int ny = uly + ys[k];
+
+            // Ignore tested point if located out of image
+            if ((nx >= 0) && (nx < tableWidth) && (ny >= 0) && (ny < tableHeight)) {
+                final int actualDist = data[(ny * tableWidth) + nx];
+
+                // Ignore neutralized locations in distance table
+                if (actualDist != ChamferDistance.VALUE_UNKNOWN) {
+                    final byte kind = kinds[k];
+                    final double weight = weights[kind];
+
+                    if ((actualDist == 0) != (kind == FORE)) {
+                        total += weight;
+                    }
+
+                    sum += weight;
+                }
+            }
+        }
+
+        if (sum == 0) {
+            return Double.MAX_VALUE; // Safer
+        }
+
+        return total / sum;
+    }
+
+    //------------//
+    // evalInside //
+    //------------//
+    /**
+     * Evaluation for a location where all key points lie within the table.
+     */
+    private double evalInside (Compiled compiled,
+                               int base)
+    {
+        final int[] offsets = compiled.offsets;
+        final byte[] kinds = compiled.kinds;
+        double total = 0; // Sum of weighted distances
+        double sum = 0; // Sum of weights
+
+        for (int k = 0, kBreak = kinds.length; k < kBreak; k++) {
+            final int actualDist = data[base + offsets[k]];
+
+            // Ignore neutralized locations in distance table
+            if (actualDist != ChamferDistance.VALUE_UNKNOWN) {
+                final byte kind = kinds[k];
+                final double weight = weights[kind];
+
+                if ((actualDist == 0) != (kind == FORE)) {
+                    total += weight;
+                }
+
+                sum += weight;
+            }
+        }
+
+        if (sum == 0) {
+            return Double.MAX_VALUE; // Safer
+        }
+
+        return total / sum;
+    }
+
+    //-------------//
+    // getCompiled //
+    //-------------//
+    private Compiled getCompiled (Template template)
+    {
+        Compiled compiled = compiledMap.get(template);
+
+        if (compiled == null) {
+            compiledMap.put(template, compiled = new Compiled(template.getKeyPoints(), tableWidth));
+        }
+
+        return compiled;
+    }
+
+    //---------//
+    // getData //
+    //---------//
+    /**
+     * Report the underlying buffer of distances, if any.
+     *
+     * @param distances the distance table
+     * @return the row-major buffer, or null if not available
+     */
+    private static short[] getData (DistanceTable distances)
+    {
+        if (distances instanceof DistanceTable.Short) {
+            try {
+                return ((DistanceTable.Short) distances).getValues();
+            } catch (UnsupportedOperationException ex) {
+                return null; // Case of a view
+            }
+        }
+
+        return null;
+    }
+
+    //----------//
+    // Compiled //
+    //----------//
+    /**
+     * The compiled form of a template, for a given table width.
+     */
+    private static class Compiled
+    {
+
+        /** Key points abscissae, relative to template upper left corner. */
+        final int[] xs;
+
+        /** Key points ordinates, relative to template upper left corner. */
+        final int[] ys;
+
+        /** Key points offsets in table buffer, relative to template upper left corner. */
+        final int[] offsets;
+
+        /** Key points kinds. */
+        final byte[] kinds;
+
+        /** Key points bounds. */
+        final int xMin;
+
+        final int xMax;
+
+        final int yMin;
+
+        final int yMax;
+
+        Compiled (List<PixelDistance> keyPoints,
+                  int tableWidth)
+        {
+            final int count = keyPoints.size();
+            xs = new int[count];
+            ys = new int[count];
+            offsets = new int[count];
+            kinds = new byte[count];
+
+            int x1 = Integer.MAX_VALUE;
+            int x2 = Integer.MIN_VALUE;
+            int y1 = Integer.MAX_VALUE;
+            int y2 = Integer.MIN_VALUE;
+
+            for (int k = 0; k < count; k++) {
+                final PixelDistance pix = keyPoints.get(k);
+                xs[k] = pix.x;
+                ys[k] = pix.y;
+                offsets[k] = (pix.y * tableWidth) + pix.x;
+
+                // pix.d < 0 for expected hole, expected negative distance to nearest foreground
+                // pix.d == 0 for expected foreground, 0 distance
+                // pix.d > 0 for expected background, expected distance to nearest foreground
+                kinds[k] = (pix.d == 0) ? FORE : ((pix.d > 0) ? BACK : HOLE);
+
+                x1 = Math.min(x1, pix.x);
+                x2 = Math.max(x2, pix.x);
+                y1 = Math.min(y1, pix.y);
+                y2 = Math.max(y2, pix.y);
+            }
+
+            xMin = (count > 0) ? x1 : 0;
+            xMax = (count > 0) ? x2 : 0;
+            yMin = (count > 0) ? y1 : 0;
+            yMax = (count > 0) ? y2 : 0;
+        }
+    }
+}
@@ -26,14 +26,13 @@ import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.run.Orientation;
 import static org.audiveris.omr.run.Orientation.*;
-import org.audiveris.omr.run.Run;
 import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTable.RunPredicate;
 import org.audiveris.omr.run.RunTableFactory;
 import org.audiveris.omr.sheet.Scale;
 import org.audiveris.omr.sheet.Sheet;
 import org.audiveris.omr.util.IntUtil;
 import org.audiveris.omr.util.Navigable;
-import org.audiveris.omr.util.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -158,12 +157,14 @@ public class LagManager
                 sheet.getScale().getMaxFore() * constants.ledgerThickness.getValue());
 
         // Remove runs whose height is larger than line thickness
-        RunTable shortVertTable = sourceTable.copy().purge(new Predicate<Run>()
+        RunTable shortVertTable = sourceTable.copy().purge(new RunPredicate()
         {
             @Override
-            public final boolean check (Run run)
+            public final boolean check (int index,
+                                        int start,
+                                        int length)
             {
-                return run.getLength() >= minVerticalRunLength;
+                return length >= minVerticalRunLength;
             }
         }, vertTable);
         RunTableFactory runFactory = new RunTableFactory(HORIZONTAL);
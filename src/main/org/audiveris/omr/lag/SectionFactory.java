@@ -25,10 +25,15 @@ import ij.process.ByteProcessor;
 
 import net.jcip.annotations.NotThreadSafe;
 
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.run.Orientation;
 import org.audiveris.omr.run.Run;
+import org.audiveris.omr.run.RunCursor;
 import org.audiveris.omr.run.RunTable;
 import org.audiveris.omr.run.RunTableFactory;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,10 +41,15 @@ import org.slf4j.LoggerFactory;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class {@code SectionFactory} builds a collection of sections out of provided runs.
@@ -60,6 +70,10 @@ import java.util.Set;
  * <li>Optionally, a {@link Lag} instance can be specified, so that the created sections get a
  * lag-wide unique id and are appended to current lag content.</li>
  * </ul>
+ * <p>
+ * A large table of runs (such as a whole sheet) is processed by bands of sequences in parallel,
+ * the resulting sections being stitched across band seams.
+ * The sections, and their ids, are the same as with a sequential processing.
  *
  * @author Hervé Bitteur
  */
@@ -67,8 +81,36 @@ import java.util.Set;
 public class SectionFactory
 {
 
+    private static final Constants constants = new Constants();
+
     private static final Logger logger = LoggerFactory.getLogger(SectionFactory.class);
 
+    /** Sections by increasing start of their last run. */
+    private static final Comparator<Section> byLastStart = new Comparator<Section>()
+    {
+        @Override
+        public int compare (Section s1,
+                            Section s2)
+        {
+            return Integer.compare(s1.getLastRun().getStart(), s2.getLastRun().getStart());
+        }
+    };
+
+    /** Sections in creation order: by first position, then by first run start. */
+    private static final Comparator<Section> byCreation = new Comparator<Section>()
+    {
+        @Override
+        public int compare (Section s1,
+                            Section s2)
+        {
+            if (s1.getFirstPos() != s2.getFirstPos()) {
+                return Integer.compare(s1.getFirstPos(), s2.getFirstPos());
+            }
+
+            return Integer.compare(s1.getFirstRun().getStart(), s2.getFirstRun().getStart());
+        }
+    };
+
     /** The lag to populate, if any. */
     private final Lag lag;
 
@@ -78,9 +120,6 @@ public class SectionFactory
     /** Policy for detection of junctions. */
     private final JunctionPolicy junctionPolicy;
 
-    /** Processed sections. true/false */
-    private final Set<DynamicSection> processedSections = new LinkedHashSet<>();
-
     /**
      * Create an instance of SectionFactory with a target lag.
      *
@@ -168,9 +207,35 @@ public class SectionFactory
     public List<Section> createSections (RunTable runTable,
                                          Point offset,
                                          boolean include)
+    {
+        return createSections(runTable, offset, include, getBandCount(runTable) > 1);
+    }
+
+    //----------------//
+    // createSections //
+    //----------------//
+    /**
+     * Populate a lag by creating sections from the provided table of runs, with an
+     * explicit choice between banded (parallel) and sequential processing.
+     * <p>
+     * Both processings result in the same sections.
+     *
+     * @param runTable the table of runs
+     * @param offset   optional offset for runTable top left corner
+     * @param include  if true, include the content of runTable into the lag
+     * @param banded   true for processing by bands in parallel, false for sequential processing
+     * @return the list of created sections
+     */
+    public List<Section> createSections (RunTable runTable,
+                                         Point offset,
+                                         boolean include,
+                                         boolean banded)
     {
         // Build sections with runTable-based coordinates
-        List<DynamicSection> sections = new Build().buildSections(runTable, include);
+        final int bandCount = banded ? Math.max(2, getBandCount(runTable)) : 1;
+        final List<DynamicSection> sections = ((bandCount > 1) && (runTable.getSize() > 1))
+                ? new BandedBuild(runTable, bandCount).buildSections(include)
+                : new Build(false).buildSections(runTable, include);
 
         // Translate sections to absolute coordinates if an offset was provided
         if (offset != null) {
@@ -182,6 +247,26 @@ public class SectionFactory
         return getImmutables(sections);
     }
 
+    //--------------//
+    // getBandCount //
+    //--------------//
+    /**
+     * Report the number of bands to process the provided table in parallel.
+     *
+     * @param runTable the table of runs
+     * @return the count of bands, 1 for a sequential processing
+     */
+    private int getBandCount (RunTable runTable)
+    {
+        if (!constants.useBands.isSet() || !OmrExecutors.defaultParallelism.getValue()) {
+            return 1;
+        }
+
+        final int cpus = Runtime.getRuntime().availableProcessors();
+
+        return Math.max(1, Math.min(cpus, runTable.getSize() / constants.minBandSize.getValue()));
+    }
+
     //---------------//
     // getImmutables //
     //---------------//
@@ -202,20 +287,279 @@ public class SectionFactory
         return sections;
     }
 
-    //-------------//
-    // isProcessed //
-    //-------------//
-    private boolean isProcessed (DynamicSection dynSection)
+    //----------------//
+    // newIdentitySet //
+    //----------------//
+    private static Set<DynamicSection> newIdentitySet ()
     {
-        return processedSections.contains(dynSection);
+        return Collections.newSetFromMap(new IdentityHashMap<DynamicSection, Boolean>());
     }
 
-    //--------------//
-    // setProcessed //
-    //--------------//
-    private void setProcessed (DynamicSection dynSection)
+    //-------------//
+    // BandedBuild //
+    //-------------//
+    /**
+     * An instance of this class processes a table of runs by bands of sequences.
+     * <p>
+     * Each band is processed by a separate {@link Build} in parallel (in turn, when already
+     * running on the low pool), as if the band first sequence were the table first sequence.
+     * <p>
+     * Then, band after band, sections are stitched across the band seam:
+     * A run in band first sequence is linked to a section in previous sequence if they overlap each
+     * other and nothing else, exactly as in sequential processing.
+     * For such a link, the junction policy may depend on the whole section history, so the band
+     * sections chained from the run (by links the policy rejected within the band) are replayed
+     * against the previous section.
+     * <p>
+     * Finally, sections are sorted in sequential creation order, and only then given their ids.
+     */
+    private class BandedBuild
     {
-        processedSections.add(dynSection);
+
+        /** The table of runs. */
+        private final RunTable runTable;
+
+        /** Number of sequences per band. */
+        private final int bandSize;
+
+        /** Counter to set dynamicsection ids when no lag is used. */
+        private int localId;
+
+        BandedBuild (RunTable runTable,
+                     int bandCount)
+        {
+            this.runTable = runTable;
+
+            final int size = runTable.getSize();
+            bandSize = (size + bandCount - 1) / bandCount;
+        }
+
+        //---------------//
+        // buildSections //
+        //---------------//
+        /**
+         * Build sections from the table of runs.
+         *
+         * @param include if true, include the content of runTable into the lag
+         * @return the list of created sections, in sequential creation order
+         */
+        public List<DynamicSection> buildSections (boolean include)
+        {
+            final List<Build> builds = buildBands();
+
+            // Stitch bands, one after the other
+            final List<DynamicSection> all = new ArrayList<>(builds.get(0).created);
+            List<DynamicSection> candidates = builds.get(0).created;
+
+            for (int b = 1; b < builds.size(); b++) {
+                candidates = stitch(candidates, builds.get(b), all);
+            }
+
+            // Renumber
+            Collections.sort(all, byCreation);
+
+            for (DynamicSection dynSection : all) {
+                if (lag != null) {
+                    lag.register(dynSection);
+                } else {
+                    dynSection.setId(++localId);
+                }
+            }
+
+            // Store the content of runs table into the lag?
+            if (include && (lag != null)) {
+                lag.addRunTable(runTable);
+            }
+
+            return all;
+        }
+
+        //------------//
+        // buildBands //
+        //------------//
+        private List<Build> buildBands ()
+        {
+            final int size = runTable.getSize();
+            final List<Callable<Build>> tasks = new ArrayList<>();
+
+            for (int first = 0; first < size; first += bandSize) {
+                final int firstCol = first;
+                final int stopCol = Math.min(size, first + bandSize);
+                tasks.add(new Callable<Build>()
+                {
+                    @Override
+                    public Build call ()
+                            throws Exception
+                    {
+                        final Build build = new Build(true);
+                        build.buildRange(runTable, firstCol, stopCol);
+
+                        return build;
+                    }
+                });
+            }
+
+            final List<Build> builds = new ArrayList<>(tasks.size());
+
+            try {
+                for (Future<Build> future : OmrExecutors.invokeAll(tasks)) {
+                    builds.add(future.get());
+                }
+            } catch (InterruptedException ex) {
+                logger.warn("SectionFactory got interrupted");
+                throw new ProcessingCancellationException(ex);
+            } catch (ExecutionException ex) {
+                logger.warn("Exception raised in SectionFactory", ex.getCause());
+                throw new RuntimeException(ex.getCause());
+            }
+
+            return builds;
+        }
+
+        //--------//
+        // replay //
+        //--------//
+        /**
+         * Replay the chain of band sections starting at provided section, now that its first
+         * run is linked to a section in previous sequence.
+         *
+         * @param prev     the section linked in previous sequence
+         * @param first    the band section starting with the linked run
+         * @param band     the band at hand
+         * @param replaced (output) the band sections replayed
+         * @param fresh    (output) the sections created by replay
+         * @return true if prev section has been extended
+         */
+        private boolean replay (DynamicSection prev,
+                                DynamicSection first,
+                                Build band,
+                                Set<DynamicSection> replaced,
+                                List<DynamicSection> fresh)
+        {
+            DynamicSection current = prev;
+            boolean extended = false;
+
+            for (DynamicSection ds = first; ds != null; ds = band.successors.get(ds)) {
+                replaced.add(ds);
+
+                int pos = ds.getFirstPos();
+
+                for (Run run : ds.getRuns()) {
+                    if (junctionPolicy.consistentRun(run, current)) {
+                        current.append(run);
+                        extended |= (current == prev);
+                    } else {
+                        current = new DynamicSection(orientation);
+                        current.setFirstPos(pos);
+                        current.append(run);
+                        fresh.add(current);
+                    }
+
+                    pos++;
+                }
+            }
+
+            return extended;
+        }
+
+        //--------//
+        // stitch //
+        //--------//
+        /**
+         * Stitch the provided band to the sections built so far.
+         *
+         * @param candidates the sections that may end right before the band
+         * @param band       the band to stitch
+         * @param all        (output) all final sections so far, to be completed by band ones
+         * @return the sections that may end at band last sequence
+         */
+        private List<DynamicSection> stitch (List<DynamicSection> candidates,
+                                             Build band,
+                                             List<DynamicSection> all)
+        {
+            final int seam = band.firstCol;
+
+            // Sections ending right before the seam, sorted by last run start
+            final List<DynamicSection> prevs = new ArrayList<>();
+
+            for (DynamicSection ds : candidates) {
+                if (ds.getLastPos() == (seam - 1)) {
+                    prevs.add(ds);
+                }
+            }
+
+            Collections.sort(prevs, byLastStart);
+
+            // Band sections starting at the seam (created first, by increasing run start)
+            final List<DynamicSection> nexts = new ArrayList<>();
+
+            for (DynamicSection ds : band.created) {
+                if (ds.getFirstPos() != seam) {
+                    break;
+                }
+
+                nexts.add(ds);
+            }
+
+            // Count overlaps on both sides
+            final int[] prevCounts = new int[prevs.size()];
+            final int[] nextCounts = new int[nexts.size()];
+            final int[] nextPartners = new int[nexts.size()];
+            int jMin = 0;
+
+            for (int i = 0; i < prevs.size(); i++) {
+                final Run prevRun = prevs.get(i).getLastRun();
+
+                while ((jMin < nexts.size())
+                       && (nexts.get(jMin).getFirstRun().getStop() < prevRun.getStart())) {
+                    jMin++;
+                }
+
+                for (int j = jMin; j < nexts.size(); j++) {
+                    final Run nextRun = nexts.get(j).getFirstRun();
+
+                    if (nextRun.getStart() > prevRun.getStop()) {
+                        break;
+                    }
+
+                    prevCounts[i]++;
+                    nextCounts[j]++;
+                    nextPartners[j] = i;
+                }
+            }
+
+            // Replay one-to-one links
+            final Set<DynamicSection> replaced = newIdentitySet();
+            final List<DynamicSection> fresh = new ArrayList<>();
+            final List<DynamicSection> extended = new ArrayList<>();
+
+            for (int j = 0; j < nexts.size(); j++) {
+                if ((nextCounts[j] == 1) && (prevCounts[nextPartners[j]] == 1)) {
+                    final DynamicSection prev = prevs.get(nextPartners[j]);
+
+                    if (replay(prev, nexts.get(j), band, replaced, fresh)) {
+                        extended.add(prev);
+                    }
+                }
+            }
+
+            // Final band sections
+            final List<DynamicSection> finals = new ArrayList<>(band.created.size());
+
+            for (DynamicSection ds : band.created) {
+                if (!replaced.contains(ds)) {
+                    finals.add(ds);
+                }
+            }
+
+            finals.addAll(fresh);
+            all.addAll(finals);
+
+            // Previous sections extended into the band may reach next seam as well
+            finals.addAll(extended);
+
+            return finals;
+        }
     }
 
     //-------//
@@ -234,9 +578,21 @@ public class SectionFactory
     private class Build
     {
 
+        /** True for a band of a banded processing. */
+        private final boolean banded;
+
+        /** First sequence processed. */
+        private int firstCol;
+
         /** Counter to set dynamicsection ids when no lag is used. */
         private int localId;
 
+        /** Cursor on runs of next sequence. */
+        private RunCursor nextCursor;
+
+        /** Cursor on runs of next sequence, when processing previous side. */
+        private RunCursor overlapCursor;
+
         /** Global list of all sections created. */
         private final List<DynamicSection> created = new ArrayList<>();
 
@@ -252,6 +608,28 @@ public class SectionFactory
          */
         private final List<DynamicSection> prevActives = new ArrayList<>();
 
+        /** Processed sections, which can no longer be continued. */
+        private final Set<DynamicSection> processedSections = newIdentitySet();
+
+        /** Sections ended only by the junction policy (banded processing only). */
+        private final Set<DynamicSection> rejectingSections = newIdentitySet();
+
+        /**
+         * Section started by the run that junction policy rejected, per rejecting section
+         * (banded processing only).
+         */
+        private final Map<DynamicSection, DynamicSection> successors = new IdentityHashMap<>();
+
+        /**
+         * Create a Build instance.
+         *
+         * @param banded true for a band of a banded processing, whose sections get no id
+         */
+        Build (boolean banded)
+        {
+            this.banded = banded;
+        }
+
         //--------------//
         // buidSections //
         //--------------//
@@ -265,13 +643,41 @@ public class SectionFactory
         public List<DynamicSection> buildSections (RunTable runTable,
                                                    boolean include)
         {
+            buildRange(runTable, 0, runTable.getSize());
+
+            // Store the content of runs table into the lag?
+            if (include && (lag != null)) {
+                lag.addRunTable(runTable);
+            }
+
+            return created;
+        }
+
+        //------------//
+        // buildRange //
+        //------------//
+        /**
+         * Build sections from the provided range of sequences.
+         *
+         * @param runTable the table of runs
+         * @param firstCol first sequence of range
+         * @param stopCol  sequence that follows the range
+         */
+        public void buildRange (RunTable runTable,
+                                int firstCol,
+                                int stopCol)
+        {
+            this.firstCol = firstCol;
+            nextCursor = new RunCursor(runTable);
+            overlapCursor = new RunCursor(runTable);
+
             // All runs (if any) in first sequence start each their own dynamicSection
-            for (Iterator<Run> it = runTable.iterator(0); it.hasNext();) {
-                nextActives.add(createSection(0, it.next()));
+            for (nextCursor.reset(firstCol); nextCursor.next();) {
+                nextActives.add(createSection(firstCol, nextCursor.getRun()));
             }
 
             // Now scan each pair of sequences, starting at 2nd sequence
-            for (int col = 1, size = runTable.getSize(); col < size; col++) {
+            for (int col = firstCol + 1; col < stopCol; col++) {
                 // If we have runs in this sequence
                 if (!runTable.isSequenceEmpty(col)) {
                     // Copy the former next actives sections as the new previous active sections
@@ -290,20 +696,13 @@ public class SectionFactory
                     // Process all runs of next sequence
                     logger.debug("Next sequence");
 
-                    for (Iterator<Run> it = runTable.iterator(col); it.hasNext();) {
-                        processNextSide(col, it.next());
+                    for (nextCursor.reset(col); nextCursor.next();) {
+                        processNextSide(col, nextCursor.getRun());
                     }
                 } else {
                     nextActives.clear();
                 }
             }
-
-            // Store the content of runs table into the lag?
-            if (include && (lag != null)) {
-                lag.addRunTable(runTable);
-            }
-
-            return created;
         }
 
         //-----------------//
@@ -337,7 +736,9 @@ public class SectionFactory
 
             final DynamicSection dynSection = new DynamicSection(orientation);
 
-            if (lag != null) {
+            if (banded) {
+                // Id will be assigned after stitching
+            } else if (lag != null) {
                 lag.register(dynSection); // Section gets an id from lag
             } else {
                 dynSection.setId(++localId); // Use a local id
@@ -396,12 +797,16 @@ public class SectionFactory
 
                 DynamicSection prevSection = overlappingSections.get(0);
 
-                if (!isProcessed(prevSection)) {
+                if (!processedSections.contains(prevSection)) {
                     continueSection(prevSection, run);
                 } else {
                     // Create a new section, linked by a junction
                     DynamicSection newSection = createSection(col, run);
                     nextActives.add(newSection);
+
+                    if (banded && rejectingSections.contains(prevSection)) {
+                        successors.put(prevSection, newSection);
+                    }
                 }
 
                 break;
@@ -436,19 +841,17 @@ public class SectionFactory
 
             // Check if overlap with a run in next sequence
             int overlapNb = 0;
-            Run overlapRun = null;
+            Run overlapRun = null; // Reusable run of overlapCursor
 
-            for (Iterator<Run> it = runTable.iterator(nextCol); it.hasNext();) {
-                Run run = it.next();
-
-                if (run.getStart() > prevStop) {
+            for (overlapCursor.reset(nextCol); overlapCursor.next();) {
+                if (overlapCursor.getStart() > prevStop) {
                     break;
                 }
 
-                if (run.getStop() >= prevStart) {
-                    logger.debug("Overlap from {} to {}", lastRun, run);
+                if (overlapCursor.getStop() >= prevStart) {
+                    logger.debug("Overlap from {} to {}", lastRun, overlapCursor);
                     overlapNb++;
-                    overlapRun = new Run(run);
+                    overlapRun = overlapCursor.getRun();
                 }
             }
 
@@ -473,14 +876,35 @@ public class SectionFactory
                             "Incompatible height between {} and run {}",
                             dynSection,
                             overlapRun);
-                    setProcessed(dynSection);
+                    processedSections.add(dynSection);
+
+                    if (banded) {
+                        rejectingSections.add(dynSection);
+                    }
                 }
 
                 break;
 
             default: // Diverging, so conclude the section here
-                setProcessed(dynSection);
+                processedSections.add(dynSection);
             }
         }
     }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean useBands = new Constant.Boolean(
+                true,
+                "Should we build sections of large tables by bands in parallel?");
+
+        private final Constant.Integer minBandSize = new Constant.Integer(
+                "sequences",
+                512,
+                "Minimum number of sequences per band");
+    }
 }
@@ -22,7 +22,9 @@
 package org.audiveris.omr.math;
 
 import org.audiveris.omr.classifier.TrainingMonitor;
+import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.util.Jaxb;
+import org.audiveris.omr.util.OmrExecutors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,7 +32,13 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -56,6 +64,10 @@ import javax.xml.stream.XMLStreamException;
  * <p>
  * The class also allows in-memory {@link #backup} and {@link #restore} operation, mainly used to
  * save the most efficient weight values during the network training.
+ * <p>
+ * Besides the one-pattern {@link #run(double[], double[], double[])} method, a batch of patterns
+ * can be evaluated in one call by {@link #run(double[], int, double[], boolean)}, which works on
+ * flat copies of the weight matrices.
  *
  * @author Hervé Bitteur
  */
@@ -67,6 +79,12 @@ public class NeuralNetwork
 
     private static final Logger logger = LoggerFactory.getLogger(NeuralNetwork.class);
 
+    /** Number of patterns processed together against each weight row. */
+    private static final int BLOCK_SIZE = 16;
+
+    /** Minimum number of patterns for a batch chunk processed in parallel. */
+    private static final int MIN_CHUNK_SIZE = 128;
+
     /** Un/marshalling context for use with JAXB. */
     private static volatile JAXBContext jaxbContext;
 
@@ -109,9 +127,18 @@ public class NeuralNetwork
     /** Default number of epochs when training. */
     private transient volatile int epochs = 10;
 
+    /** Number of patterns per training mini-batch, 1 for per-pattern training. */
+    private transient volatile int batchSize = 1;
+
+    /** Number of threads to compute the gradients of a mini-batch. */
+    private transient volatile int threadCount = 1;
+
     /** To trigger training stop. */
     private transient volatile boolean stopping = false;
 
+    /** Flat copy of weights for batch evaluation, lazily built and reset when weights change. */
+    private transient volatile FlatWeights flatWeights;
+
     /**
      * Create a neural network, with specified number of cells in each
      * layer, and default values.
@@ -362,6 +389,7 @@ public class NeuralNetwork
         logger.debug("Network memory restore");
         this.hiddenWeights = cloneMatrix(backup.hiddenWeights);
         this.outputWeights = cloneMatrix(backup.outputWeights);
+        flatWeights = null;
     }
 
     //-----//
@@ -416,6 +444,98 @@ public class NeuralNetwork
         return outputs;
     }
 
+    //-----//
+    // run //
+    //-----//
+    /**
+     * Run the neural network on a batch of input patterns, and return the computed
+     * output values.
+     * <p>
+     * Patterns are laid out row-major, one after the other, in a single array.
+     * Each layer is computed as a blocked matrix product, so that a weight row is applied to a
+     * block of patterns while it is hot in cache.
+     * Values are computed exactly as {@link #run(double[], double[], double[])} would do for each
+     * pattern in turn.
+     *
+     * @param inputs   the input values, pattern after pattern (count * inputSize)
+     * @param count    the number of patterns in batch
+     * @param outputs  preallocated array for the computed output values (count * outputSize),
+     *                 or null if not already allocated
+     * @param parallel true to allow splitting a large batch into chunks run in parallel
+     * @return the computed output values, pattern after pattern
+     */
+    public double[] run (final double[] inputs,
+                         final int count,
+                         double[] outputs,
+                         boolean parallel)
+    {
+        Objects.requireNonNull(inputs, "inputs array is null");
+
+        if (inputs.length < (count * inputSize)) {
+            throw new IllegalArgumentException(
+                    "Inputs length " + inputs.length + " too small for " + count + " patterns");
+        }
+
+        if (outputs == null) {
+            outputs = new double[count * outputSize];
+        } else if (outputs.length < (count * outputSize)) {
+            throw new IllegalArgumentException(
+                    "Outputs length " + outputs.length + " too small for " + count + " patterns");
+        }
+
+        final FlatWeights flat = getFlatWeights();
+        final int chunkCount = parallel
+                ? Math.min(OmrExecutors.getNumberOfCpus(), count / MIN_CHUNK_SIZE) : 1;
+
+        if (chunkCount <= 1) {
+            runRange(flat, inputs, 0, count, outputs);
+
+            return outputs;
+        }
+
+        // Split the batch into contiguous chunks, one task per chunk
+        final double[] outs = outputs;
+        final int chunkSize = (count + chunkCount - 1) / chunkCount;
+        final List<Callable<Void>> tasks = new ArrayList<>(chunkCount);
+
+        for (int start = 0; start < count; start += chunkSize) {
+            final int first = start;
+            final int stop = Math.min(count, start + chunkSize);
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    runRange(flat, inputs, first, stop, outs);
+
+                    return null;
+                }
+            });
+        }
+
+        runTasks(tasks);
+
+        return outputs;
+    }
+
+    //--------------//
+    // setBatchSize //
+    //--------------//
+    /**
+     * Set the number of patterns per training mini-batch.
+     *
+     * @param batchSize number of patterns, 1 for weights update after each pattern
+     */
+    public void setBatchSize (int batchSize)
+    {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Illegal batch size " + batchSize);
+        }
+
+        this.batchSize = batchSize;
+    }
+
     //-----------//
     // setEpochs //
     //-----------//
@@ -456,6 +576,23 @@ public class NeuralNetwork
         this.momentum = momentum;
     }
 
+    //----------------//
+    // setThreadCount //
+    //----------------//
+    /**
+     * Set the number of threads used to compute the gradients of a training mini-batch.
+     *
+     * @param threadCount number of threads
+     */
+    public void setThreadCount (int threadCount)
+    {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Illegal thread count " + threadCount);
+        }
+
+        this.threadCount = threadCount;
+    }
+
     //------//
     // stop //
     //------//
@@ -472,6 +609,10 @@ public class NeuralNetwork
     //-------//
     /**
      * Train the neural network on a collection of input patterns.
+     * <p>
+     * With a batch size of 1, weights are updated after each pattern.
+     * With a larger batch size, weights are updated after each mini-batch of patterns, using the
+     * mean gradient of the mini-batch, computed in parallel by the specified number of threads.
      *
      * @param inputs         the provided patterns of values for input cells
      * @param desiredOutputs the corresponding desired values for output cells
@@ -484,6 +625,7 @@ public class NeuralNetwork
                        int iterPeriod)
     {
         stopping = false;
+        flatWeights = null;
 
         Objects.requireNonNull(inputs, "inputs array is null");
         Objects.requireNonNull(desiredOutputs, "desiredOutputs array is null");
@@ -499,6 +641,12 @@ public class NeuralNetwork
         final double[][] hiddenDeltas = createMatrix(hiddenSize, inputSize + 1, 0);
         final double[][] outputDeltas = createMatrix(outputSize, hiddenSize + 1, 0);
         final double[] hiddens = new double[hiddenSize];
+        final Gradient[] gradients = new Gradient[(batchSize > 1) ? Math.max(1, threadCount) : 0];
+
+        for (int i = 0; i < gradients.length; i++) {
+            gradients[i] = new Gradient();
+        }
+
         int iter = 0;
 
         for (int ie = 1; ie <= epochs; ie++) {
@@ -508,67 +656,76 @@ public class NeuralNetwork
                 listener.epochStarted(ie);
             }
 
-            // Loop on all input patterns
-            for (int ip = 0; ip < patterns; ip++) {
-                // Run the network with input values and current weights
-                run(inputs[ip], hiddens, gottenOutputs);
+            final long epochStart = System.currentTimeMillis();
+
+            if (batchSize > 1) {
+                trainMiniBatches(inputs, desiredOutputs, gradients, hiddenDeltas, outputDeltas);
+            } else {
+                // Loop on all input patterns
+                for (int ip = 0; ip < patterns; ip++) {
+                    // Run the network with input values and current weights
+                    run(inputs[ip], hiddens, gottenOutputs);
+
+                    // Compute the output layer error terms
+                    for (int io = outputSize - 1; io >= 0; io--) {
+                        double out = gottenOutputs[io];
+                        double dif = desiredOutputs[ip][io] - out;
+                        ///outputGrads[io] = dif * out * (1 - out); // Sigmoid'
+                        outputGrads[io] = dif * sigmoidDif(out); // Sigmoid'
+                        ///outputGrads[io] = dif * reluDif(out); // ReLU'
+                    }
 
-                // Compute the output layer error terms
-                for (int io = outputSize - 1; io >= 0; io--) {
-                    double out = gottenOutputs[io];
-                    double dif = desiredOutputs[ip][io] - out;
-                    ///outputGrads[io] = dif * out * (1 - out); // Sigmoid'
-                    outputGrads[io] = dif * sigmoidDif(out); // Sigmoid'
-                    ///outputGrads[io] = dif * reluDif(out); // ReLU'
-                }
+                    // Compute the hidden layer error terms
+                    for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                        double sum = 0;
+                        double hid = hiddens[ih];
 
-                // Compute the hidden layer error terms
-                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
-                    double sum = 0;
-                    double hid = hiddens[ih];
+                        for (int o = outputSize - 1; o >= 0; o--) {
+                            sum += (outputGrads[o] * outputWeights[o][ih + 1]);
+                        }
 
-                    for (int o = outputSize - 1; o >= 0; o--) {
-                        sum += (outputGrads[o] * outputWeights[o][ih + 1]);
+                        ///hiddenGrads[h] = sum * hid * (1 - hid); // Sigmoid'
+                        hiddenGrads[ih] = sum * sigmoidDif(hid); // Sigmoid'
+                        ///hiddenGrads[h] = sum * reluDif(hid); // ReLU'
                     }
 
-                    ///hiddenGrads[h] = sum * hid * (1 - hid); // Sigmoid'
-                    hiddenGrads[ih] = sum * sigmoidDif(hid); // Sigmoid'
-                    ///hiddenGrads[h] = sum * reluDif(hid); // ReLU'
-                }
+                    // Update the output weights
+                    for (int io = outputSize - 1; io >= 0; io--) {
+                        for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                            double dw = (learningRate * outputGrads[io] * hiddens[ih])
+                                                + (momentum * outputDeltas[io][ih + 1]);
+                            outputWeights[io][ih + 1] += dw;
+                            outputDeltas[io][ih + 1] = dw;
+                        }
 
-                // Update the output weights
-                for (int io = outputSize - 1; io >= 0; io--) {
-                    for (int ih = hiddenSize - 1; ih >= 0; ih--) {
-                        double dw = (learningRate * outputGrads[io] * hiddens[ih]) + (momentum
-                                                                                              * outputDeltas[io][ih
-                                                                                                                 + 1]);
-                        outputWeights[io][ih + 1] += dw;
-                        outputDeltas[io][ih + 1] = dw;
+                        // Bias
+                        double dw = (learningRate * outputGrads[io])
+                                            + (momentum * outputDeltas[io][0]);
+                        outputWeights[io][0] += dw;
+                        outputDeltas[io][0] = dw;
                     }
 
-                    // Bias
-                    double dw = (learningRate * outputGrads[io]) + (momentum * outputDeltas[io][0]);
-                    outputWeights[io][0] += dw;
-                    outputDeltas[io][0] = dw;
-                }
+                    // Update the hidden weights
+                    for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                        for (int i = inputSize - 1; i >= 0; i--) {
+                            double dw = (learningRate * hiddenGrads[ih] * inputs[ip][i])
+                                                + (momentum * hiddenDeltas[ih][i + 1]);
+                            hiddenWeights[ih][i + 1] += dw;
+                            hiddenDeltas[ih][i + 1] = dw;
+                        }
 
-                // Update the hidden weights
-                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
-                    for (int i = inputSize - 1; i >= 0; i--) {
-                        double dw = (learningRate * hiddenGrads[ih] * inputs[ip][i]) + (momentum
-                                                                                                * hiddenDeltas[ih][i
-                                                                                                                   + 1]);
-                        hiddenWeights[ih][i + 1] += dw;
-                        hiddenDeltas[ih][i + 1] = dw;
+                        // Bias
+                        double dw = (learningRate * hiddenGrads[ih])
+                                            + (momentum * hiddenDeltas[ih][0]);
+                        hiddenWeights[ih][0] += dw;
+                        hiddenDeltas[ih][0] = dw;
                     }
-
-                    // Bias
-                    double dw = (learningRate * hiddenGrads[ih]) + (momentum * hiddenDeltas[ih][0]);
-                    hiddenWeights[ih][0] += dw;
-                    hiddenDeltas[ih][0] = dw;
                 }
             }
 
+            final long epochDur = Math.max(1, System.currentTimeMillis() - epochStart);
+            logger.debug("Epoch {} trained at {} samples/s", ie, (patterns * 1_000L) / epochDur);
+
             if (listener != null) {
                 if ((iter % iterPeriod) == 0) {
                     double mse = 0d; // Mean Squared Error
@@ -601,6 +758,7 @@ public class NeuralNetwork
         logger.info(String.format("Duration %,d seconds, %d iterations on %d patterns", dur / 1_000,
                                   epochs, patterns));
         stopping = false;
+        flatWeights = null;
     }
 
     //------------//
@@ -670,6 +828,65 @@ public class NeuralNetwork
         }
     }
 
+    //--------------//
+    // forwardBlock //
+    //--------------//
+    /**
+     * Re-entrant method, which computes one layer for a block of patterns.
+     *
+     * @param ins     input cells, pattern after pattern
+     * @param inBase  index in ins of first input cell of first pattern
+     * @param inSize  number of input cells per pattern
+     * @param weights flat applied weights, one row of (1 + inSize) per output cell, bias first
+     * @param outs    output cells, pattern after pattern
+     * @param outBase index in outs of first output cell of first pattern
+     * @param outSize number of output cells per pattern
+     * @param block   number of patterns in block
+     */
+    private void forwardBlock (double[] ins,
+                               int inBase,
+                               int inSize,
+                               double[] weights,
+                               double[] outs,
+                               int outBase,
+                               int outSize,
+                               int block)
+    {
+        final int rowLength = inSize + 1;
+
+        for (int o = outSize - 1; o >= 0; o--) {
+            final int w0 = o * rowLength;
+
+            for (int p = 0; p < block; p++) {
+                final int in0 = inBase + (p * inSize);
+                double sum = 0;
+
+                for (int i = inSize - 1; i >= 0; i--) {
+                    sum += (weights[w0 + i + 1] * ins[in0 + i]);
+                }
+
+                // Bias
+                sum += weights[w0];
+
+                outs[outBase + (p * outSize) + o] = sigmoid(sum);
+            }
+        }
+    }
+
+    //----------------//
+    // getFlatWeights //
+    //----------------//
+    private FlatWeights getFlatWeights ()
+    {
+        FlatWeights flat = flatWeights;
+
+        if (flat == null) {
+            flatWeights = flat = new FlatWeights(flatten(hiddenWeights), flatten(outputWeights));
+        }
+
+        return flat;
+    }
+
     private double relu (double val)
     {
         return Math.max(0, val);
@@ -694,11 +911,165 @@ public class NeuralNetwork
         return 1.0d / (1.0d + Math.exp(-val));
     }
 
+    //----------//
+    // runRange //
+    //----------//
+    /**
+     * Run the network on a range of batch patterns, block after block.
+     *
+     * @param flat    flat weights
+     * @param inputs  batch inputs
+     * @param first   index of first pattern in range
+     * @param stop    index after last pattern in range
+     * @param outputs batch outputs
+     */
+    private void runRange (FlatWeights flat,
+                           double[] inputs,
+                           int first,
+                           int stop,
+                           double[] outputs)
+    {
+        final double[] hiddens = new double[BLOCK_SIZE * hiddenSize];
+
+        for (int p = first; p < stop; p += BLOCK_SIZE) {
+            final int block = Math.min(BLOCK_SIZE, stop - p);
+            forwardBlock(inputs, p * inputSize, inputSize, flat.hidden, hiddens, 0, hiddenSize,
+                         block);
+            forwardBlock(hiddens, 0, hiddenSize, flat.output, outputs, p * outputSize,
+                         outputSize, block);
+        }
+    }
+
+    //----------//
+    // runTasks //
+    //----------//
+    /**
+     * Run the provided tasks in parallel and wait for their completion.
+     * <p>
+     * Tasks are run in the current thread if it already belongs to the low pool.
+     *
+     * @param tasks the tasks to run
+     */
+    private void runTasks (List<Callable<Void>> tasks)
+    {
+        try {
+            for (Future<Void> future : OmrExecutors.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("NeuralNetwork got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            logger.warn("Exception raised in NeuralNetwork", ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
     private double sigmoidDif (double val)
     {
         return val * (1 - val);
     }
 
+    //------------------//
+    // trainMiniBatches //
+    //------------------//
+    /**
+     * Train the network for one epoch, one mini-batch after the other.
+     * <p>
+     * Each mini-batch is split into contiguous slices, one per gradient buffer, whose gradients
+     * are computed in parallel and then summed in slice order, so that the result does not
+     * depend on threads scheduling.
+     *
+     * @param inputs         the patterns of values for input cells
+     * @param desiredOutputs the corresponding desired values for output cells
+     * @param gradients      one gradient buffer per slice
+     * @param hiddenDeltas   last weight changes for hidden layer
+     * @param outputDeltas   last weight changes for output layer
+     */
+    private void trainMiniBatches (final double[][] inputs,
+                                   final double[][] desiredOutputs,
+                                   Gradient[] gradients,
+                                   double[][] hiddenDeltas,
+                                   double[][] outputDeltas)
+    {
+        final int patterns = inputs.length;
+
+        for (int b0 = 0; b0 < patterns; b0 += batchSize) {
+            final int count = Math.min(batchSize, patterns - b0);
+            final int sliceCount = Math.min(gradients.length, count);
+            final int sliceSize = (count + sliceCount - 1) / sliceCount;
+
+            // Compute slice gradients
+            if (sliceCount == 1) {
+                gradients[0].compute(inputs, desiredOutputs, b0, b0 + count);
+            } else {
+                final List<Callable<Void>> tasks = new ArrayList<>(sliceCount);
+
+                for (int is = 0; is < sliceCount; is++) {
+                    final Gradient gradient = gradients[is];
+                    final int first = Math.min(b0 + count, b0 + (is * sliceSize));
+                    final int stop = Math.min(b0 + count, first + sliceSize);
+                    tasks.add(new Callable<Void>()
+                    {
+                        @Override
+                        public Void call ()
+                                throws Exception
+                        {
+                            gradient.compute(inputs, desiredOutputs, first, stop);
+
+                            return null;
+                        }
+                    });
+                }
+
+                runTasks(tasks);
+            }
+
+            // Sum slice gradients, always in the same order
+            final Gradient total = gradients[0];
+
+            for (int is = 1; is < sliceCount; is++) {
+                total.add(gradients[is]);
+            }
+
+            // Update weights with mean gradient
+            final double rate = learningRate / count;
+            update(outputWeights, outputDeltas, total.output, rate);
+            update(hiddenWeights, hiddenDeltas, total.hidden, rate);
+        }
+    }
+
+    //--------//
+    // update //
+    //--------//
+    /**
+     * Update a layer of weights with the provided summed gradients and momentum.
+     *
+     * @param weights the layer weights to update
+     * @param deltas  the last weight changes, to be updated as well
+     * @param grads   the summed gradients, row-major
+     * @param rate    the learning rate divided by number of patterns
+     */
+    private void update (double[][] weights,
+                         double[][] deltas,
+                         double[] grads,
+                         double rate)
+    {
+        final int colNb = weights[0].length;
+
+        for (int row = weights.length - 1; row >= 0; row--) {
+            final double[] ws = weights[row];
+            final double[] ds = deltas[row];
+            final int g0 = row * colNb;
+
+            for (int col = colNb - 1; col >= 0; col--) {
+                final double dw = (rate * grads[g0 + col]) + (momentum * ds[col]);
+                ws[col] += dw;
+                ds[col] = dw;
+            }
+        }
+    }
+
     //-----------//
     // unmarshal //
     //-----------//
@@ -773,6 +1144,27 @@ public class NeuralNetwork
         return matrix;
     }
 
+    //---------//
+    // flatten //
+    //---------//
+    /**
+     * Copy a rectangular matrix into a flat row-major array.
+     *
+     * @param matrix the matrix to flatten
+     * @return the flat copy
+     */
+    private static double[] flatten (double[][] matrix)
+    {
+        final int colNb = matrix[0].length;
+        final double[] flat = new double[matrix.length * colNb];
+
+        for (int row = matrix.length - 1; row >= 0; row--) {
+            System.arraycopy(matrix[row], 0, flat, row * colNb, colNb);
+        }
+
+        return flat;
+    }
+
     //----------------//
     // getJaxbContext //
     //----------------//
@@ -813,6 +1205,129 @@ public class NeuralNetwork
         }
     }
 
+    //-------------//
+    // FlatWeights //
+    //-------------//
+    /**
+     * Row-major copies of the weight matrices, for batch evaluation.
+     */
+    private static class FlatWeights
+    {
+
+        final double[] hidden;
+
+        final double[] output;
+
+        FlatWeights (double[] hidden,
+                     double[] output)
+        {
+            this.hidden = hidden;
+            this.output = output;
+        }
+    }
+
+    //----------//
+    // Gradient //
+    //----------//
+    /**
+     * Gradients summed over a slice of training patterns, with work buffers.
+     * Layout of summed gradients is the row-major layout of the weight matrices.
+     */
+    private class Gradient
+    {
+
+        final double[] hidden = new double[hiddenSize * (inputSize + 1)];
+
+        final double[] output = new double[outputSize * (hiddenSize + 1)];
+
+        final double[] hiddens = new double[hiddenSize];
+
+        final double[] outs = new double[outputSize];
+
+        final double[] hiddenGrads = new double[hiddenSize];
+
+        final double[] outputGrads = new double[outputSize];
+
+        /**
+         * Add the summed gradients of another slice.
+         *
+         * @param that the other slice gradient
+         */
+        void add (Gradient that)
+        {
+            for (int i = hidden.length - 1; i >= 0; i--) {
+                hidden[i] += that.hidden[i];
+            }
+
+            for (int i = output.length - 1; i >= 0; i--) {
+                output[i] += that.output[i];
+            }
+        }
+
+        /**
+         * Sum the gradients over the provided range of patterns, using current weights.
+         *
+         * @param inputs         the patterns of values for input cells
+         * @param desiredOutputs the corresponding desired values for output cells
+         * @param first          index of first pattern in range
+         * @param stop           index after last pattern in range
+         */
+        void compute (double[][] inputs,
+                      double[][] desiredOutputs,
+                      int first,
+                      int stop)
+        {
+            Arrays.fill(hidden, 0);
+            Arrays.fill(output, 0);
+
+            for (int ip = first; ip < stop; ip++) {
+                final double[] ins = inputs[ip];
+                run(ins, hiddens, outs);
+
+                // Output layer error terms
+                for (int io = outputSize - 1; io >= 0; io--) {
+                    double out = outs[io];
+                    outputGrads[io] = (desiredOutputs[ip][io] - out) * sigmoidDif(out);
+                }
+
+                // Hidden layer error terms
+                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                    double sum = 0;
+
+                    for (int o = outputSize - 1; o >= 0; o--) {
+                        sum += (outputGrads[o] * outputWeights[o][ih + 1]);
+                    }
+
+                    hiddenGrads[ih] = sum * sigmoidDif(hiddens[ih]);
+                }
+
+                // Output weights gradients
+                for (int io = outputSize - 1; io >= 0; io--) {
+                    final double grad = outputGrads[io];
+                    final int g0 = io * (hiddenSize + 1);
+
+                    for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                        output[g0 + ih + 1] += (grad * hiddens[ih]);
+                    }
+
+                    output[g0] += grad; // Bias
+                }
+
+                // Hidden weights gradients
+                for (int ih = hiddenSize - 1; ih >= 0; ih--) {
+                    final double grad = hiddenGrads[ih];
+                    final int g0 = ih * (inputSize + 1);
+
+                    for (int i = inputSize - 1; i >= 0; i--) {
+                        hidden[g0 + i + 1] += (grad * ins[i]);
+                    }
+
+                    hidden[g0] += grad; // Bias
+                }
+            }
+        }
+    }
+
     //-------------//
     // StringArray //
     //-------------//
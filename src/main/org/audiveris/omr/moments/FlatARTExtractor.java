@@ -0,0 +1,367 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 F l a t A R T E x t r a c t o r                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.moments;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import static org.audiveris.omr.moments.ARTMoments.*;
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunCursor;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.util.StopWatch;
+
+import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class {@code FlatARTExtractor} implements extraction of ART Moments, using one flat
+ * lookup table for all basis functions.
+ * <p>
+ * It computes the same moments as {@link BasicARTExtractor}, but:
+ * <ul>
+ * <li>All real and imaginary basis function values are interleaved in a single {@code double[]}
+ * table, indexed by LUT cell, so that the 4 cells surrounding a point are read as 4 contiguous
+ * blocks.
+ * <li>Bilinear interpolation weights are computed only once per foreground point, for all
+ * coefficients.
+ * <li>Foreground can be provided directly by a {@link RunTable}, without building point arrays.
+ * </ul>
+ *
+ * @author Hervé Bitteur
+ */
+public class FlatARTExtractor
+        extends AbstractExtractor<ARTMoments>
+{
+
+    private static final Constants constants = new Constants();
+
+    // Zernike basis function radius
+    private static final int LUT_RADIUS = 50;
+
+    /** Number of LUT cells per dimension, for [-LUT_RADIUS .. LUT_RADIUS]. */
+    private static final int LUT_SIZE = 1 + (2 * LUT_RADIUS);
+
+    /** Number of cells per LUT row, including a trailing zero-valued cell. */
+    private static final int LUT_STRIDE = LUT_SIZE + 1;
+
+    /** Number of coefficients per cell: real and imaginary parts for each (p,r) pair. */
+    private static final int COEFF_COUNT = 2 * ANGULAR * RADIAL;
+
+    /**
+     * Values of ARTMoments basis functions.
+     * Cell (x,y) starts at index ((x * LUT_STRIDE) + y) * COEFF_COUNT, with the real value of
+     * pair (p,r) at offset 2 * ((p * RADIAL) + r) followed by the opposite of the imaginary value.
+     */
+    private static final double[] lut = new double[LUT_STRIDE * LUT_STRIDE * COEFF_COUNT];
+
+    static {
+        initLUT();
+    }
+
+    /** Accumulated coefficients, real and imaginary parts interleaved. */
+    private final double[] coeffs = new double[COEFF_COUNT];
+
+    /**
+     * Creates a new FlatARTExtractor object.
+     */
+    public FlatARTExtractor ()
+    {
+    }
+
+    //---------//
+    // extract //
+    //---------//
+    /**
+     * Extract moments from the foreground runs of the provided table and save the
+     * results into the target descriptor.
+     *
+     * @param runTable the table of foreground runs
+     */
+    public void extract (RunTable runTable)
+    {
+        if (runTable == null) {
+            throw new IllegalArgumentException(
+                    getClass().getSimpleName() + " cannot process a null table");
+        }
+
+        extract(Collections.singletonList(runTable), Collections.singletonList(new Point(0, 0)));
+    }
+
+    //---------//
+    // extract //
+    //---------//
+    /**
+     * Extract moments from the foreground runs of several disjoint tables, as if they
+     * were all merged into a single table, and save the results into the target descriptor.
+     *
+     * @param runTables the tables of foreground runs
+     * @param offsets   the offset of each table top left corner, in a common referential
+     */
+    public void extract (List<RunTable> runTables,
+                         List<Point> offsets)
+    {
+        if (descriptor == null) {
+            throw new IllegalArgumentException(
+                    getClass().getSimpleName() + " has no target descriptor");
+        }
+
+        final int count = runTables.size();
+        final RunCursor[] cursors = new RunCursor[count];
+
+        // Mass & center of mass: along a run, coordinates sum up to len * (start + stop) / 2
+        long m = 0;
+        long mX2 = 0; // Twice the sum of abscissae
+        long mY2 = 0; // Twice the sum of ordinates
+
+        for (int it = 0; it < count; it++) {
+            final RunTable runTable = runTables.get(it);
+            final boolean vertical = runTable.getOrientation() == Orientation.VERTICAL;
+            final Point offset = offsets.get(it);
+            final int offSeq = vertical ? offset.x : offset.y;
+            final int offRun = vertical ? offset.y : offset.x;
+            final RunCursor cursor = cursors[it] = new RunCursor(runTable);
+
+            for (int iSeq = 0, size = runTable.getSize(); iSeq < size; iSeq++) {
+                for (cursor.reset(iSeq); cursor.next();) {
+                    final int len = cursor.getLength();
+                    final long seq2 = 2L * len * (iSeq + offSeq);
+                    final long run2 = (long) len
+                                      * (cursor.getStart() + cursor.getStop() + (2 * offRun));
+                    m += len;
+                    mX2 += (vertical ? seq2 : run2);
+                    mY2 += (vertical ? run2 : seq2);
+                }
+            }
+        }
+
+        if (m <= 0) {
+            throw new IllegalArgumentException(
+                    getClass().getSimpleName() + " on inconsistent input");
+        }
+
+        mass = (int) m;
+
+        final double cX = mX2 / (2.0 * mass);
+        final double cY = mY2 / (2.0 * mass);
+        center = new Point2D.Double(cX, cY);
+
+        // Radius: extreme distances are reached at run ends
+        double dXMax = Double.MIN_VALUE;
+        double dYMax = Double.MIN_VALUE;
+
+        for (int it = 0; it < count; it++) {
+            final RunTable runTable = runTables.get(it);
+            final boolean vertical = runTable.getOrientation() == Orientation.VERTICAL;
+            final Point offset = offsets.get(it);
+            final double cSeq = vertical ? (cX - offset.x) : (cY - offset.y);
+            final double cRun = vertical ? (cY - offset.y) : (cX - offset.x);
+            final RunCursor cursor = cursors[it];
+            double dSeqMax = Double.MIN_VALUE;
+            double dRunMax = Double.MIN_VALUE;
+
+            for (int iSeq = 0, size = runTable.getSize(); iSeq < size; iSeq++) {
+                for (cursor.reset(iSeq); cursor.next();) {
+                    dSeqMax = Math.max(dSeqMax, Math.abs(iSeq - cSeq));
+                    dRunMax = Math.max(dRunMax, Math.abs(cursor.getStart() - cRun));
+                    dRunMax = Math.max(dRunMax, Math.abs(cursor.getStop() - cRun));
+                }
+            }
+
+            dXMax = Math.max(dXMax, vertical ? dSeqMax : dRunMax);
+            dYMax = Math.max(dYMax, vertical ? dRunMax : dSeqMax);
+        }
+
+        radius = Math.hypot(dXMax, dYMax);
+
+        // Summation of basis functions, point by point along each run
+        Arrays.fill(coeffs, 0);
+
+        for (int it = 0; it < count; it++) {
+            final RunTable runTable = runTables.get(it);
+            final boolean vertical = runTable.getOrientation() == Orientation.VERTICAL;
+            final Point offset = offsets.get(it);
+            final double cSeq = vertical ? (cX - offset.x) : (cY - offset.y);
+            final double cRun = vertical ? (cY - offset.y) : (cX - offset.x);
+            final RunCursor cursor = cursors[it];
+
+            for (int iSeq = 0, size = runTable.getSize(); iSeq < size; iSeq++) {
+                final double lSeq = (((iSeq - cSeq) * LUT_RADIUS) / radius) + LUT_RADIUS;
+
+                for (cursor.reset(iSeq); cursor.next();) {
+                    for (int i = cursor.getStart(), stop = cursor.getStop(); i <= stop; i++) {
+                        final double lRun = (((i - cRun) * LUT_RADIUS) / radius) + LUT_RADIUS;
+
+                        if (vertical) {
+                            accumulate(lSeq, lRun);
+                        } else {
+                            accumulate(lRun, lSeq);
+                        }
+                    }
+                }
+            }
+        }
+
+        saveMoments();
+    }
+
+    //-------------//
+    // reconstruct //
+    //-------------//
+    @Override
+    public void reconstruct (WritableRaster raster)
+    {
+        ///throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    //----------------//
+    // extractMoments //
+    //----------------//
+    @Override
+    protected void extractMoments ()
+    {
+        final double centerX = center.getX();
+        final double centerY = center.getY();
+        Arrays.fill(coeffs, 0);
+
+        for (int i = 0; i < mass; i++) {
+            // Map image coordinates to LUT coordinates
+            accumulate((((xx[i] - centerX) * LUT_RADIUS) / radius) + LUT_RADIUS,
+                       (((yy[i] - centerY) * LUT_RADIUS) / radius) + LUT_RADIUS);
+        }
+
+        saveMoments();
+    }
+
+    //------------//
+    // accumulate //
+    //------------//
+    /**
+     * Add the interpolated basis function values at the provided LUT location.
+     *
+     * @param lx LUT abscissa
+     * @param ly LUT ordinate
+     */
+    private void accumulate (double lx,
+                             double ly)
+    {
+        if ((lx < 0) || (lx >= LUT_SIZE) || (ly < 0) || (ly >= LUT_SIZE)) {
+            return;
+        }
+
+        // Integer coordinates, by truncating precise coordinates
+        final int x = (int) lx;
+        final int y = (int) ly;
+
+        // Bilinear weights of the 4 surrounding cells
+        final double ix = lx - x;
+        final double iy = ly - y;
+        final double w11 = ix * iy;
+        final double w10 = ix - w11;
+        final double w01 = iy - w11;
+        final double w00 = 1 - ix - w01;
+
+        // A point on last row or column reads the trailing zero-valued cells
+        final int c00 = ((x * LUT_STRIDE) + y) * COEFF_COUNT;
+        final int c01 = c00 + COEFF_COUNT;
+        final int c10 = c00 + (LUT_STRIDE * COEFF_COUNT);
+        final int c11 = c10 + COEFF_COUNT;
+
+        for (int k = 0; k < COEFF_COUNT; k++) {
+            coeffs[k] += (w00 * lut[c00 + k]) + (w01 * lut[c01 + k]) + (w10 * lut[c10 + k])
+                         + (w11 * lut[c11 + k]);
+        }
+    }
+
+    //-------------//
+    // saveMoments //
+    //-------------//
+    /**
+     * Save accumulated coefficients to descriptor.
+     */
+    private void saveMoments ()
+    {
+        for (int p = 0; p < ANGULAR; p++) {
+            for (int r = 0; r < RADIAL; r++) {
+                final int k = 2 * ((p * RADIAL) + r);
+                final double real = coeffs[k] / mass;
+                final double imag = coeffs[k + 1] / mass;
+                descriptor.setMoment(p, r, Math.hypot(imag, real));
+            }
+        }
+    }
+
+    //---------//
+    // initLUT //
+    //---------//
+    /**
+     * Compute, once for all, the lookup table values.
+     * Cells on or outside the unit circle, as well as trailing cells, are left to zero.
+     */
+    private static void initLUT ()
+    {
+        StopWatch watch = new StopWatch("LUT");
+        watch.start("initLUT");
+
+        for (int x = 0; x < LUT_SIZE; x++) {
+            double tx = (x - LUT_RADIUS) / (double) LUT_RADIUS; // [-1..+1]
+
+            for (int y = 0; y < LUT_SIZE; y++) {
+                double ty = (y - LUT_RADIUS) / (double) LUT_RADIUS; // [-1..+1]
+                double rad = Math.hypot(tx, ty); // [0..sqrt(2)]
+
+                if (rad < 1) {
+                    // We are within unit circle
+                    double angle = Math.atan2(ty, tx);
+                    int k = ((x * LUT_STRIDE) + y) * COEFF_COUNT;
+
+                    for (int p = 0; p < ANGULAR; p++) {
+                        for (int r = 0; r < RADIAL; r++) {
+                            double temp = Math.cos(rad * Math.PI * r);
+                            lut[k++] = temp * Math.cos(angle * p);
+                            lut[k++] = -temp * Math.sin(angle * p);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (constants.printWatch.isSet()) {
+            watch.print();
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean printWatch = new Constant.Boolean(
+                false,
+                "Should we print out the stop watch?");
+    }
+}
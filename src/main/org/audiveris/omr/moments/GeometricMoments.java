@@ -213,32 +213,68 @@ public class GeometricMoments
         k[11] = n01; // yBar
 
         if (useHuCoefficients) {
-            // Orthogonals moments (Hu set)
-            // (Invariant to translation / scaling / rotation)
-            int i = 12;
-            k[i++] = n20 + n02;
-            //
-            k[i++] = ((n20 - n02) * (n20 - n02)) + (4 * n11 * n11);
-            //
-            k[i++] = ((n30 - (3 * n12)) * (n30 - (3 * n12)))
-                             + ((n03 - (3 * n21)) * (n03 - (3 * n21)));
-            //
-            k[i++] = ((n30 + n12) * (n30 + n12)) + ((n03 + n21) * (n03 + n21));
-            //
-            k[i++] = ((n30 - (3 * n12)) * (n30 + n12) * (((n30 + n12) * (n30 + n12))
-                                                                 - (3 * (n21 + n03) * (n21 + n03))))
-                             + ((n03 - (3 * n21)) * (n03 + n21)
-                                        * (((n03 + n21) * (n03 + n21))
-                                                   - (3 * (n12 + n30) * (n12 + n30))));
-            //
-            k[i++] = ((n20 - n02) * (((n30 + n12) * (n30 + n12)) - ((n03 + n21) * (n03 + n21))))
-                             + (4 * n11 * (n30 + n12) * (n03 + n21));
-            //
-            k[i++] = (((3 * n21) - n03) * (n30 + n12) * (((n30 + n12) * (n30 + n12))
-                                                                 - (3 * (n21 + n03) * (n21 + n03))))
-                             - (((3 * n12) - n30)
-                                        * (n03 + n21) * (((n03 + n21) * (n03 + n21))
-                                                                 - (3 * (n12 + n30) * (n12 + n30))));
+            computeHu(n20, n11, n02, n30, n21, n12, n03);
+        }
+    }
+
+    //------------------//
+    // GeometricMoments //
+    //------------------//
+    /**
+     * Compute the moments out of accumulated raw moments, all values being normalized
+     * by the provided unit value.
+     * <p>
+     * This gives the same values as the points-based constructor, without needing the points.
+     *
+     * @param raw  the raw moments of the points
+     * @param unit the length (number of pixels) of normalizing unit
+     */
+    public GeometricMoments (RawMoments raw,
+                             int unit)
+    {
+        // Safety checks
+        if (unit == 0) {
+            throw new IllegalArgumentException("Zero-valued unit");
+        }
+
+        if (raw.m00 == 0) {
+            throw new IllegalArgumentException("No point in raw moments");
+        }
+
+        final double w = raw.m00;
+        final double w2 = w * w; // For p+q == 2
+        final double w3 = Math.sqrt(w * w * w * w * w); // For p+q == 3
+
+        // Mean x & y, relative to origin
+        final double xb = raw.m10 / w;
+        final double yb = raw.m01 / w;
+
+        // Central moments derived from raw moments
+        final double n20 = (raw.m20 - (xb * raw.m10)) / w2;
+        final double n11 = (raw.m11 - (xb * raw.m01)) / w2;
+        final double n02 = (raw.m02 - (yb * raw.m01)) / w2;
+        final double n30 = ((raw.m30 - (3 * xb * raw.m20)) + (2 * xb * xb * raw.m10)) / w3;
+        final double n21 = (((raw.m21 - (2 * xb * raw.m11)) - (yb * raw.m20))
+                            + (2 * xb * xb * raw.m01)) / w3;
+        final double n12 = (((raw.m12 - (2 * yb * raw.m11)) - (xb * raw.m02))
+                            + (2 * yb * yb * raw.m10)) / w3;
+        final double n03 = ((raw.m03 - (3 * yb * raw.m02)) + (2 * yb * yb * raw.m01)) / w3;
+
+        k[0] = w / (unit * unit); // Unit-based Weight
+        k[1] = (double) (raw.xMax - raw.xMin + 1) / unit; // Unit-based Width
+        k[2] = (double) (raw.yMax - raw.yMin + 1) / unit; // Unit-based Height
+        k[3] = n20;
+        k[4] = n11;
+        k[5] = n02;
+        k[6] = n30;
+        k[7] = n21;
+        k[8] = n12;
+        k[9] = n03;
+        k[10] = raw.xOrigin + xb; // xBar
+        k[11] = raw.yOrigin + yb; // yBar
+
+        if (useHuCoefficients) {
+            computeHu(n20, n11, n02, n30, n21, n12, n03);
         }
     }
 
@@ -356,6 +392,48 @@ public class GeometricMoments
         return k[1];
     }
 
+    //-----------//
+    // computeHu //
+    //-----------//
+    /**
+     * Compute the orthogonal moments (Hu set), out of the normalized central moments.
+     */
+    private void computeHu (double n20,
+                            double n11,
+                            double n02,
+                            double n30,
+                            double n21,
+                            double n12,
+                            double n03)
+    {
+        // Orthogonals moments (Hu set)
+        // (Invariant to translation / scaling / rotation)
+        int i = 12;
+        k[i++] = n20 + n02;
+        //
+        k[i++] = ((n20 - n02) * (n20 - n02)) + (4 * n11 * n11);
+        //
+        k[i++] = ((n30 - (3 * n12)) * (n30 - (3 * n12)))
+                         + ((n03 - (3 * n21)) * (n03 - (3 * n21)));
+        //
+        k[i++] = ((n30 + n12) * (n30 + n12)) + ((n03 + n21) * (n03 + n21));
+        //
+        k[i++] = ((n30 - (3 * n12)) * (n30 + n12) * (((n30 + n12) * (n30 + n12))
+                                                             - (3 * (n21 + n03) * (n21 + n03))))
+                         + ((n03 - (3 * n21)) * (n03 + n21)
+                                    * (((n03 + n21) * (n03 + n21))
+                                               - (3 * (n12 + n30) * (n12 + n30))));
+        //
+        k[i++] = ((n20 - n02) * (((n30 + n12) * (n30 + n12)) - ((n03 + n21) * (n03 + n21))))
+                         + (4 * n11 * (n30 + n12) * (n03 + n21));
+        //
+        k[i++] = (((3 * n21) - n03) * (n30 + n12) * (((n30 + n12) * (n30 + n12))
+                                                             - (3 * (n21 + n03) * (n21 + n03))))
+                         - (((3 * n12) - n30)
+                                    * (n03 + n21) * (((n03 + n21) * (n03 + n21))
+                                                             - (3 * (n12 + n30) * (n12 + n30))));
+    }
+
     //----------//
     // toString //
     //----------//
@@ -0,0 +1,221 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                       R a w M o m e n t s                                      //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.moments;
+
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunCursor;
+import org.audiveris.omr.run.RunTable;
+
+/**
+ * Class {@code RawMoments} accumulates the raw (non central) geometric moments of a set of
+ * points, up to order 3.
+ * <p>
+ * Raw moments are additive over disjoint sets of points, so the moments of a compound can be
+ * obtained by summing the moments of its parts, without collecting the compound points.
+ * Coordinates are taken relative to a reference origin, which keeps sums small and exact, and
+ * only moments sharing the same origin can be summed.
+ * <p>
+ * The related central moments are provided by {@link GeometricMoments#GeometricMoments(RawMoments,
+ * int)}.
+ *
+ * @author Hervé Bitteur
+ */
+public class RawMoments
+{
+
+    /** Abscissa of reference origin. */
+    final int xOrigin;
+
+    /** Ordinate of reference origin. */
+    final int yOrigin;
+
+    /** Number of points. */
+    long m00;
+
+    /** Sum of x. */
+    long m10;
+
+    /** Sum of y. */
+    long m01;
+
+    /** Sum of x * x. */
+    long m20;
+
+    /** Sum of x * y. */
+    long m11;
+
+    /** Sum of y * y. */
+    long m02;
+
+    /** Sum of x * x * x. */
+    long m30;
+
+    /** Sum of x * x * y. */
+    long m21;
+
+    /** Sum of x * y * y. */
+    long m12;
+
+    /** Sum of y * y * y. */
+    long m03;
+
+    /** Relative bounds of points. */
+    int xMin = Integer.MAX_VALUE;
+
+    int xMax = Integer.MIN_VALUE;
+
+    int yMin = Integer.MAX_VALUE;
+
+    int yMax = Integer.MIN_VALUE;
+
+    /**
+     * Creates a new empty {@code RawMoments} object.
+     *
+     * @param xOrigin abscissa of reference origin
+     * @param yOrigin ordinate of reference origin
+     */
+    public RawMoments (int xOrigin,
+                       int yOrigin)
+    {
+        this.xOrigin = xOrigin;
+        this.yOrigin = yOrigin;
+    }
+
+    /**
+     * Creates a new {@code RawMoments} object as a copy of another one.
+     *
+     * @param that the other RawMoments to copy
+     */
+    public RawMoments (RawMoments that)
+    {
+        this(that.xOrigin, that.yOrigin);
+        add(that);
+    }
+
+    //-----//
+    // add //
+    //-----//
+    /**
+     * Add the moments of another (disjoint) set of points.
+     *
+     * @param that the moments to add, defined with the same origin
+     */
+    public final void add (RawMoments that)
+    {
+        if ((that.xOrigin != xOrigin) || (that.yOrigin != yOrigin)) {
+            throw new IllegalArgumentException("RawMoments with different origins");
+        }
+
+        m00 += that.m00;
+        m10 += that.m10;
+        m01 += that.m01;
+        m20 += that.m20;
+        m11 += that.m11;
+        m02 += that.m02;
+        m30 += that.m30;
+        m21 += that.m21;
+        m12 += that.m12;
+        m03 += that.m03;
+
+        xMin = Math.min(xMin, that.xMin);
+        xMax = Math.max(xMax, that.xMax);
+        yMin = Math.min(yMin, that.yMin);
+        yMax = Math.max(yMax, that.yMax);
+    }
+
+    //-----------//
+    // getWeight //
+    //-----------//
+    /**
+     * Report the number of points accumulated so far.
+     *
+     * @return the weight
+     */
+    public int getWeight ()
+    {
+        return (int) m00;
+    }
+
+    //---------//
+    // include //
+    //---------//
+    /**
+     * Accumulate the foreground points of the provided run table.
+     *
+     * @param runTable the table of foreground runs
+     * @param left     absolute abscissa of table top left corner
+     * @param top      absolute ordinate of table top left corner
+     */
+    public void include (RunTable runTable,
+                         int left,
+                         int top)
+    {
+        final boolean vertical = runTable.getOrientation() == Orientation.VERTICAL;
+        final RunCursor cursor = new RunCursor(runTable);
+        final int dx = left - xOrigin;
+        final int dy = top - yOrigin;
+
+        for (int iSeq = 0, size = runTable.getSize(); iSeq < size; iSeq++) {
+            for (cursor.reset(iSeq); cursor.next();) {
+                for (int i = cursor.getStart(), stop = cursor.getStop(); i <= stop; i++) {
+                    if (vertical) {
+                        include(iSeq + dx, i + dy);
+                    } else {
+                        include(i + dx, iSeq + dy);
+                    }
+                }
+            }
+        }
+    }
+
+    //---------//
+    // include //
+    //---------//
+    /**
+     * Accumulate one point.
+     *
+     * @param x point abscissa, relative to origin
+     * @param y point ordinate, relative to origin
+     */
+    private void include (long x,
+                          long y)
+    {
+        final long xx = x * x;
+        final long yy = y * y;
+
+        m00++;
+        m10 += x;
+        m01 += y;
+        m20 += xx;
+        m11 += (x * y);
+        m02 += yy;
+        m30 += (xx * x);
+        m21 += (xx * y);
+        m12 += (x * yy);
+        m03 += (yy * y);
+
+        xMin = Math.min(xMin, (int) x);
+        xMax = Math.max(xMax, (int) x);
+        yMin = Math.min(yMin, (int) y);
+        yMax = Math.max(yMax, (int) y);
+    }
+}
@@ -0,0 +1,233 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                        R u n C u r s o r                                       //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import org.audiveris.omr.run.RunTable.RunSequence;
+
+/**
+ * Class {@code RunCursor} browses the foreground runs of a {@link RunTable} sequence,
+ * directly on the run-length encoding, without allocating any {@link Run} object.
+ * <p>
+ * A cursor is bound to a table and can be repositioned on any sequence of this table via
+ * {@link #reset(int)}, so that one cursor instance can serve a whole table scan:
+ *
+ * <pre>
+ * RunCursor cursor = new RunCursor(table);
+ *
+ * for (int i = 0; i &lt; table.getSize(); i++) {
+ *     for (cursor.reset(i); cursor.next();) {
+ *         int start = cursor.getStart();
+ *         int length = cursor.getLength();
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * The cursor works on the sequence state at reset time, it is not meant to survive a
+ * modification of the browsed sequence.
+ *
+ * @author Hervé Bitteur
+ */
+public final class RunCursor
+{
+
+    /** The browsed table. */
+    private final RunTable table;
+
+    /** RLE cells of current sequence, perhaps null. */
+    private int[] rle;
+
+    /** Position in rle of next foreground length to read. */
+    private int cursor;
+
+    /** Start location of next foreground run. */
+    private int loc;
+
+    /** Start of current run. */
+    private int start;
+
+    /** Length of current run. */
+    private int length;
+
+    /**
+     * <b>Reusable</b> Run structure, for consumers that need a Run object.
+     * Beware, don't keep a pointer to this Run object, make a copy.
+     */
+    private final Run run = new Run(-1, -1);
+
+    /**
+     * Creates a new {@code RunCursor} object on provided table.
+     *
+     * @param table the table to browse
+     */
+    public RunCursor (RunTable table)
+    {
+        this.table = table;
+    }
+
+    //-----------//
+    // getLength //
+    //-----------//
+    /**
+     * Report the length of current run.
+     *
+     * @return current run length
+     */
+    public int getLength ()
+    {
+        return length;
+    }
+
+    //--------//
+    // getRun //
+    //--------//
+    /**
+     * Report current run, as a <b>reusable</b> Run structure.
+     * <p>
+     * The same Run instance is returned and updated on each call, so don't keep a pointer to it.
+     * Use {@link #toRun()} to get a separate copy.
+     *
+     * @return the current run, which will be updated by next call
+     */
+    public Run getRun ()
+    {
+        run.setStart(start);
+        run.setLength(length);
+
+        return run;
+    }
+
+    //----------//
+    // getStart //
+    //----------//
+    /**
+     * Report the start coordinate of current run.
+     *
+     * @return current run start
+     */
+    public int getStart ()
+    {
+        return start;
+    }
+
+    //---------//
+    // getStop //
+    //---------//
+    /**
+     * Report the stop coordinate (inclusive) of current run.
+     *
+     * @return current run stop
+     */
+    public int getStop ()
+    {
+        return (start + length) - 1;
+    }
+
+    //---------//
+    // hasNext //
+    //---------//
+    /**
+     * Tell whether there is still a foreground run to move to.
+     *
+     * @return true if {@link #next()} would succeed
+     */
+    public boolean hasNext ()
+    {
+        return (rle != null) && (cursor < rle.length);
+    }
+
+    //------//
+    // next //
+    //------//
+    /**
+     * Move to the next foreground run, if any.
+     *
+     * @return true if moved, false if there is no more run in the sequence
+     */
+    public boolean next ()
+    {
+        if ((rle == null) || (cursor >= rle.length)) {
+            return false;
+        }
+
+        start = loc;
+        length = rle[cursor++] & 0xFFFF;
+        loc += length;
+
+        if (cursor < rle.length) {
+            loc += (rle[cursor] & 0xFFFF);
+        }
+
+        cursor++;
+
+        return true;
+    }
+
+    //-------//
+    // reset //
+    //-------//
+    /**
+     * Position the cursor before the first run of the sequence at provided index.
+     *
+     * @param index index of sequence in table
+     * @return this cursor, to allow chaining
+     */
+    public RunCursor reset (int index)
+    {
+        final RunSequence seq = table.getSequence(index);
+        rle = (seq != null) ? seq.getRle() : null;
+        cursor = 0;
+        loc = 0;
+        start = -1;
+        length = 0;
+
+        // Skip an initial background run
+        if ((rle != null) && (rle.length > 1) && (rle[0] == 0)) {
+            loc = rle[1] & 0xFFFF;
+            cursor = 2;
+        }
+
+        return this;
+    }
+
+    //-------//
+    // toRun //
+    //-------//
+    /**
+     * Report a new Run instance that copies current run.
+     *
+     * @return a new run
+     */
+    public Run toRun ()
+    {
+        return new Run(start, length);
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public String toString ()
+    {
+        return "RunCursor{" + start + "," + length + "}";
+    }
+}
@@ -0,0 +1,370 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                       R u n O v e r l a p                                      //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import static org.audiveris.omr.run.Orientation.HORIZONTAL;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+
+/**
+ * Class {@code RunOverlap} checks whether two run tables share pixels, directly on
+ * their run-length encodings, without any intermediate table nor allocation.
+ * <p>
+ * Each table is located by the absolute coordinates of its top-left corner.
+ * When both tables share the same orientation, the runs of facing sequences are merged.
+ * Otherwise, each run of one table is checked against the perpendicular sequences of the other
+ * table.
+ * <p>
+ * A "fat" test also reports tables that just touch, that is with a pixel of one table being
+ * 4-adjacent to a pixel of the other table.
+ * <p>
+ * This class also rasterizes a shape into a run table, so that shapes can be tested the same way.
+ * Rasterization is conservative, so that a thin shape is never lost between pixel centers.
+ *
+ * @author Hervé Bitteur
+ */
+public abstract class RunOverlap
+{
+
+    /** Not meant to be instantiated. */
+    private RunOverlap ()
+    {
+    }
+
+    //-----------//
+    // intersect //
+    //-----------//
+    /**
+     * Report whether the two provided located tables have at least one pixel in common,
+     * or are just touching if fat is set.
+     *
+     * @param one     a table
+     * @param oneLeft absolute abscissa of one top-left corner
+     * @param oneTop  absolute ordinate of one top-left corner
+     * @param two     another table
+     * @param twoLeft absolute abscissa of two top-left corner
+     * @param twoTop  absolute ordinate of two top-left corner
+     * @param fat     true to report touching tables as well
+     * @return true if overlap, false otherwise
+     */
+    public static boolean intersect (RunTable one,
+                                     int oneLeft,
+                                     int oneTop,
+                                     RunTable two,
+                                     int twoLeft,
+                                     int twoTop,
+                                     boolean fat)
+    {
+        // Very rough test on bounds
+        final int margin = fat ? 1 : 0;
+
+        if (((twoLeft + two.getWidth() + margin) <= oneLeft)
+                    || ((oneLeft + one.getWidth() + margin) <= twoLeft)
+                    || ((twoTop + two.getHeight() + margin) <= oneTop)
+                    || ((oneTop + one.getHeight() + margin) <= twoTop)) {
+            return false;
+        }
+
+        // Location of two with respect to one, along one sequence axis and one coordinate axis
+        final boolean oneHori = one.getOrientation() == HORIZONTAL;
+        final int dPos = oneHori ? (twoTop - oneTop) : (twoLeft - oneLeft);
+        final int dCoord = oneHori ? (twoLeft - oneLeft) : (twoTop - oneTop);
+
+        if (one.getOrientation() == two.getOrientation()) {
+            return parallelIntersect(one, two, dPos, dCoord, margin);
+        } else {
+            return perpendicularIntersect(one, two, dPos, dCoord, margin);
+        }
+    }
+
+    //-----------//
+    // rasterize //
+    //-----------//
+    /**
+     * Build the horizontal table of the pixels touched by the provided shape.
+     * <p>
+     * Any pixel square with some coverage by the shape counts, however small this coverage is.
+     * Hence a thin or sub-pixel shape still gets its pixels, and a test on the resulting table
+     * never misses an intersection with the shape.
+     *
+     * @param shape the shape to rasterize
+     * @param box   the absolute integer bounds of shape, which give the table top-left corner
+     * @return the run table, relative to box top-left corner
+     */
+    public static RunTable rasterize (Shape shape,
+                                      Rectangle box)
+    {
+        final RunTable table = new RunTable(HORIZONTAL, box.width, box.height);
+
+        for (int y = 0; y < box.height; y++) {
+            final int yp = box.y + y;
+            int start = -1;
+
+            for (int x = 0; x <= box.width; x++) {
+                final boolean in = (x < box.width) && shape.intersects(box.x + x, yp, 1, 1);
+
+                if (in) {
+                    if (start == -1) {
+                        start = x;
+                    }
+                } else if (start != -1) {
+                    table.addRun(y, start, x - start);
+                    start = -1;
+                }
+            }
+        }
+
+        return table;
+    }
+
+    //--------//
+    // covers //
+    //--------//
+    /**
+     * Report whether the provided sequence has a foreground pixel in [lo, hi].
+     *
+     * @param rle the sequence cells, perhaps null
+     * @param lo  lower coordinate
+     * @param hi  higher coordinate
+     * @return true if so
+     */
+    private static boolean covers (int[] rle,
+                                   int lo,
+                                   int hi)
+    {
+        if (rle == null) {
+            return false;
+        }
+
+        for (int i = 0, start = 0, len = rle.length; i < len; i += 2) {
+            final int fore = rle[i] & 0xFFFF;
+
+            if (start > hi) {
+                return false;
+            }
+
+            if ((fore > 0) && ((start + fore) > lo)) {
+                return true;
+            }
+
+            start += fore;
+
+            if ((i + 1) < len) {
+                start += (rle[i + 1] & 0xFFFF);
+            }
+        }
+
+        return false;
+    }
+
+    //-----------//
+    // getLength //
+    //-----------//
+    /**
+     * Report the length of table sequences.
+     *
+     * @param table the table
+     * @return table width if horizontal, height otherwise
+     */
+    private static int getLength (RunTable table)
+    {
+        return (table.getOrientation() == HORIZONTAL) ? table.getWidth() : table.getHeight();
+    }
+
+    //--------//
+    // getRle //
+    //--------//
+    private static int[] getRle (RunTable table,
+                                 int index)
+    {
+        if ((index < 0) || (index >= table.getSize())) {
+            return null;
+        }
+
+        final RunTable.RunSequence seq = table.getSequence(index);
+
+        return (seq != null) ? seq.getRle() : null;
+    }
+
+    //-------//
+    // merge //
+    //-------//
+    /**
+     * Merge two sequences and report whether a run of a, enlarged by grow on both ends,
+     * overlaps a run of b.
+     *
+     * @param a     cells of first sequence, perhaps null
+     * @param b     cells of second sequence, perhaps null
+     * @param shift coordinate of b origin, relative to a origin
+     * @param grow  enlargement applied on a runs
+     * @return true if overlap found
+     */
+    private static boolean merge (int[] a,
+                                  int[] b,
+                                  int shift,
+                                  int grow)
+    {
+        if ((a == null) || (b == null)) {
+            return false;
+        }
+
+        int ia = 0;
+        int aStart = 0;
+        int ib = 0;
+        int bStart = shift;
+
+        while ((ia < a.length) && (ib < b.length)) {
+            final int aLen = a[ia] & 0xFFFF;
+            final int bLen = b[ib] & 0xFFFF;
+            final boolean aBefore = (aStart + aLen + grow) <= bStart;
+            final boolean bBefore = (bStart + bLen) <= (aStart - grow);
+
+            if ((aLen == 0) || aBefore) {
+                aStart += (aLen + (((ia + 1) < a.length) ? (a[ia + 1] & 0xFFFF) : 0));
+                ia += 2;
+            } else if ((bLen == 0) || bBefore) {
+                bStart += (bLen + (((ib + 1) < b.length) ? (b[ib + 1] & 0xFFFF) : 0));
+                ib += 2;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    //-------------------//
+    // parallelIntersect //
+    //-------------------//
+    /**
+     * Intersection of tables with same orientation, by merging facing sequences.
+     *
+     * @param one    first table
+     * @param two    second table
+     * @param dPos   position of two first sequence, relative to one
+     * @param dCoord coordinate of two sequence origin, relative to one
+     * @param margin 1 for a fat test, 0 otherwise
+     * @return true if overlap
+     */
+    private static boolean parallelIntersect (RunTable one,
+                                              RunTable two,
+                                              int dPos,
+                                              int dCoord,
+                                              int margin)
+    {
+        final int pMin = Math.max(0, dPos - margin);
+        final int pMax = Math.min(one.getSize() - 1, (dPos + two.getSize() - 1) + margin);
+
+        for (int p = pMin; p <= pMax; p++) {
+            final int[] a = getRle(one, p);
+
+            if (a == null) {
+                continue;
+            }
+
+            // Facing sequence
+            if (merge(a, getRle(two, p - dPos), dCoord, margin)) {
+                return true;
+            }
+
+            // Neighboring sequences
+            if ((margin > 0)
+                        && (merge(a, getRle(two, p - dPos - 1), dCoord, 0)
+                            || merge(a, getRle(two, (p - dPos) + 1), dCoord, 0))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    //------------------------//
+    // perpendicularIntersect //
+    //------------------------//
+    /**
+     * Intersection of tables with different orientations, by checking each run of one
+     * against the perpendicular sequences of two.
+     *
+     * @param one    first table
+     * @param two    second table
+     * @param dPos   position of two, relative to one, along one sequence axis
+     * @param dCoord position of two, relative to one, along one coordinate axis
+     * @param margin 1 for a fat test, 0 otherwise
+     * @return true if overlap
+     */
+    private static boolean perpendicularIntersect (RunTable one,
+                                                   RunTable two,
+                                                   int dPos,
+                                                   int dCoord,
+                                                   int margin)
+    {
+        // One sequence axis is two coordinate axis, and vice versa
+        final int pMin = Math.max(0, dPos - margin);
+        final int pMax = Math.min(one.getSize() - 1, (dPos + getLength(two)) - 1 + margin);
+        final int cMin = dCoord - margin;
+        final int cMax = (dCoord + two.getSize()) - 1 + margin;
+
+        for (int p = pMin; p <= pMax; p++) {
+            final int[] a = getRle(one, p);
+
+            if (a == null) {
+                continue;
+            }
+
+            final int target = p - dPos; // Coordinate within two sequences
+
+            for (int i = 0, start = 0, len = a.length; i < len; i += 2) {
+                final int fore = a[i] & 0xFFFF;
+
+                if (start > cMax) {
+                    break;
+                }
+
+                if (fore > 0) {
+                    final int stop = (start + fore) - 1;
+
+                    for (int c = Math.max(start, cMin + margin),
+                            cBreak = Math.min(stop, cMax - margin); c <= cBreak; c++) {
+                        if (covers(getRle(two, c - dCoord), target - margin, target + margin)) {
+                            return true;
+                        }
+                    }
+
+                    if ((margin > 0)
+                                && (covers(getRle(two, start - 1 - dCoord), target, target)
+                                    || covers(getRle(two, stop + 1 - dCoord), target, target))) {
+                        return true;
+                    }
+                }
+
+                start += fore;
+
+                if ((i + 1) < len) {
+                    start += (a[i + 1] & 0xFFFF);
+                }
+            }
+        }
+
+        return false;
+    }
+}
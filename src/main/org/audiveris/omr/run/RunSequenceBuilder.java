@@ -0,0 +1,178 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               R u n S e q u e n c e B u i l d e r                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import java.util.Arrays;
+
+/**
+ * Class {@code RunSequenceBuilder} builds the run-length encoding of a run sequence,
+ * by appending runs into a growable buffer of int cells.
+ * <p>
+ * Runs must be appended in increasing coordinate order, and must not overlap.
+ * A run adjacent to the previous one is merged with it.
+ * A builder can be cleared and reused for the next sequence, so that populating a whole table
+ * allocates just one rle array per non-empty sequence:
+ *
+ * <pre>
+ * RunSequenceBuilder builder = new RunSequenceBuilder();
+ *
+ * for (int i = 0; i &lt; table.getSize(); i++) {
+ *     builder.clear();
+ *     ... builder.append(start, length); ...
+ *     table.setSequence(i, builder);
+ * }
+ * </pre>
+ *
+ * @author Hervé Bitteur
+ */
+public final class RunSequenceBuilder
+{
+
+    /** RLE cells, the actual count being given by size. */
+    private int[] cells;
+
+    /** Count of cells used. */
+    private int size;
+
+    /** Coordinate right after last appended run. */
+    private int end;
+
+    /**
+     * Creates a new {@code RunSequenceBuilder} object.
+     */
+    public RunSequenceBuilder ()
+    {
+        this(16);
+    }
+
+    /**
+     * Creates a new {@code RunSequenceBuilder} object, with initial capacity.
+     *
+     * @param capacity initial count of cells
+     */
+    public RunSequenceBuilder (int capacity)
+    {
+        cells = new int[Math.max(capacity, 4)];
+    }
+
+    //--------//
+    // append //
+    //--------//
+    /**
+     * Append a foreground run.
+     *
+     * @param start  start coordinate of the run, not before the end of previous run
+     * @param length length of the run, zero lengths being ignored
+     * @throws IllegalArgumentException if run overlaps the previous one
+     */
+    public void append (int start,
+                        int length)
+    {
+        if (length <= 0) {
+            return;
+        }
+
+        final int back = start - end;
+
+        if (back < 0) {
+            throw new IllegalArgumentException(
+                    "Run at " + start + " overlaps previous run ending at " + end);
+        }
+
+        if (size == 0) {
+            if (back == 0) {
+                ensure(1);
+                cells[size++] = length; // F
+            } else {
+                ensure(3);
+                cells[size++] = 0; // 0BF
+                cells[size++] = back;
+                cells[size++] = length;
+            }
+        } else if (back == 0) {
+            cells[size - 1] += length; // ...F+
+        } else {
+            ensure(2);
+            cells[size++] = back; // ...FBF
+            cells[size++] = length;
+        }
+
+        end = start + length;
+    }
+
+    //-------//
+    // clear //
+    //-------//
+    /**
+     * Empty the builder, for a new sequence.
+     */
+    public void clear ()
+    {
+        size = 0;
+        end = 0;
+    }
+
+    //---------//
+    // isEmpty //
+    //---------//
+    /**
+     * Tell whether no run has been appended since last clear.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty ()
+    {
+        return size == 0;
+    }
+
+    //-------//
+    // toRle //
+    //-------//
+    /**
+     * Report a copy of the rle cells built so far.
+     *
+     * @return the rle cells, or null if empty
+     */
+    public int[] toRle ()
+    {
+        return (size == 0) ? null : Arrays.copyOf(cells, size);
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public String toString ()
+    {
+        return "RunSequenceBuilder" + Arrays.toString(Arrays.copyOf(cells, size));
+    }
+
+    //--------//
+    // ensure //
+    //--------//
+    private void ensure (int more)
+    {
+        if ((size + more) > cells.length) {
+            cells = Arrays.copyOf(cells, Math.max(size + more, 2 * cells.length));
+        }
+    }
+}
@@ -28,8 +28,8 @@ import static org.audiveris.omr.image.PixelSource.BACKGROUND;
 import org.audiveris.omr.image.Table;
 import org.audiveris.omr.math.PointsCollector;
 import org.audiveris.omr.moments.ARTMoments;
-import org.audiveris.omr.moments.BasicARTExtractor;
 import org.audiveris.omr.moments.BasicARTMoments;
+import org.audiveris.omr.moments.FlatARTExtractor;
 import org.audiveris.omr.moments.GeometricMoments;
 import static org.audiveris.omr.run.Orientation.HORIZONTAL;
 import org.audiveris.omr.util.ByteUtil;
@@ -316,16 +316,13 @@ public class RunTable
     public ARTMoments computeArtMoments (int left,
                                          int top)
     {
-        // Retrieve glyph foreground points
-        final PointsCollector collector = new PointsCollector(null, getWeight());
-        cumulate(collector, new Point(left, top));
-
         ///ARTMoments artMoments = new QuantizedARTMoments();
         ARTMoments artMoments = new BasicARTMoments();
 
-        BasicARTExtractor extractor = new BasicARTExtractor();
+        // Moments are extracted directly from the runs
+        FlatARTExtractor extractor = new FlatARTExtractor();
         extractor.setDescriptor(artMoments);
-        extractor.extract(collector.getXValues(), collector.getYValues(), collector.getSize());
+        extractor.extract(this);
 
         return artMoments;
     }
@@ -432,6 +429,23 @@ public class RunTable
         return clone;
     }
 
+    //--------//
+    // cursor //
+    //--------//
+    /**
+     * Report a cursor positioned before the first run of the sequence at provided index.
+     * <p>
+     * For a scan over several sequences, rather allocate one {@link RunCursor} and
+     * {@link RunCursor#reset(int) reset} it on each sequence.
+     *
+     * @param index index of sequence in table
+     * @return the run cursor
+     */
+    public RunCursor cursor (int index)
+    {
+        return new RunCursor(this).reset(index);
+    }
+
     //----------//
     // cumulate //
     //----------//
@@ -446,14 +460,14 @@ public class RunTable
                           Point offset)
     {
         final Rectangle roi = collector.getRoi();
+        final RunCursor cursor = new RunCursor(this);
 
         if (roi == null) {
             for (int p = 0, iBreak = getSize(); p < iBreak; p++) {
-                for (Iterator<Run> it = iterator(p); it.hasNext();) {
-                    Run run = it.next();
-                    int start = run.getStart();
+                for (cursor.reset(p); cursor.next();) {
+                    int start = cursor.getStart();
 
-                    for (int ic = run.getLength() - 1; ic >= 0; ic--) {
+                    for (int ic = cursor.getLength() - 1; ic >= 0; ic--) {
                         if (orientation == HORIZONTAL) {
                             collector.include(start + ic, p);
                         } else {
@@ -471,10 +485,9 @@ public class RunTable
             final int cMax = (oRoi.x + oRoi.width) - 1;
 
             for (int p = pMin; p <= pMax; p++) {
-                for (Iterator<Run> it = iterator(p); it.hasNext();) {
-                    final Run run = it.next();
-                    final int roiStart = Math.max(run.getStart(), cMin);
-                    final int roiStop = Math.min(run.getStop(), cMax);
+                for (cursor.reset(p); cursor.next();) {
+                    final int roiStart = Math.max(cursor.getStart(), cMin);
+                    final int roiStop = Math.min(cursor.getStop(), cMax);
                     final int length = roiStop - roiStart + 1;
 
                     if (length > 0) {
@@ -625,6 +638,7 @@ public class RunTable
 
         final int tableHeight = table.getHeight();
         final int tableWidth = table.getWidth();
+        final RunCursor cursor = new RunCursor(this);
 
         // Take only the pixels contained by the absolute roi
         if (orientation == HORIZONTAL) {
@@ -634,10 +648,9 @@ public class RunTable
             final int cMax = -1 + Math.min(width, dx + tableWidth);
 
             for (int p = pMin; p <= pMax; p++) {
-                for (Iterator<Run> it = iterator(p); it.hasNext();) {
-                    final Run run = it.next();
-                    final int roiStart = Math.max(run.getStart(), cMin);
-                    final int roiStop = Math.min(run.getStop(), cMax);
+                for (cursor.reset(p); cursor.next();) {
+                    final int roiStart = Math.max(cursor.getStart(), cMin);
+                    final int roiStop = Math.min(cursor.getStop(), cMax);
                     final int length = roiStop - roiStart + 1;
 
                     if (length > 0) {
@@ -686,10 +699,9 @@ public class RunTable
             final int cMax = -1 + Math.min(height, dy + tableHeight);
 
             for (int p = pMin; p <= pMax; p++) {
-                for (Iterator<Run> it = iterator(p); it.hasNext();) {
-                    final Run run = it.next();
-                    final int roiStart = Math.max(run.getStart(), cMin);
-                    final int roiStop = Math.min(run.getStop(), cMax);
+                for (cursor.reset(p); cursor.next();) {
+                    final int roiStart = Math.max(cursor.getStart(), cMin);
+                    final int roiStop = Math.min(cursor.getStop(), cMax);
                     final int length = roiStop - roiStart + 1;
 
                     if (length > 0) {
@@ -753,9 +765,25 @@ public class RunTable
     public final int get (int x,
                           int y)
     {
-        Run run = getRunAt(x, y);
+        final int iSeq = (orientation == HORIZONTAL) ? y : x;
+
+        if ((iSeq < 0) || (iSeq >= sequences.length)) {
+            return BACKGROUND;
+        }
+
+        final int coord = (orientation == HORIZONTAL) ? x : y;
+
+        for (RunCursor cursor = new RunCursor(this).reset(iSeq); cursor.next();) {
+            if (cursor.getStart() > coord) {
+                return BACKGROUND;
+            }
+
+            if (cursor.getStop() >= coord) {
+                return 0;
+            }
+        }
 
-        return (run != null) ? 0 : BACKGROUND;
+        return BACKGROUND;
     }
 
     //-----------//
@@ -772,11 +800,12 @@ public class RunTable
         final ByteProcessor buffer = new ByteProcessor(width, height);
         ByteUtil.raz(buffer); // buffer.invert();
 
-        for (int iSeq = 0, size = getSize(); iSeq < size; iSeq++) {
-            for (Itr it = new Itr(iSeq); it.hasNext();) {
-                final Run run = it.next();
+        final RunCursor cursor = new RunCursor(this);
 
-                for (int coord = run.getStart(), stop = run.getStop(); coord <= stop; coord++) {
+        for (int iSeq = 0, size = getSize(); iSeq < size; iSeq++) {
+            for (cursor.reset(iSeq); cursor.next();) {
+                for (int coord = cursor.getStart(), stop = cursor.getStop(); coord <= stop;
+                        coord++) {
                     if (orientation == HORIZONTAL) {
                         buffer.set(coord, iSeq, 0);
                     } else {
@@ -873,21 +902,35 @@ public class RunTable
 
         final int coord = (orientation == HORIZONTAL) ? x : y;
 
-        for (Itr it = new Itr(iSeq); it.hasNext();) {
-            Run run = it.next();
-
-            if (run.getStart() > coord) {
+        for (RunCursor cursor = new RunCursor(this).reset(iSeq); cursor.next();) {
+            if (cursor.getStart() > coord) {
                 return null;
             }
 
-            if (run.getStop() >= coord) {
-                return run;
+            if (cursor.getStop() >= coord) {
+                return cursor.toRun();
             }
         }
 
         return null;
     }
 
+    //-------------//
+    // getRunCount //
+    //-------------//
+    /**
+     * Report the number of foreground runs in the sequence at provided index.
+     *
+     * @param index index of sequence in table
+     * @return the count of runs in sequence
+     */
+    public int getRunCount (int index)
+    {
+        final RunSequence seq = sequences[index];
+
+        return (seq != null) ? seq.size() : 0;
+    }
+
     //---------------//
     // getRunService //
     //---------------//
@@ -947,13 +990,16 @@ public class RunTable
     public int getWeight ()
     {
         if (weight == null) {
-            weight = 0;
+            final RunCursor cursor = new RunCursor(this);
+            int w = 0;
 
             for (int iSeq = 0, iBreak = getSize(); iSeq < iBreak; iSeq++) {
-                for (Iterator<Run> it = iterator(iSeq); it.hasNext();) {
-                    weight += it.next().getLength();
+                for (cursor.reset(iSeq); cursor.next();) {
+                    w += cursor.getLength();
                 }
             }
+
+            weight = w;
         }
 
         return weight;
@@ -985,6 +1031,26 @@ public class RunTable
         Jaxb.marshal(this, path, getJaxbContext());
     }
 
+    //-----------//
+    // unmarshal //
+    //-----------//
+    /**
+     * (package private) Unmarshal a RunTable from an XML input stream.
+     *
+     * @param is the input stream, not closed by this method
+     * @return unmarshalled run table
+     * @throws JAXBException on unmarshalling error
+     */
+    static RunTable unmarshal (InputStream is)
+            throws JAXBException
+    {
+        Unmarshaller um = getJaxbContext().createUnmarshaller();
+        RunTable runTable = (RunTable) um.unmarshal(is);
+        logger.debug("Unmarshalled {}", runTable);
+
+        return runTable;
+    }
+
     //-----------//
     // unmarshal //
     //-----------//
@@ -999,11 +1065,7 @@ public class RunTable
         logger.debug("RunTable unmarshalling {}", path);
 
         try (InputStream is = Files.newInputStream(path, StandardOpenOption.READ)) {
-            Unmarshaller um = getJaxbContext().createUnmarshaller();
-            RunTable runTable = (RunTable) um.unmarshal(is);
-            logger.debug("Unmarshalled {}", runTable);
-
-            return runTable;
+            return unmarshal(is);
         } catch (IOException |
                  JAXBException ex) {
             logger.warn("RunTable. Error unmarshalling " + path + " " + ex, ex);
@@ -1050,6 +1112,9 @@ public class RunTable
      * Include the content of the provided table into this one.
      * <p>
      * The tables must have the same dimension and orientation.
+     * Runs of provided table are added one by one, a run that overlaps an existing run being
+     * skipped (see {@link #addRun(int, int, int)}).
+     * To merge overlapping runs, use {@link #union(RunTable)} instead.
      *
      * @param that the table of runs to include into this one
      */
@@ -1072,10 +1137,18 @@ public class RunTable
             throw new IllegalArgumentException("Cannot include a RunTable of different height");
         }
 
+        // Add that runs, one at a time
+        final RunCursor cursor = new RunCursor(that);
+
         for (int row = 0, size = getSize(); row < size; row++) {
-            for (Itr it = that.new Itr(row); it.hasNext();) {
-                Run thatRun = it.next();
-                addRun(row, thatRun);
+            if (that.isSequenceEmpty(row)) {
+                continue;
+            }
+
+            cursor.reset(row);
+
+            while (cursor.next()) {
+                addRun(row, cursor.getStart(), cursor.getLength());
             }
         }
     }
@@ -1106,6 +1179,7 @@ public class RunTable
 
         final int dx = tableOrigin.x - offset.x;
         final int dy = tableOrigin.y - offset.y;
+        final RunCursor cursor = new RunCursor(this);
 
         if (orientation == HORIZONTAL) {
             final int pMin = Math.max(0, dy);
@@ -1114,10 +1188,9 @@ public class RunTable
             final int cMax = -1 + Math.min(width, dx + table.getWidth());
 
             for (int p = pMin; p <= pMax; p++) {
-                for (Iterator<Run> it = iterator(p); it.hasNext();) {
-                    final Run run = it.next();
-                    final int roiStart = Math.max(run.getStart(), cMin);
-                    final int roiStop = Math.min(run.getStop(), cMax);
+                for (cursor.reset(p); cursor.next();) {
+                    final int roiStart = Math.max(cursor.getStart(), cMin);
+                    final int roiStop = Math.min(cursor.getStop(), cMax);
                     final int length = roiStop - roiStart + 1;
 
                     if (length > 0) {
@@ -1136,10 +1209,9 @@ public class RunTable
             final int cMax = -1 + Math.min(height, dy + table.getHeight());
 
             for (int p = pMin; p <= pMax; p++) {
-                for (Iterator<Run> it = iterator(p); it.hasNext();) {
-                    final Run run = it.next();
-                    final int roiStart = Math.max(run.getStart(), cMin);
-                    final int roiStop = Math.min(run.getStop(), cMax);
+                for (cursor.reset(p); cursor.next();) {
+                    final int roiStart = Math.max(cursor.getStart(), cMin);
+                    final int roiStop = Math.min(cursor.getStop(), cMax);
                     final int length = roiStop - roiStart + 1;
 
                     if (length > 0) {
@@ -1230,7 +1302,54 @@ public class RunTable
      * @param removed   (output) a table to be filled, if not null, with purged runs
      * @return this table, to allow easy chaining
      */
-    public RunTable purge (Predicate<Run> predicate,
+    public RunTable purge (final Predicate<Run> predicate,
+                           RunTable removed)
+    {
+        final Run run = new Run(-1, -1); // Reusable run structure
+
+        return purge(new RunPredicate()
+        {
+            @Override
+            public boolean check (int index,
+                                  int start,
+                                  int length)
+            {
+                run.setStart(start);
+                run.setLength(length);
+
+                return predicate.check(run);
+            }
+        }, removed);
+    }
+
+    //-------//
+    // purge //
+    //-------//
+    /**
+     * Purge a runs table of all runs that match the provided primitive predicate.
+     *
+     * @param predicate the filter to detect runs to remove
+     * @return this table, to allow easy chaining
+     */
+    public RunTable purge (RunPredicate predicate)
+    {
+        return purge(predicate, null);
+    }
+
+    //-------//
+    // purge //
+    //-------//
+    /**
+     * Purge a runs table of all runs that match the provided primitive predicate, and
+     * populate the provided 'removed' table with the removed runs.
+     * <p>
+     * Each modified sequence is rebuilt in one pass, without any Run object.
+     *
+     * @param predicate the filter to detect runs to remove
+     * @param removed   (output) a table to be filled, if not null, with purged runs
+     * @return this table, to allow easy chaining
+     */
+    public RunTable purge (RunPredicate predicate,
                            RunTable removed)
     {
         // Check parameters
@@ -1244,20 +1363,49 @@ public class RunTable
             }
         }
 
+        final RunCursor cursor = new RunCursor(this);
+        final RunSequenceBuilder kept = new RunSequenceBuilder();
+        final RunSequenceBuilder purged = new RunSequenceBuilder();
+
         for (int i = 0, size = getSize(); i < size; i++) {
-            for (Itr it = new Itr(i); it.hasNext();) {
-                Run run = it.next();
+            // Purged runs can be directly encoded into an empty 'removed' sequence
+            final boolean direct = (removed == null) || removed.isSequenceEmpty(i);
+            boolean modified = false;
+            kept.clear();
+            purged.clear();
+
+            for (cursor.reset(i); cursor.next();) {
+                final int start = cursor.getStart();
+                final int length = cursor.getLength();
 
-                if (predicate.check(run)) {
-                    it.remove();
+                if (predicate.check(i, start, length)) {
+                    modified = true;
 
-                    if (removed != null) {
-                        removed.addRun(i, run);
+                    if (direct) {
+                        purged.append(start, length);
+                    } else {
+                        removed.addRun(i, start, length);
                     }
+                } else {
+                    kept.append(start, length);
+                }
+            }
+
+            if (modified) {
+                setSequence(i, kept);
+
+                if ((removed != null) && direct) {
+                    removed.setSequence(i, purged);
                 }
             }
         }
 
+        weight = null;
+
+        if (removed != null) {
+            removed.weight = null;
+        }
+
         return this;
     }
 
@@ -1315,6 +1463,8 @@ public class RunTable
             return;
         }
 
+        final RunCursor cursor = new RunCursor(this);
+
         if (orientation == HORIZONTAL) {
             final int minSeq = (clip != null) ? Math.max(clip.y - offset.y, 0) : 0;
             final int maxSeq = (clip != null) ? (Math.min(
@@ -1322,9 +1472,12 @@ public class RunTable
                     height) - 1) : (height - 1);
 
             for (int iSeq = minSeq; iSeq <= maxSeq; iSeq++) {
-                for (Itr it = new Itr(iSeq); it.hasNext();) {
-                    final Run run = it.next();
-                    g.fillRect(offset.x + run.getStart(), offset.y + iSeq, run.getLength(), 1);
+                for (cursor.reset(iSeq); cursor.next();) {
+                    g.fillRect(
+                            offset.x + cursor.getStart(),
+                            offset.y + iSeq,
+                            cursor.getLength(),
+                            1);
                 }
             }
         } else {
@@ -1333,9 +1486,12 @@ public class RunTable
                                                          - 1) : (width - 1);
 
             for (int iSeq = minSeq; iSeq <= maxSeq; iSeq++) {
-                for (Itr it = new Itr(iSeq); it.hasNext();) {
-                    final Run run = it.next();
-                    g.fillRect(offset.x + iSeq, offset.y + run.getStart(), 1, run.getLength());
+                for (cursor.reset(iSeq); cursor.next();) {
+                    g.fillRect(
+                            offset.x + iSeq,
+                            offset.y + cursor.getStart(),
+                            1,
+                            cursor.getLength());
                 }
             }
         }
@@ -1358,15 +1514,18 @@ public class RunTable
     {
         Objects.requireNonNull(offset, "Cannot render a RunTable at a null offset");
 
+        final RunCursor cursor = new RunCursor(this);
+
         if (orientation == HORIZONTAL) {
             final int maxSeq = height - 1;
 
             for (int iSeq = 0; iSeq <= maxSeq; iSeq++) {
-                for (Itr it = new Itr(iSeq); it.hasNext();) {
-                    final Run run = it.next();
-                    final int y = offset.y + iSeq;
+                final int y = offset.y + iSeq;
 
-                    for (int x = offset.x + run.getStart(); x <= (offset.x + run.getStop()); x++) {
+                for (cursor.reset(iSeq); cursor.next();) {
+                    final int xStop = offset.x + cursor.getStop();
+
+                    for (int x = offset.x + cursor.getStart(); x <= xStop; x++) {
                         table.setValue(x, y, val);
                     }
                 }
@@ -1375,11 +1534,12 @@ public class RunTable
             final int maxSeq = width - 1;
 
             for (int iSeq = 0; iSeq <= maxSeq; iSeq++) {
-                for (Itr it = new Itr(iSeq); it.hasNext();) {
-                    final Run run = it.next();
-                    final int x = offset.x + iSeq;
+                final int x = offset.x + iSeq;
+
+                for (cursor.reset(iSeq); cursor.next();) {
+                    final int yStop = offset.y + cursor.getStop();
 
-                    for (int y = offset.y + run.getStart(); y <= (offset.y + run.getStop()); y++) {
+                    for (int y = offset.y + cursor.getStart(); y <= yStop; y++) {
                         table.setValue(x, y, val);
                     }
                 }
@@ -1415,6 +1575,39 @@ public class RunTable
         sequences[index] = encode(list);
     }
 
+    //-------------//
+    // setSequence //
+    //-------------//
+    /**
+     * Set a whole run sequence, directly from its run-length encoding.
+     * <p>
+     * Cells alternate foreground and background lengths, beginning and ending with a foreground
+     * length. An initial empty foreground length (0) is used when sequence starts with background.
+     *
+     * @param index position in sequences list
+     * @param rle   the run-length cells, null or empty for an empty sequence
+     */
+    public void setSequence (int index,
+                             int[] rle)
+    {
+        sequences[index] = ((rle == null) || (rle.length == 0)) ? null : new RunSequence(rle);
+    }
+
+    //-------------//
+    // setSequence //
+    //-------------//
+    /**
+     * Set a whole run sequence, from the runs appended to the provided builder.
+     *
+     * @param index   position in sequences list
+     * @param builder the populated builder, which can be reused afterwards
+     */
+    public void setSequence (int index,
+                             RunSequenceBuilder builder)
+    {
+        setSequence(index, builder.toRle());
+    }
+
     //----------//
     // toString //
     //----------//
@@ -1471,11 +1664,12 @@ public class RunTable
         int coordMin = isVertical ? height : width;
         int coordMax = 0;
 
+        final RunCursor cursor = new RunCursor(this);
+
         for (int iSeq = iSeqMin; iSeq <= iSeqMax; iSeq++) {
-            for (Iterator<Run> it = iterator(iSeq); it.hasNext();) {
-                final Run run = it.next();
-                coordMin = Math.min(coordMin, run.getStart());
-                coordMax = Math.max(coordMax, run.getStop());
+            for (cursor.reset(iSeq); cursor.next();) {
+                coordMin = Math.min(coordMin, cursor.getStart());
+                coordMax = Math.max(coordMax, cursor.getStop());
             }
         }
 
@@ -1529,6 +1723,94 @@ public class RunTable
         return newTable;
     }
 
+    //-------//
+    // union //
+    //-------//
+    /**
+     * Merge the content of the provided table into this one, as the union of both
+     * sets of pixels.
+     * <p>
+     * The tables must have the same dimension and orientation.
+     * Unlike {@link #include(RunTable)}, overlapping or adjacent runs are merged into one run.
+     * Each modified sequence is rebuilt in one pass.
+     *
+     * @param that the table of runs to merge into this one
+     */
+    public void union (RunTable that)
+    {
+        if (that == null) {
+            throw new IllegalArgumentException("Cannot merge a null RunTable");
+        }
+
+        if (that.orientation != orientation) {
+            throw new IllegalArgumentException(
+                    "Cannot merge a RunTable of different orientation");
+        }
+
+        if (that.width != width) {
+            throw new IllegalArgumentException("Cannot merge a RunTable of different width");
+        }
+
+        if (that.height != height) {
+            throw new IllegalArgumentException("Cannot merge a RunTable of different height");
+        }
+
+        // Merge both sequences, one sequence at a time
+        final RunCursor thisCursor = new RunCursor(this);
+        final RunCursor thatCursor = new RunCursor(that);
+        final RunSequenceBuilder builder = new RunSequenceBuilder();
+
+        for (int row = 0, size = getSize(); row < size; row++) {
+            if (that.isSequenceEmpty(row)) {
+                continue;
+            }
+
+            if (isSequenceEmpty(row)) {
+                sequences[row] = new RunSequence(that.sequences[row].getRle().clone());
+
+                continue;
+            }
+
+            builder.clear();
+            thisCursor.reset(row);
+            thatCursor.reset(row);
+
+            boolean thisOk = thisCursor.next();
+            boolean thatOk = thatCursor.next();
+            int start = -1; // Pending run start
+            int stop = -1; // Pending run stop
+
+            while (thisOk || thatOk) {
+                final boolean takeThis = !thatOk
+                                         || (thisOk
+                                             && (thisCursor.getStart() <= thatCursor.getStart()));
+                final RunCursor c = takeThis ? thisCursor : thatCursor;
+
+                if (start == -1) {
+                    start = c.getStart();
+                    stop = c.getStop();
+                } else if (c.getStart() <= (stop + 1)) {
+                    stop = Math.max(stop, c.getStop()); // Overlapping or adjacent
+                } else {
+                    builder.append(start, stop - start + 1);
+                    start = c.getStart();
+                    stop = c.getStop();
+                }
+
+                if (c == thisCursor) {
+                    thisOk = thisCursor.next();
+                } else {
+                    thatOk = thatCursor.next();
+                }
+            }
+
+            builder.append(start, stop - start + 1);
+            setSequence(row, builder);
+        }
+
+        weight = null;
+    }
+
     //-------//
     // write //
     //-------//
@@ -1542,18 +1824,37 @@ public class RunTable
     public void write (ByteProcessor buffer,
                        int xOffset,
                        int yOffset)
+    {
+        write(buffer, xOffset, yOffset, 0);
+    }
+
+    //-------//
+    // write //
+    //-------//
+    /**
+     * Write the table at proper offset in provided buffer, using the provided value.
+     *
+     * @param buffer  the buffer to be written to
+     * @param xOffset relative buffer abscissa for runTable topLeft corner
+     * @param yOffset relative buffer ordinate for runTable topLeft corner
+     * @param val     value to be used for every written pixel
+     */
+    public void write (ByteProcessor buffer,
+                       int xOffset,
+                       int yOffset,
+                       int val)
     {
         final boolean isVertical = orientation == Orientation.VERTICAL;
+        final RunCursor cursor = new RunCursor(this);
 
         for (int iSeq = 0, size = getSize(); iSeq < size; iSeq++) {
-            for (Iterator<Run> it = iterator(iSeq); it.hasNext();) {
-                final Run run = it.next();
-
-                for (int coord = run.getStart(), stop = run.getStop(); coord <= stop; coord++) {
+            for (cursor.reset(iSeq); cursor.next();) {
+                for (int coord = cursor.getStart(), stop = cursor.getStop(); coord <= stop;
+                        coord++) {
                     if (isVertical) {
-                        buffer.set(xOffset + iSeq, yOffset + coord, 0);
+                        buffer.set(xOffset + iSeq, yOffset + coord, val);
                     } else {
-                        buffer.set(xOffset + coord, yOffset + iSeq, 0);
+                        buffer.set(xOffset + coord, yOffset + iSeq, val);
                     }
                 }
             }
@@ -1728,6 +2029,16 @@ public class RunTable
         {
         }
 
+        /**
+         * Report the underlying RLE array.
+         *
+         * @return the rle cells, perhaps null
+         */
+        int[] getRle ()
+        {
+            return rle;
+        }
+
         @Override
         public boolean equals (Object obj)
         {
@@ -1929,4 +2240,26 @@ public class RunTable
             }
         }
     }
+
+    //--------------//
+    // RunPredicate //
+    //--------------//
+    /**
+     * Primitive predicate on a run, meant to filter runs without any Run object.
+     */
+    public static interface RunPredicate
+    {
+
+        /**
+         * Check the provided run.
+         *
+         * @param index  index of run sequence in table
+         * @param start  start coordinate of the run
+         * @param length length of the run
+         * @return true if predicate is true
+         */
+        boolean check (int index,
+                       int start,
+                       int length);
+    }
 }
@@ -0,0 +1,399 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                    R u n T a b l e C o d e c                                   //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.run.RunTable.RunSequence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.xml.bind.JAXBException;
+
+/**
+ * Class {@code RunTableCodec} handles a compact binary encoding of {@link RunTable}
+ * instances, meant to replace the verbose XML marshalling of large tables.
+ * <p>
+ * Since the RLE cells of a sequence are already lengths (that is deltas between successive run
+ * boundaries), they are small positive values efficiently written as unsigned varints
+ * (7 bits per byte, high bit set on all bytes but the last one).
+ * <p>
+ * Layout (all multi-byte header values are big-endian):
+ * <pre>
+ * magic       4 bytes  "RTBL"
+ * version     1 byte
+ * orientation 1 byte   (Orientation ordinal)
+ * width       4 bytes
+ * height      4 bytes
+ * then, for each sequence (height sequences if HORIZONTAL, width if VERTICAL):
+ * count       varint   1 + number of RLE cells (0 for a null sequence, 1 for an empty one)
+ * cells       varint * (count - 1)
+ * </pre>
+ * Reading is performed on a {@link ByteBuffer}, which is memory-mapped whenever the underlying
+ * file system allows it.
+ *
+ * @author Hervé Bitteur
+ */
+public abstract class RunTableCodec
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(RunTableCodec.class);
+
+    /** File extension for binary run tables. */
+    public static final String BINARY_EXTENSION = ".bin";
+
+    /** File extension for XML run tables. */
+    public static final String XML_EXTENSION = ".xml";
+
+    /** Magic bytes at beginning of binary data: "RTBL". */
+    private static final int MAGIC = 0x5254424C;
+
+    /** Version of binary format. */
+    private static final byte VERSION = 1;
+
+    /** Size of header, in bytes. */
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 4 + 4;
+
+    /** Not meant to be instantiated. */
+    private RunTableCodec ()
+    {
+    }
+
+    //--------//
+    // decode //
+    //--------//
+    /**
+     * Decode a run table from the provided binary buffer.
+     *
+     * @param buffer the buffer positioned at start of binary data
+     * @return the decoded run table
+     * @throws IOException if data is not a valid binary run table
+     */
+    public static RunTable decode (ByteBuffer buffer)
+            throws IOException
+    {
+        try {
+            if (!isBinary(buffer)) {
+                throw new IOException("No binary run table magic");
+            }
+
+            buffer.getInt(); // Magic
+
+            final byte version = buffer.get();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary run table version " + version);
+            }
+
+            final int ordinal = buffer.get();
+            final Orientation[] orientations = Orientation.values();
+
+            if ((ordinal < 0) || (ordinal >= orientations.length)) {
+                throw new IOException("Illegal orientation " + ordinal);
+            }
+
+            final Orientation orientation = orientations[ordinal];
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+
+            if ((width < 0) || (height < 0)) {
+                throw new IOException("Illegal dimension " + width + "x" + height);
+            }
+
+            final RunTable table = new RunTable(orientation, width, height);
+
+            for (int i = 0, size = table.getSize(); i < size; i++) {
+                final int count = readVarint(buffer);
+
+                if (count > 0) {
+                    final int[] rle = new int[count - 1];
+
+                    for (int c = 0; c < rle.length; c++) {
+                        rle[c] = readVarint(buffer);
+                    }
+
+                    table.setSequence(i, new RunSequence(rle));
+                }
+            }
+
+            return table;
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Truncated binary run table", ex);
+        }
+    }
+
+    //--------//
+    // encode //
+    //--------//
+    /**
+     * Encode the provided run table to the provided output stream.
+     *
+     * @param table the table to encode
+     * @param os    the output stream, not closed by this method
+     * @throws IOException on IO error
+     */
+    public static void encode (RunTable table,
+                               OutputStream os)
+            throws IOException
+    {
+        final byte[] header = new byte[HEADER_SIZE];
+        final ByteBuffer hb = ByteBuffer.wrap(header);
+        hb.putInt(MAGIC);
+        hb.put(VERSION);
+        hb.put((byte) table.getOrientation().ordinal());
+        hb.putInt(table.getWidth());
+        hb.putInt(table.getHeight());
+        os.write(header);
+
+        for (int i = 0, size = table.getSize(); i < size; i++) {
+            final RunSequence seq = table.getSequence(i);
+
+            if (seq == null) {
+                writeVarint(os, 0);
+            } else {
+                final int[] rle = seq.getRle();
+
+                if (rle == null) {
+                    writeVarint(os, 1);
+                } else {
+                    writeVarint(os, 1 + rle.length);
+
+                    for (int cell : rle) {
+                        writeVarint(os, cell);
+                    }
+                }
+            }
+        }
+    }
+
+    //----------//
+    // isBinary //
+    //----------//
+    /**
+     * Check whether the provided buffer starts with binary run table magic.
+     * The buffer position is not modified.
+     *
+     * @param buffer the buffer to check
+     * @return true if binary magic is found
+     */
+    public static boolean isBinary (ByteBuffer buffer)
+    {
+        return (buffer.remaining() >= HEADER_SIZE) && (buffer.getInt(buffer.position()) == MAGIC);
+    }
+
+    //-------------//
+    // isPreferred //
+    //-------------//
+    /**
+     * Tell whether run tables should be stored in binary rather than XML format.
+     *
+     * @return true for binary format
+     */
+    public static boolean isPreferred ()
+    {
+        return constants.useBinaryFormat.isSet();
+    }
+
+    //------//
+    // read //
+    //------//
+    /**
+     * Read a run table from the provided path, which can be a binary file or a legacy
+     * XML file.
+     * <p>
+     * Only the magic bytes are first read to detect the format.
+     * Binary content is memory-mapped when possible, otherwise (for example within a zip file
+     * system) it is read into a heap buffer.
+     * XML content is streamed to JAXB.
+     *
+     * @param path path to the binary or XML file
+     * @return the run table read, or null if failed
+     */
+    public static RunTable read (Path path)
+    {
+        logger.debug("RunTableCodec reading {}", path);
+
+        try (InputStream is = new BufferedInputStream(
+                Files.newInputStream(path, StandardOpenOption.READ))) {
+            if (startsWithMagic(is)) {
+                return decode(load(path));
+            }
+
+            // Fallback to XML
+            return RunTable.unmarshal(is);
+        } catch (IOException |
+                 JAXBException ex) {
+            logger.warn("RunTableCodec. Error reading " + path + " " + ex, ex);
+
+            return null;
+        }
+    }
+
+    //-------//
+    // write //
+    //-------//
+    /**
+     * Write the provided run table in binary format to the provided path.
+     *
+     * @param table the table to write
+     * @param path  target path
+     * @throws IOException on IO error
+     */
+    public static void write (RunTable table,
+                              Path path)
+            throws IOException
+    {
+        try (OutputStream os = new BufferedOutputStream(
+                Files.newOutputStream(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE))) {
+            encode(table, os);
+        }
+    }
+
+    //------//
+    // load //
+    //------//
+    private static ByteBuffer load (Path path)
+            throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            try {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } catch (UnsupportedOperationException ex) {
+                // File system does not support mapping (zip file system for example)
+                final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+
+                buffer.flip();
+
+                return buffer;
+            }
+        }
+    }
+
+    //------------//
+    // readVarint //
+    //------------//
+    private static int readVarint (ByteBuffer buffer)
+            throws IOException
+    {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed varint");
+    }
+
+    //-----------------//
+    // startsWithMagic //
+    //-----------------//
+    /**
+     * Check whether the provided stream starts with binary magic.
+     * The stream is reset to its initial position.
+     *
+     * @param is the input stream, which must support mark
+     * @return true if binary magic is found
+     * @throws IOException on IO error
+     */
+    private static boolean startsWithMagic (InputStream is)
+            throws IOException
+    {
+        is.mark(4);
+
+        try {
+            int magic = 0;
+
+            for (int i = 0; i < 4; i++) {
+                final int b = is.read();
+
+                if (b < 0) {
+                    return false;
+                }
+
+                magic = (magic << 8) | b;
+            }
+
+            return magic == MAGIC;
+        } finally {
+            is.reset();
+        }
+    }
+
+    //-------------//
+    // writeVarint //
+    //-------------//
+    private static void writeVarint (OutputStream os,
+                                     int value)
+            throws IOException
+    {
+        while ((value & ~0x7F) != 0) {
+            os.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        os.write(value);
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean useBinaryFormat = new Constant.Boolean(
+                true,
+                "Should run tables be stored in binary format rather than XML?");
+    }
+}
@@ -22,6 +22,7 @@
 package org.audiveris.omr.score;
 
 import org.audiveris.omr.OMR;
+import org.audiveris.omr.WellKnowns;
 import org.audiveris.omr.sheet.Book;
 import org.audiveris.proxymusic.ScorePartwise;
 import org.audiveris.proxymusic.mxl.Mxl;
@@ -34,13 +35,22 @@ import org.audiveris.proxymusic.util.Marshalling;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Class {@code OpusExporter} is meant to export an Opus of scores (movements).
+ * <p>
+ * When scores are exported in parallel, each movement is built and marshalled by its own task
+ * into a temporary file, then all these files are copied in order into the opus container, whose
+ * root entry is written last.
  *
  * @author Hervé Bitteur
  */
@@ -120,20 +130,35 @@ public class OpusExporter
 
         final List<Score> scores = book.getScores();
         final boolean multi = scores.size() > 1; // Is this a multi-movement book?
-
-        for (Score score : scores) {
-            // Reference each score/movement in opus
-            String entryName = rootName + (multi ? (".mvt" + score.getId()) : "")
-                                       + OMR.SCORE_EXTENSION;
-            org.audiveris.proxymusic.opus.Score oScore = opusFactory.createScore();
-            oScore.setHref(entryName);
-            oScore.setNewPage(YesNo.YES);
-            opus.getOpusOrOpusLinkOrScore().add(oScore);
-
-            // Marshal the score partwise
-            ScorePartwise scorePartwise = PartwiseBuilder.build(score);
-            mof.addEntry(new RootFile(entryName, RootFile.MUSICXML_MEDIA_TYPE));
-            Marshalling.marshal(scorePartwise, zos, signed, 2);
+        final List<Path> spooled = spool(scores, signed); // Null if not parallel
+
+        try {
+            for (int i = 0; i < scores.size(); i++) {
+                final Score score = scores.get(i);
+
+                // Reference each score/movement in opus
+                String entryName = rootName + (multi ? (".mvt" + score.getId()) : "")
+                                           + OMR.SCORE_EXTENSION;
+                org.audiveris.proxymusic.opus.Score oScore = opusFactory.createScore();
+                oScore.setHref(entryName);
+                oScore.setNewPage(YesNo.YES);
+                opus.getOpusOrOpusLinkOrScore().add(oScore);
+
+                mof.addEntry(new RootFile(entryName, RootFile.MUSICXML_MEDIA_TYPE));
+
+                if (spooled != null) {
+                    // Copy the score already marshalled
+                    Files.copy(spooled.get(i), zos);
+                } else {
+                    // Marshal the score partwise
+                    ScorePartwise scorePartwise = PartwiseBuilder.build(score);
+                    Marshalling.marshal(scorePartwise, zos, signed, 2);
+                }
+            }
+        } finally {
+            if (spooled != null) {
+                delete(spooled);
+            }
         }
 
         // Store opus as root
@@ -144,4 +169,74 @@ public class OpusExporter
         // The end
         mof.close();
     }
+
+    //--------//
+    // delete //
+    //--------//
+    private void delete (List<Path> paths)
+    {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                logger.warn("Could not delete {}", path, ex);
+            }
+        }
+    }
+
+    //-------//
+    // spool //
+    //-------//
+    /**
+     * Marshal all scores in parallel, each into its own temporary file.
+     *
+     * @param scores the scores to marshal
+     * @param signed should we inject ProxyMusic signature?
+     * @return the temporary files, in scores order, or null if parallel export is not used
+     * @throws Exception if something goes wrong
+     */
+    private List<Path> spool (List<Score> scores,
+                              final boolean signed)
+            throws Exception
+    {
+        if (!ScoreExporter.isParallel(scores.size())) {
+            return null;
+        }
+
+        final List<Path> paths = new ArrayList<>();
+
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+
+            for (final Score score : scores) {
+                final Path path = Files.createTempFile(
+                        WellKnowns.TEMP_FOLDER,
+                        "mvt" + score.getId() + "-",
+                        OMR.SCORE_EXTENSION);
+                paths.add(path);
+
+                tasks.add(new Callable<Void>()
+                {
+                    @Override
+                    public Void call ()
+                            throws Exception
+                    {
+                        try (OutputStream os = new BufferedOutputStream(
+                                Files.newOutputStream(path))) {
+                            Marshalling.marshal(PartwiseBuilder.build(score), os, signed, 2);
+                        }
+
+                        return null;
+                    }
+                });
+            }
+
+            ScoreExporter.invokeAll(book, tasks);
+
+            return paths;
+        } catch (Exception ex) {
+            delete(paths);
+            throw ex;
+        }
+    }
 }
@@ -22,6 +22,12 @@
 package org.audiveris.omr.score;
 
 import org.audiveris.omr.OMR;
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.log.LogUtil;
+import org.audiveris.omr.sheet.Book;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
 import org.audiveris.proxymusic.ScorePartwise;
 import org.audiveris.proxymusic.mxl.Mxl;
 import org.audiveris.proxymusic.mxl.RootFile;
@@ -29,23 +35,34 @@ import org.audiveris.proxymusic.util.Marshalling;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import org.w3c.dom.Node;
 
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class {@code ScoreExporter} exports the provided score to a MusicXML file, stream or
  * DOM.
+ * <p>
+ * The scores (movements) of a book can be exported in parallel, see {@link #invokeAll}.
  *
  * @author Hervé Bitteur
  */
 public class ScoreExporter
 {
 
+    private static final Constants constants = new Constants();
+
     private static final Logger logger = LoggerFactory.getLogger(ScoreExporter.class);
 
     /** The related score. */
@@ -156,4 +173,111 @@ public class ScoreExporter
         // Marshal the proxy
         Marshalling.marshal(scorePartwise, node, signed);
     }
+
+    //-----------//
+    // invokeAll //
+    //-----------//
+    /**
+     * Run the provided export tasks of a book, concurrently if parallel export is
+     * allowed, otherwise one after the other in the calling thread.
+     * <p>
+     * Each task is expected to build and marshal its own score, so that only the scores being
+     * processed are kept in memory as ScorePartwise trees.
+     *
+     * @param <T>   type of task result
+     * @param book  the book at hand
+     * @param tasks the export tasks, one per score
+     * @return the task results, in tasks order
+     * @throws Exception if a task failed
+     */
+    public static <T> List<T> invokeAll (final Book book,
+                                         List<Callable<T>> tasks)
+            throws Exception
+    {
+        final List<T> results = new ArrayList<>();
+
+        if (!isParallel(tasks.size())) {
+            for (Callable<T> task : tasks) {
+                results.add(task.call());
+            }
+
+            return results;
+        }
+
+        // Make sure JAXB context is available before concurrent use
+        Marshalling.getContext(ScorePartwise.class);
+
+        final List<Callable<T>> wrapped = new ArrayList<>();
+
+        for (final Callable<T> task : tasks) {
+            wrapped.add(new Callable<T>()
+            {
+                @Override
+                public T call ()
+                        throws Exception
+                {
+                    // The running thread may be the calling thread, whose context is kept
+                    final Map<String, String> previous = MDC.getCopyOfContextMap();
+                    LogUtil.start(book);
+
+                    try {
+                        return task.call();
+                    } finally {
+                        if (previous != null) {
+                            MDC.setContextMap(previous);
+                        } else {
+                            MDC.clear();
+                        }
+                    }
+                }
+            });
+        }
+
+        try {
+            for (Future<T> future : OmrExecutors.invokeAll(wrapped)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("Parallel export got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+
+            throw new RuntimeException(cause);
+        }
+
+        return results;
+    }
+
+    //------------//
+    // isParallel //
+    //------------//
+    /**
+     * Report whether the provided count of scores should be exported in parallel.
+     *
+     * @param count number of scores to export
+     * @return true for parallel export
+     */
+    public static boolean isParallel (int count)
+    {
+        return (count > 1) && constants.parallelExport.isSet()
+                       && (OmrExecutors.defaultParallelism.getValue() == true)
+                       && (OmrExecutors.getNumberOfCpus() > 1);
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean parallelExport = new Constant.Boolean(
+                true,
+                "Should we export the scores (movements) of a book in parallel?");
+    }
 }
@@ -80,8 +80,6 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.ZipOutputStream;
@@ -317,6 +315,9 @@ public class Book
     /** Book-level sample repository. */
     private SampleRepository repository;
 
+    /** Background loader of PDF pages, if any. */
+    private ImageLoading.Prefetcher prefetcher;
+
     /**
      * Create a Book with a path to an input images file.
      *
@@ -448,6 +449,21 @@ public class Book
         // Remove from OMR instances
         OMR.engine.removeBook(this);
 
+        // Forget sheets kept in memory or swapped out
+        SheetResidency.getInstance().removeBook(this);
+
+        for (SheetStub stub : stubs) {
+            stub.discardSwap();
+        }
+
+        // Release image loading resources
+        synchronized (this) {
+            if (prefetcher != null) {
+                prefetcher.dispose();
+                prefetcher = null;
+            }
+        }
+
         // Time for some cleanup...
         Memory.gc();
 
@@ -612,17 +628,36 @@ public class Book
                 logger.warn("Could not export opus " + opusPath, ex);
             }
         } else {
-            // Export the book as one or several movement files
-            for (Score score : scores) {
+            // Export the book as one or several movement files (perhaps in parallel)
+            final List<Callable<Void>> tasks = new ArrayList<>();
+
+            for (final Score score : scores) {
                 final String scoreName = (!multiMovements) ? bookName
                         : (bookName + OMR.MOVEMENT_EXTENSION + score.getId());
                 final Path scorePath = bookPathSansExt.resolveSibling(scoreName + ext);
 
-                try {
-                    new ScoreExporter(score).export(scorePath, scoreName, sig, compressed);
-                } catch (Exception ex) {
-                    logger.warn("Could not export score " + scoreName, ex);
-                }
+                tasks.add(new Callable<Void>()
+                {
+                    @Override
+                    public Void call ()
+                    {
+                        try {
+                            new ScoreExporter(score).export(scorePath, scoreName, sig, compressed);
+                        } catch (Exception ex) {
+                            logger.warn("Could not export score " + scoreName, ex);
+                        }
+
+                        return null;
+                    }
+                });
+            }
+
+            try {
+                ScoreExporter.invokeAll(this, tasks);
+            } catch (ProcessingCancellationException pce) {
+                throw pce;
+            } catch (Exception ex) {
+                logger.warn("Could not export scores", ex);
             }
         }
     }
@@ -1209,6 +1244,9 @@ public class Book
     //----------------//
     /**
      * Actually load the image that corresponds to the specified sheet id.
+     * <p>
+     * For a multi-sheet PDF input, pages are rendered by a background prefetcher, so that the
+     * next sheet image gets ready while this one is being processed.
      *
      * @param id specified sheet id
      * @return the loaded sheet image
@@ -1216,16 +1254,43 @@ public class Book
     public BufferedImage loadSheetImage (int id)
     {
         try {
-            final ImageLoading.Loader loader = ImageLoading.getLoader(path);
+            final BufferedImage img;
+            final long peakBytes;
 
-            if (loader == null) {
-                return null;
+            if (isPrefetchable()) {
+                final ImageLoading.Prefetcher pf = getPrefetcher();
+
+                if (pf == null) {
+                    return null;
+                }
+
+                img = pf.getGrayImage(id, getNextNumber(id));
+                peakBytes = pf.getPeakBytes();
+            } else {
+                final ImageLoading.Loader loader = ImageLoading.getLoader(path);
+
+                if (loader == null) {
+                    return null;
+                }
+
+                img = constants.grayLoading.isSet() ? loader.getGrayImage(id)
+                        : loader.getImage(id);
+                peakBytes = loader.getPeakBytes();
+
+                loader.dispose();
             }
 
-            BufferedImage img = loader.getImage(id);
-            logger.info("Loaded image {} {}x{} from {}", id, img.getWidth(), img.getHeight(), path);
+            if (img == null) {
+                return null;
+            }
 
-            loader.dispose();
+            logger.info(
+                    "Loaded image {} {}x{} from {} peak:{} bytes",
+                    id,
+                    img.getWidth(),
+                    img.getHeight(),
+                    path,
+                    String.format("%,d", peakBytes));
 
             return img;
         } catch (IOException ex) {
@@ -1336,54 +1401,8 @@ public class Book
 
                 if (isMultiSheet() && constants.processAllStubsInParallel.isSet()
                             && (OmrExecutors.defaultParallelism.getValue() == true)) {
-                    // Process all stubs in parallel
-                    List<Callable<Boolean>> tasks = new ArrayList<>();
-
-                    for (final SheetStub stub : concernedStubs) {
-                        tasks.add(new Callable<Boolean>()
-                        {
-                            @Override
-                            public Boolean call ()
-                                    throws StepException
-                            {
-                                LogUtil.start(stub);
-
-                                try {
-                                    boolean ok = stub.reachStep(target, force);
-
-                                    if (ok && (OMR.gui == null)) {
-                                        stub.swapSheet(); // Save sheet & global book info to disk
-                                    }
-
-                                    return ok;
-                                } finally {
-                                    LogUtil.stopStub();
-                                }
-                            }
-                        });
-                    }
-
-                    try {
-                        List<Future<Boolean>> futures = OmrExecutors.getCachedLowExecutor()
-                                .invokeAll(tasks);
-
-                        for (Future<Boolean> future : futures) {
-                            try {
-                                if (!future.get()) {
-                                    someFailure = true;
-                                }
-                            } catch (InterruptedException |
-                                     ExecutionException ex) {
-                                logger.warn("Future exception", ex);
-                                someFailure = true;
-                            }
-                        }
-
-                        return !someFailure;
-                    } catch (InterruptedException ex) {
-                        logger.warn("Error in parallel reachBookStep", ex);
-                        someFailure = true;
-                    }
+                    // Process all stubs in parallel, within bounded resources
+                    return new BookPipeline(this, concernedStubs, target, force).process();
                 } else {
                     // Process one stub after the other
                     for (SheetStub stub : concernedStubs) {
@@ -1415,6 +1434,12 @@ public class Book
 
                 long stopTime = System.currentTimeMillis();
                 logger.debug("End of step set in {} ms.", (stopTime - startTime));
+
+                final SheetResidency residency = SheetResidency.getInstance();
+
+                if ((residency.getEvictionCount() > 0) || (residency.getReloadCount() > 0)) {
+                    logger.info("{}", residency);
+                }
             }
         } catch (ProcessingCancellationException pce) {
             throw pce;
@@ -1566,8 +1591,14 @@ public class Book
 
                 // Contained sheets
                 for (SheetStub stub : stubs) {
+                    final Path sheetFolder = root.resolve(INTERNALS_RADIX + stub.getNumber());
+
+                    // Sheet material swapped out to a private file?
+                    if (stub.restoreSwap(sheetFolder)) {
+                        diskWritten = true;
+                    }
+
                     if (stub.isModified() || stub.isUpgraded()) {
-                        final Path sheetFolder = root.resolve(INTERNALS_RADIX + stub.getNumber());
                         stub.getSheet().store(sheetFolder, null);
                         diskWritten = true;
                     }
@@ -1596,9 +1627,12 @@ public class Book
                         FileUtil.copyTree(oldSheetFolder, sheetFolder);
                     }
 
+                    // Sheet material swapped out to a private file is complete
+                    final boolean swapped = stub.restoreSwap(sheetFolder);
+
                     // Update modified sheet files
                     if (stub.isModified() || stub.isUpgraded()) {
-                        stub.getSheet().store(sheetFolder, oldSheetFolder);
+                        stub.getSheet().store(sheetFolder, swapped ? null : oldSheetFolder);
                     }
                 }
 
@@ -2016,6 +2050,43 @@ public class Book
         return least;
     }
 
+    //---------------//
+    // getNextNumber //
+    //---------------//
+    /**
+     * Report the number of the stub that follows the provided one.
+     *
+     * @param number provided stub number
+     * @return number of next stub, or 0 if none
+     */
+    private int getNextNumber (int number)
+    {
+        for (int i = 0; i < (stubs.size() - 1); i++) {
+            if (stubs.get(i).getNumber() == number) {
+                return stubs.get(i + 1).getNumber();
+            }
+        }
+
+        return 0;
+    }
+
+    //---------------//
+    // getPrefetcher //
+    //---------------//
+    /**
+     * Report the book prefetcher, created if needed.
+     *
+     * @return the prefetcher, or null if failed
+     */
+    private synchronized ImageLoading.Prefetcher getPrefetcher ()
+    {
+        if ((prefetcher == null) && !isClosing()) {
+            prefetcher = ImageLoading.getPrefetcher(path);
+        }
+
+        return prefetcher;
+    }
+
     //----------//
     // getScore //
     //----------//
@@ -2164,6 +2235,20 @@ public class Book
         logger.debug("Inserted scores:{}", scores.subList(insertIndex, index));
     }
 
+    //----------------//
+    // isPrefetchable //
+    //----------------//
+    /**
+     * Report whether sheet images should be loaded through a background prefetcher.
+     *
+     * @return true for a multi-sheet PDF input
+     */
+    private boolean isPrefetchable ()
+    {
+        return constants.prefetchPdfPages.isSet() && isMultiSheet()
+                       && FileUtil.getExtension(path).equalsIgnoreCase(".pdf");
+    }
+
     //----------//
     // scoresOf //
     //----------//
@@ -2424,7 +2509,15 @@ public class Book
 
         private final Constant.Boolean processAllStubsInParallel = new Constant.Boolean(
                 false,
-                "Should we process all stubs of a book in parallel? (beware of many stubs)");
+                "Should we process all stubs of a book in parallel? (via a bounded pipeline)");
+
+        private final Constant.Boolean grayLoading = new Constant.Boolean(
+                true,
+                "Should we decode sheet images directly to gray, band by band?");
+
+        private final Constant.Boolean prefetchPdfPages = new Constant.Boolean(
+                true,
+                "Should we render next PDF page in background while current sheet is processed?");
 
         private final Constant.Boolean checkBookVersion = new Constant.Boolean(
                 true,
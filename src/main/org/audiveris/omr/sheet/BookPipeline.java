@@ -0,0 +1,354 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                     B o o k P i p e l i n e                                    //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sheet;
+
+import org.audiveris.omr.OMR;
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.log.LogUtil;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.step.Step;
+import org.audiveris.omr.util.Memory;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Class {@code BookPipeline} drives the processing of several sheets of a book in
+ * parallel, within bounded resources.
+ * <p>
+ * Each (sheet, step) pair is a task, run on a bounded pool of threads.
+ * When a sheet task completes, the task for the next step of the same sheet is queued.
+ * Pending tasks are ordered by decreasing step, then increasing sheet number, so that sheets
+ * already well advanced are finished (and their memory released) before new sheets are pushed.
+ * <p>
+ * New sheets are admitted one at a time, as long as the count of sheets in flight and the
+ * occupation of heap memory remain below their limits.
+ * Hence, early steps (LOAD, BINARY, SCALE, GRID) of sheet N+1 can run while sheet N is
+ * processing its later steps.
+ * <p>
+ * The (sheet, step) tasks run on a pool owned by the pipeline.
+ * Within a sheet step, the (system, step) tasks still run on the fixed low pool of
+ * {@link OmrExecutors}, which is shared by all sheets and thus bounds the number of busy threads.
+ * <p>
+ * A sheet is pinned in memory (see {@link SheetResidency#pin}) from its admission until it
+ * leaves the pipeline, so that it cannot be swapped out between two of its steps.
+ *
+ * @author Hervé Bitteur
+ */
+public class BookPipeline
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(BookPipeline.class);
+
+    /** The book at hand. */
+    private final Book book;
+
+    /** The sheets to process, in sheet order. */
+    private final List<SheetStub> stubs;
+
+    /** The targeted step. */
+    private final Step target;
+
+    /** Should sheets be reset if target is already reached?. */
+    private final boolean force;
+
+    /** Count of sheets admitted and not yet finished. */
+    private int inFlight;
+
+    /** Count of sheets not yet finished. */
+    private int remaining;
+
+    /** Set to true if any sheet failed. */
+    private boolean someFailure;
+
+    /**
+     * Creates a new {@code BookPipeline} object.
+     *
+     * @param book   the containing book
+     * @param stubs  the sheets to process
+     * @param target the step to reach on each sheet
+     * @param force  if true and step already reached, sheet is reset and processed until step
+     */
+    public BookPipeline (Book book,
+                         List<SheetStub> stubs,
+                         Step target,
+                         boolean force)
+    {
+        this.book = book;
+        this.stubs = new ArrayList<>(stubs);
+        this.target = target;
+        this.force = force;
+    }
+
+    //---------//
+    // process //
+    //---------//
+    /**
+     * Process all sheets until target step.
+     *
+     * @return true if OK on all sheets
+     */
+    public boolean process ()
+    {
+        final int threads = getMaxSheets();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>());
+        logger.debug("{} pipeline on {} threads towards {}", book, threads, target);
+
+        try {
+            synchronized (this) {
+                remaining = stubs.size();
+            }
+
+            // Admit sheets, one after the other
+            for (SheetStub stub : stubs) {
+                synchronized (this) {
+                    while (!canAdmit(threads)) {
+                        wait(constants.admissionPeriod.getValue());
+                    }
+
+                    inFlight++;
+                }
+
+                logger.debug("Admitting sheet#{}", stub.getNumber());
+                SheetResidency.getInstance().pin(stub);
+                executor.execute(new StepTask(executor, stub, null));
+            }
+
+            // Wait for completion of all sheets
+            synchronized (this) {
+                while (remaining > 0) {
+                    wait();
+                }
+
+                return !someFailure;
+            }
+        } catch (InterruptedException ex) {
+            logger.warn("BookPipeline got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //----------//
+    // canAdmit //
+    //----------//
+    /**
+     * Check whether a new sheet can enter the pipeline.
+     * One sheet is always admitted when the pipeline is empty, to guarantee progress.
+     *
+     * @param maxSheets maximum count of sheets in flight
+     * @return true if admission is OK
+     */
+    private boolean canAdmit (int maxSheets)
+    {
+        if (inFlight == 0) {
+            return true;
+        }
+
+        if (inFlight >= maxSheets) {
+            return false;
+        }
+
+        final double ratio = (double) Memory.occupied() / Memory.max();
+
+        if (ratio > constants.maxHeapRatio.getValue()) {
+            logger.debug("Admission delayed, heap at {}%", (int) Math.rint(100 * ratio));
+
+            return false;
+        }
+
+        return true;
+    }
+
+    //--------------//
+    // getMaxSheets //
+    //--------------//
+    private int getMaxSheets ()
+    {
+        final int max = constants.maxSheetsInFlight.getValue();
+
+        if (max > 0) {
+            return max;
+        }
+
+        return OmrExecutors.getNumberOfCpus();
+    }
+
+    //------------//
+    // sheetEnded //
+    //------------//
+    private synchronized void sheetEnded (SheetStub stub,
+                                          boolean ok)
+    {
+        logger.debug("Sheet#{} leaving pipeline ok:{}", stub.getNumber(), ok);
+        SheetResidency.getInstance().unpin(stub);
+
+        if (!ok) {
+            someFailure = true;
+        }
+
+        inFlight--;
+        remaining--;
+        notifyAll();
+    }
+
+    //----------//
+    // StepTask //
+    //----------//
+    /**
+     * Task to perform one step on one sheet, and then queue the task for the next step.
+     */
+    private class StepTask
+            implements Runnable, Comparable<StepTask>
+    {
+
+        private final ThreadPoolExecutor executor;
+
+        private final SheetStub stub;
+
+        /** Step to perform, null for the initial task of the sheet. */
+        private final Step step;
+
+        StepTask (ThreadPoolExecutor executor,
+                  SheetStub stub,
+                  Step step)
+        {
+            this.executor = executor;
+            this.stub = stub;
+            this.step = step;
+        }
+
+        @Override
+        public int compareTo (StepTask that)
+        {
+            final int thisOrdinal = (step != null) ? step.ordinal() : -1;
+            final int thatOrdinal = (that.step != null) ? that.step.ordinal() : -1;
+
+            if (thisOrdinal != thatOrdinal) {
+                return Integer.compare(thatOrdinal, thisOrdinal); // Later steps first
+            }
+
+            return Integer.compare(stub.getNumber(), that.stub.getNumber());
+        }
+
+        @Override
+        public void run ()
+        {
+            LogUtil.start(stub);
+
+            try {
+                if (step == null) {
+                    // Initial task: reset sheet if so needed, under the same lock as reachStep
+                    final Lock lock = stub.getLock();
+                    lock.lock();
+
+                    try {
+                        final Step latest = stub.getLatestStep();
+
+                        if (force && (latest != null) && (target.compareTo(latest) <= 0)) {
+                            stub.resetToBinary();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                } else if (!stub.reachStep(step, false)) {
+                    sheetEnded(stub, false);
+
+                    return;
+                }
+
+                final Step next = nextStep();
+
+                if (next != null) {
+                    executor.execute(new StepTask(executor, stub, next));
+                } else {
+                    if (OMR.gui == null) {
+                        stub.swapSheet(); // Save sheet & global book info to disk
+                    }
+
+                    sheetEnded(stub, true);
+                }
+            } catch (Throwable ex) {
+                // Exception (such as timeout) raised on stub
+                // Let processing continue for the other stubs
+                logger.warn("Error processing stub {}", ex.toString(), ex);
+                sheetEnded(stub, false);
+            } finally {
+                LogUtil.stopStub();
+            }
+        }
+
+        /**
+         * Report the next step to perform on the sheet, if any.
+         */
+        private Step nextStep ()
+        {
+            for (Step s : EnumSet.range(Step.first(), target)) {
+                if (!stub.isDone(s)) {
+                    return s;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer maxSheetsInFlight = new Constant.Integer(
+                "sheets",
+                0,
+                "Maximum number of sheets processed concurrently (0 for number of CPUs)");
+
+        private final Constant.Ratio maxHeapRatio = new Constant.Ratio(
+                0.7,
+                "Maximum ratio of heap occupation to admit a new sheet");
+
+        private final Constant.Integer admissionPeriod = new Constant.Integer(
+                "ms",
+                500,
+                "Period for checking sheet admission again");
+    }
+}
@@ -0,0 +1,259 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                    B u f f e r C l e a n e r                                   //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sheet;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.glyph.Glyph;
+import org.audiveris.omr.ui.symbol.Alignment;
+import org.audiveris.omr.ui.symbol.MusicFont;
+import org.audiveris.omr.ui.symbol.ShapeSymbol;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class {@code BufferCleaner} is a {@link PageCleaner} which erases inter instances
+ * directly in the pixels of the provided buffer, with no graphics environment on the whole buffer.
+ * <ul>
+ * <li>Rectangles and glyph runs are written as is.</li>
+ * <li>Areas and stroked lines are filled pixel by pixel, a pixel being erased when its center lies
+ * within the shape, as Java2D does with no anti-aliasing.</li>
+ * <li>A symbol is rendered only once per font, into a small mask of horizontal runs relative to
+ * the symbol center, and this mask is then stamped at every symbol location.</li>
+ * </ul>
+ *
+ * @author Hervé Bitteur
+ */
+public abstract class BufferCleaner
+        extends PageCleaner
+{
+
+    /** Value for erased pixels. */
+    private static final byte BACKGROUND = (byte) 255;
+
+    /** Buffer pixels. */
+    private final byte[] pixels;
+
+    /** Buffer bounds. */
+    private final Rectangle page;
+
+    /** Symbol masks already rendered, per font and symbol. */
+    private final Map<MusicFont, Map<ShapeSymbol, int[]>> masks = new HashMap<>();
+
+    /**
+     * Creates a new {@code BufferCleaner} object.
+     *
+     * @param buffer sheet buffer
+     * @param sheet  related sheet
+     */
+    public BufferCleaner (ByteProcessor buffer,
+                          Sheet sheet)
+    {
+        super(buffer, null, sheet);
+
+        pixels = (byte[]) buffer.getPixels();
+        page = new Rectangle(buffer.getWidth(), buffer.getHeight());
+    }
+
+    //----------//
+    // fillRect //
+    //----------//
+    @Override
+    protected void fillRect (int x,
+                             int y,
+                             int width,
+                             int height)
+    {
+        final Rectangle rect = page.intersection(new Rectangle(x, y, width, height));
+
+        for (int iy = rect.y, yBreak = rect.y + rect.height; iy < yBreak; iy++) {
+            final int offset = iy * page.width;
+            Arrays.fill(pixels, offset + rect.x, offset + rect.x + rect.width, BACKGROUND);
+        }
+    }
+
+    //-------------//
+    // processArea //
+    //-------------//
+    @Override
+    protected void processArea (Area area)
+    {
+        fillShape(area);
+        fillShape(marginStroke.createStrokedShape(area));
+    }
+
+    //--------------//
+    // processGlyph //
+    //--------------//
+    @Override
+    protected void processGlyph (Glyph glyph)
+    {
+        final Point topLeft = glyph.getTopLeft();
+        glyph.getRunTable().write(buffer, topLeft.x, topLeft.y, 255);
+    }
+
+    //-------------//
+    // processLine //
+    //-------------//
+    @Override
+    protected void processLine (Shape line)
+    {
+        fillShape(lineStroke.createStrokedShape(line));
+    }
+
+    //---------------//
+    // processSymbol //
+    //---------------//
+    @Override
+    protected void processSymbol (ShapeSymbol symbol,
+                                  MusicFont font,
+                                  Point center)
+    {
+        final int[] mask = getMask(symbol, font);
+
+        for (int i = 0; i < mask.length; i += 3) {
+            fillRect(center.x + mask[i + 1], center.y + mask[i], mask[i + 2], 1);
+        }
+    }
+
+    //-----------//
+    // fillShape //
+    //-----------//
+    /**
+     * Erase all buffer pixels whose center lies within the provided shape.
+     *
+     * @param shape the shape to fill
+     */
+    private void fillShape (Shape shape)
+    {
+        final Rectangle rect = page.intersection(shape.getBounds());
+
+        for (int y = rect.y, yBreak = rect.y + rect.height; y < yBreak; y++) {
+            final int offset = y * page.width;
+            final double yc = y + 0.5;
+
+            for (int x = rect.x, xBreak = rect.x + rect.width; x < xBreak; x++) {
+                if (shape.contains(x + 0.5, yc)) {
+                    pixels[offset + x] = BACKGROUND;
+                }
+            }
+        }
+    }
+
+    //---------//
+    // getMask //
+    //---------//
+    /**
+     * Report the mask of the provided symbol, rendering it if not yet done.
+     * <p>
+     * The mask is a sequence of (dy, dx, length) triplets, one per horizontal run of painted
+     * pixels, relative to the symbol center.
+     *
+     * @param symbol the symbol
+     * @param font   the font to use
+     * @return the symbol mask
+     */
+    private int[] getMask (ShapeSymbol symbol,
+                           MusicFont font)
+    {
+        Map<ShapeSymbol, int[]> fontMasks = masks.get(font);
+
+        if (fontMasks == null) {
+            masks.put(font, fontMasks = new HashMap<>());
+        }
+
+        int[] mask = fontMasks.get(symbol);
+
+        if (mask == null) {
+            fontMasks.put(symbol, mask = renderMask(symbol, font));
+        }
+
+        return mask;
+    }
+
+    //------------//
+    // renderMask //
+    //------------//
+    /**
+     * Render the symbol, centered in a small image, and record its runs.
+     * Since the symbol is painted at an integer location, its pixels at any other integer
+     * location are just translated.
+     *
+     * @param symbol the symbol
+     * @param font   the font to use
+     * @return the symbol mask
+     */
+    private static int[] renderMask (ShapeSymbol symbol,
+                                     MusicFont font)
+    {
+        final Dimension dim = symbol.getDimension(font);
+        final Point center = new Point(dim.width + 2, dim.height + 2);
+        final int width = 2 * center.x;
+        final int height = 2 * center.y;
+        final BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g.setColor(Color.WHITE);
+        symbol.paintSymbol(g, font, center, Alignment.AREA_CENTER);
+        g.dispose();
+
+        final byte[] data = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+        int[] mask = new int[0];
+        int count = 0;
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (data[(y * width) + x] == 0) {
+                    continue;
+                }
+
+                final int start = x;
+
+                while ((x < width) && (data[(y * width) + x] != 0)) {
+                    x++;
+                }
+
+                if ((count + 3) > mask.length) {
+                    mask = Arrays.copyOf(mask, Math.max(24, 2 * mask.length));
+                }
+
+                mask[count++] = y - center.y;
+                mask[count++] = start - center.x;
+                mask[count++] = x - start;
+            }
+        }
+
+        return Arrays.copyOf(mask, count);
+    }
+}
@@ -114,8 +114,7 @@ public class DataHolder<T>
                     Unmarshaller um = jaxbContext.createUnmarshaller();
 
                     // Open book file system
-                    Path dataFile = book.openSheetFolder(sheet.getStub().getNumber()).resolve(
-                            pathString);
+                    Path dataFile = sheet.getStub().openSheetFolder().resolve(pathString);
                     logger.debug("path: {}", dataFile);
 
                     try (InputStream is = Files.newInputStream(dataFile, StandardOpenOption.READ)) {
@@ -65,6 +65,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.Area;
 import java.util.List;
@@ -82,6 +83,9 @@ import java.util.List;
  * <li>For a glyph-based inter, all glyph runs are painted with no margin.</li>
  * <li>For a line-based inter, the line is drawn with a thicker {@link #lineStroke}.</li>
  * </ul>
+ * <p>
+ * All painting goes through a few protected primitives, so that a subclass such as
+ * {@link BufferCleaner} can erase directly into the buffer, without any graphics environment.
  *
  * @author Hervé Bitteur
  */
@@ -96,7 +100,7 @@ public abstract class PageCleaner
     /** Sheet buffer. */
     protected final ByteProcessor buffer;
 
-    /** Graphic context. */
+    /** Graphic context, if any. */
     protected final Graphics2D g;
 
     /** Related sheet. */
@@ -112,16 +116,16 @@ public abstract class PageCleaner
     protected final MusicFont smallHeadMusicFont;
 
     /** Stroke for margin around areas. */
-    private final Stroke marginStroke;
+    protected final Stroke marginStroke;
 
     /** Slightly thicker stroke for lines. (endings, wedges, slurs) */
-    private final Stroke lineStroke;
+    protected final Stroke lineStroke;
 
     /**
      * Creates a new {@code PageCleaner} object.
      *
      * @param buffer sheet buffer
-     * @param g      graphics context on buffer
+     * @param g      graphics context on buffer, or null if painting primitives are overridden
      * @param sheet  related sheet
      */
     public PageCleaner (ByteProcessor buffer,
@@ -158,11 +162,13 @@ public abstract class PageCleaner
         float lineThickness = scale.getFore() + (2 * marginThickness);
         lineStroke = new BasicStroke(lineThickness, CAP_SQUARE, JOIN_MITER);
 
-        // No anti-aliasing
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        if (g != null) {
+            // No anti-aliasing
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
 
-        // Paint in background color
-        g.setColor(Color.WHITE);
+            // Paint in background color
+            g.setColor(Color.WHITE);
+        }
     }
 
     @Override
@@ -218,15 +224,14 @@ public abstract class PageCleaner
     @Override
     public void visit (EndingInter ending)
     {
-        g.setStroke(lineStroke);
-        g.draw(ending.getLine());
+        processLine(ending.getLine());
 
         if (ending.getLeftLeg() != null) {
-            g.draw(ending.getLeftLeg());
+            processLine(ending.getLeftLeg());
         }
 
         if (ending.getRightLeg() != null) {
-            g.draw(ending.getRightLeg());
+            processLine(ending.getRightLeg());
         }
     }
 
@@ -237,7 +242,7 @@ public abstract class PageCleaner
         Glyph glyph = head.getGlyph();
         Point center = (glyph != null) ? glyph.getCenter() : GeoUtil.centerOf(head.getBounds());
         MusicFont font = head.getStaff().isSmall() ? smallHeadMusicFont : headMusicFont;
-        symbol.paintSymbol(g, font, center, Alignment.AREA_CENTER);
+        processSymbol(symbol, font, center);
     }
 
     /**
@@ -253,7 +258,7 @@ public abstract class PageCleaner
         Point center = (glyph != null) ? glyph.getCenter() : GeoUtil.centerOf(inter.getBounds());
         boolean isSmall = (inter.getStaff() != null) && inter.getStaff().isSmall();
         MusicFont font = isSmall ? smallMusicFont : musicFont;
-        symbol.paintSymbol(g, font, center, Alignment.AREA_CENTER);
+        processSymbol(symbol, font, center);
     }
 
     @Override
@@ -335,9 +340,8 @@ public abstract class PageCleaner
     @Override
     public void visit (WedgeInter wedge)
     {
-        g.setStroke(lineStroke);
-        g.draw(wedge.getLine1());
-        g.draw(wedge.getLine2());
+        processLine(wedge.getLine1());
+        processLine(wedge.getLine2());
     }
 
     @Override
@@ -384,7 +388,7 @@ public abstract class PageCleaner
             int right = staff.getHeaderStop();
             int top = staff.getFirstLine().yAt(right) - dy;
             int bot = staff.getLastLine().yAt(right) + dy;
-            g.fillRect(left, top, right - left + 1, bot - top + 1);
+            fillRect(left, top, right - left + 1, bot - top + 1);
         }
     }
 
@@ -408,7 +412,26 @@ public abstract class PageCleaner
         int dmzEnd = firstStaff.getHeaderStop();
         int top = firstStaff.getFirstLine().yAt(dmzEnd) - dy;
         int bot = lastStaff.getLastLine().yAt(dmzEnd) + dy;
-        g.fillRect(system.getBounds().x, top, dmzEnd, bot - top + 1);
+        fillRect(system.getBounds().x, top, dmzEnd, bot - top + 1);
+    }
+
+    //----------//
+    // fillRect //
+    //----------//
+    /**
+     * Fill the provided rectangle with white.
+     *
+     * @param x      rectangle left abscissa
+     * @param y      rectangle top ordinate
+     * @param width  rectangle width
+     * @param height rectangle height
+     */
+    protected void fillRect (int x,
+                             int y,
+                             int width,
+                             int height)
+    {
+        g.fillRect(x, y, width, height);
     }
 
     //-------------//
@@ -449,6 +472,39 @@ public abstract class PageCleaner
         g.setColor(oldColor);
     }
 
+    //-------------//
+    // processLine //
+    //-------------//
+    /**
+     * Process line-based inter.
+     * Strategy is to draw the line in white with a slightly thicker stroke.
+     *
+     * @param line the line to erase
+     */
+    protected void processLine (Shape line)
+    {
+        g.setStroke(lineStroke);
+        g.draw(line);
+    }
+
+    //---------------//
+    // processSymbol //
+    //---------------//
+    /**
+     * Process symbol-based inter.
+     * Strategy is to paint the related symbol in white, using a slightly larger font.
+     *
+     * @param symbol the symbol to paint
+     * @param font   the font to use
+     * @param center symbol center
+     */
+    protected void processSymbol (ShapeSymbol symbol,
+                                  MusicFont font,
+                                  Point center)
+    {
+        symbol.paintSymbol(g, font, center, Alignment.AREA_CENTER);
+    }
+
     private int dilated (int pointSize)
     {
         return (int) Math.rint(pointSize * constants.dilationRatio.getValue());
@@ -57,22 +57,17 @@ import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.SampleModel;
-import java.io.IOException;
 import java.lang.ref.WeakReference;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.EnumMap;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentSkipListMap;
 
 import javax.media.jai.JAI;
-import javax.xml.bind.JAXBException;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
-import javax.xml.stream.XMLStreamException;
 
 /**
  * Class {@code Picture} starts from the original BufferedImage to provide all {@link
@@ -382,6 +377,43 @@ public class Picture
         }
     }
 
+    //--------------//
+    // getFootprint //
+    //--------------//
+    /**
+     * Report a rough estimate of the heap memory currently retained by this picture.
+     * <p>
+     * Only the material actually present in memory is accounted for: the initial image, the
+     * sources not yet garbage-collected and the run tables already loaded.
+     *
+     * @return estimated footprint, in bytes
+     */
+    long getFootprint ()
+    {
+        long bytes = 0;
+
+        final BufferedImage img = initialImage;
+
+        if (img != null) {
+            bytes += img.getRaster().getDataBuffer().getSize();
+        }
+
+        for (SourceKey key : sources.keySet()) {
+            if (getStrongRef(key) != null) {
+                bytes += (long) width * height;
+            }
+        }
+
+        for (RunTableHolder holder : tables.values()) {
+            if (holder.hasData()) {
+                RunTable table = holder.getData(sheet.getStub());
+                bytes += (16L * table.getSize()) + (8L * table.getTotalRunCount());
+            }
+        }
+
+        return bytes;
+    }
+
     //-----------//
     // getHeight //
     //-----------//
@@ -758,36 +790,8 @@ public class Picture
                        Path oldSheetFolder)
     {
         // Each handled table
-        for (Entry<TableKey, RunTableHolder> entry : tables.entrySet()) {
-            final TableKey key = entry.getKey();
-            final RunTableHolder holder = entry.getValue();
-            final Path tablepath = sheetFolder.resolve(key + ".xml");
-
-            if (!holder.hasData()) {
-                if (oldSheetFolder != null) {
-                    try {
-                        // Copy from old book file to new
-                        Path oldTablePath = oldSheetFolder.resolve(key + ".xml");
-                        Files.copy(oldTablePath, tablepath);
-                        logger.info("Copied {}", tablepath);
-                    } catch (IOException ex) {
-                        logger.warn("Error in picture.store " + ex, ex);
-                    }
-                }
-            } else if (holder.isModified()) {
-                try {
-                    Files.deleteIfExists(tablepath);
-
-                    RunTable table = holder.getData(sheet.getStub());
-                    table.marshal(tablepath);
-                    holder.setModified(false);
-                    logger.info("Stored {}", tablepath);
-                } catch (IOException |
-                         JAXBException |
-                         XMLStreamException ex) {
-                    logger.warn("Error in picture.store " + ex, ex);
-                }
-            }
+        for (RunTableHolder holder : tables.values()) {
+            holder.store(sheetFolder, oldSheetFolder);
         }
     }
 
@@ -22,20 +22,30 @@
 package org.audiveris.omr.sheet;
 
 import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableCodec;
+import static org.audiveris.omr.run.RunTableCodec.BINARY_EXTENSION;
+import static org.audiveris.omr.run.RunTableCodec.XML_EXTENSION;
 import org.audiveris.omr.sheet.Picture.TableKey;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.stream.XMLStreamException;
 
 /**
  * Class {@code RunTableHolder} holds the reference to a run table, at least the path
  * to its marshalled data on disk, and (on demand) the unmarshalled run table itself.
+ * <p>
+ * Data on disk is either in compact binary format (".bin") or in legacy XML format (".xml").
+ * A legacy XML table, once loaded, is migrated to binary format at next store, if binary format is
+ * the preferred one.
  *
  * @author Hervé Bitteur
  */
@@ -50,7 +60,10 @@ public class RunTableHolder
 
     /** Path to data on disk. */
     @XmlAttribute(name = "path")
-    private final String pathString;
+    private String pathString;
+
+    /** Path to legacy data on disk, to be deleted once data is stored in binary format. */
+    private String legacyPathString;
 
     /** To avoid useless marshalling to disk. */
     private boolean modified = false;
@@ -62,7 +75,7 @@ public class RunTableHolder
      */
     public RunTableHolder (TableKey key)
     {
-        pathString = key + ".xml";
+        pathString = key + (RunTableCodec.isPreferred() ? BINARY_EXTENSION : XML_EXTENSION);
     }
 
     /** No-arg constructor needed for JAXB. */
@@ -88,13 +101,23 @@ public class RunTableHolder
 
                 if (data == null) {
                     // Open book file system
-                    Path dataFolder = stub.getBook().openSheetFolder(stub.getNumber());
+                    Path dataFolder = stub.openSheetFolder();
                     Path dataFile = dataFolder.resolve(pathString);
                     logger.debug("path to file: {}", dataFile);
-                    data = RunTable.unmarshal(dataFile);
+                    data = RunTableCodec.read(dataFile);
                     dataFile.getFileSystem().close(); // Close book file system
                     modified = false;
                     logger.debug("Loaded {}", dataFile);
+
+                    if ((data != null) && RunTableCodec.isPreferred()
+                        && pathString.endsWith(XML_EXTENSION)) {
+                        // Migrate legacy XML data to binary format, at next store
+                        legacyPathString = pathString;
+                        pathString = pathString.substring(
+                                0,
+                                pathString.length() - XML_EXTENSION.length()) + BINARY_EXTENSION;
+                        modified = true;
+                    }
                 }
             } catch (IOException ex) {
                 logger.warn("Error unmarshalling from {}", pathString, ex);
@@ -161,6 +184,59 @@ public class RunTableHolder
         setModified(modified);
     }
 
+    //-------//
+    // store //
+    //-------//
+    /**
+     * Store the handled data into the provided sheet folder.
+     * <p>
+     * If data is not loaded, the file is simply copied from the old sheet folder if any.
+     * If data is loaded and modified, it is written in the format given by the path extension.
+     *
+     * @param sheetFolder    target sheet folder
+     * @param oldSheetFolder optional source sheet folder (or null)
+     */
+    public void store (Path sheetFolder,
+                       Path oldSheetFolder)
+    {
+        final Path tablePath = sheetFolder.resolve(pathString);
+
+        if (!hasData()) {
+            if (oldSheetFolder != null) {
+                try {
+                    // Copy from old book file to new
+                    Path oldTablePath = oldSheetFolder.resolve(pathString);
+                    Files.copy(oldTablePath, tablePath);
+                    logger.info("Copied {}", tablePath);
+                } catch (IOException ex) {
+                    logger.warn("Error in picture.store " + ex, ex);
+                }
+            }
+        } else if (isModified()) {
+            try {
+                Files.deleteIfExists(tablePath);
+
+                if (pathString.endsWith(BINARY_EXTENSION)) {
+                    RunTableCodec.write(data, tablePath);
+                } else {
+                    data.marshal(tablePath);
+                }
+
+                setModified(false);
+                logger.info("Stored {}", tablePath);
+
+                if (legacyPathString != null) {
+                    Files.deleteIfExists(sheetFolder.resolve(legacyPathString));
+                    legacyPathString = null;
+                }
+            } catch (IOException |
+                     JAXBException |
+                     XMLStreamException ex) {
+                logger.warn("Error in picture.store " + ex, ex);
+            }
+        }
+    }
+
     //----------//
     // toString //
     //----------//
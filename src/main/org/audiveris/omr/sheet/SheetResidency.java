@@ -0,0 +1,524 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   S h e e t R e s i d e n c y                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sheet;
+
+import org.audiveris.omr.OMR;
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.glyph.GlyphIndex;
+import org.audiveris.omr.sheet.ui.StubsController;
+import org.audiveris.omr.util.Memory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Class {@code SheetResidency} keeps the sheets resident in memory within a heap budget.
+ * <p>
+ * Every stub whose sheet is in memory is recorded with an estimate of its footprint.
+ * Each time a sheet is accessed, the stub records the access time, without any locking.
+ * Each time a sheet has been loaded or processed, its footprint is re-estimated and, if the
+ * total footprint exceeds the budget, the least recently used sheets are swapped out until the
+ * budget is met again.
+ * <p>
+ * A modified sheet is saved to a private swap file (see {@link SheetStub#swapOut()}) before
+ * being disposed of, the user book file is never written by this manager.
+ * <p>
+ * A sheet is never swapped out if it is being processed (its stub lock is held), if it is pinned
+ * (for example by {@link BookPipeline} between two steps), if it is the sheet currently displayed
+ * or if it is the sheet that triggered the enforcement.
+ * A swapped sheet is transparently reloaded (from its swap file or from the book file) by
+ * {@link SheetStub#getSheet()} on its next access.
+ * <p>
+ * Residency management is disabled by default.
+ *
+ * @author Hervé Bitteur
+ */
+public class SheetResidency
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(SheetResidency.class);
+
+    /** Bytes per megabyte. */
+    private static final long MEGA = 1024L * 1024L;
+
+    /** The single instance of this class. */
+    private static final SheetResidency INSTANCE = new SheetResidency();
+
+    /** Resident stubs with their estimated footprint. */
+    private final Map<SheetStub, Long> residents = new HashMap<>();
+
+    /** Stubs swapped out by this manager, and not yet reloaded. */
+    private final Set<SheetStub> evicted = new HashSet<>();
+
+    /** Stubs that must not be swapped out. */
+    private final Set<SheetStub> pinned = new HashSet<>();
+
+    /** Total of resident footprints. */
+    private long total;
+
+    /** Count of sheets swapped out. */
+    private int evictionCount;
+
+    /** Cumulated time spent in swapping out, in milliseconds. */
+    private long evictionTime;
+
+    /** Count of swapped sheets reloaded. */
+    private int reloadCount;
+
+    /** Cumulated time spent in reloading swapped sheets, in milliseconds. */
+    private long reloadTime;
+
+    /**
+     * Not meant to be instantiated from outside.
+     */
+    private SheetResidency ()
+    {
+    }
+
+    //-------------//
+    // getInstance //
+    //-------------//
+    /**
+     * Report the single instance of this class.
+     *
+     * @return the residency manager
+     */
+    public static SheetResidency getInstance ()
+    {
+        return INSTANCE;
+    }
+
+    //------------------//
+    // getEvictionCount //
+    //------------------//
+    /**
+     * Report the number of sheets swapped out so far.
+     *
+     * @return count of evictions
+     */
+    public synchronized int getEvictionCount ()
+    {
+        return evictionCount;
+    }
+
+    //--------------//
+    // getFootprint //
+    //--------------//
+    /**
+     * Report the total estimated footprint of resident sheets.
+     *
+     * @return total footprint, in bytes
+     */
+    public synchronized long getFootprint ()
+    {
+        return total;
+    }
+
+    //----------------//
+    // getReloadCount //
+    //----------------//
+    /**
+     * Report the number of swapped sheets reloaded so far.
+     *
+     * @return count of reloads
+     */
+    public synchronized int getReloadCount ()
+    {
+        return reloadCount;
+    }
+
+    //------------------//
+    // getResidentCount //
+    //------------------//
+    /**
+     * Report the number of sheets currently recorded as resident.
+     *
+     * @return count of resident sheets
+     */
+    public synchronized int getResidentCount ()
+    {
+        return residents.size();
+    }
+
+    //-----------//
+    // isEnabled //
+    //-----------//
+    /**
+     * Tell whether sheet residency is managed.
+     *
+     * @return true if enabled
+     */
+    public static boolean isEnabled ()
+    {
+        return constants.useResidencyManager.isSet();
+    }
+
+    //-----//
+    // pin //
+    //-----//
+    /**
+     * Protect the sheet of provided stub from being swapped out, until unpinned.
+     *
+     * @param stub the stub to pin
+     * @see #unpin(SheetStub)
+     */
+    public synchronized void pin (SheetStub stub)
+    {
+        pinned.add(stub);
+    }
+
+    //----------//
+    // reloaded //
+    //----------//
+    /**
+     * Notify that the sheet of provided stub has just been reloaded from book file.
+     *
+     * @param stub   the reloaded stub
+     * @param millis time spent in reloading
+     */
+    public synchronized void reloaded (SheetStub stub,
+                                       long millis)
+    {
+        if (evicted.remove(stub)) {
+            reloadCount++;
+            reloadTime += millis;
+        }
+    }
+
+    //------------//
+    // removeBook //
+    //------------//
+    /**
+     * Forget all stubs of provided book, which is being closed.
+     *
+     * @param book the closed book
+     */
+    public synchronized void removeBook (Book book)
+    {
+        for (Iterator<Entry<SheetStub, Long>> it = residents.entrySet().iterator();
+                it.hasNext();) {
+            Entry<SheetStub, Long> entry = it.next();
+
+            if (entry.getKey().getBook() == book) {
+                total -= entry.getValue();
+                it.remove();
+            }
+        }
+
+        for (Iterator<SheetStub> it = evicted.iterator(); it.hasNext();) {
+            if (it.next().getBook() == book) {
+                it.remove();
+            }
+        }
+    }
+
+    //---------//
+    // removed //
+    //---------//
+    /**
+     * Notify that the sheet of provided stub is no longer in memory.
+     *
+     * @param stub the stub whose sheet has been disposed of
+     */
+    public synchronized void removed (SheetStub stub)
+    {
+        Long footprint = residents.remove(stub);
+
+        if (footprint != null) {
+            total -= footprint;
+        }
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public synchronized String toString ()
+    {
+        return String.format(
+                "%s{resident:%d %dMB evictions:%d %dms reloads:%d %dms}",
+                getClass().getSimpleName(),
+                residents.size(),
+                total / MEGA,
+                evictionCount,
+                evictionTime,
+                reloadCount,
+                reloadTime);
+    }
+
+    //-------//
+    // touch //
+    //-------//
+    /**
+     * Notify that the sheet of provided stub is being accessed.
+     * <p>
+     * This method takes no lock, since it is called on every sheet access.
+     *
+     * @param stub the accessed stub
+     */
+    public void touch (SheetStub stub)
+    {
+        if (isEnabled()) {
+            stub.setAccessStamp(System.nanoTime());
+        }
+    }
+
+    //-------//
+    // unpin //
+    //-------//
+    /**
+     * Allow the sheet of provided stub to be swapped out again.
+     *
+     * @param stub the stub to unpin
+     * @see #pin(SheetStub)
+     */
+    public synchronized void unpin (SheetStub stub)
+    {
+        pinned.remove(stub);
+    }
+
+    //--------//
+    // update //
+    //--------//
+    /**
+     * Re-estimate the footprint of provided stub sheet, and swap out the least recently
+     * used sheets if the budget is exceeded.
+     *
+     * @param stub the stub just loaded or processed
+     */
+    public void update (SheetStub stub)
+    {
+        if (!isEnabled() || !stub.hasSheet()) {
+            return;
+        }
+
+        final long footprint = estimate(stub.getSheet());
+        touch(stub);
+
+        synchronized (this) {
+            Long old = residents.put(stub, footprint);
+
+            if (old != null) {
+                total -= old;
+            }
+
+            total += footprint;
+        }
+
+        enforce(stub);
+    }
+
+    //---------//
+    // enforce //
+    //---------//
+    /**
+     * Swap out least recently used sheets, until total footprint fits the budget.
+     *
+     * @param keep the stub not to be swapped out
+     */
+    private void enforce (SheetStub keep)
+    {
+        final long budget = getBudget();
+        final SheetStub current = (OMR.gui != null) ? StubsController.getCurrentStub() : null;
+        final List<SheetStub> candidates = new ArrayList<>();
+        long excess;
+
+        synchronized (this) {
+            excess = total - budget;
+
+            if (excess <= 0) {
+                return;
+            }
+
+            for (SheetStub stub : residents.keySet()) {
+                if ((stub != keep) && (stub != current) && !pinned.contains(stub)
+                            && !stub.getBook().isClosing()) {
+                    candidates.add(stub);
+                }
+            }
+        }
+
+        // Least recently used first
+        Collections.sort(candidates, new Comparator<SheetStub>()
+                 {
+                     @Override
+                     public int compare (SheetStub s1,
+                                         SheetStub s2)
+                     {
+                         return Long.compare(s1.getAccessStamp(), s2.getAccessStamp());
+                     }
+                 });
+
+        // Swap out, outside of monitor since this implies I/O
+        for (SheetStub stub : candidates) {
+            if (excess <= 0) {
+                break;
+            }
+
+            final Lock lock = stub.getLock();
+
+            if (!lock.tryLock()) {
+                continue; // Being processed
+            }
+
+            try {
+                final Long footprint;
+
+                synchronized (this) {
+                    if (pinned.contains(stub)) {
+                        continue; // Pinned meanwhile
+                    }
+
+                    footprint = residents.get(stub);
+                }
+
+                if ((footprint == null) || !stub.hasSheet()) {
+                    continue;
+                }
+
+                final long start = System.currentTimeMillis();
+                logger.debug("Swapping out {} ({}KB)", stub, footprint / 1024);
+
+                try {
+                    stub.swapOut();
+                } catch (IOException ex) {
+                    logger.warn("Could not swap out {} {}", stub, ex.toString(), ex);
+
+                    continue;
+                }
+
+                if (!stub.hasSheet()) {
+                    excess -= footprint;
+
+                    synchronized (this) {
+                        evicted.add(stub);
+                        evictionCount++;
+                        evictionTime += (System.currentTimeMillis() - start);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        if (excess > 0) {
+            logger.debug("{} still {}KB over budget", this, excess / 1024);
+        }
+    }
+
+    //----------//
+    // estimate //
+    //----------//
+    /**
+     * Estimate the heap memory retained by the provided sheet.
+     *
+     * @param sheet the sheet at hand
+     * @return the estimated footprint, in bytes
+     */
+    private long estimate (Sheet sheet)
+    {
+        long bytes = 0;
+
+        if (sheet.hasPicture()) {
+            bytes += sheet.getPicture().getFootprint();
+        }
+
+        final GlyphIndex glyphIndex = sheet.getGlyphIndex();
+
+        if (glyphIndex.getEntities() != null) {
+            bytes += (long) constants.glyphBytes.getValue() * glyphIndex.getEntities().size();
+        }
+
+        int inters = 0;
+
+        for (SystemInfo system : sheet.getSystems()) {
+            if (system.getSig() != null) {
+                inters += system.getSig().vertexSet().size();
+            }
+        }
+
+        bytes += (long) constants.interBytes.getValue() * inters;
+
+        return bytes;
+    }
+
+    //-----------//
+    // getBudget //
+    //-----------//
+    private long getBudget ()
+    {
+        final int maxMB = constants.maxResidentMegabytes.getValue();
+
+        if (maxMB > 0) {
+            return maxMB * MEGA;
+        }
+
+        return (long) (constants.heapBudgetRatio.getValue() * Memory.max());
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean useResidencyManager = new Constant.Boolean(
+                false,
+                "Should we swap out least recently used sheets to stay within heap budget?");
+
+        private final Constant.Integer maxResidentMegabytes = new Constant.Integer(
+                "MB",
+                0,
+                "Budget for resident sheets (0 for a ratio of max heap)");
+
+        private final Constant.Ratio heapBudgetRatio = new Constant.Ratio(
+                0.5,
+                "Budget for resident sheets, as ratio of max heap");
+
+        private final Constant.Integer glyphBytes = new Constant.Integer(
+                "bytes",
+                1000,
+                "Estimated memory retained per glyph");
+
+        private final Constant.Integer interBytes = new Constant.Integer(
+                "bytes",
+                500,
+                "Estimated memory retained per inter");
+    }
+}
@@ -23,6 +23,7 @@ package org.audiveris.omr.sheet;
 
 import org.audiveris.omr.Main;
 import org.audiveris.omr.OMR;
+import org.audiveris.omr.WellKnowns;
 import static org.audiveris.omr.WellKnowns.LINE_SEPARATOR;
 import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
@@ -38,8 +39,10 @@ import org.audiveris.omr.sheet.ui.StubsController;
 import org.audiveris.omr.step.ProcessingCancellationException;
 import org.audiveris.omr.step.Step;
 import org.audiveris.omr.step.StepException;
+import org.audiveris.omr.step.StepMetrics;
 import org.audiveris.omr.step.ui.StepMonitoring;
 import org.audiveris.omr.ui.Colors;
+import org.audiveris.omr.util.FileUtil;
 import org.audiveris.omr.util.Jaxb;
 import org.audiveris.omr.util.Memory;
 import org.audiveris.omr.util.Navigable;
@@ -220,6 +223,12 @@ public class SheetStub
     /** Related assembly instance, if any. */
     private SheetAssembly assembly;
 
+    /** Private swap file holding sheet material evicted by {@link SheetResidency}, if any. */
+    private volatile Path swapFile;
+
+    /** Time of latest access to sheet material, as given by {@link System#nanoTime()}. */
+    private volatile long accessStamp;
+
     /**
      * Creates a new {@code SheetStub} object.
      *
@@ -584,6 +593,8 @@ public class SheetStub
     public Sheet getSheet ()
     {
         Sheet sh = this.sheet;
+        boolean reloaded = false;
+
         if (sh == null) {
             synchronized (this) {
                 sh = this.sheet;
@@ -604,6 +615,7 @@ public class SheetStub
                     } else {
                         // LOAD already performed: load from book file
                         StopWatch watch = new StopWatch("Load Sheet " + this);
+                        final long start = System.currentTimeMillis();
 
                         try {
                             Path sheetFile = null;
@@ -612,7 +624,7 @@ public class SheetStub
                             // Open the book file system
                             try {
                                 book.getLock().lock();
-                                sheetFile = book.openSheetFolder(number).resolve(
+                                sheetFile = openSheetFolder().resolve(
                                         Sheet.getSheetFileName(number));
 
                                 try (InputStream is = Files.newInputStream(
@@ -630,6 +642,10 @@ public class SheetStub
                             watch.start("afterReload");
                             sh.afterReload(this);
                             logger.info("Loaded {}", sheetFile);
+                            SheetResidency.getInstance().reloaded(
+                                    this,
+                                    System.currentTimeMillis() - start);
+                            reloaded = true;
                         } catch (IOException |
                                  JAXBException ex) {
                             logger.warn("Error in loading sheet structure " + ex, ex);
@@ -645,6 +661,13 @@ public class SheetStub
             }
         }
 
+        if (reloaded) {
+            // Reloaded material may push other sheets out of memory
+            SheetResidency.getInstance().update(this);
+        } else if (sh != null) {
+            SheetResidency.getInstance().touch(this);
+        }
+
         return sh;
     }
 
@@ -661,6 +684,31 @@ public class SheetStub
         return sheet != null;
     }
 
+    //-----------------//
+    // openSheetFolder //
+    //-----------------//
+    /**
+     * Open the folder where sheet material is to be read from.
+     * <p>
+     * This is the private swap file if sheet material has been swapped out by
+     * {@link SheetResidency}, otherwise the sheet folder within book file.
+     * The caller is responsible for closing the file system of the returned path.
+     *
+     * @return the path to sheet folder
+     * @throws IOException if anything goes wrong
+     */
+    public Path openSheetFolder ()
+            throws IOException
+    {
+        final Path swap = swapFile;
+
+        if (swap != null) {
+            return ZipFileSystem.open(swap).resolve(INTERNALS_RADIX + number);
+        }
+
+        return book.openSheetFolder(number);
+    }
+
     //------------//
     // invalidate //
     //------------//
@@ -978,28 +1026,221 @@ public class SheetStub
             if (sheet != null) {
                 logger.info("{} disposed", sheet);
                 sheet = null;
+                SheetResidency.getInstance().removed(this);
                 Memory.gc(); // Trigger a garbage collection...
             }
 
-            if (OMR.gui != null) {
-                SwingUtilities.invokeLater(new Runnable()
-                {
-                    @Override
-                    public void run ()
-                    {
-                        // Gray out the related tab
-                        StubsController ctrl = StubsController.getInstance();
-                        ctrl.markTab(SheetStub.this, Colors.SHEET_NOT_LOADED);
+            markSwapped();
+        } catch (Exception ex) {
+            logger.warn("Error swapping sheet", ex);
+        }
+    }
+
+    //----------------//
+    // getAccessStamp //
+    //----------------//
+    /**
+     * (package private) Report the time of latest access to sheet material.
+     *
+     * @return the access time, as given by {@link System#nanoTime()}
+     */
+    long getAccessStamp ()
+    {
+        return accessStamp;
+    }
+
+    //----------------//
+    // setAccessStamp //
+    //----------------//
+    /**
+     * (package private) Record the time of latest access to sheet material.
+     *
+     * @param accessStamp the access time, as given by {@link System#nanoTime()}
+     */
+    void setAccessStamp (long accessStamp)
+    {
+        this.accessStamp = accessStamp;
+    }
+
+    //-------------//
+    // discardSwap //
+    //-------------//
+    /**
+     * (package private) Delete the private swap file, if any.
+     */
+    void discardSwap ()
+    {
+        final Path swap = swapFile;
+
+        if (swap != null) {
+            swapFile = null;
+
+            try {
+                Files.deleteIfExists(swap);
+            } catch (IOException ex) {
+                logger.warn("Could not delete swap file {} {}", swap, ex.toString(), ex);
+            }
+        }
+    }
+
+    //-------------//
+    // restoreSwap //
+    //-------------//
+    /**
+     * (package private) Copy the swapped sheet material, if any, into the provided sheet
+     * folder of book file, and discard the swap file.
+     * <p>
+     * Caller is expected to hold the book lock.
+     *
+     * @param sheetFolder the target sheet folder in book file
+     * @return true if swapped material was copied
+     * @throws IOException if anything goes wrong
+     */
+    boolean restoreSwap (Path sheetFolder)
+            throws IOException
+    {
+        final Path swap = swapFile;
+
+        if (swap == null) {
+            return false;
+        }
+
+        final Path swapRoot = ZipFileSystem.open(swap);
 
-                        // Close stub UI, if any
-                        if (assembly != null) {
-                            assembly.reset();
+        try {
+            if (Files.exists(sheetFolder)) {
+                FileUtil.deleteDirectory(sheetFolder);
+            }
+
+            FileUtil.copyTree(swapRoot.resolve(INTERNALS_RADIX + number), sheetFolder);
+        } finally {
+            swapRoot.getFileSystem().close();
+        }
+
+        discardSwap();
+
+        if (!hasSheet()) {
+            // Book file is now up to date
+            modified = false;
+            upgraded = false;
+        }
+
+        return true;
+    }
+
+    //---------//
+    // swapOut //
+    //---------//
+    /**
+     * (package private) Dispose of sheet material, after having saved it to a private
+     * swap file if it is modified WRT book file.
+     * <p>
+     * The user book file is never written here.
+     * Sheet material will be reloaded from the swap file by the next {@link #getSheet()}, and
+     * copied into book file by the next book store.
+     * Caller is expected to hold the stub lock.
+     *
+     * @throws IOException if sheet material could not be saved
+     */
+    void swapOut ()
+            throws IOException
+    {
+        final Sheet sh = sheet;
+
+        if (sh == null) {
+            return;
+        }
+
+        if (modified || upgraded) {
+            final boolean wasUpgraded = upgraded;
+            final Lock bookLock = book.getLock();
+            bookLock.lock();
+
+            try {
+                Path swap = swapFile;
+                final Path root;
+
+                if (swap == null) {
+                    swap = Files.createTempFile(
+                            WellKnowns.TEMP_FOLDER,
+                            INTERNALS_RADIX + number + "-",
+                            ".swap");
+                    root = ZipFileSystem.create(swap);
+
+                    // Start from the sheet material already in book file, if any
+                    final Path bookPath = book.getBookPath();
+
+                    if ((bookPath != null) && Files.exists(bookPath)) {
+                        final Path bookFolder = book.openSheetFolder(number);
+
+                        try {
+                            if (Files.exists(bookFolder)) {
+                                FileUtil.copyTree(
+                                        bookFolder,
+                                        root.resolve(INTERNALS_RADIX + number));
+                            }
+                        } finally {
+                            bookFolder.getFileSystem().close();
                         }
                     }
-                });
+                } else {
+                    root = ZipFileSystem.open(swap);
+                }
+
+                try {
+                    sh.store(root.resolve(INTERNALS_RADIX + number), null);
+                } finally {
+                    root.getFileSystem().close();
+                }
+
+                swapFile = swap;
+
+                if (modified) {
+                    // Sheet.store did not complete
+                    throw new IOException("Could not save " + this + " to " + swap);
+                }
+            } finally {
+                bookLock.unlock();
             }
-        } catch (Exception ex) {
-            logger.warn("Error swapping sheet", ex);
+
+            // Book file is still not up to date
+            modified = true;
+            upgraded = wasUpgraded;
+        }
+
+        synchronized (this) {
+            sheet = null;
+        }
+
+        logger.debug("{} swapped out", this);
+        SheetResidency.getInstance().removed(this);
+        markSwapped();
+    }
+
+    //-------------//
+    // markSwapped //
+    //-------------//
+    /**
+     * Update UI, if any, for a sheet no longer in memory.
+     */
+    private void markSwapped ()
+    {
+        if (OMR.gui != null) {
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                @Override
+                public void run ()
+                {
+                    // Gray out the related tab
+                    StubsController ctrl = StubsController.getInstance();
+                    ctrl.markTab(SheetStub.this, Colors.SHEET_NOT_LOADED);
+
+                    // Close stub UI, if any
+                    if (assembly != null) {
+                        assembly.reset();
+                    }
+                }
+            });
         }
     }
 
@@ -1098,9 +1339,12 @@ public class SheetStub
                         StepMonitoring.notifyStep(SheetStub.this, step); // Start monitoring
                         setModified(true); // At beginning of processing
                         sheet.reset(step); // Reset sheet relevant data
+                        StepMetrics.sheetStart(SheetStub.this);
                         step.doit(sheet); // Standard processing on an existing sheet
+                        StepMetrics.sheetDone(sheet, step);
                         done(step); // Full completion
                     } finally {
+                        StepMetrics.sheetEnd(SheetStub.this);
                         LogUtil.stopStub();
                     }
 
@@ -1110,6 +1354,9 @@ public class SheetStub
 
             future.get(timeout, TimeUnit.SECONDS);
 
+            // Step may have changed sheet footprint
+            SheetResidency.getInstance().update(this);
+
             // At end of each step, save sheet to disk?
             if ((OMR.gui == null) && Main.getCli().isSave()) {
                 logger.debug("calling storeSheet");
@@ -1139,6 +1386,8 @@ public class SheetStub
         pageRefs.clear();
         invalid = false;
         sheet = null;
+        SheetResidency.getInstance().removed(this);
+        discardSwap();
 
         if (assembly != null) {
             assembly.reset();
@@ -95,11 +95,11 @@ public class Curves
         skeleton = new Skeleton(sheet);
         itemRenderers.add(skeleton);
 
-        BufferedImage img = skeleton.buildSkeleton();
+        skeleton.buildSkeleton();
 
         // Display skeleton buffer?
         if ((OMR.gui != null) && constants.displayCurves.isSet()) {
-            view = new Curves.MyView(img);
+            view = new Curves.MyView(skeleton.buf.getBufferedImage());
             sheet.getStub().getAssembly().addViewTab(
                     "Curves",
                     new ScrollImageView(sheet, view),
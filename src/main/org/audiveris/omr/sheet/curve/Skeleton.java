@@ -28,7 +28,8 @@ import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.glyph.Glyph;
 import org.audiveris.omr.glyph.Shape;
 import org.audiveris.omr.image.ImageUtil;
-import org.audiveris.omr.sheet.PageCleaner;
+import org.audiveris.omr.image.Skeletonizer;
+import org.audiveris.omr.sheet.BufferCleaner;
 import org.audiveris.omr.sheet.Picture;
 import org.audiveris.omr.sheet.Scale;
 import org.audiveris.omr.sheet.Sheet;
@@ -49,8 +50,6 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.geom.Area;
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -193,8 +192,9 @@ public class Skeleton
     /**
      * Generate the skeleton from page binary image.
      * <p>
-     * Since this skeleton is meant for curves (slurs, wedges, endings) we can limit processing past
+     * Since this skeleton is meant for curves (slurs, wedges, endings) we limit processing to
      * some reasonable distance from staves (both in vertical and horizontal directions).
+     * Only these regions are thinned, by tiles processed in parallel, see {@link Skeletonizer}.
      * <p>
      * We must keep track of erased shapes at system level.
      * <ul>
@@ -202,24 +202,28 @@ public class Skeleton
      * <li>Bar lines, connections and stems can be crossed by a curve.
      * Perhaps another specific background value could be used?</li>
      * </ul>
-     *
-     * @return the skeleton image (in parallel of setting the skeleton buffer)
+     * Shapes are erased directly in the skeleton buffer.
      */
-    public BufferedImage buildSkeleton ()
+    public void buildSkeleton ()
     {
-        // First, get a skeleton of binary image
-        Picture picture = sheet.getPicture();
-
-        ///ByteProcessor buffer = picture.getSource(Picture.SourceKey.NO_STAFF);
-        ByteProcessor buffer = picture.getSource(Picture.SourceKey.BINARY);
-        buffer = (ByteProcessor) buffer.duplicate();
-        buffer.skeletonize();
-
-        BufferedImage img = buffer.getBufferedImage();
+        // First, get a skeleton of binary image, limited to regions near staves
+        final Picture picture = sheet.getPicture();
+        final ByteProcessor binary = picture.getSource(Picture.SourceKey.BINARY);
+        final Skeletonizer skeletonizer = new Skeletonizer(binary);
+        final ByteProcessor buffer = skeletonizer.skeletonize(
+                getCurveRegions(),
+                sheet.getScale().toPixels(constants.thinningHalo));
+
+        if (constants.printStatistics.isSet()) {
+            logger.info(
+                    "{} skeleton: {} pixels thinned, {} pixels/s",
+                    sheet.getId(),
+                    skeletonizer.getThinnedCount(),
+                    skeletonizer.getThinningRate());
+        }
 
         // Erase good shapes of each system, both non-crossables and crossables
-        Graphics2D g = img.createGraphics();
-        CurvesCleaner cleaner = new CurvesCleaner(buffer, g, sheet);
+        CurvesCleaner cleaner = new CurvesCleaner(buffer, sheet);
 
         // Non-crossable inters
         nonCrossables = cleaner.eraseShapes(
@@ -248,21 +252,12 @@ public class Skeleton
         // Erase vertical seeds (?)
         ///erasedSeeds = eraser.eraseGlyphs(Arrays.asList(Shape.VERTICAL_SEED));
         //
-        // Erase regions too far froms staves
-        cleaner.eraseDistantRegions();
-
-        // Build buffer
-        buffer = new ByteProcessor(img);
-        buffer.threshold(127);
-
         // Keep a copy on disk?
         if (constants.keepSkeleton.isSet()) {
-            ImageUtil.saveOnDisk(img, sheet.getId() + ".skl");
+            ImageUtil.saveOnDisk(buffer.getBufferedImage(), sheet.getId() + ".skl");
         }
 
         buf = buffer;
-
-        return img;
     }
 
     //------------//
@@ -371,6 +366,47 @@ public class Skeleton
         }
     }
 
+    //-----------------//
+    // getCurveRegions //
+    //-----------------//
+    /**
+     * Report the regions of the sheet that can hold curves, that is the staves areas
+     * enlarged by a reasonable distance.
+     *
+     * @return one region per staff
+     */
+    private List<Rectangle> getCurveRegions ()
+    {
+        final Scale scale = sheet.getScale();
+        final int maxDx = scale.toPixels(constants.maxDxFromStaff);
+        final int maxDy = scale.toPixels(constants.maxDyFromStaff);
+        final List<Rectangle> regions = new ArrayList<>();
+
+        for (Staff staff : sheet.getStaffManager().getStaves()) {
+            Rectangle staffRect = null;
+
+            for (VerticalSide vSide : VerticalSide.values()) {
+                LineInfo line = staff.getLine(vSide);
+
+                for (HorizontalSide hSide : HorizontalSide.values()) {
+                    int x = staff.getAbscissa(hSide);
+                    int y = line.yAt(x);
+
+                    if (staffRect == null) {
+                        staffRect = new Rectangle(x, y, 0, 0);
+                    } else {
+                        staffRect.add(x, y);
+                    }
+                }
+            }
+
+            staffRect.grow(maxDx, maxDy);
+            regions.add(staffRect);
+        }
+
+        return regions;
+    }
+
     //-----------------//
     // getErasedInters //
     //-----------------//
@@ -482,6 +518,14 @@ public class Skeleton
                 false,
                 "Should we store skeleton images on disk?");
 
+        private final Constant.Boolean printStatistics = new Constant.Boolean(
+                false,
+                "Should we print out skeleton thinning statistics?");
+
+        private final Scale.Fraction thinningHalo = new Scale.Fraction(
+                2.0,
+                "Margin thinned around each skeleton tile, larger than any stroke");
+
         private final Constant.Boolean useHeader = new Constant.Boolean(
                 true,
                 "Should we erase the header at staff start");
@@ -512,71 +556,26 @@ public class Skeleton
      * extension is not considered if the resulting slur would cross such non-crossable area.
      */
     private static class CurvesCleaner
-            extends PageCleaner
+            extends BufferCleaner
     {
 
         /**
          * Creates a new CurvesEraser object.
          *
-         * @param buffer page buffer
-         * @param g      graphics context on buffer
+         * @param buffer skeleton buffer
          * @param sheet  related sheet
          */
         CurvesCleaner (ByteProcessor buffer,
-                       Graphics2D g,
                        Sheet sheet)
         {
-            super(buffer, g, sheet);
-        }
-
-        //---------------------//
-        // eraseDistantRegions //
-        //---------------------//
-        /**
-         * In the provided image, erase the areas that lie too far from staves.
-         * <p>
-         * We define an area as large as image, then remove enlarged staves areas, and finally print
-         * the remaining area with white color.
-         */
-        public void eraseDistantRegions ()
-        {
-            final Scale scale = sheet.getScale();
-            final int maxDx = scale.toPixels(constants.maxDxFromStaff);
-            final int maxDy = scale.toPixels(constants.maxDyFromStaff);
-            final Area sheetArea = new Area(new Rectangle(buffer.getWidth(), buffer.getHeight()));
-
-            for (Staff staff : sheet.getStaffManager().getStaves()) {
-                Rectangle staffRect = null;
-
-                for (VerticalSide vSide : VerticalSide.values()) {
-                    LineInfo line = staff.getLine(vSide);
-
-                    for (HorizontalSide hSide : HorizontalSide.values()) {
-                        int x = staff.getAbscissa(hSide);
-                        int y = line.yAt(x);
-
-                        if (staffRect == null) {
-                            staffRect = new Rectangle(x, y, 0, 0);
-                        } else {
-                            staffRect.add(x, y);
-                        }
-                    }
-                }
-
-                staffRect.grow(maxDx, maxDy);
-
-                Area staffArea = new Area(staffRect);
-                sheetArea.subtract(staffArea);
-            }
-
-            g.fill(sheetArea);
+            super(buffer, sheet);
         }
 
         //-------------//
         // eraseShapes //
         //-------------//
         /**
-         * Erase from image graphics all instances of provided shapes and return the
+         * Erase from buffer all instances of provided shapes and return the
          * "erased" inter instances per system.
          *
          * @param shapes (input) the shapes to look for
@@ -30,8 +30,11 @@ import org.audiveris.omr.glyph.Glyph;
 import org.audiveris.omr.glyph.GlyphGroup;
 import org.audiveris.omr.image.ChamferDistance;
 import org.audiveris.omr.image.DistanceTable;
+import org.audiveris.omr.image.EuclideanDistance;
 import org.audiveris.omr.run.Orientation;
 import org.audiveris.omr.sheet.Picture;
+import org.audiveris.omr.sheet.Scale;
+import org.audiveris.omr.sheet.Scale.InterlineScale;
 import org.audiveris.omr.sheet.Sheet;
 import org.audiveris.omr.sheet.Staff;
 import org.audiveris.omr.sheet.SystemInfo;
@@ -51,8 +54,10 @@ import static org.audiveris.omr.util.HorizontalSide.RIGHT;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.SortedMap;
 
@@ -98,7 +103,15 @@ public class DistancesBuilder
         // Compute the distance-to-foreground transform image
         Picture picture = sheet.getPicture();
         ByteProcessor buffer = picture.getSource(Picture.SourceKey.BINARY);
-        table = new ChamferDistance.Short().computeToFore(buffer);
+
+        if (constants.useExactDistances.isSet()) {
+            EuclideanDistance transform = new EuclideanDistance();
+            table = constants.useStaffBands.isSet()
+                    ? transform.computeToFore(buffer, getStaffBands())
+                    : transform.computeToFore(buffer);
+        } else {
+            table = new ChamferDistance.Short().computeToFore(buffer);
+        }
 
         // "Erase" staff lines, ledgers, stems
         paintLines();
@@ -122,6 +135,41 @@ public class DistancesBuilder
         return table;
     }
 
+    //---------------//
+    // getStaffBands //
+    //---------------//
+    /**
+     * Report the horizontal bands where heads are looked up, one per staff.
+     * A band goes from the furthest ledger above staff to the furthest ledger below staff,
+     * with some margin for heads and their templates.
+     *
+     * @return the staff bands
+     */
+    private List<Rectangle> getStaffBands ()
+    {
+        final List<Rectangle> bands = new ArrayList<>();
+        final int width = sheet.getWidth();
+
+        for (Staff staff : sheet.getStaffManager().getStaves()) {
+            final int interline = staff.getSpecificInterline();
+            final SortedMap<Integer, List<LedgerInter>> ledgerMap = staff.getLedgerMap();
+            final int above = ledgerMap.isEmpty() ? 0 : Math.max(0, -ledgerMap.firstKey());
+            final int below = ledgerMap.isEmpty() ? 0 : Math.max(0, ledgerMap.lastKey());
+            final int margin = InterlineScale.toPixels(interline, constants.staffBandMargin);
+            final int left = staff.getAbscissa(LEFT);
+            final int right = staff.getAbscissa(RIGHT);
+            final LineInfo firstLine = staff.getFirstLine();
+            final LineInfo lastLine = staff.getLastLine();
+            final int top = Math.min(firstLine.yAt(left), firstLine.yAt(right))
+                            - (above * interline) - margin;
+            final int bottom = Math.max(lastLine.yAt(left), lastLine.yAt(right))
+                               + (below * interline) + margin;
+            bands.add(new Rectangle(0, top, width, bottom - top + 1));
+        }
+
+        return bands;
+    }
+
     //------------//
     // paintGlyph //
     //------------//
@@ -195,5 +243,17 @@ public class DistancesBuilder
         private final Constant.Boolean displayTemplates = new Constant.Boolean(
                 false,
                 "Should we display the templates tab?");
+
+        private final Constant.Boolean useExactDistances = new Constant.Boolean(
+                true,
+                "Should we use exact Euclidean distances rather than chamfer distances?");
+
+        private final Constant.Boolean useStaffBands = new Constant.Boolean(
+                false,
+                "Should we compute exact distances only within staff bands?");
+
+        private final Scale.Fraction staffBandMargin = new Scale.Fraction(
+                3.0,
+                "Margin above and below staff ledgers for the distances band");
     }
 }
@@ -38,6 +38,7 @@ import org.audiveris.omr.image.ShapeDescriptor;
 import org.audiveris.omr.image.Template;
 import org.audiveris.omr.image.TemplateFactory;
 import org.audiveris.omr.image.TemplateFactory.Catalog;
+import org.audiveris.omr.image.TemplateMatcher;
 import org.audiveris.omr.math.GeoOrder;
 import org.audiveris.omr.math.GeoPath;
 import org.audiveris.omr.math.GeoUtil;
@@ -81,9 +82,11 @@ import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.audiveris.omr.sig.inter.AbstractNoteInter;
 
@@ -148,6 +151,9 @@ public class NoteHeadsBuilder
     /** The distance table to use. */
     private final DistanceTable distances;
 
+    /** The matching engine on distance table. */
+    private final TemplateMatcher matcher;
+
     /** The note-oriented spots for this system. */
     private final List<Glyph> systemSpots;
 
@@ -204,6 +210,8 @@ public class NoteHeadsBuilder
         this.distances = distances;
         this.systemSpots = systemSpots;
 
+        matcher = new TemplateMatcher(distances);
+
         sig = system.getSig();
         sheet = system.getSheet();
         scale = sheet.getScale();
@@ -290,6 +298,7 @@ public class NoteHeadsBuilder
 
         logger.debug("S#{} seeds {}", system.getId(), seedsPerf);
         logger.debug("    range {}", rangePerf);
+        logger.debug("    evals {}", matcher);
     }
 
     //------------------//
@@ -1059,32 +1068,13 @@ public class NoteHeadsBuilder
                                     Anchor anchor)
         {
             final ShapeDescriptor desc = catalog.getDescriptor(shape);
-            final Rectangle symBox = desc.getSymbolBoundsAt(x, y, anchor);
-
-            // Skip if frozen barline/connector is too close
-            if (barInvolved(symBox)) {
-                if (useSeeds) {
-                    seedsPerf.bars++;
-                } else {
-                    rangePerf.bars++;
-                }
-
-                return null;
-            }
-
-            // Skip if location already used by really good object (beam, etc)
-            if (overlap(symBox, competitors)) {
-                if (useSeeds) {
-                    seedsPerf.overlaps++;
-                } else {
-                    rangePerf.overlaps++;
-                }
 
+            if (!isAvailable(desc, x, y, anchor)) {
                 return null;
             }
 
             // Then try (all variants for) the shape and keep the best dist
-            double dist = desc.evaluate(x, y, anchor, distances);
+            double dist = matcher.evaluate(desc.getTemplate(), x, y, anchor);
 
             if (useSeeds) {
                 seedsPerf.evals++;
@@ -1121,6 +1111,53 @@ public class NoteHeadsBuilder
             }
         }
 
+        //------------//
+        // evalFirsts //
+        //------------//
+        /**
+         * Evaluate in one batch, for each shape, the first (best guess) location of
+         * every abscissa in range.
+         *
+         * @param scanLeft       range starting abscissa
+         * @param y0s            theoretical ordinate for each abscissa in range
+         * @param blackRelevants which abscissae could correspond to black heads
+         * @return per shape, the distance for each abscissa, NaN if location was not evaluated
+         */
+        private Map<Shape, double[]> evalFirsts (int scanLeft,
+                                                 int[] y0s,
+                                                 boolean[] blackRelevants)
+        {
+            final int count = y0s.length;
+            final int[] xs = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                xs[i] = scanLeft + i;
+            }
+
+            final Map<Shape, double[]> firsts = new EnumMap<>(Shape.class);
+
+            for (Shape shape : sheetTemplateNotes) {
+                final ShapeDescriptor desc = catalog.getDescriptor(shape);
+                final boolean isVoid = sheetVoidTemplateNotes.contains(shape);
+                final boolean[] wanted = new boolean[count];
+                final double[] dists = new double[count];
+                Arrays.fill(dists, Double.NaN);
+
+                for (int i = 0; i < count; i++) {
+                    if ((isVoid || blackRelevants[i])
+                        && isAvailable(desc, xs[i], y0s[i], MIDDLE_LEFT)) {
+                        wanted[i] = true;
+                        rangePerf.evals++;
+                    }
+                }
+
+                matcher.evaluate(desc.getTemplate(), MIDDLE_LEFT, xs, y0s, wanted, dists);
+                firsts.put(shape, dists);
+            }
+
+            return firsts;
+        }
+
         //-------------//
         // getBarAreas //
         //-------------//
@@ -1218,6 +1255,51 @@ public class NoteHeadsBuilder
             }
         }
 
+        //-------------//
+        // isAvailable //
+        //-------------//
+        /**
+         * Check whether the provided location is not already used by a frozen
+         * barline/connector or by a really good object.
+         *
+         * @param desc   shape descriptor
+         * @param x      pivot abscissa
+         * @param y      pivot ordinate
+         * @param anchor precise anchor
+         * @return true if location can be evaluated
+         */
+        private boolean isAvailable (ShapeDescriptor desc,
+                                     int x,
+                                     int y,
+                                     Anchor anchor)
+        {
+            final Rectangle symBox = desc.getSymbolBoundsAt(x, y, anchor);
+
+            // Skip if frozen barline/connector is too close
+            if (barInvolved(symBox)) {
+                if (useSeeds) {
+                    seedsPerf.bars++;
+                } else {
+                    rangePerf.bars++;
+                }
+
+                return false;
+            }
+
+            // Skip if location already used by really good object (beam, etc)
+            if (overlap(symBox, competitors)) {
+                if (useSeeds) {
+                    seedsPerf.overlaps++;
+                } else {
+                    rangePerf.overlaps++;
+                }
+
+                return false;
+            }
+
+            return true;
+        }
+
         //-------------//
         // lookupRange //
         //-------------//
@@ -1247,9 +1329,16 @@ public class NoteHeadsBuilder
             }
             // Use the note spots to limit the abscissae to be checked for blacks
             boolean[] blackRelevants = getRelevantBlackAbscissae(scanLeft, scanRight);
+            // Theoretical ordinates
+            final int[] y0s = new int[scanRight - scanLeft + 1];
+            for (int x0 = scanLeft; x0 <= scanRight; x0++) {
+                y0s[x0 - scanLeft] = getTheoreticalOrdinate(x0);
+            }
+            // Batch evaluation of all best guess locations
+            final Map<Shape, double[]> firsts = evalFirsts(scanLeft, y0s, blackRelevants);
             // Scan from left to right
             for (int x0 = scanLeft; x0 <= scanRight; x0++) {
-                final int y0 = getTheoreticalOrdinate(x0);
+                final int y0 = y0s[x0 - scanLeft];
 
                 // Shapes to try depend on whether location belongs to a black spot
                 EnumSet<Shape> shapeSet = blackRelevants[x0 - scanLeft] ? sheetTemplateNotes
@@ -1260,7 +1349,14 @@ public class NoteHeadsBuilder
 
                     for (int yOffset : yOffsets) {
                         final int y = y0 + yOffset;
-                        PixelDistance loc = eval(shape, x0, y, MIDDLE_LEFT);
+                        final PixelDistance loc;
+
+                        if (yOffset == 0) {
+                            final double d = firsts.get(shape)[x0 - scanLeft];
+                            loc = Double.isNaN(d) ? null : new PixelDistance(x0, y, d);
+                        } else {
+                            loc = eval(shape, x0, y, MIDDLE_LEFT);
+                        }
 
                         if ((loc != null) && (loc.d <= params.maxDistanceLow)) {
                             if ((bestLoc == null) || (bestLoc.d > loc.d)) {
@@ -23,11 +23,13 @@ package org.audiveris.omr.sheet.symbol;
 
 import org.audiveris.omr.classifier.Classifier;
 import org.audiveris.omr.classifier.Evaluation;
+import org.audiveris.omr.classifier.GlyphBatch;
 import org.audiveris.omr.classifier.ShapeClassifier;
 import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.glyph.Glyph;
 import org.audiveris.omr.glyph.GlyphCluster;
+import org.audiveris.omr.glyph.GlyphCompound;
 import org.audiveris.omr.glyph.GlyphGroup;
 import org.audiveris.omr.glyph.GlyphLink;
 import org.audiveris.omr.glyph.Glyphs;
@@ -83,6 +85,9 @@ public class SymbolsBuilder
     /** Shape classifier to use. */
     private final Classifier classifier = ShapeClassifier.getInstance();
 
+    /** Candidate glyphs waiting for evaluation. */
+    private final GlyphBatch batch = new GlyphBatch(classifier);
+
     //    /** Shape second classifier to use. */
     //    private final Classifier classifier2 = ShapeClassifier.getSecondInstance();
     //
@@ -127,12 +132,16 @@ public class SymbolsBuilder
      * - processClusters():                             // Group connected glyphs into clusters
      *    + FOREACH cluster of connected glyphs:
      *       + cluster.decompose()                      // Decompose cluster into all subsets
-     *       + FOREACH subset process(subset):
+     *       + FOREACH subset process(subset):        // Combine parts moments per subset
+     *       + screenCompounds(subsets)                 // Pre-evaluate compounds not built yet
+     *       + FOREACH promising subset:
      *          - build compound glyph                  // Build one compound glyph per subset
-     *          - evaluateGlyph(compound)               // Run shape classifier on compound
-     *          - FOREACH acceptable evaluation
-     *             + symbolFactory.create(eval, glyph)  // Create inter(s) related to evaluation
+     *          - evaluateGlyph(compound)               // Queue compound for evaluation
+     * - flushBatch()                                   // Run shape classifier on queued glyphs
+     *    + FOREACH glyph with acceptable evaluation
+     *       + symbolFactory.create(eval, glyph)        // Create inter related to evaluation
      * </pre>
+     * Queued glyphs are evaluated in batches, which are flushed in queuing order.
      *
      * @param optionalsMap the optional (weak) glyphs per system
      */
@@ -159,6 +168,10 @@ public class SymbolsBuilder
         watch.start("processClusters");
         processClusters(systemGraph);
 
+        // Evaluate remaining queued glyphs
+        watch.start("flushBatch");
+        flushBatch();
+
         if (constants.printWatch.isSet()) {
             watch.print();
         }
@@ -168,7 +181,8 @@ public class SymbolsBuilder
     // evaluateGlyph //
     //---------------//
     /**
-     * Evaluate a provided glyph and create all acceptable inter instances.
+     * Queue a provided glyph for evaluation, the related inter instances being created
+     * when the batch of queued glyphs is flushed.
      *
      * @param glyph the glyph to evaluate
      */
@@ -191,42 +205,50 @@ public class SymbolsBuilder
             return;
         }
 
+        batch.add(glyph);
+
+        if (batch.size() >= constants.maxBatchSize.getValue()) {
+            flushBatch();
+        }
+    }
+
+    //------------//
+    // flushBatch //
+    //------------//
+    /**
+     * Evaluate all queued glyphs at once and create all acceptable inter instances.
+     */
+    private void flushBatch ()
+    {
+        if (batch.isEmpty()) {
+            return;
+        }
+
         // TODO: checks should be run only AFTER both classifiers have been run
-        Evaluation[] evals = classifier.evaluate(
-                glyph,
+        final Evaluation[][] allEvals = batch.evaluate(
                 system,
                 2,
                 Grades.symbolMinGrade,
                 EnumSet.of(Classifier.Condition.CHECKED));
+        final List<Glyph> glyphs = batch.getGlyphs();
 
-        //        Evaluation[] evals2 = classifier2.evaluate(
-        //                glyph,
-        //                system,
-        //                2,
-        //                Grades.symbolMinGrade, // Not OK for deep classifier!
-        //                EnumSet.of(Classifier.Condition.CHECKED));
-        //
-        if (evals.length > 0) {
-            //            // Create one interpretation for each acceptable evaluation
-            //            for (Evaluation eval : evals) {
-            //                try {
-            //                    factory.create(eval, glyph, closestStaff);
-            //                } catch (Exception ex) {
-            //                    logger.warn("Error in glyph evaluation " + ex, ex);
-            //                }
-            //            }
-            //
-            Evaluation eval = evals[0];
-
-            ///if (evals2.length > 0 && eval.shape == evals2[0].shape) {
-            try {
-                factory.create(eval, glyph, closestStaff);
-            } catch (Exception ex) {
-                logger.warn("Error in glyph evaluation " + ex, ex);
-            }
+        for (int i = 0; i < allEvals.length; i++) {
+            final Evaluation[] evals = allEvals[i];
 
-            ///}
+            if (evals.length > 0) {
+                final Glyph glyph = glyphs.get(i);
+                final Staff closestStaff = system.getClosestStaff(glyph.getCenter());
+                Evaluation eval = evals[0];
+
+                try {
+                    factory.create(eval, glyph, closestStaff);
+                } catch (Exception ex) {
+                    logger.warn("Error in glyph evaluation " + ex, ex);
+                }
+            }
         }
+
+        batch.clear();
     }
 
     //------------------//
@@ -409,6 +431,34 @@ public class SymbolsBuilder
 
             return !classifier.isBigEnough(normed);
         }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Checks performed at evaluation time can only discard evaluations, so a compound whose
+         * best natural evaluation is below the minimum grade is not worth being built.
+         */
+        @Override
+        public boolean[] screenCompounds (List<GlyphCompound> compounds)
+        {
+            final double minGrade = Grades.symbolMinGrade - constants.screenMargin.getValue();
+            final Evaluation[][] allEvals = classifier.getCompoundEvaluations(
+                    compounds,
+                    sheet.getInterline());
+            final boolean[] promising = new boolean[allEvals.length];
+
+            for (int i = 0; i < allEvals.length; i++) {
+                for (Evaluation eval : allEvals[i]) {
+                    if (eval.grade >= minGrade) {
+                        promising[i] = true;
+
+                        break;
+                    }
+                }
+            }
+
+            return promising;
+        }
     }
 
     //-----------//
@@ -427,6 +477,15 @@ public class SymbolsBuilder
                 7,
                 "Maximum number of parts considered for a symbol");
 
+        private final Constant.Integer maxBatchSize = new Constant.Integer(
+                "Glyphs",
+                2048,
+                "Maximum number of glyphs queued before being evaluated");
+
+        private final Constant.Ratio screenMargin = new Constant.Ratio(
+                0.01,
+                "Grade margin when screening compounds before building them");
+
         private final Scale.Fraction maxGap = new Scale.Fraction(
                 0.5, // 0.75 vs 0.5 is a bit too small for fermata - dot distance
                 "Maximum distance between two compound parts");
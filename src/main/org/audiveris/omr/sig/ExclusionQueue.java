@@ -0,0 +1,211 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   E x c l u s i o n Q u e u e                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sig;
+
+import org.audiveris.omr.sig.inter.Inter;
+import org.audiveris.omr.sig.relation.Relation;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Class {@code ExclusionQueue} is a priority queue of the exclusions to reduce in a SIG,
+ * ordered by decreasing potential, where the potential of an exclusion is the highest best
+ * grade of its source and target inters.
+ * <p>
+ * The queue is lazily invalidated: when the grade of an inter changes, fresh entries are pushed
+ * for its exclusions, and the obsolete entries are discarded only when they reach the queue head.
+ * <p>
+ * It delivers exactly the sequence of exclusions a full scan of the collection would pick at each
+ * step: the one with the highest positive potential, the first one in collection order in case of
+ * equality.
+ *
+ * @author Hervé Bitteur
+ */
+class ExclusionQueue
+{
+
+    /** Highest potential first, then lowest rank. Non-positive potentials come last. */
+    private static final Comparator<Entry> byPriority = new Comparator<Entry>()
+    {
+        @Override
+        public int compare (Entry e1,
+                            Entry e2)
+        {
+            final boolean ok1 = e1.potential > 0;
+            final boolean ok2 = e2.potential > 0;
+
+            if (ok1 != ok2) {
+                return ok1 ? (-1) : 1;
+            }
+
+            if (ok1) {
+                final int comp = Double.compare(e2.potential, e1.potential);
+
+                if (comp != 0) {
+                    return comp;
+                }
+            }
+
+            return Integer.compare(e1.rank, e2.rank);
+        }
+    };
+
+    /** The underlying SIG. */
+    private final SIGraph sig;
+
+    /** Rank of each exclusion in the original collection (first occurrence). */
+    private final Map<Relation, Integer> ranks = new HashMap<>();
+
+    /** The queue of entries. */
+    private final PriorityQueue<Entry> queue;
+
+    /**
+     * Creates a new {@code ExclusionQueue} object.
+     *
+     * @param sig        the underlying SIG
+     * @param exclusions the exclusions to reduce
+     */
+    ExclusionQueue (SIGraph sig,
+                    Collection<? extends Relation> exclusions)
+    {
+        this.sig = sig;
+
+        for (Relation rel : exclusions) {
+            if (!ranks.containsKey(rel)) {
+                ranks.put(rel, ranks.size());
+            }
+        }
+
+        queue = new PriorityQueue<>(Math.max(1, ranks.size()), byPriority);
+
+        for (Map.Entry<Relation, Integer> entry : ranks.entrySet()) {
+            final Relation rel = entry.getKey();
+
+            if (sig.containsEdge(rel)) {
+                queue.add(new Entry(rel, entry.getValue(), potentialOf(rel)));
+            }
+        }
+    }
+
+    //--------------//
+    // gradeChanged //
+    //--------------//
+    /**
+     * Notify that the best grade of the provided inter may have changed.
+     *
+     * @param inter the modified inter
+     */
+    void gradeChanged (Inter inter)
+    {
+        if (!sig.containsVertex(inter)) {
+            return;
+        }
+
+        for (Relation rel : sig.edgesOf(inter)) {
+            final Integer rank = ranks.get(rel);
+
+            if (rank != null) {
+                queue.add(new Entry(rel, rank, potentialOf(rel)));
+            }
+        }
+    }
+
+    //------//
+    // poll //
+    //------//
+    /**
+     * Retrieve and remove the exclusion of highest potential.
+     *
+     * @return the exclusion to reduce, or null if no exclusion with a positive potential is left
+     */
+    Relation poll ()
+    {
+        while (!queue.isEmpty()) {
+            final Entry head = queue.peek();
+
+            if (!sig.containsEdge(head.rel)) {
+                queue.poll(); // Exclusion no longer in SIG
+
+                continue;
+            }
+
+            final double potential = potentialOf(head.rel);
+
+            if (Double.compare(potential, head.potential) != 0) {
+                // Obsolete entry, make sure a fresh one exists
+                queue.poll();
+                queue.add(new Entry(head.rel, head.rank, potential));
+
+                continue;
+            }
+
+            if (!(potential > 0)) {
+                return null;
+            }
+
+            queue.poll();
+
+            return head.rel;
+        }
+
+        return null;
+    }
+
+    //-------------//
+    // potentialOf //
+    //-------------//
+    private double potentialOf (Relation rel)
+    {
+        return Math.max(
+                sig.getEdgeSource(rel).getBestGrade(),
+                sig.getEdgeTarget(rel).getBestGrade());
+    }
+
+    //-------//
+    // Entry //
+    //-------//
+    /**
+     * An exclusion with its potential when the entry was created.
+     */
+    private static class Entry
+    {
+
+        final Relation rel;
+
+        final int rank;
+
+        final double potential;
+
+        Entry (Relation rel,
+               int rank,
+               double potential)
+        {
+            this.rel = rel;
+            this.rank = rank;
+            this.potential = potential;
+        }
+    }
+}
@@ -0,0 +1,593 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                        I n t e r G r i d                                       //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sig;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.sig.inter.Inter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class {@code InterGrid} is a uniform grid of square cells that spatially indexes the
+ * inters of a SIG, so that location-based lookups no longer have to browse the whole
+ * vertex set.
+ * <p>
+ * Each inter is registered in every cell its bounds intersect.
+ * Since inter bounds are often lazily computed (from underlying glyph or from ensemble members),
+ * the registration of a new or modified inter is deferred until the next query.
+ * <p>
+ * A query collects the candidates found in the cells covered by the query rectangle, then sorts
+ * them by insertion order, which is the SIG vertex order, so that results are identical (content
+ * and order) to those of a brute force scan of the vertex set.
+ *
+ * @author Hervé Bitteur
+ */
+public class InterGrid
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(InterGrid.class);
+
+    /** Global count of queries, across all grids. */
+    private static final AtomicLong globalQueries = new AtomicLong();
+
+    /** Global time spent in queries (in nanoseconds), across all grids. */
+    private static final AtomicLong globalNanos = new AtomicLong();
+
+    /** To sort entries by insertion order. */
+    private static final Comparator<Entry> bySeq = new Comparator<Entry>()
+    {
+        @Override
+        public int compare (Entry e1,
+                            Entry e2)
+        {
+            return Long.compare(e1.seq, e2.seq);
+        }
+    };
+
+    /** Side length of a cell, in pixels. */
+    private final int cellSize;
+
+    /** Non-empty cells, keyed by packed (row, column). */
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+
+    /** Entry for each inter handled by the grid. */
+    private final Map<Inter, Entry> entries = new HashMap<>();
+
+    /** Entries whose registration in cells is to be (re)done. */
+    private final Set<Entry> dirties = new LinkedHashSet<>();
+
+    /** Entries with no bounds yet, hence not registered in any cell. */
+    private final Set<Entry> unbounded = new LinkedHashSet<>();
+
+    /** Last insertion sequence number. */
+    private long lastSeq;
+
+    /** Last query stamp, used to skip duplicate candidates. */
+    private int lastStamp;
+
+    /** Count of queries on this grid. */
+    private long queries;
+
+    /** Time spent in queries on this grid, in nanoseconds. */
+    private long nanos;
+
+    /**
+     * Creates a new {@code InterGrid} object, with default cell size.
+     */
+    public InterGrid ()
+    {
+        this(constants.cellSize.getValue());
+    }
+
+    /**
+     * Creates a new {@code InterGrid} object.
+     *
+     * @param cellSize side length of a cell, in pixels
+     */
+    public InterGrid (int cellSize)
+    {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Illegal cell size " + cellSize);
+        }
+
+        this.cellSize = cellSize;
+    }
+
+    //-----//
+    // add //
+    //-----//
+    /**
+     * Insert an inter into the grid.
+     * Its actual registration in cells is deferred until the next query.
+     *
+     * @param inter the inter to insert
+     */
+    public synchronized void add (Inter inter)
+    {
+        Entry entry = entries.get(inter);
+
+        if (entry == null) {
+            entry = new Entry(inter, ++lastSeq);
+            entries.put(inter, entry);
+        }
+
+        dirties.add(entry);
+    }
+
+    //---------------//
+    // boundsChanged //
+    //---------------//
+    /**
+     * Notify that the bounds of the provided inter may have changed.
+     *
+     * @param inter the modified inter
+     */
+    public synchronized void boundsChanged (Inter inter)
+    {
+        final Entry entry = entries.get(inter);
+
+        if (entry != null) {
+            dirties.add(entry);
+        }
+    }
+
+    //-----------------//
+    // containedInters //
+    //-----------------//
+    /**
+     * Lookup the grid for the inters which are contained in the provided rectangle.
+     *
+     * @param rect the containing rectangle
+     * @return the contained interpretations, in sig order
+     */
+    public synchronized List<Inter> containedInters (Rectangle rect)
+    {
+        final long start = System.nanoTime();
+        final List<Inter> found = new ArrayList<>();
+
+        for (Entry entry : candidates(rect.x, rect.y, rect.width, rect.height)) {
+            final Rectangle box = entry.inter.getBounds();
+
+            if (box == null) {
+                logger.error("No bounds for {}", entry.inter);
+            } else if (rect.contains(box)) {
+                found.add(entry.inter);
+            }
+        }
+
+        recordQuery(start);
+
+        return found;
+    }
+
+    //------------------//
+    // containingInters //
+    //------------------//
+    /**
+     * Lookup the grid for the inters which contain the provided point.
+     *
+     * @param point provided point
+     * @return the containing interpretations, in sig order
+     */
+    public synchronized List<Inter> containingInters (Point point)
+    {
+        final long start = System.nanoTime();
+        final List<Inter> found = new ArrayList<>();
+
+        for (Entry entry : candidates(point.x, point.y, 0, 0)) {
+            final Rectangle box = entry.inter.getBounds();
+
+            if ((box != null) && box.contains(point)) {
+                // More precise test if we know inter area
+                final Area area = entry.inter.getArea();
+
+                if ((area == null) || area.contains(point)) {
+                    found.add(entry.inter);
+                }
+            }
+        }
+
+        recordQuery(start);
+
+        return found;
+    }
+
+    //-----------------//
+    // getQueriesCount //
+    //-----------------//
+    /**
+     * Report the number of queries performed on this grid.
+     *
+     * @return count of queries
+     */
+    public synchronized long getQueriesCount ()
+    {
+        return queries;
+    }
+
+    //----------------//
+    // getQueriesTime //
+    //----------------//
+    /**
+     * Report the cumulated duration of queries performed on this grid.
+     *
+     * @return queries duration, in nanoseconds
+     */
+    public synchronized long getQueriesTime ()
+    {
+        return nanos;
+    }
+
+    //-------------------//
+    // intersectedInters //
+    //-------------------//
+    /**
+     * Lookup the grid for the (non-removed) inters whose bounds intersect the provided box.
+     *
+     * @param rect the intersecting box
+     * @return the intersected interpretations, in sig order
+     */
+    public synchronized List<Inter> intersectedInters (Rectangle rect)
+    {
+        final long start = System.nanoTime();
+        final List<Inter> found = new ArrayList<>();
+
+        for (Entry entry : candidates(rect.x, rect.y, rect.width, rect.height)) {
+            final Inter inter = entry.inter;
+
+            if (inter.isRemoved()) {
+                continue;
+            }
+
+            final Rectangle box = inter.getBounds();
+
+            if ((box != null) && rect.intersects(box)) {
+                found.add(inter);
+            }
+        }
+
+        recordQuery(start);
+
+        return found;
+    }
+
+    //--------//
+    // remove //
+    //--------//
+    /**
+     * Remove an inter from the grid.
+     *
+     * @param inter the inter to remove
+     */
+    public synchronized void remove (Inter inter)
+    {
+        final Entry entry = entries.remove(inter);
+
+        if (entry != null) {
+            unregister(entry);
+            dirties.remove(entry);
+            unbounded.remove(entry);
+        }
+    }
+
+    //------//
+    // size //
+    //------//
+    /**
+     * Report the number of inters handled by the grid.
+     *
+     * @return number of inters
+     */
+    public synchronized int size ()
+    {
+        return entries.size();
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public synchronized String toString ()
+    {
+        StringBuilder sb = new StringBuilder(getClass().getSimpleName());
+        sb.append("{");
+        sb.append("inters:").append(entries.size());
+        sb.append(" cells:").append(cells.size());
+        sb.append(" queries:").append(queries);
+        sb.append(" ms:").append(nanos / 1_000_000);
+        sb.append("}");
+
+        return sb.toString();
+    }
+
+    //-----------------------//
+    // getGlobalQueriesCount //
+    //-----------------------//
+    /**
+     * Report the number of queries performed so far, across all grids.
+     *
+     * @return global count of queries
+     */
+    public static long getGlobalQueriesCount ()
+    {
+        return globalQueries.get();
+    }
+
+    //----------------------//
+    // getGlobalQueriesTime //
+    //----------------------//
+    /**
+     * Report the cumulated duration of queries performed so far, across all grids.
+     *
+     * @return global queries duration, in nanoseconds
+     */
+    public static long getGlobalQueriesTime ()
+    {
+        return globalNanos.get();
+    }
+
+    //------------//
+    // candidates //
+    //------------//
+    /**
+     * Report the entries registered in the cells that cover the provided rectangle,
+     * plus the entries with no bounds.
+     * <p>
+     * Rectangle right and bottom edges are included, to cope with degenerated boxes.
+     *
+     * @return the candidate entries, without duplicates, sorted by insertion order
+     */
+    private List<Entry> candidates (int x,
+                                    int y,
+                                    int width,
+                                    int height)
+    {
+        refresh();
+
+        final List<Entry> found = new ArrayList<>();
+        final int stamp = ++lastStamp;
+
+        if ((width >= 0) && (height >= 0)) {
+            final int col1 = cellOf(x);
+            final int col2 = cellOf(x + width);
+            final int row1 = cellOf(y);
+            final int row2 = cellOf(y + height);
+            final long area = ((long) (col2 - col1 + 1)) * (row2 - row1 + 1);
+
+            if (area <= cells.size()) {
+                for (int row = row1; row <= row2; row++) {
+                    for (int col = col1; col <= col2; col++) {
+                        final List<Entry> cell = cells.get(keyOf(row, col));
+
+                        if (cell != null) {
+                            for (Entry entry : cell) {
+                                if (entry.stamp != stamp) {
+                                    entry.stamp = stamp;
+                                    found.add(entry);
+                                }
+                            }
+                        }
+                    }
+                }
+            } else {
+                // Query is larger than populated grid, browse every registered entry
+                for (Entry entry : entries.values()) {
+                    if (entry.box != null) {
+                        entry.stamp = stamp;
+                        found.add(entry);
+                    }
+                }
+            }
+        }
+
+        found.addAll(unbounded);
+        Collections.sort(found, bySeq);
+
+        return found;
+    }
+
+    //--------//
+    // cellOf //
+    //--------//
+    /**
+     * Report the cell index (column or row) for the provided coordinate.
+     */
+    private int cellOf (int v)
+    {
+        return (v >= 0) ? (v / cellSize) : (((v + 1) / cellSize) - 1);
+    }
+
+    //-------//
+    // keyOf //
+    //-------//
+    private static Long keyOf (int row,
+                               int col)
+    {
+        return (((long) row) << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    //-------------//
+    // recordQuery //
+    //-------------//
+    private void recordQuery (long start)
+    {
+        final long dur = System.nanoTime() - start;
+        queries++;
+        nanos += dur;
+        globalQueries.incrementAndGet();
+        globalNanos.addAndGet(dur);
+    }
+
+    //---------//
+    // refresh //
+    //---------//
+    /**
+     * Perform the pending registrations, using the current inter bounds.
+     */
+    private void refresh ()
+    {
+        if (dirties.isEmpty() && unbounded.isEmpty()) {
+            return;
+        }
+
+        final List<Entry> pendings = new ArrayList<>(dirties);
+        pendings.addAll(unbounded);
+        dirties.clear();
+        unbounded.clear();
+
+        for (Entry entry : pendings) {
+            unregister(entry);
+            entry.box = entry.inter.getBounds();
+
+            if (entry.box == null) {
+                unbounded.add(entry);
+            } else {
+                register(entry);
+            }
+        }
+    }
+
+    //----------//
+    // register //
+    //----------//
+    private void register (Entry entry)
+    {
+        final Rectangle box = entry.box;
+        final int col1 = cellOf(box.x);
+        final int col2 = cellOf(box.x + Math.max(box.width - 1, 0));
+        final int row1 = cellOf(box.y);
+        final int row2 = cellOf(box.y + Math.max(box.height - 1, 0));
+
+        for (int row = row1; row <= row2; row++) {
+            for (int col = col1; col <= col2; col++) {
+                final Long key = keyOf(row, col);
+                List<Entry> cell = cells.get(key);
+
+                if (cell == null) {
+                    cells.put(key, cell = new ArrayList<>());
+                }
+
+                cell.add(entry);
+            }
+        }
+    }
+
+    //------------//
+    // unregister //
+    //------------//
+    private void unregister (Entry entry)
+    {
+        final Rectangle box = entry.box;
+
+        if (box == null) {
+            return;
+        }
+
+        final int col1 = cellOf(box.x);
+        final int col2 = cellOf(box.x + Math.max(box.width - 1, 0));
+        final int row1 = cellOf(box.y);
+        final int row2 = cellOf(box.y + Math.max(box.height - 1, 0));
+
+        for (int row = row1; row <= row2; row++) {
+            for (int col = col1; col <= col2; col++) {
+                final Long key = keyOf(row, col);
+                final List<Entry> cell = cells.get(key);
+
+                if (cell != null) {
+                    for (Iterator<Entry> it = cell.iterator(); it.hasNext();) {
+                        if (it.next() == entry) {
+                            it.remove();
+
+                            break;
+                        }
+                    }
+
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+
+        entry.box = null;
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer cellSize = new Constant.Integer(
+                "Pixels",
+                128,
+                "Side length of a cell in SIG spatial index");
+    }
+
+    //-------//
+    // Entry //
+    //-------//
+    /**
+     * Grid entry for one inter.
+     */
+    private static class Entry
+    {
+
+        /** The indexed inter. */
+        final Inter inter;
+
+        /** Insertion sequence number. */
+        final long seq;
+
+        /** Bounds used for cell registration, null if not registered. */
+        Rectangle box;
+
+        /** Stamp of last query which selected this entry. */
+        int stamp;
+
+        Entry (Inter inter,
+               long seq)
+        {
+            this.inter = inter;
+            this.seq = seq;
+        }
+    }
+}
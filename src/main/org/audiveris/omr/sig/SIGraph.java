@@ -49,14 +49,13 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.geom.Area;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -86,6 +85,12 @@ public class SIGraph
     /** Content for differed populating after unmarshalling. */
     private SigValue sigValue;
 
+    /** Spatial index of inters. */
+    private final InterGrid grid = new InterGrid();
+
+    /** Exclusions being reduced, if any. */
+    private ExclusionQueue exclusionQueue;
+
     /**
      * Creates a new SIGraph object at system level.
      *
@@ -144,6 +149,7 @@ public class SIGraph
 
         if (added) {
             inter.setSig(this);
+            grid.add(inter);
 
             // Additional actions
             inter.added();
@@ -177,6 +183,20 @@ public class SIGraph
         }
     }
 
+    //---------------//
+    // boundsChanged //
+    //---------------//
+    /**
+     * Notify that the bounds of the provided inter may have changed, so that the
+     * spatial index gets updated accordingly.
+     *
+     * @param inter the modified inter
+     */
+    public void boundsChanged (Inter inter)
+    {
+        grid.boundsChanged(inter);
+    }
+
     //------------------------//
     // computeContextualGrade //
     //------------------------//
@@ -208,19 +228,7 @@ public class SIGraph
      */
     public List<Inter> containedInters (Rectangle rect)
     {
-        List<Inter> found = new ArrayList<>();
-
-        for (Inter inter : vertexSet()) {
-            final Rectangle box = inter.getBounds();
-
-            if (box == null) {
-                logger.error("No bounds for {}", inter);
-            } else if (rect.contains(box)) {
-                found.add(inter);
-            }
-        }
-
-        return found;
+        return grid.containedInters(rect);
     }
 
     //------------------//
@@ -235,22 +243,7 @@ public class SIGraph
      */
     public List<Inter> containingInters (Point point)
     {
-        List<Inter> found = new ArrayList<>();
-
-        for (Inter inter : vertexSet()) {
-            Rectangle bounds = inter.getBounds();
-
-            if ((bounds != null) && bounds.contains(point)) {
-                // More precise test if we know inter area
-                Area area = inter.getArea();
-
-                if ((area == null) || area.contains(point)) {
-                    found.add(inter);
-                }
-            }
-        }
-
-        return found;
+        return grid.containingInters(point);
     }
 
     //---------------//
@@ -640,6 +633,19 @@ public class SIGraph
         return supports;
     }
 
+    //--------------//
+    // getInterGrid //
+    //--------------//
+    /**
+     * Report the spatial index of inters, notably to retrieve its query statistics.
+     *
+     * @return the inter grid
+     */
+    public InterGrid getInterGrid ()
+    {
+        return grid;
+    }
+
     //-----------//
     // getSystem //
     //-----------//
@@ -651,6 +657,24 @@ public class SIGraph
         return system;
     }
 
+    //--------------//
+    // gradeChanged //
+    //--------------//
+    /**
+     * Notify that the grade or contextual grade of the provided inter may have changed,
+     * so that the exclusions being reduced, if any, get re-ordered accordingly.
+     *
+     * @param inter the modified inter
+     */
+    public void gradeChanged (Inter inter)
+    {
+        final ExclusionQueue queue = exclusionQueue;
+
+        if (queue != null) {
+            queue.gradeChanged(inter);
+        }
+    }
+
     //-------------//
     // hasRelation //
     //-------------//
@@ -687,7 +711,9 @@ public class SIGraph
     public final void populateAllInters (Collection<? extends Inter> inters)
     {
         for (Inter inter : inters) {
-            super.addVertex(inter);
+            if (super.addVertex(inter)) {
+                grid.add(inter);
+            }
         }
     }
 
@@ -966,19 +992,7 @@ public class SIGraph
      */
     public List<Inter> intersectedInters (Rectangle box)
     {
-        List<Inter> found = new ArrayList<>();
-
-        for (Inter inter : vertexSet()) {
-            if (inter.isRemoved()) {
-                continue;
-            }
-
-            if (box.intersects(inter.getBounds())) {
-                found.add(inter);
-            }
-        }
-
-        return found;
+        return grid.intersectedInters(box);
     }
 
     //-----------//
@@ -1031,7 +1045,8 @@ public class SIGraph
      * Strategy is as follows:
      * <ol>
      * <li>Pick up among all current exclusions the one whose high inter has the highest contextual
-     * grade contribution among all exclusions,</li>
+     * grade contribution among all exclusions (exclusions are kept in a priority queue, re-ordered
+     * whenever the grade of an involved inter gets modified),</li>
      * <li>Remove the weaker inter in this chosen exclusion relation,</li>
      * <li>Recompute all impacted contextual grades values,</li>
      * <li>Iterate until no more exclusion is left.</li>
@@ -1043,32 +1058,14 @@ public class SIGraph
     public Set<Inter> reduceExclusions (Collection<? extends Relation> exclusions)
     {
         final Set<Inter> removed = new LinkedHashSet<>();
-        Relation bestRel;
+        exclusionQueue = new ExclusionQueue(this, exclusions);
 
-        do {
+        try {
             // Choose exclusion with the highest source or target grade
-            double bestCP = 0;
-            bestRel = null;
-
-            for (Iterator<? extends Relation> it = exclusions.iterator(); it.hasNext();) {
-                Relation rel = it.next();
+            Relation bestRel;
 
-                if (containsEdge(rel)) {
-                    final double cp = Math.max(
-                            getEdgeSource(rel).getBestGrade(),
-                            getEdgeTarget(rel).getBestGrade());
-
-                    if (bestCP < cp) {
-                        bestCP = cp;
-                        bestRel = rel;
-                    }
-                } else {
-                    it.remove();
-                }
-            }
-
-            // Remove the weaker branch of the selected exclusion
-            if (bestRel != null) {
+            while ((bestRel = exclusionQueue.poll()) != null) {
+                // Remove the weaker branch of the selected exclusion
                 final Inter source = getEdgeSource(bestRel);
                 final double scp = source.getBestGrade();
                 final Inter target = getEdgeTarget(bestRel);
@@ -1103,10 +1100,21 @@ public class SIGraph
                 for (Inter inter : involved) {
                     computeContextualGrade(inter);
                 }
+            }
+        } finally {
+            exclusionQueue = null;
+        }
+
+        // Purge the exclusions no longer in SIG
+        final Set<Relation> remaining = new HashSet<>();
 
-                exclusions.remove(bestRel);
+        for (Relation rel : exclusions) {
+            if (containsEdge(rel)) {
+                remaining.add(rel);
             }
-        } while (bestRel != null);
+        }
+
+        exclusions.retainAll(remaining);
 
         return removed;
     }
@@ -1142,7 +1150,10 @@ public class SIGraph
             logger.info("VIP removeVertex {}", inter);
         }
 
-        return super.removeVertex(inter);
+        final boolean removed = super.removeVertex(inter);
+        grid.remove(inter);
+
+        return removed;
     }
 
     //--------------//
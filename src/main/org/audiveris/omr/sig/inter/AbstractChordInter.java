@@ -996,6 +996,7 @@ public abstract class AbstractChordInter
     @Override
     public void invalidateCache ()
     {
+        super.invalidateCache();
         beams = null;
         bounds = null;
         headLocation = null;
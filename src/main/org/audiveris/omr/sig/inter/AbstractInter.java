@@ -27,6 +27,7 @@ import org.audiveris.omr.glyph.Grades;
 import org.audiveris.omr.glyph.Shape;
 import org.audiveris.omr.math.AreaUtil;
 import org.audiveris.omr.math.GeoUtil;
+import org.audiveris.omr.run.RunOverlap;
 import org.audiveris.omr.sheet.Part;
 import org.audiveris.omr.sheet.Staff;
 import org.audiveris.omr.sheet.SystemInfo;
@@ -162,6 +163,9 @@ public abstract class AbstractInter
     /** Object precise area, if any. */
     protected Area area;
 
+    /** Pixel mask of area, lazily computed. */
+    private Glyph areaMask;
+
     /** Details about grade. */
     protected GradeImpacts impacts;
 
@@ -397,6 +401,20 @@ public abstract class AbstractInter
         return area;
     }
 
+    //-------------//
+    // getAreaMask //
+    //-------------//
+    @Override
+    public Glyph getAreaMask ()
+    {
+        if ((areaMask == null) && (area != null)) {
+            final Rectangle box = area.getBounds();
+            areaMask = new Glyph(box.x, box.y, RunOverlap.rasterize(area, box));
+        }
+
+        return areaMask;
+    }
+
     //---------//
     // setArea //
     //---------//
@@ -408,6 +426,7 @@ public abstract class AbstractInter
     public void setArea (Area area)
     {
         this.area = area;
+        areaMask = null;
     }
 
     //----------------//
@@ -462,6 +481,10 @@ public abstract class AbstractInter
     public void setBounds (Rectangle bounds)
     {
         this.bounds = bounds;
+
+        if (sig != null) {
+            sig.boundsChanged(this);
+        }
     }
 
     //-----------//
@@ -535,7 +558,12 @@ public abstract class AbstractInter
     @Override
     public void setContextualGrade (double value)
     {
+        final Double old = ctxGrade;
         ctxGrade = value;
+
+        if ((sig != null) && ((old == null) || (old != value))) {
+            sig.gradeChanged(this);
+        }
     }
 
     //---------------//
@@ -601,6 +629,10 @@ public abstract class AbstractInter
     public void setGlyph (Glyph glyph)
     {
         this.glyph = glyph;
+
+        if ((bounds == null) && (sig != null)) {
+            sig.boundsChanged(this);
+        }
     }
 
     //----------//
@@ -618,7 +650,12 @@ public abstract class AbstractInter
     @Override
     public void setGrade (double grade)
     {
+        final double old = this.grade;
         this.grade = grade;
+
+        if ((sig != null) && (old != grade)) {
+            sig.gradeChanged(this);
+        }
     }
 
     //------------//
@@ -806,7 +843,10 @@ public abstract class AbstractInter
     @Override
     public void invalidateCache ()
     {
-        // No-op by default
+        // Cached bounds, if any, are to be recomputed
+        if (sig != null) {
+            sig.boundsChanged(this);
+        }
     }
 
     //------------//
@@ -961,11 +1001,12 @@ public abstract class AbstractInter
         // Area <--> that?
         if (this.area != null) {
             if (that.getArea() != null) {
-                // Area <--> Area?
-                return AreaUtil.intersection(this.area, that.getArea());
+                // Area <--> Area? (masks are conservative, so check precisely when they meet)
+                return Glyphs.intersect(getAreaMask(), that.getAreaMask(), false)
+                       && AreaUtil.intersection(this.area, that.getArea());
             } else if (that.getGlyph() != null) {
                 // Area <--> Glyph?
-                return that.getGlyph().intersects(this.area);
+                return Glyphs.intersect(getAreaMask(), that.getGlyph(), false);
             }
         }
 
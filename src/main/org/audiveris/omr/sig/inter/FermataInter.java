@@ -208,6 +208,7 @@ public class FermataInter
     @Override
     public void invalidateCache ()
     {
+        super.invalidateCache();
         bounds = null;
     }
 
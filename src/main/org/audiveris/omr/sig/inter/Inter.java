@@ -114,6 +114,14 @@ public interface Inter
      */
     Area getArea ();
 
+    /**
+     * Report the pixel mask of the defining area, meant for fast overlap tests.
+     * Any pixel touched by the area belongs to the mask.
+     *
+     * @return the (unregistered) glyph of area pixels, or null if there is no area
+     */
+    Glyph getAreaMask ();
+
     /**
      * Report the best grade (either contextual or intrinsic) assigned to interpretation
      *
@@ -272,6 +272,7 @@ public class KeyInter
     @Override
     public void invalidateCache ()
     {
+        super.invalidateCache();
         bounds = null;
         fifths = 0;
     }
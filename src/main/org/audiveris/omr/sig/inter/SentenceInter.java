@@ -347,6 +347,7 @@ public class SentenceInter
     @Override
     public void invalidateCache ()
     {
+        super.invalidateCache();
         bounds = null;
     }
 
@@ -235,6 +235,7 @@ public class TimePairInter
     @Override
     public void invalidateCache ()
     {
+        super.invalidateCache();
         bounds = null;
         timeRational = null;
     }
@@ -180,6 +180,8 @@ public abstract class AbstractSystemStep<C>
                     {
                         // If run on a separate thread (case of parallel), we have to set/unset log
                         // If not, let's not unset log (it may be needed in following epilog)
+                        final StepMetrics.Probe probe = StepMetrics.systemStart();
+
                         try {
                             if (parallel) {
                                 LogUtil.start(sheet.getStub());
@@ -194,6 +196,11 @@ public abstract class AbstractSystemStep<C>
                         } catch (StepException ex) {
                             logger.warn(system.getLogPrefix() + ex, ex);
                         } finally {
+                            StepMetrics.systemDone(
+                                    system,
+                                    sheet.getStub().getCurrentStep(),
+                                    probe);
+
                             if (parallel) {
                                 LogUtil.stopStub();
                             }
@@ -26,6 +26,7 @@ import ij.process.ByteProcessor;
 import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.image.FilterDescriptor;
+import org.audiveris.omr.image.IntegralFilter;
 import org.audiveris.omr.image.PixelFilter;
 import org.audiveris.omr.run.Orientation;
 import org.audiveris.omr.run.RunTable;
@@ -94,14 +95,23 @@ public class BinaryStep
         logger.debug("{}", "Binarization");
 
         PixelFilter filter = desc.getFilter(initial);
-        watch.start("Binarize source");
+        final RunTable wholeVertTable;
 
-        ByteProcessor binary = filter.filteredImage();
+        if (filter instanceof IntegralFilter) {
+            // Binary runs are directly provided by the filter
+            watch.start("Binarize source into RunTable");
+            wholeVertTable = ((IntegralFilter) filter).filteredTable();
+        } else {
+            watch.start("Binarize source");
 
-        watch.start("Create binary RunTable");
+            ByteProcessor binary = filter.filteredImage();
+
+            watch.start("Create binary RunTable");
+
+            RunTableFactory vertFactory = new RunTableFactory(Orientation.VERTICAL);
+            wholeVertTable = vertFactory.createTable(binary);
+        }
 
-        RunTableFactory vertFactory = new RunTableFactory(Orientation.VERTICAL);
-        RunTable wholeVertTable = vertFactory.createTable(binary);
         picture.setTable(Picture.TableKey.BINARY, wholeVertTable, true);
 
         // To discard image
@@ -0,0 +1,484 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                      S t e p M e t r i c s                                     //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.step;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.lag.Lag;
+import org.audiveris.omr.sheet.Book;
+import org.audiveris.omr.sheet.BookManager;
+import org.audiveris.omr.sheet.Picture;
+import org.audiveris.omr.sheet.Sheet;
+import org.audiveris.omr.sheet.SheetStub;
+import org.audiveris.omr.sheet.SystemInfo;
+import org.audiveris.omr.sig.InterIndex;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class {@code StepMetrics} records metrics of step processing, per sheet and per system.
+ * <p>
+ * For each step performed on a sheet, and for each system of a system step, it measures wall
+ * time, CPU time and allocated bytes of the processing threads, plus key entity counts (glyphs,
+ * inters, sections, runs) at end of step.
+ * <p>
+ * Unless export is disabled, each measurement is appended as one JSON line to a
+ * {@code <radix>-metrics.jsonl} file in the book folder, for example:
+ * <pre>
+ * {"book":"x","sheet":1,"step":"GRID","system":0,"wallUs":812345,"cpuUs":790123, ...}
+ * </pre>
+ * where system 0 stands for the whole sheet.
+ * Totals per step are also kept in memory for the whole application run.
+ * <p>
+ * CPU time and allocated bytes are reported as -1 when not supported by the JVM.
+ *
+ * @author Hervé Bitteur
+ */
+public abstract class StepMetrics
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(StepMetrics.class);
+
+    /** Suffix for name of metrics file in book folder: {@value}. */
+    public static final String METRICS_SUFFIX = "-metrics.jsonl";
+
+    /** JVM thread monitoring. */
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    /** Probes of steps being processed, per sheet. */
+    private static final Map<SheetStub, Probe> sheetProbes = new ConcurrentHashMap<>();
+
+    /** Totals per step. */
+    private static final Map<Step, Totals> totals = new EnumMap<>(Step.class);
+
+    /** To serialize file writing. */
+    private static final Object writeLock = new Object();
+
+    /**
+     * To disallow instantiation.
+     */
+    private StepMetrics ()
+    {
+    }
+
+    //-----------//
+    // getTotals //
+    //-----------//
+    /**
+     * Report a copy of the totals per step, since application start or last reset.
+     *
+     * @return totals per step
+     */
+    public static Map<Step, Totals> getTotals ()
+    {
+        final Map<Step, Totals> copy = new EnumMap<>(Step.class);
+
+        synchronized (totals) {
+            for (Map.Entry<Step, Totals> entry : totals.entrySet()) {
+                copy.put(entry.getKey(), new Totals(entry.getValue()));
+            }
+        }
+
+        return copy;
+    }
+
+    //-----------//
+    // isEnabled //
+    //-----------//
+    /**
+     * Report whether metrics are being recorded.
+     *
+     * @return true if so
+     */
+    public static boolean isEnabled ()
+    {
+        return constants.recordMetrics.isSet();
+    }
+
+    //-------------//
+    // resetTotals //
+    //-------------//
+    /**
+     * Reset the totals per step.
+     */
+    public static void resetTotals ()
+    {
+        synchronized (totals) {
+            totals.clear();
+        }
+    }
+
+    //-----------//
+    // sheetDone //
+    //-----------//
+    /**
+     * Record the end of a step on a sheet.
+     * This method must be called by the same thread as {@link #sheetStart}.
+     *
+     * @param sheet the processed sheet
+     * @param step  the step just performed
+     */
+    public static void sheetDone (Sheet sheet,
+                                  Step step)
+    {
+        final Probe probe = sheetProbes.remove(sheet.getStub());
+
+        if (probe == null) {
+            return;
+        }
+
+        probe.stop();
+
+        synchronized (totals) {
+            Totals tot = totals.get(step);
+
+            if (tot == null) {
+                totals.put(step, tot = new Totals());
+            }
+
+            tot.include(probe);
+        }
+
+        final StringBuilder sb = probe.toJson(sheet.getStub(), step, 0);
+        appendSheetCounts(sheet, sb);
+        write(sheet.getStub().getBook(), sb.append('}'));
+    }
+
+    //----------//
+    // sheetEnd //
+    //----------//
+    /**
+     * Forget any pending measurement on the provided sheet, typically after a failed step.
+     *
+     * @param stub the sheet stub
+     */
+    public static void sheetEnd (SheetStub stub)
+    {
+        sheetProbes.remove(stub);
+    }
+
+    //------------//
+    // sheetStart //
+    //------------//
+    /**
+     * Record the start of a step on a sheet.
+     *
+     * @param stub the sheet stub to process
+     */
+    public static void sheetStart (SheetStub stub)
+    {
+        if (isEnabled()) {
+            sheetProbes.put(stub, new Probe());
+        }
+    }
+
+    //------------//
+    // systemDone //
+    //------------//
+    /**
+     * Record the end of a step on a system.
+     *
+     * @param system the processed system
+     * @param step   the step at hand
+     * @param probe  the probe started with {@link #systemStart}, perhaps null
+     */
+    public static void systemDone (SystemInfo system,
+                                   Step step,
+                                   Probe probe)
+    {
+        if (probe == null) {
+            return;
+        }
+
+        probe.stop();
+
+        final SheetStub stub = system.getSheet().getStub();
+        final Probe sheetProbe = sheetProbes.get(stub);
+
+        // Work performed on another thread is accounted to the sheet as well
+        if ((sheetProbe != null) && (sheetProbe.threadId != probe.threadId)) {
+            sheetProbe.include(probe);
+        }
+
+        final StringBuilder sb = probe.toJson(stub, step, system.getId());
+        sb.append(",\"inters\":").append(system.getSig().vertexSet().size());
+        sb.append(",\"sections\":").append(
+                system.getHorizontalSections().size() + system.getVerticalSections().size());
+        write(stub.getBook(), sb.append('}'));
+    }
+
+    //-------------//
+    // systemStart //
+    //-------------//
+    /**
+     * Record the start of a step on a system, in the calling thread.
+     *
+     * @return the probe to provide to {@link #systemDone}, or null if metrics are disabled
+     */
+    public static Probe systemStart ()
+    {
+        return isEnabled() ? new Probe() : null;
+    }
+
+    //-------------------//
+    // appendSheetCounts //
+    //-------------------//
+    private static void appendSheetCounts (Sheet sheet,
+                                           StringBuilder sb)
+    {
+        sb.append(",\"glyphs\":").append(sheet.getGlyphIndex().getEntities().size());
+
+        final InterIndex interIndex = sheet.getInterIndex();
+
+        if (interIndex != null) {
+            sb.append(",\"inters\":").append(interIndex.getEntities().size());
+        }
+
+        if (sheet.getLagManager() != null) {
+            int sections = 0;
+
+            for (Lag lag : sheet.getLagManager().getAllLags()) {
+                if (lag != null) {
+                    sections += lag.getEntities().size();
+                }
+            }
+
+            sb.append(",\"sections\":").append(sections);
+        }
+
+        if (sheet.hasPicture()) {
+            final Picture picture = sheet.getPicture();
+
+            if (picture.hasTableReady(Picture.TableKey.BINARY)) {
+                sb.append(",\"runs\":").append(
+                        picture.getTable(Picture.TableKey.BINARY).getTotalRunCount());
+            }
+        }
+    }
+
+    //-------------------//
+    // getAllocatedBytes //
+    //-------------------//
+    private static long getAllocatedBytes (long threadId)
+    {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(
+                    threadId);
+        }
+
+        return -1;
+    }
+
+    //--------------//
+    // getThreadCpu //
+    //--------------//
+    private static long getThreadCpu ()
+    {
+        if (threadBean.isCurrentThreadCpuTimeSupported()) {
+            return threadBean.getCurrentThreadCpuTime();
+        }
+
+        return -1;
+    }
+
+    //-------//
+    // write //
+    //-------//
+    private static void write (Book book,
+                               CharSequence line)
+    {
+        if (!constants.exportMetrics.isSet()) {
+            return;
+        }
+
+        final Path folder = BookManager.getDefaultBookFolder(book);
+
+        if (folder == null) {
+            return;
+        }
+
+        final Path path = folder.resolve(book.getRadix() + METRICS_SUFFIX);
+
+        synchronized (writeLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(
+                    path,
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND)) {
+                writer.append(line).append('\n');
+            } catch (IOException ex) {
+                logger.warn("Could not write metrics to {} {}", path, ex.toString());
+            }
+        }
+    }
+
+    //-------//
+    // Probe //
+    //-------//
+    /**
+     * Measurement of a processing, started and stopped in the same thread.
+     * Work performed on other threads can be included explicitly.
+     */
+    public static class Probe
+    {
+
+        private final long threadId = Thread.currentThread().getId();
+
+        private final long startWall = System.nanoTime();
+
+        private final long startCpu = getThreadCpu();
+
+        private final long startAlloc = getAllocatedBytes(threadId);
+
+        private long wall;
+
+        private long cpu;
+
+        private long alloc;
+
+        /** CPU nanoseconds spent on other threads. */
+        private final AtomicLong otherCpu = new AtomicLong();
+
+        /** Bytes allocated on other threads. */
+        private final AtomicLong otherAlloc = new AtomicLong();
+
+        private Probe ()
+        {
+        }
+
+        private void include (Probe other)
+        {
+            otherCpu.addAndGet(Math.max(0, other.cpu));
+            otherAlloc.addAndGet(Math.max(0, other.alloc));
+        }
+
+        private void stop ()
+        {
+            wall = System.nanoTime() - startWall;
+            cpu = (startCpu < 0) ? -1 : ((getThreadCpu() - startCpu) + otherCpu.get());
+            alloc = (startAlloc < 0) ? -1
+                    : ((getAllocatedBytes(threadId) - startAlloc) + otherAlloc.get());
+        }
+
+        private StringBuilder toJson (SheetStub stub,
+                                      Step step,
+                                      int systemId)
+        {
+            final StringBuilder sb = new StringBuilder("{");
+            sb.append("\"book\":\"").append(stub.getBook().getRadix().replace("\"", "\\\""));
+            sb.append("\",\"sheet\":").append(stub.getNumber());
+            sb.append(",\"step\":\"").append(step).append('"');
+            sb.append(",\"system\":").append(systemId);
+            sb.append(",\"time\":").append(System.currentTimeMillis());
+            sb.append(",\"wallUs\":").append(wall / 1000);
+            sb.append(",\"cpuUs\":").append((cpu < 0) ? -1 : (cpu / 1000));
+            sb.append(",\"allocBytes\":").append(alloc);
+
+            return sb;
+        }
+    }
+
+    //--------//
+    // Totals //
+    //--------//
+    /**
+     * Cumulated metrics of a step, over all sheets.
+     */
+    public static class Totals
+    {
+
+        /** Number of sheets. */
+        public int count;
+
+        /** Wall time in nanoseconds. */
+        public long wall;
+
+        /** CPU time in nanoseconds. */
+        public long cpu;
+
+        /** Allocated bytes. */
+        public long alloc;
+
+        Totals ()
+        {
+        }
+
+        Totals (Totals that)
+        {
+            count = that.count;
+            wall = that.wall;
+            cpu = that.cpu;
+            alloc = that.alloc;
+        }
+
+        @Override
+        public String toString ()
+        {
+            return String.format(
+                    "count:%d wall:%dms cpu:%dms alloc:%dMB",
+                    count,
+                    wall / 1_000_000,
+                    cpu / 1_000_000,
+                    alloc >> 20);
+        }
+
+        private void include (Probe probe)
+        {
+            count++;
+            wall += probe.wall;
+            cpu += Math.max(0, probe.cpu);
+            alloc += Math.max(0, probe.alloc);
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Boolean recordMetrics = new Constant.Boolean(
+                false,
+                "Should we record step metrics?");
+
+        private final Constant.Boolean exportMetrics = new Constant.Boolean(
+                true,
+                "Should we export recorded step metrics into a JSON lines file in book folder?");
+    }
+}
@@ -89,6 +89,17 @@ public interface OCR
                               LayoutMode layoutMode,
                               String label);
 
+    /**
+     * Release all OCR resources, typically at application exit.
+     */
+    void shutdown ();
+
+    /**
+     * Prepare the OCR engine in background for the default language specification, so
+     * that the first recognition does not have to wait for engine initialization.
+     */
+    void warmUp ();
+
     /**
      * Exception used to signal that no OCR is actually available.
      */
@@ -0,0 +1,354 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                       E n g i n e P o o l                                      //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.text.tesseract;
+
+import org.audiveris.omr.constant.Constant;
+import org.audiveris.omr.constant.ConstantSet;
+import org.audiveris.omr.step.ProcessingCancellationException;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.bytedeco.javacpp.tesseract.TessBaseAPI;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Class {@code EnginePool} keeps initialized Tesseract engines, so that they can be
+ * reused from one OCR order to the next, across sheets and books.
+ * <p>
+ * Initializing an engine loads the trained data of its language(s), which is costly.
+ * Engines are thus kept idle once used, keyed by language specification and segmentation mode.
+ * <p>
+ * The total number of engines is bounded, by default by the number of processors.
+ * When the bound is reached, an idle engine of another key is ended to make room, otherwise the
+ * caller waits for an engine to be released.
+ *
+ * @author Hervé Bitteur
+ */
+public class EnginePool
+{
+
+    private static final Constants constants = new Constants();
+
+    private static final Logger logger = LoggerFactory.getLogger(EnginePool.class);
+
+    /** Idle engines, per key, in least recently used order of keys. */
+    private final Map<String, Deque<TessBaseAPI>> idles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Key of every engine alive, idle or in use. */
+    private final Map<TessBaseAPI, String> keys = new IdentityHashMap<>();
+
+    /** Number of engines alive or being created. */
+    private int engineCount;
+
+    /** Set when pool has been shut down. */
+    private boolean closed;
+
+    /**
+     * Creates the EnginePool singleton.
+     */
+    private EnginePool ()
+    {
+    }
+
+    //---------//
+    // acquire //
+    //---------//
+    /**
+     * Get an engine initialized for the provided language specification and segmentation
+     * mode, waiting if the maximum number of engines are all in use.
+     * <p>
+     * The engine must be given back via {@link #release(TessBaseAPI)} once used.
+     *
+     * @param lang    the language specification
+     * @param segMode the page segmentation mode
+     * @return the engine ready for use, or null if engine could not be initialized
+     * @throws UnsatisfiedLinkError When bridge to C++ could not be loaded
+     */
+    public TessBaseAPI acquire (String lang,
+                                int segMode)
+            throws UnsatisfiedLinkError
+    {
+        final String key = keyOf(lang, segMode);
+
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    logger.info("Tesseract engines have been shut down");
+
+                    return null;
+                }
+
+                // Reuse an idle engine?
+                final Deque<TessBaseAPI> deque = idles.get(key);
+
+                if ((deque != null) && !deque.isEmpty()) {
+                    return deque.pop();
+                }
+
+                // Room for a new engine? Otherwise try to free one
+                if ((engineCount < getMaxEngines()) || endIdleEngine()) {
+                    engineCount++;
+
+                    break;
+                }
+
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    logger.warn("EnginePool got interrupted");
+                    throw new ProcessingCancellationException(ex);
+                }
+            }
+        }
+
+        // Create and initialize a new engine, out of synchronized block since this is long
+        TessBaseAPI api = null;
+
+        try {
+            api = createEngine(lang, segMode);
+        } finally {
+            synchronized (this) {
+                if (api != null) {
+                    keys.put(api, key);
+                } else {
+                    engineCount--;
+                    notifyAll();
+                }
+            }
+        }
+
+        return api;
+    }
+
+    //---------//
+    // release //
+    //---------//
+    /**
+     * Give back an engine previously acquired, so that it can be reused.
+     *
+     * @param api the engine to release, perhaps null
+     */
+    public synchronized void release (TessBaseAPI api)
+    {
+        if (api == null) {
+            return;
+        }
+
+        final String key = keys.get(api);
+
+        if (key == null) {
+            api.End(); // Not one of ours
+        } else if (closed) {
+            endEngine(api);
+        } else {
+            api.Clear(); // Free recognition results, but keep language data
+
+            Deque<TessBaseAPI> deque = idles.get(key);
+
+            if (deque == null) {
+                idles.put(key, deque = new ArrayDeque<>());
+            }
+
+            deque.push(api);
+        }
+
+        notifyAll();
+    }
+
+    //----------//
+    // shutdown //
+    //----------//
+    /**
+     * End all idle engines, as well as engines in use as soon as they are released.
+     * No engine can be acquired from now on.
+     */
+    public synchronized void shutdown ()
+    {
+        closed = true;
+
+        for (Deque<TessBaseAPI> deque : idles.values()) {
+            for (TessBaseAPI api : deque) {
+                endEngine(api);
+            }
+        }
+
+        idles.clear();
+        logger.debug("EnginePool closed, {} engine(s) still in use", engineCount);
+        notifyAll();
+    }
+
+    //--------//
+    // warmUp //
+    //--------//
+    /**
+     * Initialize in background an engine for the provided language specification and
+     * segmentation mode, so that it is ready for the first OCR order.
+     *
+     * @param lang    the language specification
+     * @param segMode the page segmentation mode
+     */
+    public void warmUp (final String lang,
+                        final int segMode)
+    {
+        OmrExecutors.getCachedLowExecutor().submit(
+                new Callable<Void>()
+        {
+            @Override
+            public Void call ()
+                    throws Exception
+            {
+                try {
+                    release(acquire(lang, segMode));
+                    logger.debug("Tesseract engine warmed up for {}", lang);
+                } catch (Throwable ex) {
+                    logger.warn("Error warming up Tesseract engine for {} {}", lang, ex.toString());
+                }
+
+                return null;
+            }
+        });
+    }
+
+    //--------------//
+    // createEngine //
+    //--------------//
+    private TessBaseAPI createEngine (String lang,
+                                      int segMode)
+    {
+        final Path ocrFolder = TesseractOCR.getInstance().getOcrFolder();
+        final TessBaseAPI api = new TessBaseAPI();
+
+        // Init API with proper language
+        if (api.Init(ocrFolder.toString(), lang) != 0) {
+            logger.warn("Could not initialize Tesseract with lang {}", lang);
+            api.End();
+
+            return null;
+        }
+
+        api.SetPageSegMode(segMode);
+        logger.debug("Tesseract engine created for {} mode:{}", lang, segMode);
+
+        return api;
+    }
+
+    //-----------//
+    // endEngine //
+    //-----------//
+    private void endEngine (TessBaseAPI api)
+    {
+        keys.remove(api);
+        engineCount--;
+        api.End();
+    }
+
+    //---------------//
+    // endIdleEngine //
+    //---------------//
+    /**
+     * End one idle engine, taken from the least recently used key.
+     *
+     * @return true if one engine was ended
+     */
+    private boolean endIdleEngine ()
+    {
+        for (Iterator<Deque<TessBaseAPI>> it = idles.values().iterator(); it.hasNext();) {
+            final Deque<TessBaseAPI> deque = it.next();
+
+            if (!deque.isEmpty()) {
+                endEngine(deque.removeLast());
+
+                if (deque.isEmpty()) {
+                    it.remove();
+                }
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    //---------------//
+    // getMaxEngines //
+    //---------------//
+    private int getMaxEngines ()
+    {
+        final int max = constants.maxEngines.getValue();
+
+        return (max > 0) ? max : OmrExecutors.getNumberOfCpus();
+    }
+
+    //-------//
+    // keyOf //
+    //-------//
+    private static String keyOf (String lang,
+                                 int segMode)
+    {
+        return lang + "/" + segMode;
+    }
+
+    //-------------//
+    // getInstance //
+    //-------------//
+    /**
+     * Report the single instance of this class in application.
+     *
+     * @return the instance
+     */
+    public static EnginePool getInstance ()
+    {
+        return LazySingleton.INSTANCE;
+    }
+
+    //---------------//
+    // LazySingleton //
+    //---------------//
+    private static class LazySingleton
+    {
+
+        static final EnginePool INSTANCE = new EnginePool();
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static class Constants
+            extends ConstantSet
+    {
+
+        private final Constant.Integer maxEngines = new Constant.Integer(
+                "Engines",
+                0,
+                "Maximum number of Tesseract engines alive (0 for number of processors)");
+    }
+}
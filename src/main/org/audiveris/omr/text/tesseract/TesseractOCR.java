@@ -25,6 +25,7 @@ import org.audiveris.omr.WellKnowns;
 import org.audiveris.omr.constant.Constant;
 import org.audiveris.omr.constant.ConstantSet;
 import org.audiveris.omr.sheet.Scale;
+import org.audiveris.omr.text.Language;
 import org.audiveris.omr.text.OCR;
 import org.audiveris.omr.text.TextChar;
 import org.audiveris.omr.text.TextLine;
@@ -236,6 +237,28 @@ public class TesseractOCR
         }
     }
 
+    //----------//
+    // shutdown //
+    //----------//
+    @Override
+    public void shutdown ()
+    {
+        EnginePool.getInstance().shutdown();
+    }
+
+    //--------//
+    // warmUp //
+    //--------//
+    @Override
+    public void warmUp ()
+    {
+        if (constants.warmUpEngine.isSet() && isAvailable()) {
+            EnginePool.getInstance().warmUp(
+                    Language.ocrDefaultLanguages.getValue(),
+                    getMode(LayoutMode.MULTI_BLOCK));
+        }
+    }
+
     //---------------//
     // findOcrFolder //
     //---------------//
@@ -360,6 +383,10 @@ public class TesseractOCR
                 false,
                 "Should we keep the images sent to Tesseract?");
 
+        private final Constant.Boolean warmUpEngine = new Constant.Boolean(
+                true,
+                "Should we initialize a Tesseract engine for default languages at startup?");
+
         private final Scale.Fraction maxDashWidth = new Scale.Fraction(
                 1.0,
                 "Maximum width for a dash character");
@@ -29,21 +29,18 @@ import org.audiveris.omr.text.TextLine;
 import org.audiveris.omr.text.TextWord;
 
 import org.bytedeco.javacpp.*;
-import static org.bytedeco.javacpp.lept.*;
 import static org.bytedeco.javacpp.tesseract.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -51,13 +48,13 @@ import java.util.Collections;
 import java.util.List;
 
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriter;
-import javax.imageio.spi.IIORegistry;
-import javax.imageio.stream.ImageOutputStream;
 
 /**
  * Class {@code TesseractOrder} carries a processing order submitted to Tesseract OCR
  * program.
+ * <p>
+ * The image is handed to Tesseract as raw 8-bit gray pixels, and processed by an engine
+ * borrowed from the {@link EnginePool}.
  *
  * @author Hervé Bitteur
  */
@@ -72,14 +69,6 @@ public class TesseractOrder
     /** To avoid repetitive warnings if OCR binding failed. */
     private static volatile boolean userWarned;
 
-    static {
-        IIORegistry registry = IIORegistry.getDefaultInstance();
-        registry.registerServiceProvider(
-                new com.github.jaiimageio.impl.plugins.tiff.TIFFImageWriterSpi());
-        registry.registerServiceProvider(
-                new com.github.jaiimageio.impl.plugins.tiff.TIFFImageReaderSpi());
-    }
-
     /** Serial number for this order. */
     private final int serial;
 
@@ -98,8 +87,14 @@ public class TesseractOrder
     /** The dedicated API. */
     private TessBaseAPI api;
 
-    /** The image being processed. */
-    private final PIX image;
+    /** Gray pixels of the image being processed, row after row. */
+    private final byte[] pixels;
+
+    /** Image width. */
+    private final int width;
+
+    /** Image height. */
+    private final int height;
 
     //----------------//
     // TesseractOrder //
@@ -114,8 +109,7 @@ public class TesseractOrder
      * @param segMode       The desired page segmentation mode
      * @param bufferedImage The image to process
      * @throws UnsatisfiedLinkError When bridge to C++ could not be loaded
-     * @throws IOException          When temporary Tiff buffer failed
-     * @throws RuntimeException     When PIX image failed
+     * @throws IOException          When image copy could not be kept on disk
      */
     public TesseractOrder (String label,
                            int serial,
@@ -132,14 +126,15 @@ public class TesseractOrder
         this.lang = lang;
         this.segMode = segMode;
 
-        // Build a PIX from the image provided
-        ByteBuffer buf = toTiffBuffer(bufferedImage);
-        buf.position(0);
-        image = pixReadMemTiff(buf, buf.capacity(), 0);
+        // Get raw gray pixels from the image provided
+        final BufferedImage gray = toGray(bufferedImage);
+        width = gray.getWidth();
+        height = gray.getHeight();
+        pixels = (byte[]) gray.getRaster().getDataElements(0, 0, width, height, null);
 
-        if (image == null) {
-            logger.warn("Invalid image {}", label);
-            throw new RuntimeException("Invalid image");
+        // Should we keep a local copy of this image on disk?
+        if (keepImage) {
+            keepImage(gray);
         }
     }
 
@@ -147,7 +142,7 @@ public class TesseractOrder
     // process //
     //---------//
     /**
-     * Actually allocate a Tesseract API and recognize the image.
+     * Actually get a Tesseract API from the engine pool and recognize the image.
      *
      * @return the sequence of lines found
      */
@@ -157,19 +152,17 @@ public class TesseractOrder
             return Collections.EMPTY_LIST;
         }
 
-        try {
-            final Path ocrFolder = TesseractOCR.getInstance().getOcrFolder();
-            api = new TessBaseAPI();
+        final EnginePool pool = EnginePool.getInstance();
 
-            // Init API with proper language
-            if (api.Init(ocrFolder.toString(), lang) != 0) {
-                logger.warn("Could not initialize Tesseract with lang {}", lang);
+        try {
+            api = pool.acquire(lang, segMode);
 
-                return finish(null);
+            if (api == null) {
+                return null;
             }
 
-            // Set API image
-            api.SetImage(image);
+            // Set API image, 1 byte per pixel
+            api.SetImage(pixels, width, height, 1, width);
 
             // Perform layout analysis according to segmentation mode
             api.SetPageSegMode(segMode);
@@ -181,11 +174,11 @@ public class TesseractOrder
             if (result != 0) {
                 logger.warn("Error in Tesseract recognize, exit code: {}", result);
 
-                return finish(null);
+                return null;
             }
 
             // Extract lines
-            return finish(getLines());
+            return getLines();
         } catch (UnsatisfiedLinkError ex) {
             if (!userWarned) {
                 logger.warn("Could not link Tesseract engine", ex);
@@ -194,31 +187,12 @@ public class TesseractOrder
             }
 
             throw new RuntimeException(ex);
+        } finally {
+            pool.release(api);
+            api = null;
         }
     }
 
-    //--------//
-    // finish //
-    //--------//
-    /**
-     * Convenient way to cleanup Tesseract resources while ending the current processing
-     *
-     * @param lines the lines found, if any
-     * @return the lines found, if nay
-     */
-    private List<TextLine> finish (List<TextLine> lines)
-    {
-        if (image != null) {
-            pixDestroy(image);
-        }
-
-        if (api != null) {
-            api.End();
-        }
-
-        return lines;
-    }
-
     private Line2D getBaseline (ResultIterator rit,
                                 int level)
     {
@@ -392,53 +366,30 @@ public class TesseractOrder
         }
     }
 
-    //--------------//
-    // toTiffBuffer //
-    //--------------//
+    //-----------//
+    // keepImage //
+    //-----------//
     /**
-     * Convert the given image into a TIFF-formatted ByteBuffer for passing it directly
-     * to Tesseract.
-     * <p>
-     * A copy of the tiff buffer can be saved on disk, if so desired.
+     * Save a copy of the image on disk, in TEMP folder.
      *
-     * @param image the input image
-     * @return a buffer in TIFF format
+     * @param image the image to save
      */
-    private ByteBuffer toTiffBuffer (BufferedImage image)
+    private void keepImage (BufferedImage image)
             throws IOException
     {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        String name = String.format("%03d-", serial) + ((label != null) ? label : "");
+        Path path = WellKnowns.TEMP_FOLDER.resolve(name + ".png");
 
-        try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
-            ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
-            writer.setOutput(ios);
-            writer.write(image);
-        } catch (IOException ex) {
-            logger.warn("Could not write image", ex);
+        // Make sure the TEMP directory exists
+        if (!Files.exists(WellKnowns.TEMP_FOLDER)) {
+            Files.createDirectories(WellKnowns.TEMP_FOLDER);
         }
 
-        ByteBuffer buf = ByteBuffer.allocate(baos.size());
-        byte[] bytes = baos.toByteArray();
-        buf.put(bytes);
-
-        // Should we keep a local copy of this buffer on disk?
-        if (keepImage) {
-            String name = String.format("%03d-", serial) + ((label != null) ? label : "");
-            Path path = WellKnowns.TEMP_FOLDER.resolve(name + ".tif");
-
-            // Make sure the TEMP directory exists
-            if (!Files.exists(WellKnowns.TEMP_FOLDER)) {
-                Files.createDirectories(WellKnowns.TEMP_FOLDER);
-            }
-
-            try (FileOutputStream fos = new FileOutputStream(path.toFile())) {
-                fos.write(bytes);
-            } catch (IOException ex) {
-                logger.warn("Could not write to {}", path, ex);
-            }
+        try {
+            ImageIO.write(image, "png", path.toFile());
+        } catch (IOException ex) {
+            logger.warn("Could not write to {}", path, ex);
         }
-
-        return buf;
     }
 
     /**
@@ -471,4 +422,30 @@ public class TesseractOrder
             }
         }
     }
+
+    //--------//
+    // toGray //
+    //--------//
+    /**
+     * Make sure we work on a 8-bit gray image.
+     *
+     * @param image the input image
+     * @return the input image if already gray, otherwise a gray copy
+     */
+    private static BufferedImage toGray (BufferedImage image)
+    {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+
+        final BufferedImage gray = new BufferedImage(
+                image.getWidth(),
+                image.getHeight(),
+                BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D g = gray.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+
+        return gray;
+    }
 }
@@ -455,6 +455,7 @@ public class MainGui
             ShapeClassifier.preload();
             JaiLoader.preload();
             PartwiseBuilder.preload();
+            OcrUtil.getOcr().warmUp();
         }
     }
 
@@ -797,6 +798,9 @@ public class MainGui
             }
 
             logger.debug("{} book(s) closed", count);
+
+            // Release OCR engines
+            OcrUtil.getOcr().shutdown();
         }
     }
 }
@@ -79,6 +79,19 @@ public abstract class Memory
         return String.format("%,d", occupied());
     }
 
+    //-----//
+    // max //
+    //-----//
+    /**
+     * Get the maximum amount of memory the JVM will attempt to use
+     *
+     * @return this size
+     */
+    public static long max ()
+    {
+        return rt.maxMemory();
+    }
+
     //----------//
     // occupied //
     //----------//
@@ -29,10 +29,15 @@ import org.audiveris.omr.util.param.Param;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -142,6 +147,59 @@ public class OmrExecutors
         return cpuCount;
     }
 
+    //-----------//
+    // invokeAll //
+    //-----------//
+    /**
+     * Run the provided tasks on the low pool, and wait for their completion.
+     * <p>
+     * If the current thread is itself a thread of the low pool (for example a system processed
+     * in parallel), the tasks are run one after the other in the current thread.
+     * Otherwise, with all pool threads waiting for sub-tasks that no thread is left to run, the
+     * whole pool would get stuck.
+     *
+     * @param <T>   type of task result
+     * @param tasks the tasks to run
+     * @return the futures of the completed tasks, in tasks order
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static <T> List<Future<T>> invokeAll (Collection<? extends Callable<T>> tasks)
+            throws InterruptedException
+    {
+        if (!isLowThread()) {
+            return getLowExecutor().invokeAll(tasks);
+        }
+
+        final List<Future<T>> futures = new ArrayList<>(tasks.size());
+
+        for (Callable<T> task : tasks) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            final FutureTask<T> future = new FutureTask<>(task);
+            future.run();
+            futures.add(future);
+        }
+
+        return futures;
+    }
+
+    //-------------//
+    // isLowThread //
+    //-------------//
+    /**
+     * Tell whether the current thread belongs to the low pool.
+     *
+     * @return true if current thread is a low pool thread
+     */
+    public static boolean isLowThread ()
+    {
+        final Thread thread = Thread.currentThread();
+
+        return (thread instanceof PoolThread) && (((PoolThread) thread).pool == lows);
+    }
+
     //---------//
     // restart //
     //---------//
@@ -316,7 +374,7 @@ public class OmrExecutors
         @Override
         protected ExecutorService createPool ()
         {
-            return Executors.newCachedThreadPool(new Factory(getName(), Thread.MIN_PRIORITY, 0));
+            return Executors.newCachedThreadPool(new Factory(this, Thread.MIN_PRIORITY, 0));
         }
     }
 
@@ -372,6 +430,8 @@ public class OmrExecutors
 
         private final ThreadGroup group;
 
+        private final Pool pool;
+
         private final String threadPrefix;
 
         private final int threadPriority;
@@ -380,13 +440,14 @@ public class OmrExecutors
 
         private final AtomicInteger threadNumber = new AtomicInteger(0);
 
-        Factory (String threadPrefix,
+        Factory (Pool pool,
                  int threadPriority,
                  long stackSize)
         {
             SecurityManager s = System.getSecurityManager();
             group = (s != null) ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
-            this.threadPrefix = threadPrefix;
+            this.pool = pool;
+            this.threadPrefix = pool.getName();
             this.threadPriority = threadPriority;
             this.stackSize = stackSize;
         }
@@ -394,7 +455,7 @@ public class OmrExecutors
         @Override
         public Thread newThread (Runnable r)
         {
-            Thread t = new Thread(group, r, getOneThreadName(), stackSize);
+            Thread t = new PoolThread(pool, group, r, getOneThreadName(), stackSize);
 
             if (t.isDaemon()) {
                 t.setDaemon(false);
@@ -413,6 +474,27 @@ public class OmrExecutors
         }
     }
 
+    //------------//
+    // PoolThread //
+    //------------//
+    /** Thread which knows its pool. */
+    private static class PoolThread
+            extends Thread
+    {
+
+        private final Pool pool;
+
+        PoolThread (Pool pool,
+                    ThreadGroup group,
+                    Runnable target,
+                    String name,
+                    long stackSize)
+        {
+            super(group, target, name, stackSize);
+            this.pool = pool;
+        }
+    }
+
     //-------//
     // Highs //
     //-------//
@@ -432,7 +514,7 @@ public class OmrExecutors
         {
             return Executors.newFixedThreadPool(
                     defaultParallelism.getValue() ? (cpuCount + 1) : 1,
-                    new Factory(getName(), Thread.NORM_PRIORITY, 0));
+                    new Factory(this, Thread.NORM_PRIORITY, 0));
         }
     }
 
@@ -455,7 +537,7 @@ public class OmrExecutors
         {
             return Executors.newFixedThreadPool(
                     defaultParallelism.getValue() ? (cpuCount + 1) : 1,
-                    new Factory(getName(), Thread.MIN_PRIORITY, 0));
+                    new Factory(this, Thread.MIN_PRIORITY, 0));
         }
     }
 }
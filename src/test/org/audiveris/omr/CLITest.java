@@ -169,6 +169,50 @@ public class CLITest
         assertEquals("my Input.pdf", params.arguments.get(1).toString());
     }
 
+    @Test
+    public void testSpool ()
+            throws Exception
+    {
+        System.out.println("\n+++ testSpool");
+
+        String[] args = new String[]{"-spool", "my/spool"};
+        CLI.Parameters params = instance.parseParameters(args);
+        new Dumping().dump(params);
+        assertEquals(true, params.batchMode);
+        assertEquals("my/spool", instance.getSpoolFolder().toString().replace('\\', '/'));
+    }
+
+    @Test
+    public void testSpoolJob ()
+            throws Exception
+    {
+        System.out.println("\n+++ testSpoolJob");
+
+        String[] args = new String[]{"-transcribe", "-export", "my Input.pdf"};
+        instance.parseParameters(args);
+        instance.checkJobParameters();
+        assertEquals(1, instance.getCliTasks().size());
+    }
+
+    @Test
+    public void testSpoolJobError ()
+            throws Exception
+    {
+        System.out.println("\n+++ testSpoolJobError");
+
+        String[] args = new String[]{"-output", "elsewhere", "my Input.pdf"};
+        instance.parseParameters(args);
+
+        try {
+            instance.checkJobParameters();
+
+            fail();
+        } catch (CmdLineException ex) {
+            System.out.println(ex.getMessage());
+            assertTrue(ex.getMessage().contains("-output"));
+        }
+    }
+
     @Test
     public void testStep ()
             throws Exception
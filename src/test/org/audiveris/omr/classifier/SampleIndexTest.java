@@ -0,0 +1,223 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                  S a m p l e I n d e x T e s t                                 //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.classifier;
+
+import static junit.framework.Assert.*;
+
+import org.audiveris.omr.classifier.SheetContainer.Descriptor;
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.Run;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.util.BaseTestCase;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class {@code SampleIndexTest} checks the writing and on-demand reading of a SampleIndex.
+ *
+ * @author Hervé Bitteur
+ */
+public class SampleIndexTest
+        extends BaseTestCase
+{
+
+    private static final long[] STAMP = new long[]{100, 200, -1, -1};
+
+    //-------------//
+    // testReadAll //
+    //-------------//
+    @Test
+    public void testReadAll ()
+            throws IOException
+    {
+        final Path dir = Files.createTempDirectory("index");
+        final List<Sample> s1 = new ArrayList<>();
+        s1.add(createSample(10, 20, 3, Shape.SHARP, 2.0));
+        s1.add(createSample(30, 40, 4, Shape.FLAT, null));
+        s1.add(createSample(50, 60, 5, Shape.SHARP, -1.5));
+
+        final List<Sample> s2 = new ArrayList<>();
+        s2.add(createSample(1, 2, 6, Shape.FLAT, 0.0));
+
+        final RunTable image = createTable(7);
+        final SampleIndex index = write(dir, s1, s2, image);
+
+        assertEquals(3, index.getSheetCount());
+        assertEquals(4, index.getSampleCount());
+        assertEquals("first", index.getDescriptor(0).getName());
+        assertEquals(Integer.valueOf(123), index.getDescriptor(0).getHash());
+        assertEquals(Arrays.asList("alias"), index.getDescriptor(0).getAliases());
+        assertNull(index.getDescriptor(1).getHash());
+        assertTrue(index.hasSampleSheet(1));
+        assertFalse(index.hasSampleSheet(2));
+        assertEquals(1, index.getSheet("second"));
+        assertEquals(-1, index.getSheet("none"));
+
+        // Samples
+        final List<Sample> all = new ArrayList<>(s1);
+        all.addAll(s2);
+
+        for (int e = 0; e < all.size(); e++) {
+            final Sample expected = all.get(e);
+            assertEquals(expected.getShape(), index.getShape(e));
+            assertEquals(expected.getWeight(), index.getWeight(e));
+
+            final Sample sample = index.getSample(e);
+            assertEquals(expected.getBounds(), sample.getBounds());
+            assertEquals(expected.getId(), sample.getId());
+            assertEquals(expected.getInterline(), sample.getInterline());
+            assertEquals(expected.getPitch(), sample.getPitch());
+            assertEquals(expected.getRunTable(), sample.getRunTable());
+            assertEquals(Integer.valueOf(e), index.getEntry(sample));
+        }
+
+        assertEquals("second", index.getSheetName(3));
+        assertTrue(Arrays.equals(new int[]{0, 2}, index.getEntries(0, Shape.SHARP)));
+        assertTrue(Arrays.equals(new int[]{1, 3}, index.getEntries(Shape.FLAT)));
+
+        // Images
+        assertTrue(index.hasImage(0));
+        assertFalse(index.hasImage(1));
+        assertEquals(image, index.readImage(0));
+        assertNull(index.readImage(1));
+
+        index.close();
+        delete(dir);
+    }
+
+    //--------------//
+    // testIdentity //
+    //--------------//
+    @Test
+    public void testIdentity ()
+            throws IOException
+    {
+        final Path dir = Files.createTempDirectory("index");
+        final List<Sample> s1 = new ArrayList<>();
+        s1.add(createSample(10, 20, 3, Shape.SHARP, null));
+
+        final SampleIndex index = write(dir, s1, new ArrayList<Sample>(), null);
+        final List<Sample> view = index.getSamples(index.getEntries(0, null));
+        assertEquals(1, view.size());
+
+        // The same sample instance is returned, as long as it is referenced
+        final Sample sample = view.get(0);
+        assertSame(sample, index.getSample(0));
+        assertTrue(index.getSamples(index.getEntries(Shape.SHARP)).contains(sample));
+
+        index.close();
+        delete(dir);
+    }
+
+    //-----------//
+    // testStale //
+    //-----------//
+    @Test
+    public void testStale ()
+            throws IOException
+    {
+        final Path dir = Files.createTempDirectory("index");
+        write(dir, new ArrayList<Sample>(), new ArrayList<Sample>(), null).close();
+
+        final long[] other = STAMP.clone();
+        other[1]++;
+        assertNull(
+                SampleIndex.open(
+                        dir.resolve(SampleIndex.INDEX_FILE_NAME),
+                        dir.resolve(SampleIndex.DATA_FILE_NAME),
+                        other));
+        assertNull(
+                SampleIndex.open(
+                        dir.resolve("missing.idx"),
+                        dir.resolve(SampleIndex.DATA_FILE_NAME),
+                        STAMP));
+
+        delete(dir);
+    }
+
+    //--------------//
+    // createSample //
+    //--------------//
+    private Sample createSample (int left,
+                                 int top,
+                                 int seed,
+                                 Shape shape,
+                                 Double pitch)
+    {
+        return new Sample(left, top, createTable(seed), 20 + seed, seed, shape, pitch);
+    }
+
+    //-------------//
+    // createTable //
+    //-------------//
+    private RunTable createTable (int seed)
+    {
+        final RunTable table = new RunTable(Orientation.VERTICAL, seed + 2, seed + 5);
+
+        for (int i = 0; i < table.getSize(); i++) {
+            table.addRun(i, new Run(i % 3, 1 + ((seed + i) % 4)));
+        }
+
+        return table;
+    }
+
+    //--------//
+    // delete //
+    //--------//
+    private void delete (Path dir)
+            throws IOException
+    {
+        Files.deleteIfExists(dir.resolve(SampleIndex.INDEX_FILE_NAME));
+        Files.deleteIfExists(dir.resolve(SampleIndex.DATA_FILE_NAME));
+        Files.deleteIfExists(dir);
+    }
+
+    //-------//
+    // write //
+    //-------//
+    private SampleIndex write (Path dir,
+                               List<Sample> s1,
+                               List<Sample> s2,
+                               RunTable image)
+            throws IOException
+    {
+        final SampleIndex.Writer writer = new SampleIndex.Writer(
+                dir.resolve(SampleIndex.DATA_FILE_NAME));
+        writer.addSheet(new Descriptor("first", 123, Arrays.asList("alias")), s1, image);
+        writer.addSheet(new Descriptor("second", null), s2, null);
+        writer.addSheet(new Descriptor("orphan", null), null, null);
+        writer.finish(dir.resolve(SampleIndex.INDEX_FILE_NAME), STAMP);
+
+        return SampleIndex.open(
+                dir.resolve(SampleIndex.INDEX_FILE_NAME),
+                dir.resolve(SampleIndex.DATA_FILE_NAME),
+                STAMP);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © Audiveris 2018. All rights reserved.
+ * This software is released under the GNU General Public License.
+ * Goto http://kenai.com/projects/audiveris to report bugs or suggestions.
+ */
+package org.audiveris.omr.glyph;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.moments.ARTMoments;
+import org.audiveris.omr.moments.RawMoments;
+import org.audiveris.omr.run.Orientation;
+import static org.audiveris.omr.run.Orientation.HORIZONTAL;
+import static org.audiveris.omr.run.Orientation.VERTICAL;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Check that compound features, combined from parts, are the features of the compound
+ * glyph once built.
+ *
+ * @author Hervé Bitteur
+ */
+public class GlyphCompoundTest
+{
+
+    private static final int INTERLINE = 20;
+
+    private static final double EPSILON = 1E-9;
+
+    /**
+     * Creates a new {@code GlyphCompoundTest} object.
+     */
+    public GlyphCompoundTest ()
+    {
+    }
+
+    /**
+     * Compare compounds made of 1, 2 and 3 parts with their built glyphs.
+     */
+    @Test
+    public void testCompoundFeatures ()
+    {
+        System.out.println("compoundFeatures");
+
+        // Parts from tables of both orientations
+        final List<Glyph> parts = new ArrayList<>();
+        parts.addAll(createParts(VERTICAL, new Point(100, 200)));
+        parts.addAll(createParts(HORIZONTAL, new Point(130, 190)));
+
+        final Rectangle box = Glyphs.getBounds(parts);
+        final List<RawMoments> sums = new ArrayList<>();
+
+        for (Glyph part : parts) {
+            RawMoments partSums = new RawMoments(box.x, box.y);
+            partSums.include(part.getRunTable(), part.getLeft(), part.getTop());
+            sums.add(partSums);
+        }
+
+        for (int i = 0; i < parts.size(); i++) {
+            GlyphCompound single = new GlyphCompound(parts.get(i), i, sums.get(i));
+            assertSameFeatures(single, parts.get(i));
+
+            for (int j = i + 1; j < parts.size(); j++) {
+                GlyphCompound pair = single.plus(parts.get(j), j, sums.get(j));
+                assertSameFeatures(pair, GlyphFactory.buildGlyph(pair.getParts()));
+
+                for (int k = j + 1; k < parts.size(); k++) {
+                    GlyphCompound triple = pair.plus(parts.get(k), k, sums.get(k));
+                    assertSameFeatures(triple, GlyphFactory.buildGlyph(triple.getParts()));
+
+                    // Key does not depend on parts order
+                    GlyphCompound other = new GlyphCompound(parts.get(k), k, sums.get(k))
+                            .plus(parts.get(i), i, sums.get(i)).plus(parts.get(j), j, sums.get(j));
+                    assertEquals(triple.getKey(), other.getKey());
+                }
+            }
+        }
+    }
+
+    //--------------------//
+    // assertSameFeatures //
+    //--------------------//
+    private void assertSameFeatures (GlyphCompound compound,
+                                     Glyph glyph)
+    {
+        assertEquals(glyph.getBounds(), compound.getBounds());
+        assertEquals(glyph.getWeight(), compound.getWeight());
+
+        double[] expGeos = glyph.getGeometricMoments(INTERLINE).getValues();
+        double[] geos = compound.getGeometricMoments(INTERLINE).getValues();
+
+        for (int i = 0; i < expGeos.length; i++) {
+            assertEquals("geo#" + i, expGeos[i], geos[i], EPSILON);
+        }
+
+        ARTMoments expArts = glyph.getARTMoments();
+        ARTMoments arts = compound.getARTMoments();
+
+        for (int p = 0; p < ARTMoments.ANGULAR; p++) {
+            for (int r = 0; r < ARTMoments.RADIAL; r++) {
+                assertEquals("art" + p + r, expArts.getMoment(p, r), arts.getMoment(p, r), EPSILON);
+            }
+        }
+    }
+
+    //-------------//
+    // createParts //
+    //-------------//
+    /**
+     * Create the 2 largest glyphs of a random image.
+     *
+     * @param orientation orientation of glyphs runs
+     * @param offset      image offset
+     * @return the parts
+     */
+    private List<Glyph> createParts (Orientation orientation,
+                                     Point offset)
+    {
+        Random random = new Random(456);
+        ByteProcessor buffer = new ByteProcessor(30, 20);
+
+        for (int x = 0; x < buffer.getWidth(); x++) {
+            for (int y = 0; y < buffer.getHeight(); y++) {
+                buffer.set(x, y, (random.nextInt(100) < 40) ? 0 : 255);
+            }
+        }
+
+        RunTable runTable = new RunTableFactory(orientation).createTable(buffer);
+        List<Glyph> glyphs = GlyphFactory.buildGlyphs(runTable, offset);
+        Collections.sort(glyphs, Glyphs.byReverseWeight);
+
+        return glyphs.subList(0, 2);
+    }
+}
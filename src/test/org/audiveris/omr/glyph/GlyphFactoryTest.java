@@ -5,14 +5,27 @@
  */
 package org.audiveris.omr.glyph;
 
-import static org.audiveris.omr.run.Orientation.HORIZONTAL;
+import ij.process.ByteProcessor;
 
+import static org.audiveris.omr.run.Orientation.HORIZONTAL;
+import static org.audiveris.omr.run.Orientation.VERTICAL;
 import org.audiveris.omr.run.Run;
 import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+import org.audiveris.omr.util.OmrExecutors;
 
+import static org.junit.Assert.*;
 import org.junit.Test;
 
 import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -42,7 +55,109 @@ public class GlyphFactoryTest
         System.out.println("createGlyphs");
 
         RunTable runTable = createHorizontalInstance();
-        GlyphFactory.buildGlyphs(runTable, null);
+        List<Glyph> glyphs = GlyphFactory.buildGlyphs(runTable, null);
+
+        // Glyphs come in the order of their first run
+        assertEquals(3, glyphs.size());
+        assertEquals(new Rectangle(1, 0, 2, 1), glyphs.get(0).getBounds());
+        assertEquals(new Rectangle(0, 0, 14, 7), glyphs.get(1).getBounds());
+        assertEquals(new Rectangle(0, 1, 1, 1), glyphs.get(2).getBounds());
+        assertEquals(2, glyphs.get(0).getWeight());
+        assertEquals(49, glyphs.get(1).getWeight());
+        assertEquals(1, glyphs.get(2).getWeight());
+    }
+
+    /**
+     * Test of createGlyphs method with an offset.
+     */
+    @Test
+    public void testCreateGlyphsOffset ()
+    {
+        System.out.println("createGlyphsOffset");
+
+        RunTable runTable = createHorizontalInstance();
+        List<Glyph> glyphs = GlyphFactory.buildGlyphs(runTable, new Point(100, 200));
+        assertEquals(3, glyphs.size());
+        assertEquals(new Rectangle(100, 200, 14, 7), glyphs.get(1).getBounds());
+    }
+
+    /**
+     * Check that processing by stripes gives the same glyphs as sequential processing.
+     */
+    @Test
+    public void testStripedGlyphs ()
+    {
+        System.out.println("stripedGlyphs");
+
+        Random random = new Random(123);
+        ByteProcessor buffer = new ByteProcessor(300, 200);
+
+        for (int x = 0; x < buffer.getWidth(); x++) {
+            for (int y = 0; y < buffer.getHeight(); y++) {
+                buffer.set(x, y, (random.nextInt(100) < 45) ? 0 : 255);
+            }
+        }
+
+        for (RunTable runTable : new RunTable[]{
+            new RunTableFactory(VERTICAL).createTable(buffer),
+            new RunTableFactory(HORIZONTAL).createTable(buffer)
+        }) {
+            List<Glyph> seqGlyphs = GlyphFactory.buildGlyphs(runTable, null, null, false);
+            List<Glyph> stripedGlyphs = GlyphFactory.buildGlyphs(runTable, null, null, true);
+            assertEquals(seqGlyphs.size(), stripedGlyphs.size());
+
+            int weight = 0;
+
+            for (int i = 0; i < seqGlyphs.size(); i++) {
+                Glyph seqGlyph = seqGlyphs.get(i);
+                Glyph stripedGlyph = stripedGlyphs.get(i);
+                assertEquals(seqGlyph.getBounds(), stripedGlyph.getBounds());
+                assertEquals(seqGlyph.getRunTable(), stripedGlyph.getRunTable());
+                weight += stripedGlyph.getWeight();
+            }
+
+            assertEquals(runTable.getWeight(), weight);
+        }
+    }
+
+    /**
+     * Check that processing by stripes from within all low pool threads (as in systems
+     * processed in parallel) does not wait for a free low pool thread.
+     */
+    @Test
+    public void testStripedInLowPool ()
+            throws Exception
+    {
+        System.out.println("stripedInLowPool");
+
+        Random random = new Random(456);
+        ByteProcessor buffer = new ByteProcessor(300, 200);
+
+        for (int x = 0; x < buffer.getWidth(); x++) {
+            for (int y = 0; y < buffer.getHeight(); y++) {
+                buffer.set(x, y, (random.nextInt(100) < 45) ? 0 : 255);
+            }
+        }
+
+        final RunTable runTable = new RunTableFactory(VERTICAL).createTable(buffer);
+        final int expected = GlyphFactory.buildGlyphs(runTable, null, null, false).size();
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        for (int i = 0; i <= OmrExecutors.getNumberOfCpus(); i++) {
+            futures.add(OmrExecutors.getLowExecutor().submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call ()
+                        throws Exception
+                {
+                    return GlyphFactory.buildGlyphs(runTable, null, null, true).size();
+                }
+            }));
+        }
+
+        for (Future<Integer> future : futures) {
+            assertEquals(expected, (int) future.get(60, TimeUnit.SECONDS));
+        }
     }
 
     //--------------------------//
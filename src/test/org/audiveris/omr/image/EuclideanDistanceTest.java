@@ -0,0 +1,200 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                            E u c l i d e a n D i s t a n c e T e s t                           //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.util.BaseTestCase;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class {@code EuclideanDistanceTest} checks {@link EuclideanDistance} against a brute
+ * force computation of distances.
+ *
+ * @author Hervé Bitteur
+ */
+public class EuclideanDistanceTest
+        extends BaseTestCase
+{
+
+    private static final int NORMALIZER = 3;
+
+    /** Image whose foreground pixels are cached. */
+    private ByteProcessor foreImage;
+
+    /** Cached foreground abscissae. */
+    private final List<Integer> foreXs = new ArrayList<>();
+
+    /** Cached foreground ordinates. */
+    private final List<Integer> foreYs = new ArrayList<>();
+
+    @Test
+    public void testBands ()
+    {
+        ByteProcessor input = createRandomImage(300, 400, 80, 7);
+        Rectangle b1 = new Rectangle(0, 20, 300, 60);
+        Rectangle b2 = new Rectangle(0, 70, 300, 50); // Overlaps b1
+        Rectangle b3 = new Rectangle(0, 250, 300, 100);
+        DistanceTable table = new EuclideanDistance(NORMALIZER).computeToFore(
+                input,
+                Arrays.asList(b3, b1, b2));
+
+        for (int y = 0; y < 400; y++) {
+            for (int x = 0; x < 300; x++) {
+                final int expected;
+
+                if ((y >= 20) && (y < 120)) {
+                    expected = bruteForce(input, x, y, 20, 120);
+                } else if ((y >= 250) && (y < 350)) {
+                    expected = bruteForce(input, x, y, 250, 350);
+                } else {
+                    expected = ChamferDistance.VALUE_UNKNOWN;
+                }
+
+                assertEquals("x:" + x + " y:" + y, expected, table.getValue(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyImage ()
+    {
+        ByteProcessor input = new ByteProcessor(40, 30);
+        input.setValue(255);
+        input.fill();
+
+        DistanceTable table = new EuclideanDistance(NORMALIZER).computeToFore(input);
+
+        for (int i = 0; i < (40 * 30); i++) {
+            assertEquals(ChamferDistance.VALUE_UNKNOWN, table.getValue(i));
+        }
+    }
+
+    @Test
+    public void testToBack ()
+    {
+        ByteProcessor input = createRandomImage(60, 50, 300, 3);
+        DistanceTable table = new EuclideanDistance(NORMALIZER).computeToBack(input);
+        ByteProcessor inverted = (ByteProcessor) input.duplicate();
+        inverted.invert();
+
+        for (int y = 0; y < 50; y++) {
+            for (int x = 0; x < 60; x++) {
+                assertEquals(bruteForce(inverted, x, y, 0, 50), table.getValue(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testToFore ()
+    {
+        ByteProcessor input = createRandomImage(517, 389, 60, 12345);
+        DistanceTable table = new EuclideanDistance(NORMALIZER).computeToFore(input);
+
+        assertEquals(NORMALIZER, table.getNormalizer());
+
+        for (int y = 0; y < 389; y++) {
+            for (int x = 0; x < 517; x++) {
+                assertEquals("x:" + x + " y:" + y, bruteForce(input, x, y, 0, 389),
+                             table.getValue(x, y));
+            }
+        }
+    }
+
+    /**
+     * Expected normalized distance from (x,y) to nearest foreground pixel in rows [y1, y2[.
+     */
+    private int bruteForce (ByteProcessor input,
+                            int x,
+                            int y,
+                            int y1,
+                            int y2)
+    {
+        if (input != foreImage) {
+            foreImage = input;
+            foreXs.clear();
+            foreYs.clear();
+
+            for (int fy = 0; fy < input.getHeight(); fy++) {
+                for (int fx = 0; fx < input.getWidth(); fx++) {
+                    if (input.get(fx, fy) == 0) {
+                        foreXs.add(fx);
+                        foreYs.add(fy);
+                    }
+                }
+            }
+        }
+
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < foreXs.size(); i++) {
+            final int fy = foreYs.get(i);
+
+            if ((fy >= y1) && (fy < y2)) {
+                final long dx = foreXs.get(i) - x;
+                final long dy = fy - y;
+                best = Math.min(best, (dx * dx) + (dy * dy));
+            }
+        }
+
+        if (best == Long.MAX_VALUE) {
+            return ChamferDistance.VALUE_UNKNOWN;
+        }
+
+        return (int) Math.round(NORMALIZER * Math.sqrt(best));
+    }
+
+    /**
+     * Build a binary image with a few foreground rectangles.
+     */
+    private ByteProcessor createRandomImage (int width,
+                                             int height,
+                                             int count,
+                                             long seed)
+    {
+        final Random random = new Random(seed);
+        final ByteProcessor input = new ByteProcessor(width, height);
+        input.setValue(255);
+        input.fill();
+        input.setValue(0);
+
+        for (int i = 0; i < count; i++) {
+            input.setRoi(
+                    random.nextInt(width),
+                    random.nextInt(height),
+                    1 + random.nextInt(6),
+                    1 + random.nextInt(6));
+            input.fill();
+        }
+
+        input.resetRoi();
+
+        return input;
+    }
+}
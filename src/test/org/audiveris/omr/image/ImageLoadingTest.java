@@ -0,0 +1,283 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 I m a g e L o a d i n g T e s t                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Class {@code ImageLoadingTest} checks gray loading against the conversion of the whole
+ * image.
+ *
+ * @author Hervé Bitteur
+ */
+public class ImageLoadingTest
+{
+
+    /**
+     * Check a color image in a stripped format, large enough to be decoded by several bands.
+     */
+    @Test
+    public void testGrayColor ()
+            throws IOException
+    {
+        checkGrayColor("tiff");
+    }
+
+    /**
+     * Check a color image in a sequential format, decoded at once.
+     */
+    @Test
+    public void testGrayColorSequential ()
+            throws IOException
+    {
+        checkGrayColor("png");
+    }
+
+    private static void checkGrayColor (String format)
+            throws IOException
+    {
+        final BufferedImage img = createImage(2100, 2100, BufferedImage.TYPE_3BYTE_BGR);
+        final BufferedImage gray = loadGray(img, format);
+        final int[] levels = new int[3];
+
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.getRaster().getPixel(x, y, levels);
+
+                final int max = Math.max(levels[0], Math.max(levels[1], levels[2]));
+                assertEquals(max, gray.getRaster().getSample(x, y, 0));
+            }
+        }
+    }
+
+    /**
+     * Check a binary image, converted through RGB values.
+     */
+    @Test
+    public void testGrayBinary ()
+            throws IOException
+    {
+        final BufferedImage img = createImage(300, 200, BufferedImage.TYPE_BYTE_BINARY);
+        final BufferedImage gray = loadGray(img);
+        final ByteProcessor expected = new ColorProcessor(img).convertToByteProcessor();
+
+        assertArrayEquals(
+                (byte[]) expected.getPixels(),
+                (byte[]) new ByteProcessor(gray).getPixels());
+    }
+
+    /**
+     * Check the prefetcher delivers the same image as a plain loader.
+     */
+    @Test
+    public void testPrefetcher ()
+            throws IOException
+    {
+        final BufferedImage img = createImage(300, 200, BufferedImage.TYPE_3BYTE_BGR);
+        final Path path = Files.createTempFile("loading", ".png");
+
+        try {
+            ImageIO.write(img, "png", path.toFile());
+
+            final BufferedImage gray = loadGray(img);
+            final ImageLoading.Prefetcher prefetcher = ImageLoading.getPrefetcher(path);
+            assertEquals(1, prefetcher.getImageCount());
+
+            for (int i = 0; i < 2; i++) {
+                final BufferedImage fetched = prefetcher.getGrayImage(1, 2);
+                assertEquals(BufferedImage.TYPE_BYTE_GRAY, fetched.getType());
+                assertArrayEquals(
+                        (byte[]) new ByteProcessor(gray).getPixels(),
+                        (byte[]) new ByteProcessor(fetched).getPixels());
+                assertTrue(prefetcher.getPeakBytes() > 0);
+            }
+
+            prefetcher.dispose();
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Check the prefetcher delivers the right pages when they are not requested in the
+     * prefetched order, or requested concurrently.
+     */
+    @Test
+    public void testPrefetcherOutOfOrder ()
+            throws Exception
+    {
+        final List<BufferedImage> images = new ArrayList<>();
+        images.add(createImage(300, 200, BufferedImage.TYPE_3BYTE_BGR));
+        images.add(createImage(200, 300, BufferedImage.TYPE_3BYTE_BGR));
+        images.add(createImage(250, 150, BufferedImage.TYPE_3BYTE_BGR));
+        images.add(createImage(150, 250, BufferedImage.TYPE_3BYTE_BGR));
+
+        final Path path = Files.createTempFile("loading", ".tif");
+        final ExecutorService executor = Executors.newFixedThreadPool(images.size());
+
+        try {
+            writeSequence(images, path);
+
+            final ImageLoading.Prefetcher prefetcher = ImageLoading.getPrefetcher(path);
+            assertEquals(images.size(), prefetcher.getImageCount());
+
+            // Page 2 gets prefetched but pages 3 then 2 are requested
+            checkPage(images, 1, prefetcher.getGrayImage(1, 2));
+            checkPage(images, 3, prefetcher.getGrayImage(3, 4));
+            checkPage(images, 2, prefetcher.getGrayImage(2, 0));
+
+            // Concurrent requests
+            final List<Future<BufferedImage>> futures = new ArrayList<>();
+
+            for (int i = 1; i <= images.size(); i++) {
+                final int id = i;
+                futures.add(executor.submit(new Callable<BufferedImage>()
+                {
+                    @Override
+                    public BufferedImage call ()
+                            throws Exception
+                    {
+                        return prefetcher.getGrayImage(id, id + 1);
+                    }
+                }));
+            }
+
+            for (int i = 1; i <= images.size(); i++) {
+                checkPage(images, i, futures.get(i - 1).get());
+            }
+
+            prefetcher.dispose();
+        } finally {
+            executor.shutdown();
+            Files.delete(path);
+        }
+    }
+
+    private static void checkPage (List<BufferedImage> images,
+                                   int id,
+                                   BufferedImage fetched)
+            throws IOException
+    {
+        final BufferedImage gray = loadGray(images.get(id - 1));
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, fetched.getType());
+        assertEquals(gray.getWidth(), fetched.getWidth());
+        assertEquals(gray.getHeight(), fetched.getHeight());
+        assertArrayEquals(
+                (byte[]) new ByteProcessor(gray).getPixels(),
+                (byte[]) new ByteProcessor(fetched).getPixels());
+    }
+
+    private static BufferedImage createImage (int width,
+                                              int height,
+                                              int type)
+    {
+        final Random random = new Random(123);
+        final BufferedImage img = new BufferedImage(width, height, type);
+        final Graphics2D g = img.createGraphics();
+
+        for (int i = 0; i < 100; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            g.fillRect(
+                    random.nextInt(width),
+                    random.nextInt(height),
+                    random.nextInt(width / 2),
+                    random.nextInt(height / 2));
+        }
+
+        g.dispose();
+
+        return img;
+    }
+
+    private static void writeSequence (List<BufferedImage> images,
+                                       Path path)
+            throws IOException
+    {
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(path.toFile())) {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+
+            for (BufferedImage img : images) {
+                writer.writeToSequence(new IIOImage(img, null, null), null);
+            }
+
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static BufferedImage loadGray (BufferedImage img)
+            throws IOException
+    {
+        return loadGray(img, "png");
+    }
+
+    private static BufferedImage loadGray (BufferedImage img,
+                                           String format)
+            throws IOException
+    {
+        final Path path = Files.createTempFile("loading", "." + format);
+
+        try {
+            assertTrue(ImageIO.write(img, format, path.toFile()));
+
+            final ImageLoading.Loader loader = ImageLoading.getLoader(path);
+            final BufferedImage gray = loader.getGrayImage(1);
+            loader.dispose();
+
+            assertEquals(BufferedImage.TYPE_BYTE_GRAY, gray.getType());
+            assertEquals(img.getWidth(), gray.getWidth());
+            assertEquals(img.getHeight(), gray.getHeight());
+            assertTrue(loader.getPeakBytes() > 0);
+
+            return gray;
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
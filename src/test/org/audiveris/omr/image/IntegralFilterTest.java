@@ -0,0 +1,118 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               I n t e g r a l F i l t e r T e s t                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+import org.audiveris.omr.util.BaseTestCase;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Class {@code IntegralFilterTest} checks that {@link IntegralFilter} provides the same
+ * binarization as {@link VerticalFilter}.
+ *
+ * @author Hervé Bitteur
+ */
+public class IntegralFilterTest
+        extends BaseTestCase
+{
+
+    private static final double MEAN_COEFF = 0.7;
+
+    private static final double STD_DEV_COEFF = 0.9;
+
+    @Test
+    public void testBlankImage ()
+    {
+        ByteProcessor source = new ByteProcessor(50, 40);
+        source.setValue(255);
+        source.fill();
+
+        RunTable table = new IntegralFilter(source, MEAN_COEFF, STD_DEV_COEFF).filteredTable();
+        assertEquals(0, table.getTotalRunCount());
+    }
+
+    @Test
+    public void testFilteredTable ()
+    {
+        ByteProcessor source = createRandomSource(600, 1100, 12345);
+
+        RunTable expected = new RunTableFactory(Orientation.VERTICAL).createTable(
+                new VerticalFilter(source, MEAN_COEFF, STD_DEV_COEFF).filteredImage());
+        RunTable result = new IntegralFilter(source, MEAN_COEFF, STD_DEV_COEFF).filteredTable();
+
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void testIsFore ()
+    {
+        ByteProcessor source = createRandomSource(80, 60, 678);
+        VerticalFilter vertical = new VerticalFilter(source, MEAN_COEFF, STD_DEV_COEFF);
+        IntegralFilter integral = new IntegralFilter(source, MEAN_COEFF, STD_DEV_COEFF);
+
+        for (int x = 0; x < source.getWidth(); x++) {
+            for (int y = 0; y < source.getHeight(); y++) {
+                assertEquals(vertical.isFore(x, y), integral.isFore(x, y));
+            }
+        }
+    }
+
+    /**
+     * Build a gray image with light background, dark blobs and some noise.
+     */
+    private ByteProcessor createRandomSource (int width,
+                                              int height,
+                                              long seed)
+    {
+        final Random random = new Random(seed);
+        final ByteProcessor source = new ByteProcessor(width, height);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                source.set(x, y, 200 + random.nextInt(56));
+            }
+        }
+
+        for (int i = 0; i < 300; i++) {
+            final int x0 = random.nextInt(width);
+            final int y0 = random.nextInt(height);
+            final int w = 1 + random.nextInt(40);
+            final int h = 1 + random.nextInt(60);
+            final int val = random.nextInt(120);
+
+            for (int y = y0; y < Math.min(height, y0 + h); y++) {
+                for (int x = x0; x < Math.min(width, x0 + w); x++) {
+                    source.set(x, y, val + random.nextInt(20));
+                }
+            }
+        }
+
+        return source;
+    }
+}
@@ -0,0 +1,137 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                 S k e l e t o n i z e r T e s t                                //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import ij.gui.OvalRoi;
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.util.BaseTestCase;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class {@code SkeletonizerTest} checks that {@link Skeletonizer} thins the regions of
+ * an image exactly as a thinning of the whole image.
+ *
+ * @author Hervé Bitteur
+ */
+public class SkeletonizerTest
+        extends BaseTestCase
+{
+
+    private static final int HALO = 24;
+
+    @Test
+    public void testBlankImage ()
+    {
+        ByteProcessor source = new ByteProcessor(700, 600);
+        source.setValue(255);
+        source.fill();
+
+        Skeletonizer skeletonizer = new Skeletonizer(source);
+        ByteProcessor result = skeletonizer.skeletonize(
+                Arrays.asList(new Rectangle(10, 10, 600, 500)),
+                HALO,
+                false);
+        assertEquals(0, skeletonizer.getRemovedCount());
+        assertEquals(600 * 500, skeletonizer.getThinnedCount());
+
+        for (int i = 0; i < (700 * 600); i++) {
+            assertEquals(255, result.get(i));
+        }
+    }
+
+    @Test
+    public void testRegions ()
+    {
+        ByteProcessor source = createRandomSource(1300, 1150, 2018);
+        List<Rectangle> regions = Arrays.asList(
+                new Rectangle(40, 30, 1100, 420),
+                new Rectangle(0, 380, 1300, 300),
+                new Rectangle(500, 800, 700, 400));
+
+        ByteProcessor expected = (ByteProcessor) source.duplicate();
+        expected.skeletonize();
+
+        Skeletonizer skeletonizer = new Skeletonizer(source);
+        ByteProcessor sequential = skeletonizer.skeletonize(regions, HALO, false);
+        ByteProcessor parallel = skeletonizer.skeletonize(regions, HALO, true);
+
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                int val = 255;
+
+                for (Rectangle region : regions) {
+                    if (region.contains(x, y)) {
+                        val = expected.get(x, y);
+                    }
+                }
+
+                assertEquals("x:" + x + " y:" + y, val, sequential.get(x, y));
+                assertEquals("x:" + x + " y:" + y, val, parallel.get(x, y));
+            }
+        }
+
+        assertTrue(skeletonizer.getRemovedCount() > 0);
+    }
+
+    /**
+     * Build a binary image with thick lines and blobs, crossing tile borders.
+     */
+    private ByteProcessor createRandomSource (int width,
+                                              int height,
+                                              long seed)
+    {
+        final Random random = new Random(seed);
+        final ByteProcessor source = new ByteProcessor(width, height);
+        source.setValue(255);
+        source.fill();
+        source.setValue(0);
+
+        for (int i = 0; i < 150; i++) {
+            source.setLineWidth(1 + random.nextInt(8));
+            source.drawLine(
+                    random.nextInt(width),
+                    random.nextInt(height),
+                    random.nextInt(width),
+                    random.nextInt(height));
+        }
+
+        for (int i = 0; i < 60; i++) {
+            final int x = random.nextInt(width);
+            final int y = random.nextInt(height);
+            final int w = 10 + random.nextInt(20);
+            final int h = 8 + random.nextInt(12);
+            source.setRoi(x, y, w, h);
+            source.fill(new OvalRoi(x, y, w, h));
+        }
+
+        source.resetRoi();
+
+        return source;
+    }
+}
@@ -0,0 +1,144 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                              T e m p l a t e M a t c h e r T e s t                             //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.image;
+
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.image.Anchored.Anchor;
+import org.audiveris.omr.util.BaseTestCase;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class {@code TemplateMatcherTest} checks that {@link TemplateMatcher} provides the same
+ * results as {@link Template#evaluate}.
+ *
+ * @author Hervé Bitteur
+ */
+public class TemplateMatcherTest
+        extends BaseTestCase
+{
+
+    private static final int WIDTH = 60;
+
+    private static final int HEIGHT = 40;
+
+    @Test
+    public void testBatch ()
+    {
+        final Random random = new Random(456);
+        final DistanceTable table = createTable(random);
+        final Template template = createTemplate(random, 9, 7);
+        final TemplateMatcher matcher = new TemplateMatcher(table);
+
+        final int count = WIDTH + 10;
+        final int[] xs = new int[count];
+        final int[] ys = new int[count];
+        final boolean[] wanted = new boolean[count];
+        final double[] results = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            xs[i] = i - 5;
+            ys[i] = random.nextInt(HEIGHT + 10) - 5;
+            wanted[i] = (i % 3) != 0;
+            results[i] = -1;
+        }
+
+        matcher.evaluate(template, Anchor.MIDDLE_LEFT, xs, ys, wanted, results);
+
+        for (int i = 0; i < count; i++) {
+            if (wanted[i]) {
+                double expected = template.evaluate(xs[i], ys[i], Anchor.MIDDLE_LEFT, table);
+                assertEquals(expected, results[i], 0);
+            } else {
+                assertEquals(-1, results[i], 0);
+            }
+        }
+
+        assertEquals(count - ((count + 2) / 3), matcher.getEvaluationCount(Shape.NOTEHEAD_VOID));
+        assertEquals(0, matcher.getEvaluationCount(Shape.NOTEHEAD_BLACK));
+    }
+
+    @Test
+    public void testEvaluate ()
+    {
+        final Random random = new Random(123);
+        final DistanceTable table = createTable(random);
+        final Template template = createTemplate(random, 11, 9);
+        final TemplateMatcher matcher = new TemplateMatcher(table);
+
+        for (int y = -12; y < (HEIGHT + 12); y++) {
+            for (int x = -12; x < (WIDTH + 12); x++) {
+                double expected = template.evaluate(x, y, null, table);
+                double result = matcher.evaluate(template, x, y, null);
+                assertEquals(expected, result, 0);
+            }
+        }
+    }
+
+    private DistanceTable createTable (Random random)
+    {
+        final DistanceTable table = new DistanceTable.Short(WIDTH, HEIGHT, 1);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final int r = random.nextInt(10);
+                final int val = (r == 0) ? ChamferDistance.VALUE_UNKNOWN
+                        : ((r < 5) ? 0 : random.nextInt(5));
+                table.setValue(x, y, val);
+            }
+        }
+
+        return table;
+    }
+
+    private Template createTemplate (Random random,
+                                     int width,
+                                     int height)
+    {
+        final List<PixelDistance> keyPoints = new ArrayList<>();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (random.nextInt(4) != 0) {
+                    keyPoints.add(new PixelDistance(x, y, random.nextInt(5) - 2));
+                }
+            }
+        }
+
+        final Template template = new Template(
+                Shape.NOTEHEAD_VOID,
+                20,
+                null,
+                width,
+                height,
+                keyPoints,
+                new Rectangle(0, 0, width, height));
+        template.addAnchor(Anchor.MIDDLE_LEFT, 0, height / 2);
+
+        return template;
+    }
+}
@@ -0,0 +1,212 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               S e c t i o n F a c t o r y T e s t                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.lag;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.Run;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+import org.audiveris.omr.util.BaseTestCase;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code SectionFactoryTest} checks that banded processing of {@link SectionFactory}
+ * provides the same sections as sequential processing.
+ *
+ * @author Hervé Bitteur
+ */
+public class SectionFactoryTest
+        extends BaseTestCase
+{
+
+    @Test
+    public void testBandedChain ()
+    {
+        // A long section reaches the band seam, and its continuation beyond the seam is
+        // accepted only when evaluated against the whole section history
+        final int width = 1024;
+        final RunTable table = new RunTable(Orientation.VERTICAL, width, 200);
+
+        for (int x = 0; x < width; x++) {
+            if (x < (width / 2)) {
+                table.addRun(x, new Run(100, 8));
+            } else if (x == (width / 2)) {
+                table.addRun(x, new Run(100, 10));
+            } else {
+                table.addRun(x, new Run(102, 6));
+            }
+        }
+
+        final SectionFactory factory = new SectionFactory(
+                Orientation.VERTICAL,
+                new JunctionRatioPolicy(1.5));
+        final List<Section> expected = factory.createSections(table, null, false, false);
+        final List<Section> result = factory.createSections(table, null, false, true);
+        assertEquals(1, expected.size());
+        assertSameSections(expected, result);
+    }
+
+    @Test
+    public void testBandedDelta ()
+    {
+        checkBanded(Orientation.VERTICAL, new JunctionDeltaPolicy(4), 11);
+    }
+
+    @Test
+    public void testBandedLag ()
+    {
+        final RunTable table = createTable(Orientation.HORIZONTAL, 21);
+        final JunctionPolicy policy = new JunctionRatioPolicy(1.5);
+        final Lag seqLag = new BasicLag("seq", Orientation.HORIZONTAL);
+        final Lag bandLag = new BasicLag("band", Orientation.HORIZONTAL);
+
+        List<Section> expected = new SectionFactory(seqLag, policy).createSections(
+                table,
+                null,
+                true,
+                false);
+        List<Section> result = new SectionFactory(bandLag, policy).createSections(
+                table,
+                null,
+                true,
+                true);
+        assertSameSections(expected, result);
+        assertEquals(seqLag.getEntities().size(), bandLag.getEntities().size());
+    }
+
+    @Test
+    public void testBandedInLowPool ()
+            throws Exception
+    {
+        // Banded processing from within all low pool threads (as in systems processed in
+        // parallel) must not wait for a free low pool thread
+        final List<Future<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i <= OmrExecutors.getNumberOfCpus(); i++) {
+            final long seed = 20 + i;
+            futures.add(OmrExecutors.getLowExecutor().submit(new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    checkBanded(Orientation.VERTICAL, new JunctionRatioPolicy(1.5), seed);
+
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testBandedRatio ()
+    {
+        checkBanded(Orientation.VERTICAL, new JunctionRatioPolicy(1.3), 12);
+    }
+
+    @Test
+    public void testBandedShift ()
+    {
+        checkBanded(Orientation.HORIZONTAL, new JunctionShiftPolicy(2), 13);
+    }
+
+    private void assertSameSections (List<Section> expected,
+                                     List<Section> result)
+    {
+        assertEquals(expected.size(), result.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            final Section exp = expected.get(i);
+            final Section res = result.get(i);
+            assertEquals(exp.getId(), res.getId());
+            assertEquals(exp.getFirstPos(), res.getFirstPos());
+            assertEquals(exp.getRunCount(), res.getRunCount());
+
+            for (int r = 0; r < exp.getRunCount(); r++) {
+                final Run expRun = exp.getRuns().get(r);
+                final Run resRun = res.getRuns().get(r);
+                assertEquals(expRun.getStart(), resRun.getStart());
+                assertEquals(expRun.getLength(), resRun.getLength());
+            }
+        }
+    }
+
+    private void checkBanded (Orientation orientation,
+                              JunctionPolicy policy,
+                              long seed)
+    {
+        final RunTable table = createTable(orientation, seed);
+        final SectionFactory factory = new SectionFactory(orientation, policy);
+        final List<Section> expected = factory.createSections(table, null, false, false);
+        final List<Section> result = factory.createSections(table, null, false, true);
+        assertSameSections(expected, result);
+    }
+
+    /**
+     * Build a table of runs from random black blobs, long enough to be split in bands.
+     */
+    private RunTable createTable (Orientation orientation,
+                                  long seed)
+    {
+        final Random random = new Random(seed);
+        final int width = 1600;
+        final int height = 1400;
+        final ByteProcessor buffer = new ByteProcessor(width, height);
+        buffer.setValue(255);
+        buffer.fill();
+
+        for (int i = 0; i < 3000; i++) {
+            final int x0 = random.nextInt(width);
+            final int y0 = random.nextInt(height);
+            final int rx = 1 + random.nextInt(25);
+            final int ry = 1 + random.nextInt(25);
+
+            for (int y = Math.max(0, y0 - ry); y < Math.min(height, y0 + ry); y++) {
+                for (int x = Math.max(0, x0 - rx); x < Math.min(width, x0 + rx); x++) {
+                    final double dx = (double) (x - x0) / rx;
+                    final double dy = (double) (y - y0) / ry;
+
+                    if (((dx * dx) + (dy * dy)) <= (1 + (0.3 * random.nextDouble()))) {
+                        buffer.set(x, y, 0);
+                    }
+                }
+            }
+        }
+
+        return new RunTableFactory(orientation).createTable(buffer);
+    }
+}
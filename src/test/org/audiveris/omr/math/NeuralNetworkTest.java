@@ -0,0 +1,345 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                N e u r a l N e t w o r k T e s t                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.math;
+
+import static junit.framework.Assert.*;
+
+import org.audiveris.omr.classifier.TrainingMonitor;
+import org.audiveris.omr.util.BaseTestCase;
+import org.audiveris.omr.util.OmrExecutors;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class {@code NeuralNetworkTest} checks batch evaluation of NeuralNetwork class.
+ *
+ * @author Hervé Bitteur
+ */
+public class NeuralNetworkTest
+        extends BaseTestCase
+{
+
+    private static final int INPUT_SIZE = 23;
+
+    private static final int HIDDEN_SIZE = 17;
+
+    private static final int OUTPUT_SIZE = 11;
+
+    /** Common initial weights for mini-batch trainings. */
+    private final NeuralNetwork reference = createNetwork();
+
+    //-----------------//
+    // testBatchEquals //
+    //-----------------//
+    @Test
+    public void testBatchEquals ()
+    {
+        checkBatch(37, false);
+    }
+
+    //-------------------//
+    // testBatchParallel //
+    //-------------------//
+    @Test
+    public void testBatchParallel ()
+    {
+        checkBatch(1000, true);
+    }
+
+    //--------------------//
+    // testBatchInLowPool //
+    //--------------------//
+    /**
+     * A parallel batch run from within low pool tasks (as in systems processed in parallel)
+     * must not wait for low pool threads that are all busy.
+     */
+    @Test
+    public void testBatchInLowPool ()
+            throws Exception
+    {
+        final int taskCount = OmrExecutors.getNumberOfCpus() + 1;
+        final List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call ()
+                        throws Exception
+                {
+                    assertTrue(OmrExecutors.isLowThread());
+                    checkBatch(1000, true);
+
+                    return null;
+                }
+            });
+        }
+
+        final List<Future<Void>> futures = new ArrayList<>();
+
+        for (Callable<Void> task : tasks) {
+            futures.add(OmrExecutors.getLowExecutor().submit(task));
+        }
+
+        for (Future<Void> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    //------------------//
+    // testBatchRestore //
+    //------------------//
+    @Test
+    public void testBatchRestore ()
+    {
+        final NeuralNetwork nn = createNetwork();
+        final NeuralNetwork.Backup backup = nn.backup();
+        final double[] inputs = createInputs(5);
+        final double[] before = nn.run(inputs, 5, null, false);
+
+        // Modify weights, then restore them
+        nn.restore(createNetwork().backup());
+        nn.run(inputs, 5, null, false);
+        nn.restore(backup);
+
+        final double[] after = nn.run(inputs, 5, null, false);
+
+        for (int i = 0; i < before.length; i++) {
+            assertEquals(before[i], after[i], 0.0);
+        }
+    }
+
+    //---------------//
+    // testBatchSize //
+    //---------------//
+    @Test
+    public void testBatchSize ()
+    {
+        final NeuralNetwork nn = createNetwork();
+
+        try {
+            nn.run(new double[INPUT_SIZE], 2, null, false);
+            fail("Exception should be raised when inputs are too short");
+        } catch (IllegalArgumentException expected) {
+            checkException(expected);
+        }
+    }
+
+    //---------------------//
+    // testMiniBatchLearns //
+    //---------------------//
+    @Test
+    public void testMiniBatchLearns ()
+    {
+        final NeuralNetwork nn = createNetwork();
+        final List<Double> scores = new ArrayList<>();
+        nn.setBatchSize(4);
+        nn.setThreadCount(3);
+        nn.setLearningRate(1.0);
+        nn.setEpochs(30);
+        nn.train(createPatterns(), createDesired(), new Monitor(scores), 1);
+
+        assertEquals(30, scores.size());
+        assertTrue(scores.get(29) < (0.5 * scores.get(0)));
+    }
+
+    //----------------------//
+    // testMiniBatchThreads //
+    //----------------------//
+    @Test
+    public void testMiniBatchThreads ()
+    {
+        final double[] one = trainMiniBatches(1);
+        final double[] four = trainMiniBatches(4);
+        final double[] again = trainMiniBatches(4);
+
+        for (int i = 0; i < one.length; i++) {
+            assertEquals(one[i], four[i], 1e-9);
+            assertEquals(four[i], again[i], 0.0); // Deterministic reduction
+        }
+    }
+
+    //------------//
+    // checkBatch //
+    //------------//
+    private void checkBatch (int count,
+                             boolean parallel)
+    {
+        final NeuralNetwork nn = createNetwork();
+        final double[] inputs = createInputs(count);
+        final double[] outputs = nn.run(inputs, count, null, parallel);
+        assertEquals(count * OUTPUT_SIZE, outputs.length);
+
+        final double[] ins = new double[INPUT_SIZE];
+        final double[] outs = new double[OUTPUT_SIZE];
+
+        for (int p = 0; p < count; p++) {
+            System.arraycopy(inputs, p * INPUT_SIZE, ins, 0, INPUT_SIZE);
+            nn.run(ins, null, outs);
+
+            for (int o = 0; o < OUTPUT_SIZE; o++) {
+                assertEquals("pattern " + p, outs[o], outputs[(p * OUTPUT_SIZE) + o], 0.0);
+            }
+        }
+    }
+
+    //---------------//
+    // createDesired //
+    //---------------//
+    /**
+     * Desired output is the index of the highest value among the first input cells.
+     */
+    private double[][] createDesired ()
+    {
+        final double[][] patterns = createPatterns();
+        final double[][] desired = new double[patterns.length][OUTPUT_SIZE];
+
+        for (int p = 0; p < patterns.length; p++) {
+            int best = 0;
+
+            for (int o = 1; o < OUTPUT_SIZE; o++) {
+                if (patterns[p][o] > patterns[p][best]) {
+                    best = o;
+                }
+            }
+
+            desired[p][best] = 1;
+        }
+
+        return desired;
+    }
+
+    //--------------//
+    // createInputs //
+    //--------------//
+    private double[] createInputs (int count)
+    {
+        final Random random = new Random(count);
+        final double[] inputs = new double[count * INPUT_SIZE];
+
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = random.nextGaussian();
+        }
+
+        return inputs;
+    }
+
+    //----------------//
+    // createPatterns //
+    //----------------//
+    private double[][] createPatterns ()
+    {
+        final int count = 100;
+        final double[] inputs = createInputs(count);
+        final double[][] patterns = new double[count][INPUT_SIZE];
+
+        for (int p = 0; p < count; p++) {
+            System.arraycopy(inputs, p * INPUT_SIZE, patterns[p], 0, INPUT_SIZE);
+        }
+
+        return patterns;
+    }
+
+    //---------------//
+    // createNetwork //
+    //---------------//
+    private NeuralNetwork createNetwork ()
+    {
+        return new NeuralNetwork(
+                INPUT_SIZE,
+                HIDDEN_SIZE,
+                OUTPUT_SIZE,
+                0.5,
+                labels("in", INPUT_SIZE),
+                labels("out", OUTPUT_SIZE));
+    }
+
+    //--------//
+    // labels //
+    //--------//
+    private String[] labels (String prefix,
+                             int size)
+    {
+        final String[] labels = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            labels[i] = prefix + i;
+        }
+
+        return labels;
+    }
+
+    //------------------//
+    // trainMiniBatches //
+    //------------------//
+    private double[] trainMiniBatches (int threads)
+    {
+        final NeuralNetwork nn = createNetwork();
+        nn.restore(reference.backup());
+        nn.setBatchSize(10);
+        nn.setThreadCount(threads);
+        nn.setEpochs(3);
+        nn.train(createPatterns(), createDesired(), null, 1);
+
+        return nn.run(createInputs(7), 7, null, false);
+    }
+
+    //---------//
+    // Monitor //
+    //---------//
+    private static class Monitor
+            implements TrainingMonitor
+    {
+
+        private final List<Double> scores;
+
+        Monitor (List<Double> scores)
+        {
+            this.scores = scores;
+        }
+
+        @Override
+        public void epochStarted (int epoch)
+        {
+        }
+
+        @Override
+        public int getIterationPeriod ()
+        {
+            return 1;
+        }
+
+        @Override
+        public void iterationPeriodDone (int iteration,
+                                         double score)
+        {
+            scores.add(score);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © Audiveris 2018. All rights reserved.
+ * This software is released under the GNU General Public License.
+ * Goto http://kenai.com/projects/audiveris to report bugs or suggestions.
+ */
+package org.audiveris.omr.moment;
+
+import ij.process.ByteProcessor;
+
+import org.audiveris.omr.math.PointsCollector;
+import static org.audiveris.omr.moments.ARTMoments.ANGULAR;
+import static org.audiveris.omr.moments.ARTMoments.RADIAL;
+import org.audiveris.omr.moments.ARTMoments;
+import org.audiveris.omr.moments.BasicARTExtractor;
+import org.audiveris.omr.moments.BasicARTMoments;
+import org.audiveris.omr.moments.FlatARTExtractor;
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.run.RunTableFactory;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Unit test for FlatARTExtractor, checked against BasicARTExtractor.
+ *
+ * @author Hervé Bitteur
+ */
+public class FlatARTExtractorTest
+{
+
+    private static final double EPSILON = 1E-9;
+
+    /**
+     * Check that points and runs input give the same moments as BasicARTExtractor.
+     */
+    @Test
+    public void testSameMoments ()
+    {
+        Random random = new Random(456);
+
+        for (int i = 0; i < 20; i++) {
+            int width = 5 + random.nextInt(60);
+            int height = 5 + random.nextInt(60);
+            ByteProcessor buffer = createBlob(random, width, height);
+
+            for (Orientation orientation : Orientation.values()) {
+                RunTable runTable = new RunTableFactory(orientation).createTable(buffer);
+                PointsCollector collector = new PointsCollector(null, runTable.getWeight());
+                runTable.cumulate(collector, null);
+
+                ARTMoments expected = new BasicARTMoments();
+                BasicARTExtractor basic = new BasicARTExtractor();
+                basic.setDescriptor(expected);
+                basic.extract(collector.getXValues(), collector.getYValues(), collector.getSize());
+
+                ARTMoments fromPoints = new BasicARTMoments();
+                FlatARTExtractor flat = new FlatARTExtractor();
+                flat.setDescriptor(fromPoints);
+                flat.extract(collector.getXValues(), collector.getYValues(), collector.getSize());
+
+                ARTMoments fromRuns = new BasicARTMoments();
+                flat.setDescriptor(fromRuns);
+                flat.extract(runTable);
+
+                for (int p = 0; p < ANGULAR; p++) {
+                    for (int r = 0; r < RADIAL; r++) {
+                        assertEquals(expected.getMoment(p, r), fromPoints.getMoment(p, r), EPSILON);
+                        assertEquals(expected.getMoment(p, r), fromRuns.getMoment(p, r), EPSILON);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check moments of a single point.
+     */
+    @Test
+    public void testSinglePoint ()
+    {
+        ByteProcessor buffer = new ByteProcessor(3, 3);
+        buffer.setValue(255);
+        buffer.fill();
+        buffer.set(1, 1, 0);
+
+        RunTable runTable = new RunTableFactory(Orientation.VERTICAL).createTable(buffer);
+        ARTMoments moments = new BasicARTMoments();
+        FlatARTExtractor flat = new FlatARTExtractor();
+        flat.setDescriptor(moments);
+        flat.extract(runTable);
+
+        // Only the center of the unit disk is involved, where all basis functions equal 1
+        for (int p = 0; p < ANGULAR; p++) {
+            for (int r = 0; r < RADIAL; r++) {
+                assertEquals(1.0, moments.getMoment(p, r), EPSILON);
+            }
+        }
+    }
+
+    /**
+     * Create a random blob-like foreground, with some holes.
+     */
+    private static ByteProcessor createBlob (Random random,
+                                             int width,
+                                             int height)
+    {
+        ByteProcessor buffer = new ByteProcessor(width, height);
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                double dx = (x - (width / 2.0)) / width;
+                double dy = (y - (height / 2.0)) / height;
+                boolean inside = ((dx * dx) + (dy * dy)) < 0.2;
+                buffer.set(x, y, (inside && (random.nextInt(10) > 0)) ? 0 : 255);
+            }
+        }
+
+        return buffer;
+    }
+}
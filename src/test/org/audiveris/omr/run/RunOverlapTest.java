@@ -0,0 +1,249 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                   R u n O v e r l a p T e s t                                  //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import static org.audiveris.omr.run.Orientation.HORIZONTAL;
+import static org.audiveris.omr.run.Orientation.VERTICAL;
+import org.audiveris.omr.image.PixelSource;
+import org.audiveris.omr.math.AreaUtil;
+import org.audiveris.omr.util.BaseTestCase;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.util.Random;
+
+/**
+ * Class {@code RunOverlapTest} checks {@link RunOverlap} against a brute force
+ * comparison of pixels.
+ *
+ * @author Hervé Bitteur
+ */
+public class RunOverlapTest
+        extends BaseTestCase
+{
+
+    private final Random random = new Random(123);
+
+    @Test
+    public void testRandomIntersections ()
+    {
+        final Orientation[] orientations = new Orientation[]{HORIZONTAL, VERTICAL};
+
+        for (int i = 0; i < 4000; i++) {
+            final boolean[][] a = createGrid(1 + random.nextInt(12), 1 + random.nextInt(12));
+            final boolean[][] b = createGrid(1 + random.nextInt(12), 1 + random.nextInt(12));
+            final int dx = random.nextInt(24) - 12;
+            final int dy = random.nextInt(24) - 12;
+
+            for (Orientation oa : orientations) {
+                for (Orientation ob : orientations) {
+                    final RunTable ta = createTable(a, oa);
+                    final RunTable tb = createTable(b, ob);
+
+                    for (boolean fat : new boolean[]{false, true}) {
+                        final boolean expected = bruteForce(a, b, dx, dy, fat);
+                        assertEquals(
+                                "i:" + i + " " + oa + "/" + ob + " fat:" + fat,
+                                expected,
+                                RunOverlap.intersect(ta, 100, 200, tb, 100 + dx, 200 + dy, fat));
+                        assertEquals(
+                                "i:" + i + " " + ob + "/" + oa + " fat:" + fat,
+                                expected,
+                                RunOverlap.intersect(tb, 100 + dx, 200 + dy, ta, 100, 200, fat));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRasterize ()
+    {
+        final Area area = new Area(new Ellipse2D.Double(10.3, 20.7, 31.4, 17.2));
+        final Rectangle box = area.getBounds();
+        final RunTable table = RunOverlap.rasterize(area, box);
+
+        assertEquals(HORIZONTAL, table.getOrientation());
+        assertEquals(box.width, table.getWidth());
+        assertEquals(box.height, table.getHeight());
+
+        for (int y = 0; y < box.height; y++) {
+            for (int x = 0; x < box.width; x++) {
+                final boolean expected = area.intersects(box.x + x, box.y + y, 1, 1);
+                assertEquals(
+                        "x:" + x + " y:" + y,
+                        expected,
+                        table.get(x, y) == PixelSource.FOREGROUND);
+            }
+        }
+    }
+
+    @Test
+    public void testRasterizeThin ()
+    {
+        // A slanted ribbon, much thinner than a pixel, which misses most pixel centers
+        final Path2D median = new Path2D.Double();
+        median.moveTo(10.2, 20.1);
+        median.lineTo(13.7, 45.6);
+
+        final Area area = AreaUtil.verticalRibbon(median, 0.3);
+        final Rectangle box = area.getBounds();
+        final RunTable table = RunOverlap.rasterize(area, box);
+
+        // Each row crossed by the ribbon keeps some pixels
+        for (int y = 0; y < box.height; y++) {
+            boolean found = false;
+
+            for (int x = 0; x < box.width; x++) {
+                found |= table.get(x, y) == PixelSource.FOREGROUND;
+            }
+
+            assertTrue("y:" + y, found);
+        }
+
+        // A pixel intersects the mask exactly when it intersects the area
+        final RunTable pixel = createTable(new boolean[][]{{true}}, HORIZONTAL);
+
+        for (int y = box.y - 1; y <= (box.y + box.height); y++) {
+            for (int x = box.x - 1; x <= (box.x + box.width); x++) {
+                assertEquals(
+                        "x:" + x + " y:" + y,
+                        area.intersects(x, y, 1, 1),
+                        RunOverlap.intersect(table, box.x, box.y, pixel, x, y, false));
+            }
+        }
+    }
+
+    @Test
+    public void testTouching ()
+    {
+        final boolean[][] a = new boolean[][]{{true}};
+        final RunTable ta = createTable(a, HORIZONTAL);
+        final RunTable tb = createTable(a, VERTICAL);
+
+        // Side by side
+        assertFalse(RunOverlap.intersect(ta, 0, 0, tb, 1, 0, false));
+        assertTrue(RunOverlap.intersect(ta, 0, 0, tb, 1, 0, true));
+
+        // Diagonal neighbors do not touch
+        assertFalse(RunOverlap.intersect(ta, 0, 0, tb, 1, 1, true));
+        assertFalse(RunOverlap.intersect(ta, 0, 0, ta, 1, 1, true));
+
+        // Same pixel
+        assertTrue(RunOverlap.intersect(ta, 5, 5, tb, 5, 5, false));
+    }
+
+    //------------//
+    // bruteForce //
+    //------------//
+    private boolean bruteForce (boolean[][] a,
+                                boolean[][] b,
+                                int dx,
+                                int dy,
+                                boolean fat)
+    {
+        for (int y = 0; y < a.length; y++) {
+            for (int x = 0; x < a[y].length; x++) {
+                if (!a[y][x]) {
+                    continue;
+                }
+
+                if (isOn(b, x - dx, y - dy)) {
+                    return true;
+                }
+
+                if (fat
+                            && (isOn(b, x - dx - 1, y - dy) || isOn(b, x - dx + 1, y - dy)
+                                || isOn(b, x - dx, y - dy - 1) || isOn(b, x - dx, y - dy + 1))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    //------------//
+    // createGrid //
+    //------------//
+    private boolean[][] createGrid (int width,
+                                    int height)
+    {
+        final boolean[][] grid = new boolean[height][width];
+        final int density = random.nextInt(60);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                grid[y][x] = random.nextInt(100) < density;
+            }
+        }
+
+        return grid;
+    }
+
+    //-------------//
+    // createTable //
+    //-------------//
+    private RunTable createTable (boolean[][] grid,
+                                  Orientation orientation)
+    {
+        final int height = grid.length;
+        final int width = grid[0].length;
+        final RunTable table = new RunTable(orientation, width, height);
+        final boolean hori = orientation == HORIZONTAL;
+        final int size = hori ? height : width;
+        final int length = hori ? width : height;
+
+        for (int p = 0; p < size; p++) {
+            int start = -1;
+
+            for (int c = 0; c <= length; c++) {
+                final boolean on = (c < length) && (hori ? grid[p][c] : grid[c][p]);
+
+                if (on) {
+                    if (start == -1) {
+                        start = c;
+                    }
+                } else if (start != -1) {
+                    table.addRun(p, start, c - start);
+                    start = -1;
+                }
+            }
+        }
+
+        return table;
+    }
+
+    //------//
+    // isOn //
+    //------//
+    private boolean isOn (boolean[][] grid,
+                          int x,
+                          int y)
+    {
+        return (y >= 0) && (y < grid.length) && (x >= 0) && (x < grid[y].length) && grid[y][x];
+    }
+}
@@ -0,0 +1,191 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                R u n T a b l e C o d e c T e s t                               //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.run;
+
+import static org.audiveris.omr.run.Orientation.HORIZONTAL;
+import static org.audiveris.omr.run.Orientation.VERTICAL;
+import org.audiveris.omr.util.BaseTestCase;
+
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Class {@code RunTableCodecTest} tests the binary encoding of RunTable.
+ *
+ * @author Hervé Bitteur
+ */
+public class RunTableCodecTest
+        extends BaseTestCase
+{
+
+    private static final File dir = new File("data/temp");
+
+    private static final Dimension dim = new Dimension(10, 5);
+
+    @Test
+    public void testFileRoundTrip ()
+            throws IOException
+    {
+        dir.mkdirs();
+
+        final File file = new File(dir, "runtable.bin");
+        Files.deleteIfExists(file.toPath());
+
+        RunTable table = createRandomInstance(VERTICAL, 700, 500, 2);
+        RunTableCodec.write(table, file.toPath());
+
+        RunTable newTable = RunTableCodec.read(file.toPath());
+        assertEquals(table, newTable);
+    }
+
+    @Test
+    public void testStreamRoundTrip ()
+            throws IOException
+    {
+        RunTable table = createHorizontalInstance();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        RunTableCodec.encode(table, bos);
+
+        RunTable newTable = RunTableCodec.decode(ByteBuffer.wrap(bos.toByteArray()));
+        assertEquals(table.dumpOf(), newTable.dumpOf());
+        assertEquals(table, newTable);
+
+        // Large lengths need multi-byte varints
+        table = createRandomInstance(HORIZONTAL, 40000, 30, 3);
+        bos.reset();
+        RunTableCodec.encode(table, bos);
+        assertEquals(table, RunTableCodec.decode(ByteBuffer.wrap(bos.toByteArray())));
+    }
+
+    @Test
+    public void testEmptySequence ()
+            throws IOException
+    {
+        RunTable table = createHorizontalInstance();
+        table.setSequence(2, new RunTable.RunSequence(new int[0]));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        RunTableCodec.encode(table, bos);
+
+        RunTable newTable = RunTableCodec.decode(ByteBuffer.wrap(bos.toByteArray()));
+        assertNotNull(newTable.getSequence(2));
+        assertEquals(table, newTable);
+    }
+
+    @Test
+    public void testTruncated ()
+            throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        RunTableCodec.encode(createHorizontalInstance(), bos);
+
+        byte[] bytes = bos.toByteArray();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, bytes.length - 3).slice();
+
+        try {
+            RunTableCodec.decode(buffer);
+            fail("Truncated data should be rejected");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testXmlFallback ()
+            throws IOException, JAXBException, XMLStreamException
+    {
+        dir.mkdirs();
+
+        final File file = new File(dir, "runtable-legacy.xml");
+        Files.deleteIfExists(file.toPath());
+
+        RunTable table = createHorizontalInstance();
+        table.marshal(file.toPath());
+
+        RunTable newTable = RunTableCodec.read(file.toPath());
+        assertEquals(table, newTable);
+    }
+
+    //--------------------------//
+    // createHorizontalInstance //
+    //--------------------------//
+    private RunTable createHorizontalInstance ()
+    {
+        RunTable instance = new RunTable(HORIZONTAL, dim.width, dim.height);
+
+        instance.addRun(0, new Run(1, 2));
+        instance.addRun(0, new Run(5, 3));
+
+        instance.addRun(1, new Run(0, 1));
+        instance.addRun(1, new Run(4, 2));
+
+        // Leave sequence empty at index 2
+        //
+        instance.addRun(3, new Run(0, 2));
+        instance.addRun(3, new Run(4, 1));
+        instance.addRun(3, new Run(8, 2));
+
+        instance.addRun(4, new Run(2, 2));
+        instance.addRun(4, new Run(6, 4));
+
+        return instance;
+    }
+
+    //----------------------//
+    // createRandomInstance //
+    //----------------------//
+    private RunTable createRandomInstance (Orientation orientation,
+                                           int width,
+                                           int height,
+                                           long seed)
+    {
+        final Random random = new Random(seed);
+        final RunTable instance = new RunTable(orientation, width, height);
+        final int length = orientation.isVertical() ? height : width;
+
+        for (int i = 0, size = instance.getSize(); i < size; i++) {
+            int start = random.nextInt(length / 2);
+
+            while (start < length) {
+                final int lg = 1 + random.nextInt(Math.max(1, (length - start) / 2));
+
+                if ((start + lg) > length) {
+                    break;
+                }
+
+                instance.addRun(i, start, lg);
+                start += (lg + 1 + random.nextInt(length / 4));
+            }
+        }
+
+        return instance;
+    }
+}
@@ -86,6 +86,41 @@ public class RunTableTest
         }
     }
 
+    /**
+     * Test of cursor method, of class RunTable.
+     */
+    @Test
+    public void testCursor ()
+    {
+        System.out.println("\n+++ cursor");
+
+        RunTable instance = createHorizontalInstance();
+        RunCursor cursor = new RunCursor(instance);
+
+        for (int i = 0; i < instance.getSize(); i++) {
+            int count = 0;
+
+            for (cursor.reset(i); cursor.next();) {
+                Run run = instance.getRunAt(cursor.getStart(), i);
+                assertNotNull(run);
+                assertEquals(cursor.getStart(), run.getStart());
+                assertEquals(cursor.getLength(), run.getLength());
+                count++;
+            }
+
+            assertEquals(instance.getRunCount(i), count);
+        }
+
+        cursor.reset(2);
+        assertFalse(cursor.next());
+
+        cursor.reset(3);
+        assertTrue(cursor.next());
+        assertTrue(cursor.next());
+        assertEquals(4, cursor.getStart());
+        assertEquals(4, cursor.getStop());
+    }
+
     /**
      * Test of dumpOf method, of class RunTable.
      */
@@ -322,6 +357,45 @@ public class RunTableTest
         assertEquals(5, instance.getTotalRunCount());
     }
 
+    /**
+     * Test of include method with overlapping runs, of class RunTable.
+     */
+    @Test
+    public void testInclude_Overlap ()
+    {
+        System.out.println("\n+++ include_overlap");
+
+        RunTable instance = createHorizontalInstance();
+        RunTable that = new RunTable(HORIZONTAL, dim.width, dim.height);
+        that.addRun(0, new Run(2, 4)); // Overlaps (1,2) and (5,3)
+        that.addRun(2, new Run(3, 2)); // In empty sequence
+
+        instance.include(that);
+        assertEquals(10, instance.getTotalRunCount());
+        assertEquals(1, instance.getRunAt(1, 0).getStart());
+        assertEquals(2, instance.getRunAt(1, 0).getLength());
+    }
+
+    /**
+     * Test of union method, of class RunTable.
+     */
+    @Test
+    public void testUnion ()
+    {
+        System.out.println("\n+++ union");
+
+        RunTable instance = createHorizontalInstance();
+        RunTable that = new RunTable(HORIZONTAL, dim.width, dim.height);
+        that.addRun(0, new Run(2, 4)); // Overlaps (1,2) and (5,3)
+        that.addRun(2, new Run(3, 2)); // In empty sequence
+
+        instance.union(that);
+        assertEquals(9, instance.getTotalRunCount());
+        assertEquals(1, instance.getRunAt(1, 0).getStart());
+        assertEquals(7, instance.getRunAt(1, 0).getLength());
+        assertEquals(23, instance.getWeight());
+    }
+
     /**
      * Test of purge method, of class RunTable.
      */
@@ -406,6 +480,35 @@ public class RunTableTest
         removed.dumpSequences();
     }
 
+    /**
+     * Test of purge method with a primitive predicate, of class RunTable.
+     */
+    @Test
+    public void testPurge_RunPredicate_RunTable ()
+    {
+        System.out.println("\n+++ purge_runPredicate_removed");
+
+        RunTable instance = createHorizontalInstance();
+        RunTable removed = new RunTable(HORIZONTAL, dim.width, dim.height);
+        instance.purge(new RunTable.RunPredicate()
+        {
+            @Override
+            public boolean check (int index,
+                                  int start,
+                                  int length)
+            {
+                return length == 2;
+            }
+        }, removed);
+
+        assertEquals(4, instance.getTotalRunCount());
+        assertEquals(5, removed.getTotalRunCount());
+        assertEquals(19, instance.getWeight() + removed.getWeight());
+
+        instance.include(removed);
+        assertEquals(createHorizontalInstance(), instance);
+    }
+
     /**
      * Test of removeRun method, of class RunTable.
      */
@@ -443,6 +546,42 @@ public class RunTableTest
         System.out.println("table after:" + instance.dumpOf());
     }
 
+    /**
+     * Test of setSequence method with a builder, of class RunTable.
+     */
+    @Test
+    public void testSetSequence_Builder ()
+    {
+        System.out.println("\n+++ setSequence_builder");
+
+        RunTable instance = createHorizontalInstance();
+        RunTable other = new RunTable(HORIZONTAL, dim.width, dim.height);
+        RunSequenceBuilder builder = new RunSequenceBuilder(2);
+
+        for (int i = 0; i < instance.getSize(); i++) {
+            builder.clear();
+
+            for (RunCursor cursor = instance.cursor(i); cursor.next();) {
+                builder.append(cursor.getStart(), cursor.getLength());
+            }
+
+            other.setSequence(i, builder);
+        }
+
+        assertEquals(instance, other);
+
+        builder.clear();
+        builder.append(2, 3);
+        builder.append(5, 1); // Adjacent, hence merged
+        assertArrayEquals(new int[]{0, 2, 4}, builder.toRle());
+
+        try {
+            builder.append(4, 1);
+            fail("Overlapping run should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
     /**
      * Test of toString method, of class RunTable.
      */
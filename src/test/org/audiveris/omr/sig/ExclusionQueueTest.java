@@ -0,0 +1,290 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                               E x c l u s i o n Q u e u e T e s t                              //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sig;
+
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.sheet.Book;
+import org.audiveris.omr.sheet.Sheet;
+import org.audiveris.omr.sheet.SheetStub;
+import org.audiveris.omr.sheet.Staff;
+import org.audiveris.omr.sheet.SystemInfo;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.sig.inter.AbstractInter;
+import org.audiveris.omr.sig.inter.Inter;
+import org.audiveris.omr.sig.relation.Exclusion;
+import org.audiveris.omr.sig.relation.Relation;
+import org.audiveris.omr.sig.relation.Support;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Check that {@link SIGraph#reduceExclusions(java.util.Collection)}, driven by an
+ * {@link ExclusionQueue}, removes the same inters in the same order as the former scan of all
+ * exclusions at each step.
+ *
+ * @author Hervé Bitteur
+ */
+public class ExclusionQueueTest
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    /** Intrinsic grade of each inter. */
+    private static final double[] GRADES = new double[]{
+        0.60, 0.55, 0.50, 0.70, 0.45, 0.65, 0.40, 0.0, 0.0, 0.35, 0.50, 0.50, 0.50, 0.50,
+        0.90
+    };
+
+    /** Supports, as (source, target) inter indices. */
+    private static final int[][] SUPPORTS = new int[][]{{3, 1}, {6, 2}, {0, 6}, {14, 9}};
+
+    /** Exclusions, as (inter, inter) indices, in collection order. */
+    private static final int[][] EXCLUSIONS = new int[][]{
+        {0, 1}, {1, 2}, {3, 4}, {2, 5}, {5, 6}, {7, 8}, {6, 9}, {10, 11}, {12, 13}, {3, 14}
+    };
+
+    /** Index of the zero-potential exclusion. */
+    private static final int ZERO_EXCLUSION = 5;
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new {@code ExclusionQueueTest} object.
+     */
+    public ExclusionQueueTest ()
+    {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    /**
+     * Test of reduceExclusions method, of class SIGraph.
+     */
+    @Test
+    public void testReduceExclusions ()
+    {
+        System.out.println("reduceExclusions");
+
+        // Reduction by the exclusion queue
+        final Scenario actual = new Scenario();
+        final Set<Inter> removed = actual.sig.reduceExclusions(actual.exclusions);
+        final List<Integer> actualOrder = new ArrayList<>();
+
+        for (Inter inter : removed) {
+            actualOrder.add(actual.inters.indexOf(inter));
+        }
+
+        // Reduction by the former scan
+        final Scenario expected = new Scenario();
+        final List<Integer> expectedOrder = expected.reduceByScan();
+
+        System.out.println("removal order: " + actualOrder);
+        assertEquals(expectedOrder, actualOrder);
+        assertEquals(expected.exclusionIndices(), actual.exclusionIndices());
+
+        // Removing inter #3 first has lowered the contextual grade of inter #1 below #0 grade
+        assertEquals(Integer.valueOf(3), actualOrder.get(0));
+        assertTrue(actualOrder.contains(1));
+        assertFalse(actualOrder.contains(0));
+
+        // The zero-potential exclusion is left unreduced
+        assertFalse(actualOrder.contains(7));
+        assertFalse(actualOrder.contains(8));
+        assertEquals(Arrays.asList(ZERO_EXCLUSION), actual.exclusionIndices());
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //----------//
+    // Scenario //
+    //----------//
+    /**
+     * A small SIG populated with inters, supports and exclusions.
+     */
+    private static class Scenario
+    {
+
+        final SIGraph sig;
+
+        final List<Inter> inters = new ArrayList<>();
+
+        final List<Relation> allExclusions = new ArrayList<>();
+
+        final List<Relation> exclusions = new ArrayList<>();
+
+        Scenario ()
+        {
+            final Book book = new Book(Paths.get("test.png"));
+            final SheetStub stub = new SheetStub(book, 1);
+            final Sheet sheet = new Sheet(stub, (RunTable) null);
+            final SystemInfo system = new SystemInfo(1, sheet, new ArrayList<Staff>());
+            sig = system.getSig();
+
+            for (int i = 0; i < GRADES.length; i++) {
+                final Inter inter = new AbstractInter(
+                        null,
+                        new Rectangle(10 * i, 0, 5, 5),
+                        Shape.CLUTTER,
+                        GRADES[i])
+                {
+                };
+                sig.addVertex(inter);
+                inters.add(inter);
+            }
+
+            for (int[] pair : SUPPORTS) {
+                sig.addEdge(inters.get(pair[0]), inters.get(pair[1]), new TestSupport());
+            }
+
+            for (int[] pair : EXCLUSIONS) {
+                final Relation exc = sig.insertExclusion(
+                        inters.get(pair[0]),
+                        inters.get(pair[1]),
+                        Exclusion.Cause.OVERLAP);
+                assertNotNull(exc);
+                allExclusions.add(exc);
+            }
+
+            exclusions.addAll(allExclusions);
+            sig.contextualize();
+        }
+
+        /**
+         * Report the indices of the exclusions still in collection.
+         */
+        List<Integer> exclusionIndices ()
+        {
+            final List<Integer> indices = new ArrayList<>();
+
+            for (Relation rel : exclusions) {
+                indices.add(allExclusions.indexOf(rel));
+            }
+
+            return indices;
+        }
+
+        /**
+         * Reduce the exclusions as the former implementation did, by scanning all
+         * exclusions for the highest potential at each step.
+         *
+         * @return the indices of removed inters, in removal order
+         */
+        List<Integer> reduceByScan ()
+        {
+            final List<Integer> removed = new ArrayList<>();
+            Relation bestRel;
+
+            do {
+                double bestCP = 0;
+                bestRel = null;
+
+                for (Iterator<Relation> it = exclusions.iterator(); it.hasNext();) {
+                    final Relation rel = it.next();
+
+                    if (sig.containsEdge(rel)) {
+                        final double cp = Math.max(
+                                sig.getEdgeSource(rel).getBestGrade(),
+                                sig.getEdgeTarget(rel).getBestGrade());
+
+                        if (bestCP < cp) {
+                            bestCP = cp;
+                            bestRel = rel;
+                        }
+                    } else {
+                        it.remove();
+                    }
+                }
+
+                if (bestRel != null) {
+                    final Inter source = sig.getEdgeSource(bestRel);
+                    final Inter target = sig.getEdgeTarget(bestRel);
+                    final Inter weaker = (source.getBestGrade() < target.getBestGrade()) ? source
+                            : target;
+                    final Set<Inter> involved = new LinkedHashSet<>();
+
+                    for (Support support : sig.getSupports(weaker)) {
+                        involved.add(sig.getEdgeSource(support));
+                        involved.add(sig.getEdgeTarget(support));
+                    }
+
+                    involved.remove(weaker);
+                    removed.add(inters.indexOf(weaker));
+                    weaker.remove();
+
+                    for (Inter inter : involved) {
+                        sig.computeContextualGrade(inter);
+                    }
+
+                    exclusions.remove(bestRel);
+                }
+            } while (bestRel != null);
+
+            return removed;
+        }
+    }
+
+    //-------------//
+    // TestSupport //
+    //-------------//
+    /**
+     * A support which boosts its target only.
+     */
+    private static class TestSupport
+            extends Support
+    {
+
+        TestSupport ()
+        {
+            super(0.5);
+        }
+
+        @Override
+        public boolean isSingleSource ()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isSingleTarget ()
+        {
+            return false;
+        }
+
+        @Override
+        protected double getSourceCoeff ()
+        {
+            return 0;
+        }
+
+        @Override
+        protected double getTargetCoeff ()
+        {
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+//------------------------------------------------------------------------------------------------//
+//                                                                                                //
+//                                    I n t e r G r i d T e s t                                   //
+//                                                                                                //
+//------------------------------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">
+//
+//  Copyright © Audiveris 2018. All rights reserved.
+//
+//  This program is free software: you can redistribute it and/or modify it under the terms of the
+//  GNU Affero General Public License as published by the Free Software Foundation, either version
+//  3 of the License, or (at your option) any later version.
+//
+//  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+//  without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+//  See the GNU Affero General Public License for more details.
+//
+//  You should have received a copy of the GNU Affero General Public License along with this
+//  program.  If not, see <http://www.gnu.org/licenses/>.
+//------------------------------------------------------------------------------------------------//
+// </editor-fold>
+package org.audiveris.omr.sig;
+
+import org.audiveris.omr.glyph.Glyph;
+import org.audiveris.omr.glyph.Shape;
+import org.audiveris.omr.run.Orientation;
+import org.audiveris.omr.run.RunTable;
+import org.audiveris.omr.sheet.Book;
+import org.audiveris.omr.sheet.Sheet;
+import org.audiveris.omr.sheet.SheetStub;
+import org.audiveris.omr.sheet.Staff;
+import org.audiveris.omr.sheet.SystemInfo;
+import org.audiveris.omr.sig.inter.AbstractInter;
+import org.audiveris.omr.sig.inter.Inter;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Check that the spatial queries of {@link SIGraph}, backed by an {@link InterGrid}, give
+ * the same results as a brute-force scan of the SIG vertices.
+ *
+ * @author Hervé Bitteur
+ */
+public class InterGridTest
+{
+    //~ Static fields/initializers -----------------------------------------------------------------
+
+    /** Number of queries of each kind, per check. */
+    private static final int QUERIES = 200;
+
+    /** Extent of the populated area, several grid cells wide. */
+    private static final int EXTENT = 2000;
+
+    //~ Instance fields ----------------------------------------------------------------------------
+    private final Random random = new Random(2018);
+
+    //~ Constructors -------------------------------------------------------------------------------
+    /**
+     * Creates a new {@code InterGridTest} object.
+     */
+    public InterGridTest ()
+    {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------
+    /**
+     * Check queries after inters have been added and removed.
+     */
+    @Test
+    public void testAddRemove ()
+    {
+        System.out.println("addRemove");
+
+        final SIGraph sig = createSig();
+        final List<Inter> inters = new ArrayList<>();
+
+        for (int i = 0; i < 300; i++) {
+            final AbstractInter inter = createInter(randomBox());
+
+            if ((i % 5) == 0) {
+                final Rectangle box = inter.getBounds();
+                inter.setArea(new Area(new Ellipse2D.Double(box.x, box.y, box.width, box.height)));
+            }
+
+            sig.addVertex(inter);
+            inters.add(inter);
+        }
+
+        checkQueries(sig);
+
+        for (int i = 0; i < 100; i++) {
+            inters.remove(random.nextInt(inters.size())).remove();
+        }
+
+        checkQueries(sig);
+
+        // Additions after queries
+        for (int i = 0; i < 50; i++) {
+            sig.addVertex(createInter(randomBox()));
+        }
+
+        checkQueries(sig);
+    }
+
+    /**
+     * Check queries after inter bounds have been modified, via setBounds, setGlyph and
+     * invalidateCache.
+     */
+    @Test
+    public void testBoundsChanged ()
+    {
+        System.out.println("boundsChanged");
+
+        final SIGraph sig = createSig();
+        final List<Inter> inters = new ArrayList<>();
+
+        for (int i = 0; i < 200; i++) {
+            final Inter inter = createInter(randomBox());
+            sig.addVertex(inter);
+            inters.add(inter);
+        }
+
+        // Inters with no bounds and no glyph yet
+        final List<Inter> glyphLess = new ArrayList<>();
+
+        for (int i = 0; i < 30; i++) {
+            final Inter inter = createInter(null);
+            sig.addVertex(inter);
+            glyphLess.add(inter);
+        }
+
+        // Inters with bounds computed on the fly
+        final List<MovingInter> movings = new ArrayList<>();
+
+        for (int i = 0; i < 30; i++) {
+            final MovingInter inter = new MovingInter(randomBox());
+            sig.addVertex(inter);
+            movings.add(inter);
+        }
+
+        checkQueries(sig);
+
+        // setBounds
+        for (Inter inter : inters) {
+            if (random.nextBoolean()) {
+                inter.setBounds(randomBox());
+            }
+        }
+
+        checkQueries(sig);
+
+        // setGlyph
+        for (Inter inter : glyphLess) {
+            final Rectangle box = randomBox();
+            final RunTable table = new RunTable(Orientation.HORIZONTAL, box.width, box.height);
+            inter.setGlyph(new Glyph(box.x, box.y, table));
+        }
+
+        checkQueries(sig);
+
+        // invalidateCache
+        for (MovingInter inter : movings) {
+            inter.box = randomBox();
+            inter.invalidateCache();
+        }
+
+        checkQueries(sig);
+
+        // Several modifications of the same inter between two queries
+        for (int i = 0; i < 3; i++) {
+            for (Inter inter : inters) {
+                inter.setBounds(randomBox());
+            }
+        }
+
+        checkQueries(sig);
+    }
+
+    //--------------//
+    // checkQueries //
+    //--------------//
+    /**
+     * Compare each grid-backed query with a scan of all SIG vertices.
+     */
+    private void checkQueries (SIGraph sig)
+    {
+        for (int i = 0; i < QUERIES; i++) {
+            final Rectangle rect = randomQuery();
+            assertEquals(scanContained(sig, rect), sig.containedInters(rect));
+            assertEquals(scanIntersected(sig, rect), sig.intersectedInters(rect));
+
+            final Point point = new Point(
+                    random.nextInt(EXTENT + 200) - 100,
+                    random.nextInt(EXTENT + 200) - 100);
+            assertEquals(scanContaining(sig, point), sig.containingInters(point));
+        }
+
+        // Large query, beyond populated cells
+        final Rectangle all = new Rectangle(-1000, -1000, EXTENT + 2000, EXTENT + 2000);
+        assertEquals(scanContained(sig, all), sig.containedInters(all));
+        assertEquals(scanIntersected(sig, all), sig.intersectedInters(all));
+    }
+
+    //-------------//
+    // createInter //
+    //-------------//
+    private static AbstractInter createInter (Rectangle bounds)
+    {
+        return new AbstractInter(null, bounds, Shape.CLUTTER, 0.5)
+        {
+        };
+    }
+
+    //-----------//
+    // createSig //
+    //-----------//
+    private static SIGraph createSig ()
+    {
+        final Book book = new Book(Paths.get("test.png"));
+        final SheetStub stub = new SheetStub(book, 1);
+        final Sheet sheet = new Sheet(stub, (RunTable) null);
+        final SystemInfo system = new SystemInfo(1, sheet, new ArrayList<Staff>());
+
+        return system.getSig();
+    }
+
+    //-----------//
+    // randomBox //
+    //-----------//
+    /**
+     * Report a random inter box, some crossing the negative coordinates.
+     */
+    private Rectangle randomBox ()
+    {
+        return new Rectangle(
+                random.nextInt(EXTENT) - 50,
+                random.nextInt(EXTENT) - 50,
+                1 + random.nextInt(150),
+                1 + random.nextInt(150));
+    }
+
+    //-------------//
+    // randomQuery //
+    //-------------//
+    /**
+     * Report a random query rectangle, possibly degenerated.
+     */
+    private Rectangle randomQuery ()
+    {
+        return new Rectangle(
+                random.nextInt(EXTENT + 200) - 100,
+                random.nextInt(EXTENT + 200) - 100,
+                random.nextInt(400),
+                random.nextInt(400));
+    }
+
+    //---------------//
+    // scanContained //
+    //---------------//
+    private static List<Inter> scanContained (SIGraph sig,
+                                              Rectangle rect)
+    {
+        final List<Inter> found = new ArrayList<>();
+
+        for (Inter inter : sig.vertexSet()) {
+            final Rectangle box = inter.getBounds();
+
+            if ((box != null) && rect.contains(box)) {
+                found.add(inter);
+            }
+        }
+
+        return found;
+    }
+
+    //----------------//
+    // scanContaining //
+    //----------------//
+    private static List<Inter> scanContaining (SIGraph sig,
+                                               Point point)
+    {
+        final List<Inter> found = new ArrayList<>();
+
+        for (Inter inter : sig.vertexSet()) {
+            final Rectangle box = inter.getBounds();
+
+            if ((box != null) && box.contains(point)) {
+                final Area area = inter.getArea();
+
+                if ((area == null) || area.contains(point)) {
+                    found.add(inter);
+                }
+            }
+        }
+
+        return found;
+    }
+
+    //-----------------//
+    // scanIntersected //
+    //-----------------//
+    private static List<Inter> scanIntersected (SIGraph sig,
+                                                Rectangle rect)
+    {
+        final List<Inter> found = new ArrayList<>();
+
+        for (Inter inter : sig.vertexSet()) {
+            if (inter.isRemoved()) {
+                continue;
+            }
+
+            final Rectangle box = inter.getBounds();
+
+            if ((box != null) && rect.intersects(box)) {
+                found.add(inter);
+            }
+        }
+
+        return found;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------
+    //-------------//
+    // MovingInter //
+    //-------------//
+    /**
+     * An inter whose bounds are computed from a modifiable box, and thus must be
+     * invalidated when this box is changed.
+     */
+    private static class MovingInter
+            extends AbstractInter
+    {
+
+        Rectangle box;
+
+        MovingInter (Rectangle box)
+        {
+            super(null, null, Shape.CLUTTER, 0.5);
+            this.box = box;
+        }
+
+        @Override
+        public Rectangle getBounds ()
+        {
+            return new Rectangle(box);
+        }
+    }
+}